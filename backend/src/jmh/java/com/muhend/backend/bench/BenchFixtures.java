@@ -0,0 +1,113 @@
+package com.muhend.backend.bench;
+
+import com.muhend.backend.codesearch.model.Position10Dz;
+import com.muhend.backend.usage.model.EndpointUsage;
+import com.muhend.backend.usage.model.UsageLog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Fixtures des benchmarks backend, générées à partir de la migration V27 (positions 10 et titres,
+ * dans l'ordre du tarif) lue sur le classpath, et logs d'utilisation synthétiques reproductibles.
+ */
+public final class BenchFixtures {
+
+    private static final String V27 = "/db/migration/V27__reload_position10_dz_ordered.sql";
+
+    /** Répartition des endpoints observée en production (en pourcentage cumulé). */
+    private static final String[] ENDPOINTS = {
+            "/recherche/positions10", "/recherche/positions6", "/recherche/positions4",
+            "/recherche/chapitres", "/recherche/sections", "/decode-p10", "/decode"
+    };
+    private static final int[] CUMUL = {40, 65, 75, 80, 85, 95, 100};
+
+    private static List<Position10Dz> position10;
+
+    private BenchFixtures() {
+    }
+
+    /** Lignes position10_dz de V27 (titres compris, code vide), id = rang dans le tarif. */
+    public static synchronized List<Position10Dz> position10() {
+        if (position10 == null) {
+            try (InputStream in = BenchFixtures.class.getResourceAsStream(V27)) {
+                if (in == null) {
+                    throw new IllegalStateException("Migration introuvable sur le classpath : " + V27);
+                }
+                List<String[]> rows = SqlInserts.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8), "position10_dz");
+                List<Position10Dz> result = new ArrayList<>(rows.size());
+                for (int i = 0; i < rows.size(); i++) {
+                    result.add(new Position10Dz((long) i + 1, rows.get(i)[0], rows.get(i)[1]));
+                }
+                position10 = List.copyOf(result);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return position10;
+    }
+
+    /**
+     * Logs d'utilisation d'un mois : endpoints selon la répartition de production, termes tirés des
+     * désignations V27, tokens et coût pour les recherches IA uniquement (les décodages n'en ont pas).
+     */
+    public static List<UsageLog> usageLogs(int count, long seed) {
+        Random random = new Random(seed);
+        List<Position10Dz> designations = position10();
+        LocalDateTime debutMois = LocalDateTime.of(2026, 1, 1, 0, 0);
+        List<UsageLog> logs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String endpoint = endpoint(random.nextInt(100));
+            boolean recherche = endpoint.startsWith("/recherche");
+            Integer tokens = recherche ? 500 + random.nextInt(4500) : null;
+            BigDecimal cost = recherche
+                    ? BigDecimal.valueOf(0.01 + tokens * 0.0000016).setScale(6, RoundingMode.HALF_UP)
+                    : null;
+            String terme = designations.get(random.nextInt(designations.size())).getDescription()
+                    .replaceFirst("^[- ]+", "");
+            logs.add(new UsageLog(
+                    (long) i + 1,
+                    "user-" + random.nextInt(200),
+                    1L + random.nextInt(50),
+                    endpoint,
+                    terme,
+                    tokens,
+                    cost,
+                    debutMois.plusSeconds(random.nextInt(31 * 24 * 3600))));
+        }
+        return logs;
+    }
+
+    /**
+     * Totaux par endpoint des logs, tels que renvoyés par UsageLogRepository.sumByEndpoint (tri par endpoint).
+     */
+    public static List<EndpointUsage> endpointUsage(List<UsageLog> logs) {
+        Map<String, EndpointUsage> totals = new TreeMap<>();
+        for (UsageLog log : logs) {
+            EndpointUsage single = new EndpointUsage(log.getEndpoint(), 1L,
+                    log.getTokensUsed() != null ? log.getTokensUsed().longValue() : 0L, log.getCostUsd());
+            totals.merge(log.getEndpoint(), single, (a, b) -> new EndpointUsage(a.endpoint(),
+                    a.requestCount() + b.requestCount(), a.tokensUsed() + b.tokensUsed(), a.costUsd().add(b.costUsd())));
+        }
+        return List.copyOf(totals.values());
+    }
+
+    private static String endpoint(int tirage) {
+        for (int i = 0; i < CUMUL.length; i++) {
+            if (tirage < CUMUL[i]) {
+                return ENDPOINTS[i];
+            }
+        }
+        return ENDPOINTS[ENDPOINTS.length - 1];
+    }
+}
@@ -0,0 +1,70 @@
+package com.muhend.backend.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lecture minimale des INSERT INTO table (...) VALUES (...), (...); d'une migration :
+ * chaînes entre apostrophes ('' échappé), nombres et NULL ; commentaires -- ignorés.
+ */
+final class SqlInserts {
+
+    private SqlInserts() {
+    }
+
+    static List<String[]> parse(String sql, String table) {
+        List<String[]> rows = new ArrayList<>();
+        String marqueur = "INSERT INTO " + table + " ";
+        int from = 0;
+        int debut;
+        while ((debut = sql.indexOf(marqueur, from)) >= 0) {
+            int i = sql.indexOf("VALUES", debut) + "VALUES".length();
+            from = parseValues(sql, i, rows);
+        }
+        return rows;
+    }
+
+    /** Lit les tuples jusqu'au ';' final, retourne la position qui le suit. */
+    private static int parseValues(String sql, int i, List<String[]> rows) {
+        List<String> tuple = null;
+        StringBuilder valeur = new StringBuilder();
+        boolean chaine = false;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (chaine) {
+                if (c == '\'' && i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    valeur.append('\'');
+                    i += 2;
+                    continue;
+                }
+                if (c == '\'') {
+                    chaine = false;
+                } else {
+                    valeur.append(c);
+                }
+            } else if (c == '-' && i + 1 < sql.length() && sql.charAt(i + 1) == '-') {
+                int fin = sql.indexOf('\n', i);
+                i = fin < 0 ? sql.length() : fin;
+                continue;
+            } else if (c == '\'') {
+                chaine = true;
+            } else if (c == '(') {
+                tuple = new ArrayList<>();
+                valeur.setLength(0);
+            } else if (c == ',' && tuple != null) {
+                tuple.add(valeur.toString().trim());
+                valeur.setLength(0);
+            } else if (c == ')' && tuple != null) {
+                tuple.add(valeur.toString().trim());
+                rows.add(tuple.toArray(String[]::new));
+                tuple = null;
+            } else if (c == ';' && tuple == null) {
+                return i + 1;
+            } else if (tuple != null && !Character.isWhitespace(c)) {
+                valeur.append(c);
+            }
+            i++;
+        }
+        return i;
+    }
+}
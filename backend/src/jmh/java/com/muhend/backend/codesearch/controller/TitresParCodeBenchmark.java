@@ -0,0 +1,84 @@
+package com.muhend.backend.codesearch.controller;
+
+import com.muhend.backend.bench.BenchFixtures;
+import com.muhend.backend.codesearch.model.Position10Dz;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction de la pile de titres de DecodeP10Controller.buildTitresParCode (partie en mémoire),
+ * sur les lignes V27 d'un préfixe : petit (010121), le plus dense en 6 chiffres (870360), et une position 4
+ * entière (8704, 241 codes) pour voir l'évolution avec la taille.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="TitresParCodeBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TitresParCodeBenchmark {
+
+    @Param({"010121", "870360", "8704"})
+    public String prefixe;
+
+    private String premierCode;
+    private List<String> titresPremier;
+    private List<Position10Dz> allRows;
+
+    @Setup
+    public void setUp() {
+        List<Position10Dz> rows = BenchFixtures.position10();
+        int premier = -1;
+        int dernier = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getCode().startsWith(prefixe)) {
+                premier = premier < 0 ? i : premier;
+                dernier = i;
+            }
+        }
+        if (premier < 0) {
+            throw new IllegalStateException("Préfixe absent de V27 : " + prefixe);
+        }
+        // Même plage que findAllWithContextByPrefix : du premier au dernier code du préfixe, titres compris
+        allRows = List.copyOf(rows.subList(premier, dernier + 1));
+        premierCode = rows.get(premier).getCode();
+        titresPremier = titresAvant(rows, premier);
+    }
+
+    @Benchmark
+    public Map<String, List<String>> empilerTitres() {
+        return DecodeP10Controller.empilerTitres(premierCode, titresPremier, allRows);
+    }
+
+    /** Titres qui précèdent le premier code (équivalent en mémoire de findTitres, hors mesure). */
+    private static List<String> titresAvant(List<Position10Dz> rows, int index) {
+        List<String> titres = new ArrayList<>();
+        int niveau = tirets(rows.get(index).getDescription());
+        for (int i = index - 1; i >= 0 && niveau > 1; i--) {
+            Position10Dz row = rows.get(i);
+            int n = tirets(row.getDescription());
+            if (row.getCode().isEmpty() && n < niveau) {
+                if (n <= 1) {
+                    break;
+                }
+                titres.add(0, row.getDescription());
+                niveau = n;
+            }
+        }
+        return titres;
+    }
+
+    private static int tirets(String description) {
+        int count = 0;
+        while (description.startsWith("- ", count * 2)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,44 @@
+package com.muhend.backend.invoice.service;
+
+import com.muhend.backend.bench.BenchFixtures;
+import com.muhend.backend.invoice.model.Invoice;
+import com.muhend.backend.invoice.model.InvoiceItem;
+import com.muhend.backend.usage.model.EndpointUsage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lignes de facture (InvoiceService.createInvoiceItems) à partir des totaux par endpoint des logs d'un mois,
+ * agrégés en SQL par UsageLogRepository.sumByEndpoint : la taille du mois ne change plus que les montants.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="InvoiceItemsBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvoiceItemsBenchmark {
+
+    @Param({"1000", "100000"})
+    public int logs;
+
+    private InvoiceService invoiceService;
+    private Invoice invoice;
+    private List<EndpointUsage> usage;
+
+    @Setup
+    public void setUp() {
+        invoiceService = new InvoiceService(null, null, null, null, null, null, null, null);
+        invoice = new Invoice();
+        usage = BenchFixtures.endpointUsage(BenchFixtures.usageLogs(logs, 42));
+    }
+
+    @Benchmark
+    public List<InvoiceItem> createInvoiceItems() {
+        return invoiceService.createInvoiceItems(invoice, usage);
+    }
+}
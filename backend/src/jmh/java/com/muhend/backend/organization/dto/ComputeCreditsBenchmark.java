@@ -0,0 +1,45 @@
+package com.muhend.backend.organization.dto;
+
+import com.muhend.backend.bench.BenchFixtures;
+import com.muhend.backend.usage.model.UsageLog;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrganizationMapper.computeCredits sur les logs d'un mois (répartition d'endpoints de production).
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="ComputeCreditsBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ComputeCreditsBenchmark {
+
+    @Param({"1000", "100000"})
+    public int logs;
+
+    private OrganizationMapper mapper;
+    private List<UsageLog> usageLogs;
+
+    @Setup
+    public void setUp() {
+        mapper = new OrganizationMapper(null, null, null);
+        ReflectionTestUtils.setField(mapper, "creditsPositions10", 15);
+        ReflectionTestUtils.setField(mapper, "creditsPositions6", 10);
+        ReflectionTestUtils.setField(mapper, "creditsDecodep10", 5);
+        ReflectionTestUtils.setField(mapper, "creditsDecode", 2);
+        ReflectionTestUtils.setField(mapper, "creditsDefault", 1);
+        usageLogs = BenchFixtures.usageLogs(logs, 42);
+    }
+
+    @Benchmark
+    public long computeCredits() {
+        return mapper.computeCredits(usageLogs);
+    }
+}
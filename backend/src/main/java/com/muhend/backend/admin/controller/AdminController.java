@@ -6,7 +6,12 @@ import com.muhend.backend.auth.service.PendingRegistrationService;
 import com.muhend.backend.organization.service.OrganizationService;
 import com.muhend.backend.organization.dto.OrganizationDto;
 import com.muhend.backend.usage.model.UsageLog;
+import com.muhend.backend.usage.archive.UsageLogArchive.ArchiveStats;
+import com.muhend.backend.usage.archive.UsageLogArchive.Manifest;
 import com.muhend.backend.usage.repository.UsageLogRepository;
+import com.muhend.backend.usage.service.UsageLogPartitionService;
+import com.muhend.backend.usage.service.UsageRollupService;
+import com.muhend.backend.usage.service.UsageRollupService.UsageTotals;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -14,10 +19,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -35,17 +40,23 @@ public class AdminController {
     private final PendingRegistrationService pendingRegistrationService;
     private final UsageLogRepository usageLogRepository;
     private final OrganizationService organizationService;
+    private final UsageRollupService usageRollupService;
+    private final UsageLogPartitionService usageLogPartitionService;
     
     public AdminController(
         OrganizationDeletionService organizationDeletionService,
         PendingRegistrationService pendingRegistrationService,
         UsageLogRepository usageLogRepository,
-        OrganizationService organizationService
+        OrganizationService organizationService,
+        UsageRollupService usageRollupService,
+        UsageLogPartitionService usageLogPartitionService
     ) {
         this.organizationDeletionService = organizationDeletionService;
         this.pendingRegistrationService = pendingRegistrationService;
         this.usageLogRepository = usageLogRepository;
         this.organizationService = organizationService;
+        this.usageRollupService = usageRollupService;
+        this.usageLogPartitionService = usageLogPartitionService;
     }
     
     /**
@@ -129,55 +140,27 @@ public class AdminController {
         logger.info("Récupération des statistiques d'utilisation - organizationId: {}, startDate: {}, endDate: {}", 
                 organizationId, startDate, endDate);
         
-        // Déterminer la période
-        LocalDateTime startDateTime;
-        LocalDateTime endDateTime;
+        // Déterminer la période (par défaut, ce mois en cours)
+        LocalDate today = LocalDate.now();
+        LocalDate periodStart = startDate != null && endDate != null ? startDate : today.withDayOfMonth(1);
+        LocalDate periodEnd = startDate != null && endDate != null ? endDate : today.withDayOfMonth(today.lengthOfMonth());
+        LocalDateTime startDateTime = periodStart.atStartOfDay();
+        LocalDateTime endDateTime = periodEnd.atTime(LocalTime.MAX);
         
-        if (startDate != null && endDate != null) {
-            startDateTime = startDate.atStartOfDay();
-            endDateTime = endDate.atTime(LocalTime.MAX);
-        } else {
-            // Par défaut, ce mois en cours
-            LocalDateTime now = LocalDateTime.now();
-            startDateTime = now.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
-            endDateTime = now.withDayOfMonth(now.toLocalDate().lengthOfMonth())
-                    .withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-        }
-        
-        // Récupérer les logs selon les filtres
-        List<UsageLog> logs;
-        if (organizationId != null) {
-            logs = usageLogRepository.findByOrganizationIdAndTimestampBetween(organizationId, startDateTime, endDateTime);
-        } else {
-            logs = usageLogRepository.findByTimestampBetween(startDateTime, endDateTime);
-        }
-        
-        // Calculer les statistiques globales
-        long totalRequests = logs.size();
-        BigDecimal totalCostUsd = logs.stream()
-                .filter(log -> log.getCostUsd() != null)
-                .map(UsageLog::getCostUsd)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        long totalTokens = logs.stream()
-                .filter(log -> log.getTokensUsed() != null)
-                .mapToLong(UsageLog::getTokensUsed)
-                .sum();
+        // Statistiques globales depuis les agrégats (jours et heures closes) + heure en cours
+        UsageTotals totals = usageRollupService.getTotals(periodStart, periodEnd, organizationId, null);
         
         Map<String, Object> response = new LinkedHashMap<>();
-        response.put("totalRequests", totalRequests);
-        response.put("totalCostUsd", totalCostUsd.doubleValue());
-        response.put("totalTokens", totalTokens);
+        response.put("totalRequests", totals.requestCount());
+        response.put("totalCostUsd", totals.costUsd().doubleValue());
+        response.put("totalTokens", totals.tokensUsed());
         
         // Statistiques par organisation (si pas de filtre organisation)
         if (organizationId == null) {
-            Map<Long, List<UsageLog>> logsByOrg = logs.stream()
-                    .filter(log -> log.getOrganizationId() != null)
-                    .collect(Collectors.groupingBy(UsageLog::getOrganizationId));
-            
             List<Map<String, Object>> statsByOrganization = new ArrayList<>();
-            for (Map.Entry<Long, List<UsageLog>> entry : logsByOrg.entrySet()) {
+            for (Map.Entry<Long, UsageTotals> entry : usageRollupService.getTotalsByOrganization(periodStart, periodEnd).entrySet()) {
                 Long orgId = entry.getKey();
-                List<UsageLog> orgLogs = entry.getValue();
+                UsageTotals orgTotals = entry.getValue();
                 
                 try {
                     var orgDto = organizationService.getOrganizationById(orgId);
@@ -185,15 +168,9 @@ public class AdminController {
                         Map<String, Object> orgStats = new LinkedHashMap<>();
                         orgStats.put("organizationId", orgId);
                         orgStats.put("organizationName", orgDto.getName());
-                        orgStats.put("requestCount", orgLogs.size());
-                        orgStats.put("totalCostUsd", orgLogs.stream()
-                                .filter(log -> log.getCostUsd() != null)
-                                .map(UsageLog::getCostUsd)
-                                .reduce(BigDecimal.ZERO, BigDecimal::add).doubleValue());
-                        orgStats.put("totalTokens", orgLogs.stream()
-                                .filter(log -> log.getTokensUsed() != null)
-                                .mapToLong(UsageLog::getTokensUsed)
-                                .sum());
+                        orgStats.put("requestCount", orgTotals.requestCount());
+                        orgStats.put("totalCostUsd", orgTotals.costUsd().doubleValue());
+                        orgStats.put("totalTokens", orgTotals.tokensUsed());
                         statsByOrganization.add(orgStats);
                     }
                 } catch (Exception e) {
@@ -204,33 +181,24 @@ public class AdminController {
         }
         
         // Statistiques par utilisateur
-        Map<String, List<UsageLog>> logsByUser = logs.stream()
-                .collect(Collectors.groupingBy(UsageLog::getKeycloakUserId));
-        
         List<Map<String, Object>> statsByUser = new ArrayList<>();
-        for (Map.Entry<String, List<UsageLog>> entry : logsByUser.entrySet()) {
-            String userId = entry.getKey();
-            List<UsageLog> userLogs = entry.getValue();
+        for (Map.Entry<String, UsageTotals> entry : usageRollupService.getTotalsByUser(periodStart, periodEnd, organizationId).entrySet()) {
+            UsageTotals userTotals = entry.getValue();
             
             Map<String, Object> userStats = new LinkedHashMap<>();
-            userStats.put("keycloakUserId", userId);
-            userStats.put("requestCount", userLogs.size());
-            userStats.put("totalCostUsd", userLogs.stream()
-                    .filter(log -> log.getCostUsd() != null)
-                    .map(UsageLog::getCostUsd)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add).doubleValue());
-            userStats.put("totalTokens", userLogs.stream()
-                    .filter(log -> log.getTokensUsed() != null)
-                    .mapToLong(UsageLog::getTokensUsed)
-                    .sum());
+            userStats.put("keycloakUserId", entry.getKey());
+            userStats.put("requestCount", userTotals.requestCount());
+            userStats.put("totalCostUsd", userTotals.costUsd().doubleValue());
+            userStats.put("totalTokens", userTotals.tokensUsed());
             statsByUser.add(userStats);
         }
         response.put("statsByUser", statsByUser);
         
         // Utilisations récentes (10 dernières)
-        List<Map<String, Object>> recentUsage = logs.stream()
-                .sorted((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()))
-                .limit(10)
+        List<UsageLog> recentLogs = organizationId != null
+                ? usageLogRepository.findTop10ByOrganizationIdAndTimestampBetweenOrderByTimestampDesc(organizationId, startDateTime, endDateTime)
+                : usageLogRepository.findTop10ByTimestampBetweenOrderByTimestampDesc(startDateTime, endDateTime);
+        List<Map<String, Object>> recentUsage = recentLogs.stream()
                 .map(log -> {
                     Map<String, Object> logMap = new LinkedHashMap<>();
                     logMap.put("id", log.getId());
@@ -248,4 +216,70 @@ public class AdminController {
         
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Liste les mois de logs d'utilisation archivés (partitions détachées de usage_log)
+     * @return Mois archivés avec leur nombre de logs
+     */
+    @GetMapping("/usage/archives")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<Map<String, Object>>> getUsageArchives() {
+        List<Map<String, Object>> archives = new ArrayList<>();
+        for (Manifest manifest : usageLogPartitionService.listArchives()) {
+            Map<String, Object> archive = new LinkedHashMap<>();
+            archive.put("month", manifest.month().toString());
+            archive.put("partition", manifest.partition());
+            archive.put("rows", manifest.rows());
+            archive.put("createdAt", manifest.createdAt().toString());
+            archives.add(archive);
+        }
+        return ResponseEntity.ok(archives);
+    }
+
+    /**
+     * Récupère les statistiques d'utilisation d'un mois archivé, lues depuis l'archive sur disque
+     * @param month Mois archivé (format: yyyy-MM)
+     * @return Statistiques d'utilisation (totaux, par organisation, par utilisateur)
+     */
+    @GetMapping("/usage/archives/{month}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getUsageArchiveStats(
+            @PathVariable @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        logger.info("Lecture de l'archive d'utilisation du mois {}", month);
+        Optional<ArchiveStats> archive = usageLogPartitionService.readArchive(month);
+        if (archive.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        ArchiveStats stats = archive.get();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("month", month.toString());
+        response.put("totalRequests", stats.totals().requestCount());
+        response.put("totalCostUsd", stats.totals().costUsd().doubleValue());
+        response.put("totalTokens", stats.totals().tokensUsed());
+
+        List<Map<String, Object>> statsByOrganization = new ArrayList<>();
+        for (Map.Entry<Long, UsageTotals> entry : stats.byOrganization().entrySet()) {
+            Map<String, Object> orgStats = new LinkedHashMap<>();
+            orgStats.put("organizationId", entry.getKey());
+            orgStats.put("requestCount", entry.getValue().requestCount());
+            orgStats.put("totalCostUsd", entry.getValue().costUsd().doubleValue());
+            orgStats.put("totalTokens", entry.getValue().tokensUsed());
+            statsByOrganization.add(orgStats);
+        }
+        response.put("statsByOrganization", statsByOrganization);
+
+        List<Map<String, Object>> statsByUser = new ArrayList<>();
+        for (Map.Entry<String, UsageTotals> entry : stats.byUser().entrySet()) {
+            Map<String, Object> userStats = new LinkedHashMap<>();
+            userStats.put("keycloakUserId", entry.getKey());
+            userStats.put("requestCount", entry.getValue().requestCount());
+            userStats.put("totalCostUsd", entry.getValue().costUsd().doubleValue());
+            userStats.put("totalTokens", entry.getValue().tokensUsed());
+            statsByUser.add(userStats);
+        }
+        response.put("statsByUser", statsByUser);
+
+        return ResponseEntity.ok(response);
+    }
 }
@@ -3,16 +3,22 @@ package com.muhend.backend.admin.service;
 import com.muhend.backend.alert.repository.QuotaAlertRepository;
 import com.muhend.backend.invoice.repository.InvoiceItemRepository;
 import com.muhend.backend.invoice.repository.InvoiceRepository;
+import com.muhend.backend.invoice.service.InvoiceService;
 import com.muhend.backend.organization.model.Organization;
 import com.muhend.backend.organization.repository.OrganizationRepository;
 import com.muhend.backend.organization.repository.OrganizationUserRepository;
+import com.muhend.backend.organization.service.QuotaDecisionCache;
 import com.muhend.backend.payment.repository.PaymentRepository;
 import com.muhend.backend.payment.repository.SubscriptionRepository;
 import com.muhend.backend.pricing.repository.QuoteRequestRepository;
 import com.muhend.backend.pricing.repository.PricingPlanRepository;
+import com.muhend.backend.pricing.service.PricingCatalogCache;
 import com.muhend.backend.usage.repository.UsageLogRepository;
+import com.muhend.backend.usage.service.UsageLogPartitionService;
+import com.muhend.backend.usage.service.UsageRollupService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -36,6 +42,11 @@ public class OrganizationDeletionService {
     private final PaymentRepository paymentRepository;
     private final SubscriptionRepository subscriptionRepository;
     private final PricingPlanRepository pricingPlanRepository;
+    private final UsageRollupService usageRollupService;
+    private final QuotaDecisionCache quotaDecisionCache;
+    private final PricingCatalogCache pricingCatalogCache;
+    private final UsageLogPartitionService usageLogPartitionService;
+    private final InvoiceService invoiceService;
     
     public OrganizationDeletionService(
             OrganizationRepository organizationRepository,
@@ -47,7 +58,12 @@ public class OrganizationDeletionService {
             InvoiceItemRepository invoiceItemRepository,
             PaymentRepository paymentRepository,
             SubscriptionRepository subscriptionRepository,
-            PricingPlanRepository pricingPlanRepository) {
+            PricingPlanRepository pricingPlanRepository,
+            UsageRollupService usageRollupService,
+            QuotaDecisionCache quotaDecisionCache,
+            PricingCatalogCache pricingCatalogCache,
+            UsageLogPartitionService usageLogPartitionService,
+            @Lazy InvoiceService invoiceService) {
         this.organizationRepository = organizationRepository;
         this.usageLogRepository = usageLogRepository;
         this.quotaAlertRepository = quotaAlertRepository;
@@ -58,6 +74,11 @@ public class OrganizationDeletionService {
         this.paymentRepository = paymentRepository;
         this.subscriptionRepository = subscriptionRepository;
         this.pricingPlanRepository = pricingPlanRepository;
+        this.usageRollupService = usageRollupService;
+        this.quotaDecisionCache = quotaDecisionCache;
+        this.pricingCatalogCache = pricingCatalogCache;
+        this.usageLogPartitionService = usageLogPartitionService;
+        this.invoiceService = invoiceService;
     }
     
     /**
@@ -93,6 +114,9 @@ public class OrganizationDeletionService {
         result.setOrganizationId(organizationId);
         
         try {
+            // PDF des factures en cache disque, supprimés après le commit (empreintes lues avant la suppression)
+            invoiceService.evictInvoicePdfs(organizationId);
+            
             // 1. Supprimer les InvoiceItems (liés aux invoices de l'organisation)
             // Récupérer les IDs des factures avant de les supprimer
             List<Long> invoiceIds = invoiceRepository.findByOrganizationIdOrderByCreatedAtDesc(organizationId)
@@ -134,6 +158,8 @@ public class OrganizationDeletionService {
             
             // 6. Supprimer les UsageLogs
             int deletedUsageLogs = usageLogRepository.deleteByOrganizationId(organizationId);
+            usageRollupService.deleteByOrganizationId(organizationId);
+            usageLogPartitionService.purgeArchives(List.of(organizationId), List.of());
             result.setDeletedUsageLogs(deletedUsageLogs);
             logger.info("  - {} logs d'utilisation supprimés", deletedUsageLogs);
             
@@ -155,9 +181,14 @@ public class OrganizationDeletionService {
 
             int deletedPricingPlans = pricingPlanRepository.deleteByOrganizationId(organizationId);
             logger.info("  - {} plans tarifaires sur-mesure supprimés", deletedPricingPlans);
+            if (deletedPricingPlans > 0) {
+                pricingCatalogCache.evictPricingPlans();
+            }
             
             // 9. Supprimer l'organisation elle-même
             organizationRepository.delete(organization);
+            // Collaborateurs non connus individuellement ici : tout le cache de quota est invalidé
+            quotaDecisionCache.invalidateAll();
             logger.info("  ✓ Organisation {} supprimée avec succès", organization.getName());
             
             result.setSuccess(true);
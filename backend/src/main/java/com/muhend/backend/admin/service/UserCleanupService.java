@@ -1,9 +1,13 @@
 package com.muhend.backend.admin.service;
 
 import com.muhend.backend.alert.repository.QuotaAlertRepository;
+import com.muhend.backend.auth.service.KeycloakUserDirectory;
+import com.muhend.backend.organization.service.QuotaDecisionCache;
 import com.muhend.backend.organization.model.OrganizationUser;
 import com.muhend.backend.organization.repository.OrganizationUserRepository;
 import com.muhend.backend.usage.repository.UsageLogRepository;
+import com.muhend.backend.usage.service.UsageLogPartitionService;
+import com.muhend.backend.usage.service.UsageRollupService;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.resource.RealmResource;
 import org.keycloak.admin.client.resource.UserResource;
@@ -16,6 +20,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -31,6 +36,10 @@ public class UserCleanupService {
     private final UsageLogRepository usageLogRepository;
     private final QuotaAlertRepository quotaAlertRepository;
     private final OrganizationUserRepository organizationUserRepository;
+    private final UsageRollupService usageRollupService;
+    private final KeycloakUserDirectory keycloakUserDirectory;
+    private final QuotaDecisionCache quotaDecisionCache;
+    private final UsageLogPartitionService usageLogPartitionService;
     
     @Value("${keycloak.admin.realm:hscode-realm}")
     private String realm;
@@ -39,11 +48,19 @@ public class UserCleanupService {
             Keycloak keycloak,
             UsageLogRepository usageLogRepository,
             QuotaAlertRepository quotaAlertRepository,
-            OrganizationUserRepository organizationUserRepository) {
+            OrganizationUserRepository organizationUserRepository,
+            UsageRollupService usageRollupService,
+            KeycloakUserDirectory keycloakUserDirectory,
+            QuotaDecisionCache quotaDecisionCache,
+            UsageLogPartitionService usageLogPartitionService) {
         this.keycloak = keycloak;
         this.usageLogRepository = usageLogRepository;
         this.quotaAlertRepository = quotaAlertRepository;
         this.organizationUserRepository = organizationUserRepository;
+        this.usageRollupService = usageRollupService;
+        this.keycloakUserDirectory = keycloakUserDirectory;
+        this.quotaDecisionCache = quotaDecisionCache;
+        this.usageLogPartitionService = usageLogPartitionService;
     }
     
     /**
@@ -97,6 +114,7 @@ public class UserCleanupService {
         
         int deletedCount = 0;
         int errorCount = 0;
+        List<String> purgedUserIds = new ArrayList<>();
         
         for (String keycloakUserId : userIdsToDelete) {
             try {
@@ -107,6 +125,8 @@ public class UserCleanupService {
                 
                 // 1. Supprimer les logs d'utilisation
                 long deletedLogs = usageLogRepository.deleteByKeycloakUserId(keycloakUserId);
+                usageRollupService.deleteByKeycloakUserId(keycloakUserId);
+                purgedUserIds.add(keycloakUserId);
                 logger.debug("  - {} logs d'utilisation supprimés", deletedLogs);
                 
                 // 2. Récupérer les IDs des organisations associées avant suppression
@@ -117,6 +137,7 @@ public class UserCleanupService {
                 
                 // 3. Supprimer les associations organisation-utilisateur
                 long deletedAssociations = organizationUserRepository.deleteByKeycloakUserId(keycloakUserId);
+                quotaDecisionCache.invalidateUser(keycloakUserId);
                 logger.debug("  - {} associations organisation-utilisateur supprimées", deletedAssociations);
                 
                 // 4. Supprimer les alertes de quota pour ces organisations
@@ -129,6 +150,7 @@ public class UserCleanupService {
                 
                 // 5. Supprimer l'utilisateur de Keycloak
                 userResource.remove();
+                keycloakUserDirectory.invalidate(keycloakUserId);
                 logger.info("  ✓ Utilisateur {} supprimé avec succès", user.getUsername());
                 
                 deletedCount++;
@@ -139,6 +161,9 @@ public class UserCleanupService {
             }
         }
         
+        // Archives des mois anciens : une seule réécriture pour tous les utilisateurs, après le commit
+        usageLogPartitionService.purgeArchives(List.of(), purgedUserIds);
+        
         logger.info("=== Fin du nettoyage ===");
         logger.info("Utilisateurs supprimés avec succès: {}", deletedCount);
         logger.info("Erreurs rencontrées: {}", errorCount);
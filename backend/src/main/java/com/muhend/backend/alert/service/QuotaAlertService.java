@@ -5,6 +5,7 @@ import com.muhend.backend.alert.model.QuotaAlert;
 import com.muhend.backend.alert.repository.QuotaAlertRepository;
 import com.muhend.backend.organization.dto.OrganizationDto;
 import com.muhend.backend.organization.service.OrganizationService;
+import com.muhend.backend.organization.service.QuotaDecisionCache;
 import com.muhend.backend.organization.service.QuotaService;
 import com.muhend.backend.pricing.dto.PricingPlanDto;
 import com.muhend.backend.pricing.service.PricingPlanService;
@@ -32,6 +33,7 @@ public class QuotaAlertService {
     private final QuotaService quotaService;
     private final UsageLogRepository usageLogRepository;
     private final PricingPlanService pricingPlanService;
+    private final QuotaDecisionCache quotaDecisionCache;
     
     // Seuils d'alerte
     private static final double WARNING_THRESHOLD = 80.0;  // Alerte à 80%
@@ -42,12 +44,14 @@ public class QuotaAlertService {
             OrganizationService organizationService,
             QuotaService quotaService,
             UsageLogRepository usageLogRepository,
-            PricingPlanService pricingPlanService) {
+            PricingPlanService pricingPlanService,
+            QuotaDecisionCache quotaDecisionCache) {
         this.quotaAlertRepository = quotaAlertRepository;
         this.organizationService = organizationService;
         this.quotaService = quotaService;
         this.usageLogRepository = usageLogRepository;
         this.pricingPlanService = pricingPlanService;
+        this.quotaDecisionCache = quotaDecisionCache;
     }
     
     /**
@@ -211,6 +215,10 @@ public class QuotaAlertService {
                 alert.setIsRead(false);
                 
                 quotaAlertRepository.save(alert);
+                if (alertType != QuotaAlert.AlertType.WARNING) {
+                    // Seuil de quota franchi : la prochaine vérification relit la consommation
+                    quotaDecisionCache.invalidateOrganization(organizationId);
+                }
                 log.info("Alerte de quota créée: {} pour l'organisation {} ({}%)", 
                         alertType, organization.getName(), String.format("%.1f", percentageUsed));
             }
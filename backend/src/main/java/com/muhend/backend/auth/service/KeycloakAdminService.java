@@ -28,12 +28,14 @@ public class KeycloakAdminService {
     private static final long RETRY_DELAY_MS = 2000;
 
     private final Keycloak keycloak;
+    private final KeycloakUserDirectory userDirectory;
 
     @Value("${keycloak.registration.realm}")
     private String realm;
 
-    public KeycloakAdminService(Keycloak keycloak) {
+    public KeycloakAdminService(Keycloak keycloak, KeycloakUserDirectory userDirectory) {
         this.keycloak = keycloak;
+        this.userDirectory = userDirectory;
     }
 
     public Response createUser(UserRegistrationRequest registrationRequest) {
@@ -192,9 +194,7 @@ public class KeycloakAdminService {
      */
     public String getUserEmail(String keycloakUserId) {
         try {
-            RealmResource realmResource = keycloak.realm(realm);
-            UserRepresentation user = realmResource.users().get(keycloakUserId).toRepresentation();
-            return user.getEmail();
+            return userDirectory.find(keycloakUserId).map(UserRepresentation::getEmail).orElse(null);
         } catch (Exception e) {
             logger.error("Erreur lors de la récupération de l'email de l'utilisateur {}: {}", keycloakUserId, e.getMessage());
             return null;
@@ -202,14 +202,14 @@ public class KeycloakAdminService {
     }
 
     /**
-     * Récupère les emails de plusieurs utilisateurs depuis Keycloak.
+     * Récupère les emails de plusieurs utilisateurs depuis Keycloak (lecture groupée via l'annuaire).
      *
      * @param keycloakUserIds Liste des IDs d'utilisateurs Keycloak
      * @return Liste des emails (sans les nulls)
      */
     public java.util.List<String> getUserEmails(java.util.List<String> keycloakUserIds) {
-        return keycloakUserIds.stream()
-                .map(this::getUserEmail)
+        return userDirectory.findAll(keycloakUserIds).values().stream()
+                .map(UserRepresentation::getEmail)
                 .filter(email -> email != null && !email.trim().isEmpty())
                 .collect(java.util.stream.Collectors.toList());
     }
@@ -222,9 +222,7 @@ public class KeycloakAdminService {
      */
     public String getUsername(String keycloakUserId) {
         try {
-            RealmResource realmResource = keycloak.realm(realm);
-            UserRepresentation user = realmResource.users().get(keycloakUserId).toRepresentation();
-            return user.getUsername();
+            return userDirectory.find(keycloakUserId).map(UserRepresentation::getUsername).orElse(null);
         } catch (Exception e) {
             logger.error("Erreur lors de la récupération du nom d'utilisateur pour {}: {}", keycloakUserId, e.getMessage());
             return null;
@@ -238,6 +236,7 @@ public class KeycloakAdminService {
             UserRepresentation user = usersResource.get(keycloakUserId).toRepresentation();
             user.setEnabled(false);
             usersResource.get(keycloakUserId).update(user);
+            userDirectory.invalidate(keycloakUserId);
             logger.info("Utilisateur {} désactivé dans Keycloak", keycloakUserId);
         } catch (Exception e) {
             logger.error("Erreur lors de la désactivation de l'utilisateur {}: {}", keycloakUserId, e.getMessage(), e);
@@ -257,6 +256,7 @@ public class KeycloakAdminService {
             UserRepresentation user = usersResource.get(keycloakUserId).toRepresentation();
             user.setEnabled(true);
             usersResource.get(keycloakUserId).update(user);
+            userDirectory.invalidate(keycloakUserId);
             logger.info("Utilisateur {} activé dans Keycloak", keycloakUserId);
         } catch (Exception e) {
             logger.error("Erreur lors de l'activation de l'utilisateur {}: {}", keycloakUserId, e.getMessage(), e);
@@ -266,31 +266,47 @@ public class KeycloakAdminService {
 
     /**
      * Vérifie si un utilisateur est activé dans Keycloak.
+     * Lu dans Keycloak et non dans le cache : une désactivation prend effet immédiatement.
      *
      * @param keycloakUserId ID de l'utilisateur Keycloak
      * @return true si l'utilisateur est activé, false sinon
      */
     public boolean isUserEnabled(String keycloakUserId) {
         try {
-            RealmResource realmResource = keycloak.realm(realm);
-            UserRepresentation user = realmResource.users().get(keycloakUserId).toRepresentation();
-            return user.isEnabled() != null && user.isEnabled();
+            return userDirectory.findFresh(keycloakUserId)
+                    .map(user -> user.isEnabled() != null && user.isEnabled())
+                    .orElse(false);
         } catch (Exception e) {
             logger.error("Erreur lors de la vérification du statut de l'utilisateur {}: {}", keycloakUserId, e.getMessage(), e);
             return false;
         }
     }
 
+    /**
+     * Fiche d'un utilisateur depuis l'annuaire en cache.
+     *
+     * @param keycloakUserId ID de l'utilisateur Keycloak
+     * @return La fiche ou null si l'utilisateur n'existe pas ou si Keycloak est injoignable
+     */
     public UserRepresentation getUserRepresentation(String keycloakUserId) {
         try {
-            RealmResource realmResource = keycloak.realm(realm);
-            return realmResource.users().get(keycloakUserId).toRepresentation();
+            return userDirectory.find(keycloakUserId).orElse(null);
         } catch (Exception e) {
             logger.error("Erreur lors de la récupération de l'utilisateur {}: {}", keycloakUserId, e.getMessage());
             return null;
         }
     }
 
+    /**
+     * Fiches de plusieurs utilisateurs en une lecture groupée (utilisateurs introuvables omis).
+     *
+     * @param keycloakUserIds IDs des utilisateurs Keycloak
+     * @return Fiches indexées par ID
+     */
+    public Map<String, UserRepresentation> getUserRepresentations(java.util.Collection<String> keycloakUserIds) {
+        return userDirectory.findAll(keycloakUserIds);
+    }
+
     public void assignRealmRoles(String keycloakUserId, List<String> roleNames) {
         if (roleNames == null || roleNames.isEmpty()) {
             return;
@@ -0,0 +1,174 @@
+package com.muhend.backend.auth.service;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import jakarta.ws.rs.NotFoundException;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Annuaire des utilisateurs Keycloak : cache Caffeine devant l'API d'administration.
+ *
+ * - Les fiches sont conservées keycloak.directory.ttl (un utilisateur inexistant est aussi mémorisé).
+ * - Les lectures groupées (liste des collaborateurs, logs d'utilisation, emails de facturation) lancent
+ *   les requêtes manquantes en parallèle sur des threads virtuels, au plus keycloak.directory.parallelism
+ *   à la fois ; deux demandes simultanées du même utilisateur partagent la même requête.
+ * - Les modifications faites par le backend (activation, désactivation, suppression) invalident l'entrée.
+ * - Une erreur Keycloak (indisponibilité) n'est pas mise en cache.
+ * - Les fiches retournées sont des copies : un appelant qui les modifie n'altère pas le cache.
+ * - Les contrôles d'accès (compte activé) passent par {@link #findFresh} : une désactivation faite
+ *   directement dans Keycloak ou par une autre instance n'attend pas l'expiration du cache.
+ */
+@Service
+public class KeycloakUserDirectory {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeycloakUserDirectory.class);
+    static final String CACHE_NAME = "keycloak.users";
+    /** Copie champ par champ : les accesseurs Boolean isEnabled() ne sont pas vus par Jackson. */
+    private static final ObjectMapper COPIER = new ObjectMapper()
+            .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Keycloak keycloak;
+    private final String realm;
+    private final Semaphore permits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AsyncLoadingCache<String, Optional<UserRepresentation>> cache;
+    private final Timer foundTimer;
+    private final Timer absentTimer;
+    private final Timer errorTimer;
+
+    public KeycloakUserDirectory(Keycloak keycloak,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${keycloak.registration.realm}") String realm,
+                                 @Value("${keycloak.directory.ttl:5m}") Duration ttl,
+                                 @Value("${keycloak.directory.maximum-size:10000}") long maximumSize,
+                                 @Value("${keycloak.directory.parallelism:8}") int parallelism) {
+        this.keycloak = keycloak;
+        this.realm = realm;
+        this.permits = new Semaphore(Math.max(1, parallelism));
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .executor(executor)
+                .recordStats()
+                .buildAsync(this::fetch);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.foundTimer = meterRegistry.timer("keycloak.directory.fetch", "resultat", "trouve");
+        this.absentTimer = meterRegistry.timer("keycloak.directory.fetch", "resultat", "absent");
+        this.errorTimer = meterRegistry.timer("keycloak.directory.fetch", "resultat", "erreur");
+    }
+
+    /**
+     * Fiche d'un utilisateur, vide s'il n'existe pas dans le realm.
+     *
+     * @throws RuntimeException si Keycloak n'a pas pu être interrogé
+     */
+    public Optional<UserRepresentation> find(String keycloakUserId) {
+        return cache.get(keycloakUserId).join().map(KeycloakUserDirectory::copy);
+    }
+
+    /**
+     * Fiche lue dans Keycloak sans passer par le cache, qui est mis à jour avec elle.
+     *
+     * @throws RuntimeException si Keycloak n'a pas pu être interrogé
+     */
+    public Optional<UserRepresentation> findFresh(String keycloakUserId) {
+        Optional<UserRepresentation> user;
+        try {
+            user = fetch(keycloakUserId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Lecture de l'utilisateur Keycloak interrompue", e);
+        }
+        cache.synchronous().put(keycloakUserId, user);
+        return user.map(KeycloakUserDirectory::copy);
+    }
+
+    /**
+     * Fiches de plusieurs utilisateurs. Les utilisateurs inexistants ou dont la lecture a échoué
+     * sont absents du résultat ; l'ordre des identifiants est conservé.
+     */
+    public Map<String, UserRepresentation> findAll(Collection<String> keycloakUserIds) {
+        Map<String, CompletableFuture<Optional<UserRepresentation>>> futures = new LinkedHashMap<>();
+        for (String keycloakUserId : new LinkedHashSet<>(keycloakUserIds)) {
+            if (keycloakUserId != null) {
+                futures.put(keycloakUserId, cache.get(keycloakUserId));
+            }
+        }
+        Map<String, UserRepresentation> users = new LinkedHashMap<>();
+        futures.forEach((keycloakUserId, future) -> {
+            try {
+                future.join().ifPresent(user -> users.put(keycloakUserId, copy(user)));
+            } catch (Exception e) {
+                logger.warn("Impossible de récupérer l'utilisateur Keycloak {}: {}", keycloakUserId, e.getMessage());
+            }
+        });
+        return users;
+    }
+
+    /**
+     * Retire un utilisateur du cache après une modification (activation, désactivation, suppression).
+     */
+    public void invalidate(String keycloakUserId) {
+        cache.synchronous().invalidate(keycloakUserId);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static UserRepresentation copy(UserRepresentation user) {
+        return COPIER.convertValue(user, UserRepresentation.class);
+    }
+
+    /**
+     * Lecture d'une fiche dans Keycloak (thread virtuel du cache), limitée à parallelism requêtes simultanées.
+     */
+    private Optional<UserRepresentation> fetch(String keycloakUserId) throws InterruptedException {
+        permits.acquire();
+        long start = System.nanoTime();
+        try {
+            UserRepresentation user = keycloak.realm(realm).users().get(keycloakUserId).toRepresentation();
+            foundTimer.record(Duration.ofNanos(System.nanoTime() - start));
+            return Optional.ofNullable(user);
+        } catch (NotFoundException e) {
+            absentTimer.record(Duration.ofNanos(System.nanoTime() - start));
+            return Optional.empty();
+        } catch (RuntimeException e) {
+            errorTimer.record(Duration.ofNanos(System.nanoTime() - start));
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -146,17 +146,26 @@ public class DecodeP10Controller {
         List<Position10Dz> codes = position10DzRepository.findAllByPrefixWithId(prefix);
         if (codes.isEmpty()) return Collections.emptyMap();
 
-        Map<String, List<String>> result = new LinkedHashMap<>();
-
         // Étape 1 : titres du premier code via findTitres (les titres précédant le 1er code
         // ont des ids inférieurs à MIN(id codes) et sont absents de findAllWithContextByPrefix)
         Position10Dz first = codes.get(0);
-        List<String> titleStack = new ArrayList<>(
-                findTitres(first.getId(), countDashes(first.getDescription())));
-        result.put(first.getCode(), new ArrayList<>(titleStack));
+        List<String> titresPremier = findTitres(first.getId(), countDashes(first.getDescription()));
 
         // Étape 2 : titres intercalés entre les codes suivants (ids compris dans la plage)
         List<Position10Dz> allRows = position10DzRepository.findAllWithContextByPrefix(prefix);
+        return empilerTitres(first.getCode(), titresPremier, allRows);
+    }
+
+    /**
+     * Parcours en mémoire de buildTitresParCode : pile de titres initialisée avec ceux du premier code,
+     * puis mise à jour à chaque titre de allRows. Sans accès base, pour les benchmarks.
+     */
+    static Map<String, List<String>> empilerTitres(String premierCode, List<String> titresPremier,
+                                                   List<Position10Dz> allRows) {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        List<String> titleStack = new ArrayList<>(titresPremier);
+        result.put(premierCode, new ArrayList<>(titleStack));
+
         boolean pastFirst = false;
 
         for (Position10Dz row : allRows) {
@@ -214,7 +223,7 @@ public class DecodeP10Controller {
      * Compte le nombre de "- " en préfixe d'une description.
      * "- texte" → 1, "- - texte" → 2, etc.
      */
-    private int countDashes(String description) {
+    private static int countDashes(String description) {
         if (description == null) return 0;
         int count = 0;
         String s = description;
@@ -0,0 +1,26 @@
+package com.muhend.backend.email.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Threads d'envoi de l'outbox email : chacun vide la file par lots, sur sa propre connexion SMTP.
+ * Pas de file d'attente : EmailOutboxWorker ne lance jamais plus de tâches que de threads.
+ */
+@Configuration
+public class EmailOutboxConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor emailOutboxExecutor(@Value("${email.outbox.workers:2}") int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(1, workers));
+        executor.setMaxPoolSize(Math.max(1, workers));
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("email-outbox-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
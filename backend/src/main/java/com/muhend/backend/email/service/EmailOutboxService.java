@@ -0,0 +1,138 @@
+package com.muhend.backend.email.service;
+
+import com.muhend.backend.email.model.EmailOutboxMessage;
+import com.muhend.backend.email.model.EmailOutboxMessage.Status;
+import com.muhend.backend.email.repository.EmailOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outbox des emails transactionnels (table email_outbox).
+ *
+ * - {@link #enqueue} écrit les messages dans la transaction de l'appelant : l'email n'existe que si
+ *   l'opération métier est validée, et l'appelant n'attend jamais le serveur SMTP.
+ * - {@link #claim} réserve un lot pour un worker : les messages réservés ne sont plus visibles des autres
+ *   workers pendant email.outbox.lease (un worker arrêté en plein envoi est ainsi repris plus tard).
+ * - Après un échec, le message est reprogrammé avec un délai exponentiel (email.outbox.retry-backoff,
+ *   doublé à chaque tentative, plafonné à email.outbox.max-backoff), puis abandonné (FAILED) après
+ *   email.outbox.max-attempts tentatives.
+ */
+@Service
+@Slf4j
+public class EmailOutboxService {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+
+    public EmailOutboxService(EmailOutboxRepository emailOutboxRepository,
+                              @Value("${email.outbox.max-attempts:8}") int maxAttempts,
+                              @Value("${email.outbox.retry-backoff:1m}") Duration retryBackoff,
+                              @Value("${email.outbox.max-backoff:1h}") Duration maxBackoff,
+                              @Value("${email.outbox.lease:5m}") Duration lease) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+    }
+
+    /**
+     * Place un email (même sujet et contenu) pour chaque destinataire, dans la transaction courante.
+     */
+    @Transactional
+    public void enqueue(String template, Collection<String> recipients, String subject, String body) {
+        List<EmailOutboxMessage> messages = recipients.stream()
+                .map(recipient -> {
+                    EmailOutboxMessage message = new EmailOutboxMessage();
+                    message.setTemplate(template);
+                    message.setRecipient(recipient);
+                    message.setSubject(subject);
+                    message.setBody(body);
+                    return message;
+                })
+                .toList();
+        emailOutboxRepository.saveAll(messages);
+        log.debug("{} email(s) {} placé(s) dans l'outbox", messages.size(), template);
+    }
+
+    /**
+     * Réserve jusqu'à limit messages dus, et compte la tentative.
+     */
+    @Transactional
+    public List<EmailOutboxMessage> claim(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutboxMessage> messages = emailOutboxRepository.lockPending(now, limit);
+        for (EmailOutboxMessage message : messages) {
+            message.setAttempts(message.getAttempts() + 1);
+            message.setNextAttemptAt(now.plus(lease));
+        }
+        return emailOutboxRepository.saveAll(messages);
+    }
+
+    @Transactional
+    public void markSent(Collection<Long> ids) {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutboxMessage> messages = emailOutboxRepository.findAllById(ids);
+        for (EmailOutboxMessage message : messages) {
+            message.setStatus(Status.SENT);
+            message.setSentAt(now);
+            message.setLastError(null);
+        }
+        emailOutboxRepository.saveAll(messages);
+    }
+
+    /**
+     * Reprogramme les messages en échec (ID → erreur).
+     *
+     * @return le nombre de messages abandonnés (FAILED)
+     */
+    @Transactional
+    public int markFailed(Map<Long, String> errors) {
+        LocalDateTime now = LocalDateTime.now();
+        int abandoned = 0;
+        List<EmailOutboxMessage> messages = emailOutboxRepository.findAllById(errors.keySet());
+        for (EmailOutboxMessage message : messages) {
+            String error = errors.get(message.getId());
+            message.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+            if (message.getAttempts() >= maxAttempts) {
+                message.setStatus(Status.FAILED);
+                abandoned++;
+                log.error("Email {} à {} abandonné après {} tentatives: {}",
+                        message.getTemplate(), message.getRecipient(), message.getAttempts(), error);
+            } else {
+                message.setNextAttemptAt(now.plus(backoff(message.getAttempts())));
+            }
+        }
+        emailOutboxRepository.saveAll(messages);
+        return abandoned;
+    }
+
+    /**
+     * Délai avant la tentative suivante : retryBackoff × 2^(tentatives - 1), plafonné à maxBackoff.
+     */
+    Duration backoff(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        Duration delay = retryBackoff.multipliedBy(1L << exponent);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    public long countPending() {
+        return emailOutboxRepository.countByStatus(Status.PENDING);
+    }
+
+    @Transactional
+    public int purgeSentBefore(LocalDateTime before) {
+        return emailOutboxRepository.deleteSentBefore(before);
+    }
+}
@@ -0,0 +1,215 @@
+package com.muhend.backend.email.service;
+
+import com.muhend.backend.email.model.EmailOutboxMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envoi des emails de l'outbox (voir EmailOutboxService).
+ *
+ * Toutes les email.outbox.poll-interval-ms, jusqu'à email.outbox.workers threads vident la file par lots
+ * de email.outbox.batch-size : chaque lot part sur une seule connexion SMTP (JavaMailSender.send(MimeMessage...)),
+ * au lieu d'une connexion par email. Les messages refusés sont reprogrammés individuellement.
+ *
+ * Métriques : email.outbox.pending (profondeur de la file au dernier passage), email.outbox.send
+ * (durée d'envoi d'un lot), email.outbox.delay (délai entre l'écriture et l'envoi), email.outbox.messages
+ * (résultat par message : envoye, reessai, abandonne).
+ */
+@Service
+@Slf4j
+public class EmailOutboxWorker {
+
+    private final EmailOutboxService emailOutboxService;
+    private final JavaMailSender mailSender;
+    private final TaskExecutor emailOutboxExecutor;
+    private final int workers;
+    private final int batchSize;
+    private final Duration retention;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AtomicLong pending = new AtomicLong();
+    private final Timer sendTimer;
+    private final Timer delayTimer;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter abandonedCounter;
+
+    @Value("${spring.mail.from}")
+    private String fromEmail;
+
+    @Value("${spring.mail.from-name:Enclume Numérique}")
+    private String fromName;
+
+    public EmailOutboxWorker(EmailOutboxService emailOutboxService,
+                             JavaMailSender mailSender,
+                             @Qualifier("emailOutboxExecutor") TaskExecutor emailOutboxExecutor,
+                             MeterRegistry meterRegistry,
+                             @Value("${email.outbox.workers:2}") int workers,
+                             @Value("${email.outbox.batch-size:50}") int batchSize,
+                             @Value("${email.outbox.retention:30d}") Duration retention) {
+        this.emailOutboxService = emailOutboxService;
+        this.mailSender = mailSender;
+        this.emailOutboxExecutor = emailOutboxExecutor;
+        this.workers = Math.max(1, workers);
+        this.batchSize = Math.max(1, batchSize);
+        this.retention = retention;
+        Gauge.builder("email.outbox.pending", pending, AtomicLong::get).register(meterRegistry);
+        this.sendTimer = meterRegistry.timer("email.outbox.send");
+        this.delayTimer = meterRegistry.timer("email.outbox.delay");
+        this.sentCounter = meterRegistry.counter("email.outbox.messages", "resultat", "envoye");
+        this.retriedCounter = meterRegistry.counter("email.outbox.messages", "resultat", "reessai");
+        this.abandonedCounter = meterRegistry.counter("email.outbox.messages", "resultat", "abandonne");
+    }
+
+    /**
+     * Relève la profondeur de la file et lance les workers inactifs.
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:5000}")
+    public void poll() {
+        try {
+            pending.set(emailOutboxService.countPending());
+        } catch (Exception e) {
+            log.warn("Impossible de lire la profondeur de l'outbox email: {}", e.getMessage());
+            return;
+        }
+        if (pending.get() == 0) {
+            return;
+        }
+        while (true) {
+            int active = activeWorkers.get();
+            if (active >= workers) {
+                return;
+            }
+            if (activeWorkers.compareAndSet(active, active + 1)) {
+                try {
+                    emailOutboxExecutor.execute(this::drain);
+                } catch (TaskRejectedException e) {
+                    // Arrêt en cours
+                    activeWorkers.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Envoie les lots dus jusqu'à ce que la file soit vide.
+     */
+    void drain() {
+        try {
+            List<EmailOutboxMessage> batch;
+            while (!(batch = emailOutboxService.claim(batchSize)).isEmpty()) {
+                send(batch);
+            }
+        } catch (Exception e) {
+            log.error("Erreur lors de l'envoi des emails de l'outbox: {}", e.getMessage(), e);
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    void send(List<EmailOutboxMessage> batch) {
+        Map<Long, String> errors = new HashMap<>();
+        // MimeMessage ne redéfinit pas equals : clés comparées par identité, envoi dans l'ordre du lot
+        Map<MimeMessage, EmailOutboxMessage> byMimeMessage = new LinkedHashMap<>();
+        for (EmailOutboxMessage message : batch) {
+            try {
+                byMimeMessage.put(toMimeMessage(message), message);
+            } catch (Exception e) {
+                errors.put(message.getId(), "Message invalide: " + e.getMessage());
+            }
+        }
+
+        if (!byMimeMessage.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                mailSender.send(byMimeMessage.keySet().toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                if (e.getFailedMessages().isEmpty()) {
+                    // Connexion impossible : tout le lot est à refaire
+                    byMimeMessage.values().forEach(message -> errors.put(message.getId(), e.getMessage()));
+                } else {
+                    e.getFailedMessages().forEach((failed, cause) -> {
+                        EmailOutboxMessage message = byMimeMessage.get(failed);
+                        if (message != null) {
+                            errors.put(message.getId(), cause.getMessage());
+                        }
+                    });
+                }
+            } catch (MailException e) {
+                byMimeMessage.values().forEach(message -> errors.put(message.getId(), e.getMessage()));
+            }
+            sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        List<Long> sent = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (EmailOutboxMessage message : batch) {
+            if (!errors.containsKey(message.getId())) {
+                sent.add(message.getId());
+                delayTimer.record(Duration.between(message.getCreatedAt(), now));
+            }
+        }
+        if (!sent.isEmpty()) {
+            emailOutboxService.markSent(sent);
+            sentCounter.increment(sent.size());
+        }
+        if (!errors.isEmpty()) {
+            int abandoned = emailOutboxService.markFailed(errors);
+            abandonedCounter.increment(abandoned);
+            retriedCounter.increment(errors.size() - abandoned);
+            log.warn("{} email(s) sur {} non envoyé(s), reprogrammé(s) ou abandonné(s)", errors.size(), batch.size());
+        }
+        log.debug("Lot de {} email(s) traité: {} envoyé(s)", batch.size(), sent.size());
+    }
+
+    private MimeMessage toMimeMessage(EmailOutboxMessage message) throws Exception {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+        helper.setFrom(fromEmail != null ? fromEmail : "noreply@enclume-numerique.com",
+                fromName != null ? fromName : "Enclume Numérique");
+        helper.setTo(message.getRecipient());
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getBody(), true);
+        return mimeMessage;
+    }
+
+    /**
+     * Purge quotidienne des emails envoyés depuis plus de email.outbox.retention.
+     */
+    @Scheduled(cron = "0 15 3 * * ?") // Tous les jours à 03:15
+    public void purgeSent() {
+        try {
+            int deleted = emailOutboxService.purgeSentBefore(LocalDateTime.now().minus(retention));
+            if (deleted > 0) {
+                log.info("Outbox email : {} message(s) envoyé(s) purgé(s)", deleted);
+            }
+        } catch (Exception e) {
+            log.error("Erreur lors de la purge de l'outbox email: {}", e.getMessage(), e);
+        }
+    }
+}
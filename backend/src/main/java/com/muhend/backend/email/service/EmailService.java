@@ -5,6 +5,8 @@ import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
@@ -15,14 +17,22 @@ import java.util.List;
 
 /**
  * Service pour l'envoi d'emails.
+ *
+ * Les notifications (factures, rappels, changements de plan, notification admin) sont placées dans
+ * l'outbox (EmailOutboxService) dans la transaction de l'appelant et envoyées par EmailOutboxWorker.
+ * Les emails dont l'appelant attend le résultat (inscription, invitation, code OTP) restent envoyés directement.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EmailService {
 
+    private static final List<String> TEMPLATES = List.of("invoice-notification", "invoice-overdue-reminder",
+            "pricing-plan-changed", "registration-confirmation", "collaborator-invitation");
+
     private final JavaMailSender mailSender;
     private final TemplateEngine templateEngine;
+    private final EmailOutboxService emailOutboxService;
 
     @Value("${spring.mail.from}")
     private String fromEmail;
@@ -37,7 +47,7 @@ public class EmailService {
     private String activeProfile;
 
     /**
-     * Envoie un email de notification pour une nouvelle facture.
+     * Place dans l'outbox un email de notification pour une nouvelle facture.
      *
      * @param toEmail Email du destinataire
      * @param organizationName Nom de l'organisation
@@ -55,45 +65,13 @@ public class EmailService {
             String periodEnd,
             String totalAmount,
             Long invoiceId) {
-        try {
-            Context context = new Context();
-            context.setVariable("organizationName", organizationName);
-            context.setVariable("invoiceNumber", invoiceNumber);
-            context.setVariable("periodStart", periodStart);
-            context.setVariable("periodEnd", periodEnd);
-            context.setVariable("totalAmount", totalAmount);
-            context.setVariable("invoiceId", invoiceId);
-            context.setVariable("frontendUrl", getFrontendUrl());
-
-            String htmlContent = templateEngine.process("invoice-notification", context);
-            if (htmlContent == null || htmlContent.trim().isEmpty()) {
-                throw new RuntimeException("Le template d'email a généré un contenu vide");
-            }
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            String from = fromEmail != null ? fromEmail : "noreply@enclume-numerique.com";
-            String fromNameValue = fromName != null ? fromName : "Enclume Numérique";
-            
-            helper.setFrom(from, fromNameValue);
-            helper.setTo(toEmail != null ? toEmail : "");
-            helper.setSubject("Nouvelle facture disponible - " + (invoiceNumber != null ? invoiceNumber : ""));
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-            log.info("Email de notification de facture envoyé à {} pour la facture {}", toEmail, invoiceNumber);
-        } catch (MessagingException e) {
-            log.error("Erreur lors de l'envoi de l'email de notification de facture à {}: {}", toEmail, e.getMessage(), e);
-            throw new RuntimeException("Erreur lors de l'envoi de l'email", e);
-        } catch (Exception e) {
-            log.error("Erreur inattendue lors de l'envoi de l'email à {}: {}", toEmail, e.getMessage(), e);
-            throw new RuntimeException("Erreur lors de l'envoi de l'email", e);
-        }
+        sendInvoiceNotificationEmailToMultiple(List.of(toEmail != null ? toEmail : ""), organizationName, invoiceNumber,
+                periodStart, periodEnd, totalAmount, invoiceId);
     }
 
     /**
-     * Envoie un email de notification pour une nouvelle facture à plusieurs destinataires.
+     * Place dans l'outbox un email de notification pour une nouvelle facture à plusieurs destinataires
+     * (contenu rendu une seule fois).
      */
     public void sendInvoiceNotificationEmailToMultiple(
             List<String> toEmails,
@@ -103,20 +81,21 @@ public class EmailService {
             String periodEnd,
             String totalAmount,
             Long invoiceId) {
-        for (String email : toEmails) {
-            if (email != null && !email.trim().isEmpty()) {
-                try {
-                    sendInvoiceNotificationEmail(email, organizationName, invoiceNumber, periodStart, periodEnd, totalAmount, invoiceId);
-                } catch (Exception e) {
-                    log.error("Erreur lors de l'envoi de l'email à {}: {}", email, e.getMessage());
-                    // Continuer avec les autres emails même si un échoue
-                }
-            }
-        }
+        Context context = new Context();
+        context.setVariable("organizationName", organizationName);
+        context.setVariable("invoiceNumber", invoiceNumber);
+        context.setVariable("periodStart", periodStart);
+        context.setVariable("periodEnd", periodEnd);
+        context.setVariable("totalAmount", totalAmount);
+        context.setVariable("invoiceId", invoiceId);
+        context.setVariable("frontendUrl", getFrontendUrl());
+
+        enqueue("invoice-notification", context, toEmails,
+                "Nouvelle facture disponible - " + (invoiceNumber != null ? invoiceNumber : ""));
     }
 
     /**
-     * Envoie un email de rappel pour une facture en retard.
+     * Place dans l'outbox un email de rappel pour une facture en retard.
      *
      * @param toEmail Email du destinataire
      * @param organizationName Nom de l'organisation
@@ -138,48 +117,13 @@ public class EmailService {
             String totalAmount,
             long daysOverdue,
             Long invoiceId) {
-        try {
-            Context context = new Context();
-            context.setVariable("organizationName", organizationName);
-            context.setVariable("invoiceNumber", invoiceNumber);
-            context.setVariable("periodStart", periodStart);
-            context.setVariable("periodEnd", periodEnd);
-            context.setVariable("dueDate", dueDate);
-            context.setVariable("totalAmount", totalAmount);
-            context.setVariable("daysOverdue", daysOverdue);
-            context.setVariable("invoiceId", invoiceId);
-            context.setVariable("frontendUrl", getFrontendUrl());
-
-            String htmlContent = templateEngine.process("invoice-overdue-reminder", context);
-            if (htmlContent == null || htmlContent.trim().isEmpty()) {
-                throw new RuntimeException("Le template d'email a généré un contenu vide");
-            }
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            String from = fromEmail != null ? fromEmail : "noreply@enclume-numerique.com";
-            String fromNameValue = fromName != null ? fromName : "Enclume Numérique";
-            
-            helper.setFrom(from, fromNameValue);
-            helper.setTo(toEmail != null ? toEmail : "");
-            helper.setSubject("⚠️ Facture en retard - " + (invoiceNumber != null ? invoiceNumber : "") + " (" + daysOverdue + " jour(s) de retard)");
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-            log.info("Email de rappel de facture en retard envoyé à {} pour la facture {} ({} jours de retard)", 
-                    toEmail, invoiceNumber, daysOverdue);
-        } catch (MessagingException e) {
-            log.error("Erreur lors de l'envoi de l'email de rappel de facture en retard à {}: {}", toEmail, e.getMessage(), e);
-            throw new RuntimeException("Erreur lors de l'envoi de l'email", e);
-        } catch (Exception e) {
-            log.error("Erreur inattendue lors de l'envoi de l'email de rappel à {}: {}", toEmail, e.getMessage(), e);
-            throw new RuntimeException("Erreur lors de l'envoi de l'email", e);
-        }
+        sendOverdueInvoiceReminderEmailToMultiple(List.of(toEmail != null ? toEmail : ""), organizationName, invoiceNumber,
+                periodStart, periodEnd, dueDate, totalAmount, daysOverdue, invoiceId);
     }
 
     /**
-     * Envoie un email de rappel pour une facture en retard à plusieurs destinataires.
+     * Place dans l'outbox un email de rappel pour une facture en retard à plusieurs destinataires
+     * (contenu rendu une seule fois).
      */
     public void sendOverdueInvoiceReminderEmailToMultiple(
             List<String> toEmails,
@@ -191,17 +135,19 @@ public class EmailService {
             String totalAmount,
             long daysOverdue,
             Long invoiceId) {
-        for (String email : toEmails) {
-            if (email != null && !email.trim().isEmpty()) {
-                try {
-                    sendOverdueInvoiceReminderEmail(email, organizationName, invoiceNumber, periodStart, 
-                            periodEnd, dueDate, totalAmount, daysOverdue, invoiceId);
-                } catch (Exception e) {
-                    log.error("Erreur lors de l'envoi de l'email de rappel à {}: {}", email, e.getMessage());
-                    // Continuer avec les autres emails même si un échoue
-                }
-            }
-        }
+        Context context = new Context();
+        context.setVariable("organizationName", organizationName);
+        context.setVariable("invoiceNumber", invoiceNumber);
+        context.setVariable("periodStart", periodStart);
+        context.setVariable("periodEnd", periodEnd);
+        context.setVariable("dueDate", dueDate);
+        context.setVariable("totalAmount", totalAmount);
+        context.setVariable("daysOverdue", daysOverdue);
+        context.setVariable("invoiceId", invoiceId);
+        context.setVariable("frontendUrl", getFrontendUrl());
+
+        enqueue("invoice-overdue-reminder", context, toEmails,
+                "⚠️ Facture en retard - " + (invoiceNumber != null ? invoiceNumber : "") + " (" + daysOverdue + " jour(s) de retard)");
     }
 
     /**
@@ -379,7 +325,7 @@ public class EmailService {
     }
 
     /**
-     * Envoie un email de notification de changement de plan tarifaire.
+     * Place dans l'outbox un email de notification de changement de plan tarifaire.
      *
      * @param toEmail Email du destinataire
      * @param organizationName Nom de l'organisation
@@ -409,54 +355,15 @@ public class EmailService {
             Integer newPlanQuota,
             Integer trialPeriodDays,
             String trialExpiresAt) {
-        try {
-            Context context = new Context();
-            context.setVariable("organizationName", organizationName != null ? organizationName : "");
-            context.setVariable("oldPlanName", oldPlanName);
-            context.setVariable("oldPlanPricePerMonth", oldPlanPricePerMonth);
-            context.setVariable("oldPlanPricePerRequest", oldPlanPricePerRequest);
-            context.setVariable("oldPlanQuota", oldPlanQuota);
-            context.setVariable("newPlanName", newPlanName);
-            context.setVariable("newPlanDescription", newPlanDescription);
-            context.setVariable("newPlanPricePerMonth", newPlanPricePerMonth);
-            context.setVariable("newPlanPricePerRequest", newPlanPricePerRequest);
-            context.setVariable("newPlanQuota", newPlanQuota);
-            context.setVariable("trialPeriodDays", trialPeriodDays);
-            context.setVariable("trialExpiresAt", trialExpiresAt);
-            context.setVariable("frontendUrl", getFrontendUrl());
-
-            String htmlContent = templateEngine.process("pricing-plan-changed", context);
-            if (htmlContent == null || htmlContent.trim().isEmpty()) {
-                throw new RuntimeException("Le template d'email a généré un contenu vide");
-            }
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            String from = fromEmail != null ? fromEmail : "noreply@enclume-numerique.com";
-            String fromNameValue = fromName != null ? fromName : "Enclume Numérique";
-            
-            helper.setFrom(from, fromNameValue);
-            helper.setTo(toEmail != null ? toEmail : "");
-            helper.setSubject("Changement de plan tarifaire - " + (organizationName != null ? organizationName : ""));
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-            log.info("Email de notification de changement de plan envoyé à {} pour l'organisation {}", 
-                    toEmail, organizationName);
-        } catch (MessagingException e) {
-            log.error("Erreur lors de l'envoi de l'email de notification de changement de plan à {}: {}", 
-                    toEmail, e.getMessage(), e);
-            throw new RuntimeException("Erreur lors de l'envoi de l'email", e);
-        } catch (Exception e) {
-            log.error("Erreur inattendue lors de l'envoi de l'email de notification de changement de plan à {}: {}", 
-                    toEmail, e.getMessage(), e);
-            throw new RuntimeException("Erreur lors de l'envoi de l'email", e);
-        }
+        sendPricingPlanChangedEmailToMultiple(List.of(toEmail != null ? toEmail : ""), organizationName, oldPlanName,
+                oldPlanPricePerMonth, oldPlanPricePerRequest, oldPlanQuota,
+                newPlanName, newPlanDescription, newPlanPricePerMonth,
+                newPlanPricePerRequest, newPlanQuota, trialPeriodDays, trialExpiresAt);
     }
 
     /**
-     * Envoie un email de notification de changement de plan tarifaire à plusieurs destinataires.
+     * Place dans l'outbox un email de notification de changement de plan tarifaire à plusieurs destinataires
+     * (contenu rendu une seule fois).
      */
     public void sendPricingPlanChangedEmailToMultiple(
             List<String> toEmails,
@@ -472,24 +379,27 @@ public class EmailService {
             Integer newPlanQuota,
             Integer trialPeriodDays,
             String trialExpiresAt) {
-        for (String email : toEmails) {
-            if (email != null && !email.trim().isEmpty()) {
-                try {
-                    sendPricingPlanChangedEmail(email, organizationName, oldPlanName, 
-                            oldPlanPricePerMonth, oldPlanPricePerRequest, oldPlanQuota,
-                            newPlanName, newPlanDescription, newPlanPricePerMonth, 
-                            newPlanPricePerRequest, newPlanQuota, trialPeriodDays, trialExpiresAt);
-                } catch (Exception e) {
-                    log.error("Erreur lors de l'envoi de l'email de notification de changement de plan à {}: {}", 
-                            email, e.getMessage());
-                    // Continuer avec les autres emails même si un échoue
-                }
-            }
-        }
+        Context context = new Context();
+        context.setVariable("organizationName", organizationName != null ? organizationName : "");
+        context.setVariable("oldPlanName", oldPlanName);
+        context.setVariable("oldPlanPricePerMonth", oldPlanPricePerMonth);
+        context.setVariable("oldPlanPricePerRequest", oldPlanPricePerRequest);
+        context.setVariable("oldPlanQuota", oldPlanQuota);
+        context.setVariable("newPlanName", newPlanName);
+        context.setVariable("newPlanDescription", newPlanDescription);
+        context.setVariable("newPlanPricePerMonth", newPlanPricePerMonth);
+        context.setVariable("newPlanPricePerRequest", newPlanPricePerRequest);
+        context.setVariable("newPlanQuota", newPlanQuota);
+        context.setVariable("trialPeriodDays", trialPeriodDays);
+        context.setVariable("trialExpiresAt", trialExpiresAt);
+        context.setVariable("frontendUrl", getFrontendUrl());
+
+        enqueue("pricing-plan-changed", context, toEmails,
+                "Changement de plan tarifaire - " + (organizationName != null ? organizationName : ""));
     }
 
     /**
-     * Envoie une notification à l'administrateur lors de la création d'un nouveau compte organisation.
+     * Place dans l'outbox une notification à l'administrateur lors de la création d'un nouveau compte organisation.
      *
      * @param adminEmail Email de l'administrateur
      * @param organizationName Nom de l'organisation
@@ -505,39 +415,13 @@ public class EmailService {
         }
         
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            String from = fromEmail != null ? fromEmail : "noreply@enclume-numerique.com";
-            String fromNameValue = fromName != null ? fromName : "Enclume Numérique";
-            
-            helper.setFrom(from, fromNameValue);
-            helper.setTo(adminEmail);
-            helper.setSubject("Nouvelle création de compte - " + (organizationName != null ? organizationName : "Organisation"));
-            
-            // Créer le contenu HTML simple
             String htmlContent = buildNewOrganizationNotificationHtml(organizationName, organizationAddress);
-            if (htmlContent != null && !htmlContent.trim().isEmpty()) {
-                helper.setText(htmlContent, true);
-            } else {
-                // Fallback en cas de problème avec le HTML
-                String plainText = String.format(
-                    "Une nouvelle organisation a été créée sur la plateforme HS-code.\n\n" +
-                    "Nom de l'entreprise : %s\n" +
-                    "Adresse : %s",
-                    organizationName != null ? organizationName : "Non renseigné",
-                    organizationAddress != null ? organizationAddress : "Non renseignée"
-                );
-                helper.setText(plainText, false);
-            }
-
-            mailSender.send(message);
-            log.info("Notification admin envoyée à {} pour la nouvelle organisation {}", adminEmail, organizationName);
-        } catch (MessagingException e) {
-            log.error("Erreur lors de l'envoi de la notification admin à {}: {}", adminEmail, e.getMessage(), e);
-            // Ne pas faire échouer la création d'organisation si l'email admin échoue
+            emailOutboxService.enqueue("new-organization-notification", List.of(adminEmail),
+                    "Nouvelle création de compte - " + (organizationName != null ? organizationName : "Organisation"),
+                    htmlContent);
+            log.info("Notification admin placée dans l'outbox pour {} (nouvelle organisation {})", adminEmail, organizationName);
         } catch (Exception e) {
-            log.error("Erreur inattendue lors de l'envoi de la notification admin à {}: {}", adminEmail, e.getMessage(), e);
+            log.error("Erreur lors de la préparation de la notification admin pour {}: {}", adminEmail, e.getMessage(), e);
             // Ne pas faire échouer la création d'organisation si l'email admin échoue
         }
     }
@@ -581,6 +465,50 @@ public class EmailService {
         return html.toString();
     }
 
+    /**
+     * Rend le template une fois et place un email par destinataire dans l'outbox, dans la transaction
+     * de l'appelant. Une erreur de rendu est journalisée sans faire échouer l'opération métier.
+     */
+    private void enqueue(String template, Context context, List<String> toEmails, String subject) {
+        List<String> recipients = toEmails.stream()
+                .filter(email -> email != null && !email.trim().isEmpty())
+                .map(String::trim)
+                .distinct()
+                .toList();
+        if (recipients.isEmpty()) {
+            return;
+        }
+        String htmlContent;
+        try {
+            htmlContent = templateEngine.process(template, context);
+        } catch (Exception e) {
+            log.error("Erreur lors du rendu du template d'email {}: {}", template, e.getMessage(), e);
+            return;
+        }
+        if (htmlContent == null || htmlContent.trim().isEmpty()) {
+            log.error("Le template d'email {} a généré un contenu vide, email non envoyé à {}", template, recipients);
+            return;
+        }
+        emailOutboxService.enqueue(template, recipients, subject, htmlContent);
+        log.info("Email {} placé dans l'outbox pour {} destinataire(s)", template, recipients.size());
+    }
+
+    /**
+     * Au démarrage : analyse les templates Thymeleaf pour remplir le cache de templates
+     * (spring.thymeleaf.cache) avant le premier email.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpTemplates() {
+        for (String template : TEMPLATES) {
+            try {
+                templateEngine.process(template, new Context());
+            } catch (Exception e) {
+                // Variables absentes : le template est tout de même analysé et mis en cache
+                log.debug("Préchargement du template {}: {}", template, e.getMessage());
+            }
+        }
+    }
+
     /**
      * Récupère l'URL du frontend depuis les variables d'environnement ou utilise une valeur par défaut.
      */
@@ -24,6 +24,9 @@ public class RabbitMQConfig {
     @Value("${messaging.routing-key.search-completed:search.completed}")
     private String routingKey;
 
+    @Value("${messaging.exchange.pricing-catalog:pricing-catalog-exchange}")
+    private String pricingCatalogExchangeName;
+
     @Bean
     public TopicExchange searchExchange() {
         return new TopicExchange(exchangeName);
@@ -41,6 +44,25 @@ public class RabbitMQConfig {
                 .with(routingKey);
     }
 
+    /**
+     * Évictions du cache tarifaire : diffusées à toutes les instances du backend,
+     * chacune avec sa file anonyme (supprimée à l'arrêt).
+     */
+    @Bean
+    public FanoutExchange pricingCatalogExchange() {
+        return new FanoutExchange(pricingCatalogExchangeName);
+    }
+
+    @Bean
+    public Queue pricingCatalogEvictionQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding pricingCatalogEvictionBinding(Queue pricingCatalogEvictionQueue, FanoutExchange pricingCatalogExchange) {
+        return BindingBuilder.bind(pricingCatalogEvictionQueue).to(pricingCatalogExchange);
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
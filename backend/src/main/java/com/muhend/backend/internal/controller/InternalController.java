@@ -12,6 +12,7 @@ import com.muhend.backend.internal.dto.QuotaCheckResponse;
 import com.muhend.backend.organization.exception.UserNotAssociatedException;
 import com.muhend.backend.organization.service.OrganizationService;
 import com.muhend.backend.organization.service.PlanChangeService;
+import com.muhend.backend.organization.service.QuotaDecisionCache;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,10 +29,12 @@ public class InternalController {
 
     private final OrganizationService organizationService;
     private final PlanChangeService planChangeService;
+    private final QuotaDecisionCache quotaDecisionCache;
 
     /**
      * Vérifie le quota de l'utilisateur courant.
-     * Utilisé par le search-service avant chaque recherche.
+     * Utilisé par le search-service avant chaque recherche : l'organisation et la décision
+     * sont servies depuis QuotaDecisionCache, la base n'est lue qu'en cas d'absence.
      */
     @GetMapping("/quota-check")
     public ResponseEntity<QuotaCheckResponse> checkQuota() {
@@ -47,7 +50,7 @@ public class InternalController {
             // Récupérer l'organisation
             Long organizationId;
             try {
-                organizationId = organizationService.getOrganizationIdByUserId(userId);
+                organizationId = quotaDecisionCache.organizationIdFor(userId, organizationService::getOrganizationIdByUserId);
             } catch (UserNotAssociatedException e) {
                 return ResponseEntity.ok(QuotaCheckResponse.builder()
                         .canSearch(false)
@@ -56,7 +59,7 @@ public class InternalController {
             }
 
             // Vérifier si l'organisation peut faire des requêtes (plan actif, quota non épuisé)
-            boolean canSearch = planChangeService.canOrganizationMakeRequests(organizationId);
+            boolean canSearch = quotaDecisionCache.canSearch(organizationId, planChangeService::evaluateRequests);
             String message = canSearch ? null : "Plan expiré ou quota mensuel épuisé.";
 
             log.debug("Quota check pour org {}: canSearch={}", organizationId, canSearch);
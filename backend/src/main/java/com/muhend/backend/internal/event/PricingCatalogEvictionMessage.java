@@ -0,0 +1,23 @@
+package com.muhend.backend.internal.event;
+
+import com.muhend.backend.pricing.event.PricingCatalogChangedEvent.Catalog;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Message diffusé à toutes les instances du backend pour vider un catalogue tarifaire.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PricingCatalogEvictionMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Instance émettrice, qui a déjà vidé son cache. */
+    private String origin;
+    private Catalog catalog;
+}
@@ -0,0 +1,57 @@
+package com.muhend.backend.internal.event;
+
+import com.muhend.backend.pricing.event.PricingCatalogChangedEvent;
+import com.muhend.backend.pricing.service.PricingCatalogCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+
+/**
+ * Relaie les évictions du cache tarifaire entre les instances du backend.
+ *
+ * Chaque instance lie sa propre file anonyme à l'échange fanout messaging.exchange.pricing-catalog :
+ * une modification validée est publiée après le commit, et les autres instances vident leur cache
+ * à réception. Une publication en échec est seulement journalisée (le TTL du cache prend le relais).
+ */
+@Component
+@Slf4j
+public class PricingCatalogEvictionRelay {
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final RabbitTemplate rabbitTemplate;
+    private final PricingCatalogCache pricingCatalogCache;
+    private final String exchangeName;
+
+    public PricingCatalogEvictionRelay(RabbitTemplate rabbitTemplate,
+                                       PricingCatalogCache pricingCatalogCache,
+                                       @Value("${messaging.exchange.pricing-catalog:pricing-catalog-exchange}") String exchangeName) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.pricingCatalogCache = pricingCatalogCache;
+        this.exchangeName = exchangeName;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(PricingCatalogChangedEvent event) {
+        try {
+            rabbitTemplate.convertAndSend(exchangeName, "", new PricingCatalogEvictionMessage(instanceId, event.catalog()));
+        } catch (AmqpException e) {
+            log.warn("Diffusion de l'éviction du catalogue {} impossible: {}", event.catalog(), e.getMessage());
+        }
+    }
+
+    @RabbitListener(queues = "#{pricingCatalogEvictionQueue.name}")
+    public void handleEviction(PricingCatalogEvictionMessage message) {
+        if (instanceId.equals(message.getOrigin()) || message.getCatalog() == null) {
+            return;
+        }
+        log.info("Éviction du catalogue {} reçue de l'instance {}", message.getCatalog(), message.getOrigin());
+        pricingCatalogCache.evictLocally(message.getCatalog());
+    }
+}
@@ -0,0 +1,38 @@
+package com.muhend.backend.invoice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Travaux différés après le commit d'une facture, hors de la transaction de génération.
+ * File pleine : la tâche est exécutée par le thread appelant.
+ */
+@Configuration
+public class InvoiceExecutorConfig {
+
+    /**
+     * Rendu anticipé des PDF de facture (InvoicePdfStore) : le téléchargement sert un fichier déjà prêt.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor invoicePdfExecutor(
+            @Value("${invoice.pdf.workers:2}") int workers,
+            @Value("${invoice.pdf.queue-capacity:1000}") int queueCapacity) {
+        return executor("invoice-pdf-", workers, queueCapacity);
+    }
+
+    private static ThreadPoolTaskExecutor executor(String threadNamePrefix, int workers, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -2,17 +2,24 @@ package com.muhend.backend.invoice.controller;
 
 import com.muhend.backend.invoice.dto.GenerateInvoiceRequest;
 import com.muhend.backend.invoice.dto.InvoiceDto;
+import com.muhend.backend.invoice.dto.InvoiceRunReport;
 import com.muhend.backend.invoice.dto.UpdateInvoiceStatusRequest;
-import com.muhend.backend.invoice.service.InvoicePdfService;
+import com.muhend.backend.invoice.service.InvoicePdfStore;
 import com.muhend.backend.invoice.service.InvoiceService;
+import com.muhend.backend.invoice.service.MonthlyInvoiceRunService;
 import com.muhend.backend.organization.exception.UserNotAssociatedException;
 import com.muhend.backend.organization.service.OrganizationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -24,8 +31,15 @@ import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Contrôleur pour gérer les factures.
@@ -39,7 +53,8 @@ import java.util.Map;
 public class InvoiceController {
     
     private final InvoiceService invoiceService;
-    private final InvoicePdfService invoicePdfService;
+    private final InvoicePdfStore invoicePdfStore;
+    private final MonthlyInvoiceRunService monthlyInvoiceRunService;
     private final OrganizationService organizationService;
     
     /**
@@ -301,17 +316,19 @@ public class InvoiceController {
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
             summary = "Générer les factures mensuelles pour toutes les organisations",
-            description = "Génère les factures mensuelles pour toutes les organisations ayant une utilisation. Nécessite le rôle ADMIN.",
+            description = "Génère les factures mensuelles pour toutes les organisations ayant une utilisation, par lots traités en parallèle. "
+                    + "Une campagne interrompue reprend au dernier lot traité. Nécessite le rôle ADMIN.",
             security = @SecurityRequirement(name = "bearerAuth")
     )
     public ResponseEntity<Map<String, Object>> generateAllMonthlyInvoices(
             @RequestParam int year,
             @RequestParam int month) {
-        List<InvoiceDto> invoices = invoiceService.generateMonthlyInvoicesForAllOrganizations(year, month);
+        InvoiceRunReport report = monthlyInvoiceRunService.run(year, month);
         return ResponseEntity.ok(Map.of(
                 "message", "Factures générées avec succès",
-                "count", invoices.size(),
-                "invoices", invoices
+                "count", report.generated(),
+                "invoices", report.invoices(),
+                "report", report
         ));
     }
     
@@ -340,10 +357,11 @@ public class InvoiceController {
     @Operation(
             summary = "Télécharger le PDF d'une de mes factures",
             description = "Télécharge le PDF d'une facture de l'organisation de l'utilisateur connecté. " +
-                         "Un utilisateur doit toujours être associé à une organisation.",
+                         "Un utilisateur doit toujours être associé à une organisation. " +
+                         "Supporte If-None-Match (ETag) et les requêtes Range.",
             security = @SecurityRequirement(name = "bearerAuth")
     )
-    public ResponseEntity<byte[]> downloadMyInvoicePdf(@PathVariable Long id) {
+    public ResponseEntity<Resource> downloadMyInvoicePdf(@PathVariable Long id) {
         String userId = getCurrentUserId();
         if (userId == null) {
             return ResponseEntity.badRequest().build();
@@ -359,7 +377,7 @@ public class InvoiceController {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
             }
             
-            return generatePdfResponse(invoice);
+            return pdfResponse(invoice);
         } catch (UserNotAssociatedException e) {
             log.warn("Utilisateur {} non associé à une organisation (staging sans org)", userId);
             throw e;
@@ -373,32 +391,90 @@ public class InvoiceController {
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
             summary = "Télécharger le PDF d'une facture",
-            description = "Télécharge le PDF d'une facture. Nécessite le rôle ADMIN.",
+            description = "Télécharge le PDF d'une facture. Supporte If-None-Match (ETag) et les requêtes Range. Nécessite le rôle ADMIN.",
             security = @SecurityRequirement(name = "bearerAuth")
     )
-    public ResponseEntity<byte[]> downloadInvoicePdf(@PathVariable Long id) {
+    public ResponseEntity<Resource> downloadInvoicePdf(@PathVariable Long id) {
         InvoiceDto invoice = invoiceService.getInvoiceById(id);
-        return generatePdfResponse(invoice);
+        return pdfResponse(invoice);
+    }
+    
+    /**
+     * Télécharge les PDF de toutes les factures d'un mois dans une archive ZIP (admin uniquement).
+     */
+    @GetMapping("/admin/pdf-archive")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Télécharger les factures d'un mois (ZIP)",
+            description = "Télécharge dans une archive ZIP les PDF des factures dont la période commence dans le mois donné. " +
+                         "L'archive est écrite au fil de l'eau, facture par facture. Nécessite le rôle ADMIN.",
+            security = @SecurityRequirement(name = "bearerAuth")
+    )
+    public void downloadInvoicePdfArchive(
+            @RequestParam int year,
+            @RequestParam int month,
+            HttpServletResponse response) throws IOException {
+        YearMonth period = YearMonth.of(year, month);
+        List<InvoiceDto> invoices = invoiceService.getInvoicesByPeriodMonth(period);
+        
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"factures_" + period + ".zip\"");
+        
+        // Les PDF sont déjà compressés : entrées STORED copiées depuis le cache disque, sans recompression
+        try (ZipOutputStream zip = new ZipOutputStream(response.getOutputStream())) {
+            for (InvoiceDto invoice : invoices) {
+                InvoicePdfStore.StoredPdf pdf = invoicePdfStore.get(invoice);
+                ZipEntry entry = new ZipEntry(pdfFilename(invoice));
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(pdf.size());
+                entry.setCompressedSize(pdf.size());
+                entry.setCrc(crc32(pdf.path()));
+                zip.putNextEntry(entry);
+                Files.copy(pdf.path(), zip);
+                zip.closeEntry();
+            }
+        }
+        log.info("Archive des factures {} téléchargée : {} PDF", period, invoices.size());
     }
     
     /**
-     * Génère une réponse PDF à partir d'une facture.
+     * Sert le PDF d'une facture depuis le cache disque. L'empreinte du rendu sert d'ETag (304 si inchangé) ;
+     * Spring gère les requêtes Range sur la ressource fichier, lue par blocs sans copie complète en mémoire,
+     * et calcule Content-Length (taille du fichier ou de la plage servie).
      */
-    private ResponseEntity<byte[]> generatePdfResponse(InvoiceDto invoice) {
+    private ResponseEntity<Resource> pdfResponse(InvoiceDto invoice) {
         try {
-            byte[] pdfBytes = invoicePdfService.generatePdf(invoice);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", 
-                    "facture_" + invoice.getInvoiceNumber() + ".pdf");
-            headers.setContentLength(pdfBytes.length);
+            InvoicePdfStore.StoredPdf pdf = invoicePdfStore.get(invoice);
             
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_PDF)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(pdfFilename(invoice)).build().toString())
+                    .eTag(pdf.key())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(new FileSystemResource(pdf.path()));
         } catch (IOException e) {
             log.error("Erreur lors de la génération du PDF pour la facture {}", invoice.getInvoiceNumber(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+    
+    /**
+     * CRC-32 d'un fichier, requis avant l'écriture d'une entrée ZIP STORED.
+     */
+    private static long crc32(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+    
+    private static String pdfFilename(InvoiceDto invoice) {
+        return "facture_" + invoice.getInvoiceNumber() + ".pdf";
+    }
 }
-
@@ -0,0 +1,23 @@
+package com.muhend.backend.invoice.dto;
+
+import com.muhend.backend.invoice.model.InvoiceRun.RunStatus;
+
+import java.util.List;
+
+/**
+ * Bilan d'une exécution de la facturation mensuelle : compteurs de cette exécution seulement
+ * (une reprise ne recompte pas les lots déjà traités) et débit en organisations par seconde.
+ */
+public record InvoiceRunReport(
+        int year,
+        int month,
+        RunStatus status,
+        boolean resumed,
+        int processed,
+        int generated,
+        int skipped,
+        int errors,
+        long durationMs,
+        double organizationsPerSecond,
+        List<InvoiceDto> invoices) {
+}
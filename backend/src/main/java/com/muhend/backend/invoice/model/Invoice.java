@@ -8,6 +8,7 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 /**
  * Entité représentant une facture.
@@ -86,7 +87,8 @@ public class Invoice {
     @PrePersist
     protected void onCreate() {
         if (createdAt == null) {
-            createdAt = LocalDateTime.now();
+            // Précision de TIMESTAMP PostgreSQL : la valeur en mémoire reste celle relue ensuite
+            createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
         }
         if (status == null) {
             status = InvoiceStatus.PENDING;
@@ -0,0 +1,77 @@
+package com.muhend.backend.invoice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Campagne de facturation mensuelle de toutes les organisations (voir MonthlyInvoiceRunService).
+ * lastOrganizationId est le point de reprise : les organisations d'ID inférieur ou égal sont traitées.
+ */
+@Entity
+@Table(name = "invoice_run")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "period_year", nullable = false)
+    private Integer periodYear;
+
+    @Column(name = "period_month", nullable = false)
+    private Integer periodMonth;
+
+    @Column(name = "status", nullable = false, length = 30)
+    @Enumerated(EnumType.STRING)
+    private RunStatus status = RunStatus.RUNNING;
+
+    @Column(name = "last_organization_id", nullable = false)
+    private Long lastOrganizationId = 0L;
+
+    @Column(name = "processed_count", nullable = false)
+    private Integer processedCount = 0;
+
+    @Column(name = "generated_count", nullable = false)
+    private Integer generatedCount = 0;
+
+    @Column(name = "skipped_count", nullable = false)
+    private Integer skippedCount = 0;
+
+    @Column(name = "error_count", nullable = false)
+    private Integer errorCount = 0;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (startedAt == null) {
+            startedAt = LocalDateTime.now();
+        }
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum RunStatus {
+        RUNNING,                // En cours, ou interrompue : reprise au point de reprise
+        COMPLETED,              // Terminée sans erreur
+        COMPLETED_WITH_ERRORS   // Terminée, au moins une organisation en erreur : relancée depuis le début
+    }
+}
@@ -30,6 +30,11 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
     List<Invoice> findByOrganizationIdAndPeriodStartGreaterThanEqualAndPeriodEndLessThanEqual(
             Long organizationId, LocalDate startDate, LocalDate endDate);
     
+    /**
+     * Récupère les factures dont la période commence entre deux dates, par numéro.
+     */
+    List<Invoice> findByPeriodStartBetweenOrderByInvoiceNumber(LocalDate from, LocalDate to);
+    
     /**
      * Récupère les factures par statut.
      */
@@ -0,0 +1,13 @@
+package com.muhend.backend.invoice.repository;
+
+import com.muhend.backend.invoice.model.InvoiceRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface InvoiceRunRepository extends JpaRepository<InvoiceRun, Long> {
+
+    Optional<InvoiceRun> findByPeriodYearAndPeriodMonth(Integer periodYear, Integer periodMonth);
+}
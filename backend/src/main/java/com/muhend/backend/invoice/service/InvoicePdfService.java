@@ -20,8 +20,14 @@ import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.HexFormat;
 
 /**
  * Service pour générer des factures en PDF.
@@ -34,6 +40,9 @@ public class InvoicePdfService {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     
+    /** Version du gabarit : à incrémenter quand la mise en page change, pour invalider les PDF en cache. */
+    private static final String RENDER_VERSION = "v1";
+    
     /**
      * Génère un PDF à partir d'une facture.
      * 
@@ -42,7 +51,15 @@ public class InvoicePdfService {
      */
     public byte[] generatePdf(InvoiceDto invoice) throws IOException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        
+        writePdf(invoice, outputStream);
+        return outputStream.toByteArray();
+    }
+    
+    /**
+     * Écrit le PDF d'une facture dans un flux (fichier du cache InvoicePdfStore), sans le charger en mémoire.
+     * Le flux est fermé avec le document.
+     */
+    public void writePdf(InvoiceDto invoice, OutputStream outputStream) throws IOException {
         try (PdfWriter writer = new PdfWriter(outputStream);
              PdfDocument pdf = new PdfDocument(writer);
              Document document = new Document(pdf, PageSize.A4)) {
@@ -71,8 +88,45 @@ public class InvoicePdfService {
             log.error("Erreur lors de la génération du PDF pour la facture {}", invoice.getInvoiceNumber(), e);
             throw new IOException("Erreur lors de la génération du PDF", e);
         }
-        
-        return outputStream.toByteArray();
+    }
+    
+    /**
+     * Empreinte SHA-256 des champs lus par {@link #writePdf} : deux factures de même empreinte donnent le même
+     * document. Sert d'adresse au fichier en cache et d'ETag ; à tenir à jour avec le rendu (RENDER_VERSION).
+     */
+    public String renderKey(InvoiceDto invoice) {
+        // Valeurs telles qu'imprimées : les nanosecondes de createdAt et l'échelle des montants
+        // changent au rechargement depuis la base, le PDF et donc l'empreinte ne doivent pas changer
+        StringBuilder content = new StringBuilder(RENDER_VERSION);
+        append(content, invoice.getId(), invoice.getInvoiceNumber(), invoice.getOrganizationName(),
+                invoice.getOrganizationEmail(), format(invoice.getPeriodStart(), DATE_FORMATTER),
+                format(invoice.getPeriodEnd(), DATE_FORMATTER), format(invoice.getCreatedAt(), DATETIME_FORMATTER),
+                format(invoice.getDueDate(), DATE_FORMATTER), invoice.getStatus(),
+                formatCurrency(invoice.getTotalAmount()), invoice.getNotes());
+        if (invoice.getItems() != null) {
+            for (InvoiceItemDto item : invoice.getItems()) {
+                append(content, item.getDescription(), item.getQuantity(),
+                        formatCurrency(item.getUnitPrice()), formatCurrency(item.getTotalPrice()));
+            }
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+    
+    private static String format(TemporalAccessor value, DateTimeFormatter formatter) {
+        return value != null ? formatter.format(value) : null;
+    }
+    
+    private static void append(StringBuilder content, Object... values) {
+        for (Object value : values) {
+            // Longueur en préfixe : pas de collision entre champs concaténés
+            String text = String.valueOf(value);
+            content.append('|').append(text.length()).append(':').append(text);
+        }
     }
     
     /**
@@ -296,4 +350,3 @@ public class InvoicePdfService {
         return String.format("%.2f €", amount.doubleValue()).replace(".", ",");
     }
 }
-
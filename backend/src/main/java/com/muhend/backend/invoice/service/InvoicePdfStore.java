@@ -0,0 +1,197 @@
+package com.muhend.backend.invoice.service;
+
+import com.muhend.backend.invoice.dto.InvoiceDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cache disque des PDF de facture, adressé par contenu : le fichier d'une facture est nommé d'après
+ * l'empreinte des champs rendus (InvoicePdfService.renderKey). Un changement de statut ou de notes
+ * donne une nouvelle adresse, l'ancien fichier n'est donc jamais servi à tort.
+ *
+ * - Le PDF est rendu une fois, en arrière-plan après le commit de la facture ou de son changement de
+ *   statut ({@link #prerender}, {@link #replace}) ; à défaut, au premier téléchargement.
+ * - Les fichiers sont écrits dans un fichier temporaire puis renommés : un lecteur ne voit jamais
+ *   un PDF incomplet.
+ * - Les changements de statut faits hors d'InvoiceService (webhooks de paiement) laissent l'ancien
+ *   fichier sur disque ; le nouveau est rendu au premier téléchargement. Ces fichiers orphelins, comme
+ *   ceux de factures supprimées par un autre chemin que {@link #evict}, sont retirés par {@link #sweep}.
+ */
+@Service
+@Slf4j
+public class InvoicePdfStore {
+
+    private final InvoicePdfService invoicePdfService;
+    private final TaskExecutor invoicePdfExecutor;
+    private final Path directory;
+    private final Timer renderTimer;
+
+    public InvoicePdfStore(InvoicePdfService invoicePdfService,
+                           @Qualifier("invoicePdfExecutor") TaskExecutor invoicePdfExecutor,
+                           MeterRegistry meterRegistry,
+                           @Value("${invoice.pdf.dir:./data/invoice-pdf}") String directory) {
+        this.invoicePdfService = invoicePdfService;
+        this.invoicePdfExecutor = invoicePdfExecutor;
+        this.directory = Path.of(directory);
+        this.renderTimer = meterRegistry.timer("invoice.pdf.render");
+    }
+
+    /**
+     * PDF rendu d'une facture : key sert d'ETag, path est le fichier à servir.
+     */
+    public record StoredPdf(String key, Path path, long size) {
+    }
+
+    /**
+     * Retourne le PDF de la facture, rendu et enregistré s'il n'est pas encore sur disque.
+     */
+    public StoredPdf get(InvoiceDto invoice) throws IOException {
+        String key = invoicePdfService.renderKey(invoice);
+        Path path = pathOf(key);
+        if (!Files.isRegularFile(path)) {
+            render(invoice, path);
+        }
+        return new StoredPdf(key, path, Files.size(path));
+    }
+
+    /**
+     * Rend le PDF d'une nouvelle facture en arrière-plan, après le commit.
+     */
+    public void prerender(InvoiceDto invoice) {
+        afterCommit(() -> invoicePdfExecutor.execute(() -> renderQuietly(invoice)));
+    }
+
+    /**
+     * Après le commit d'une modification de facture : supprime le PDF de l'état précédent
+     * et rend celui du nouvel état en arrière-plan.
+     */
+    public void replace(InvoiceDto previous, InvoiceDto current) {
+        String previousKey = invoicePdfService.renderKey(previous);
+        if (previousKey.equals(invoicePdfService.renderKey(current))) {
+            return;
+        }
+        afterCommit(() -> {
+            try {
+                Files.deleteIfExists(pathOf(previousKey));
+            } catch (IOException e) {
+                log.warn("Impossible de supprimer l'ancien PDF de la facture {}: {}", previous.getInvoiceNumber(), e.getMessage());
+            }
+            invoicePdfExecutor.execute(() -> renderQuietly(current));
+        });
+    }
+
+    /**
+     * Empreinte du rendu d'une facture : nom de son fichier en cache.
+     */
+    public String keyOf(InvoiceDto invoice) {
+        return invoicePdfService.renderKey(invoice);
+    }
+
+    /**
+     * Après le commit d'une suppression de factures : supprime leurs PDF (empreintes lues avant la suppression).
+     */
+    public void evict(Collection<String> keys) {
+        afterCommit(() -> {
+            for (String key : keys) {
+                try {
+                    Files.deleteIfExists(pathOf(key));
+                } catch (IOException e) {
+                    log.warn("Impossible de supprimer le PDF {}: {}", key, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Supprime les PDF dont l'empreinte ne correspond plus à aucune facture, et les fichiers temporaires
+     * de rendus interrompus. Seuls les fichiers modifiés avant olderThan sont supprimés : un PDF rendu
+     * après la lecture des factures vivantes est conservé.
+     *
+     * @return nombre de fichiers supprimés
+     */
+    public int sweep(Set<String> liveKeys, Instant olderThan) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory, 2)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        int deleted = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            boolean orphan = name.endsWith(".tmp")
+                    || (name.endsWith(".pdf") && !liveKeys.contains(name.substring(0, name.length() - ".pdf".length())));
+            if (orphan && Files.getLastModifiedTime(file).toInstant().isBefore(olderThan) && Files.deleteIfExists(file)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private void renderQuietly(InvoiceDto invoice) {
+        try {
+            get(invoice);
+        } catch (Exception e) {
+            // Le PDF sera rendu au premier téléchargement
+            log.error("Erreur lors du rendu anticipé du PDF de la facture {}: {}", invoice.getInvoiceNumber(), e.getMessage(), e);
+        }
+    }
+
+    private void render(InvoiceDto invoice, Path path) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(path.getParent());
+        Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                invoicePdfService.writePdf(invoice, out);
+            }
+            // Rendu concurrent de la même facture : les deux fichiers sont équivalents
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        renderTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("PDF de la facture {} enregistré: {}", invoice.getInvoiceNumber(), path);
+    }
+
+    /**
+     * Fichiers répartis par les deux premiers caractères de l'empreinte (256 sous-répertoires au plus).
+     */
+    private Path pathOf(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".pdf");
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
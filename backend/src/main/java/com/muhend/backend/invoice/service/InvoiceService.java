@@ -13,17 +13,23 @@ import com.muhend.backend.organization.dto.OrganizationUserDto;
 import com.muhend.backend.organization.service.OrganizationService;
 import com.muhend.backend.organization.service.PlanChangeService;
 import com.muhend.backend.pricing.dto.PricingPlanDto;
-import com.muhend.backend.usage.model.UsageLog;
+import com.muhend.backend.usage.model.EndpointUsage;
 import com.muhend.backend.usage.repository.UsageLogRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -31,7 +37,9 @@ import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -49,9 +57,13 @@ public class InvoiceService {
     private final PlanChangeService planChangeService;
     private final EmailService emailService;
     private final KeycloakAdminService keycloakAdminService;
+    private final InvoicePdfStore invoicePdfStore;
     
     private static final DateTimeFormatter INVOICE_NUMBER_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    /** Délai avant qu'un PDF orphelin ne soit supprimé par le balayage du cache. */
+    private static final Duration PDF_SWEEP_GRACE = Duration.ofHours(1);
+    private static final int PDF_SWEEP_PAGE_SIZE = 500;
     
     public InvoiceService(
             InvoiceRepository invoiceRepository,
@@ -60,7 +72,8 @@ public class InvoiceService {
             @Lazy OrganizationService organizationService,
             @Lazy PlanChangeService planChangeService,
             EmailService emailService,
-            KeycloakAdminService keycloakAdminService) {
+            KeycloakAdminService keycloakAdminService,
+            InvoicePdfStore invoicePdfStore) {
         this.invoiceRepository = invoiceRepository;
         this.invoiceItemRepository = invoiceItemRepository;
         this.usageLogRepository = usageLogRepository;
@@ -68,6 +81,7 @@ public class InvoiceService {
         this.planChangeService = planChangeService;
         this.emailService = emailService;
         this.keycloakAdminService = keycloakAdminService;
+        this.invoicePdfStore = invoicePdfStore;
     }
     
     /**
@@ -103,20 +117,15 @@ public class InvoiceService {
         LocalDateTime startDateTime = periodStart.atStartOfDay();
         LocalDateTime endDateTime = periodEnd.atTime(LocalTime.MAX);
         
-        List<UsageLog> usageLogs = usageLogRepository.findByOrganizationIdAndTimestampBetween(
-                organizationId, startDateTime, endDateTime);
+        List<EndpointUsage> usage = usageLogRepository.sumByEndpoint(organizationId, startDateTime, endDateTime);
         
-        if (usageLogs.isEmpty()) {
+        if (usage.isEmpty()) {
             throw new IllegalArgumentException(
                     "Aucune utilisation trouvée pour cette période. Impossible de générer une facture.");
         }
         
         // Calculer le total
-        BigDecimal totalAmount = usageLogs.stream()
-                .filter(log -> log.getCostUsd() != null)
-                .map(UsageLog::getCostUsd)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .setScale(2, RoundingMode.HALF_UP);
+        BigDecimal totalAmount = EndpointUsage.totalCost(usage).setScale(2, RoundingMode.HALF_UP);
         
         // Générer le numéro de facture
         String invoiceNumber = generateInvoiceNumber(organizationId, year, month);
@@ -136,7 +145,7 @@ public class InvoiceService {
         invoice = invoiceRepository.save(invoice);
         
         // Créer les lignes de facture
-        List<InvoiceItem> items = createInvoiceItems(invoice, usageLogs);
+        List<InvoiceItem> items = createInvoiceItems(invoice, usage);
         if (!items.isEmpty()) {
             invoiceItemRepository.saveAll(items);
         }
@@ -145,6 +154,7 @@ public class InvoiceService {
                 invoiceNumber, organization.getName(), yearMonth.format(DateTimeFormatter.ofPattern("yyyy-MM")));
         
         InvoiceDto invoiceDto = toDto(invoice);
+        invoicePdfStore.prerender(invoiceDto);
         
         // Envoyer un email de notification
         sendInvoiceNotificationEmail(invoiceDto, organization);
@@ -180,20 +190,15 @@ public class InvoiceService {
         LocalDateTime startDateTime = periodStart.atStartOfDay();
         LocalDateTime endDateTime = periodEnd.atTime(LocalTime.MAX);
         
-        List<UsageLog> usageLogs = usageLogRepository.findByOrganizationIdAndTimestampBetween(
-                organizationId, startDateTime, endDateTime);
+        List<EndpointUsage> usage = usageLogRepository.sumByEndpoint(organizationId, startDateTime, endDateTime);
         
-        if (usageLogs.isEmpty()) {
+        if (usage.isEmpty()) {
             throw new IllegalArgumentException(
                     "Aucune utilisation trouvée pour cette période. Impossible de générer une facture.");
         }
         
         // Calculer le total
-        BigDecimal totalAmount = usageLogs.stream()
-                .filter(log -> log.getCostUsd() != null)
-                .map(UsageLog::getCostUsd)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .setScale(2, RoundingMode.HALF_UP);
+        BigDecimal totalAmount = EndpointUsage.totalCost(usage).setScale(2, RoundingMode.HALF_UP);
         
         // Générer le numéro de facture (basé sur la date de début)
         YearMonth yearMonth = YearMonth.from(periodStart);
@@ -214,7 +219,7 @@ public class InvoiceService {
         invoice = invoiceRepository.save(invoice);
         
         // Créer les lignes de facture
-        List<InvoiceItem> items = createInvoiceItems(invoice, usageLogs);
+        List<InvoiceItem> items = createInvoiceItems(invoice, usage);
         if (!items.isEmpty()) {
             invoiceItemRepository.saveAll(items);
         }
@@ -223,6 +228,7 @@ public class InvoiceService {
                 invoiceNumber, organization.getName(), periodStart, periodEnd);
         
         InvoiceDto invoiceDto = toDto(invoice);
+        invoicePdfStore.prerender(invoiceDto);
         
         // Envoyer un email de notification
         sendInvoiceNotificationEmail(invoiceDto, organization);
@@ -258,22 +264,17 @@ public class InvoiceService {
         LocalDateTime startDateTime = periodStart.atStartOfDay();
         LocalDateTime endDateTime = periodEnd.atTime(LocalTime.MAX);
         
-        List<UsageLog> usageLogs = usageLogRepository.findByOrganizationIdAndTimestampBetween(
-                organizationId, startDateTime, endDateTime);
+        List<EndpointUsage> usage = usageLogRepository.sumByEndpoint(organizationId, startDateTime, endDateTime);
         
         // Si aucune utilisation, ne pas générer de facture
-        if (usageLogs.isEmpty()) {
+        if (usage.isEmpty()) {
             log.info("Aucune utilisation trouvée pour l'organisation {} sur la période {} - {}. Facture non générée.",
                     organizationId, periodStart, periodEnd);
             return null;
         }
         
         // Calculer le total
-        BigDecimal totalAmount = usageLogs.stream()
-                .filter(log -> log.getCostUsd() != null)
-                .map(UsageLog::getCostUsd)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .setScale(2, RoundingMode.HALF_UP);
+        BigDecimal totalAmount = EndpointUsage.totalCost(usage).setScale(2, RoundingMode.HALF_UP);
         
         // Générer le numéro de facture (format: ORG-YYYYMMDD-BIWEEKLY)
         String invoiceNumber = String.format("ORG-%d-%s-BIWEEKLY",
@@ -295,7 +296,7 @@ public class InvoiceService {
         invoice = invoiceRepository.save(invoice);
         
         // Créer les lignes de facture
-        List<InvoiceItem> items = createInvoiceItems(invoice, usageLogs);
+        List<InvoiceItem> items = createInvoiceItems(invoice, usage);
         if (!items.isEmpty()) {
             invoiceItemRepository.saveAll(items);
         }
@@ -304,6 +305,7 @@ public class InvoiceService {
                 invoiceNumber, organization.getName(), periodStart, periodEnd);
         
         InvoiceDto invoiceDto = toDto(invoice);
+        invoicePdfStore.prerender(invoiceDto);
         
         // Envoyer un email de notification
         sendInvoiceNotificationEmail(invoiceDto, organization);
@@ -312,29 +314,15 @@ public class InvoiceService {
     }
     
     /**
-     * Crée les lignes de facture à partir des logs d'utilisation.
+     * Crée les lignes de facture à partir des totaux par endpoint (voir UsageLogRepository.sumByEndpoint) :
+     * une ligne par endpoint, plus une ligne récapitulative des tokens.
      */
-    private List<InvoiceItem> createInvoiceItems(Invoice invoice, List<UsageLog> usageLogs) {
+    List<InvoiceItem> createInvoiceItems(Invoice invoice, List<EndpointUsage> usage) {
         List<InvoiceItem> items = new ArrayList<>();
         
-        // Agréger par endpoint
-        var usageByEndpoint = usageLogs.stream()
-                .collect(Collectors.groupingBy(
-                        UsageLog::getEndpoint,
-                        Collectors.toList()
-                ));
-        
-        for (var entry : usageByEndpoint.entrySet()) {
-            String endpoint = entry.getKey();
-            List<UsageLog> logs = entry.getValue();
-            
-            // Calculer le total pour cet endpoint
-            long requestCount = logs.size();
-            BigDecimal totalCost = logs.stream()
-                    .filter(log -> log.getCostUsd() != null)
-                    .map(UsageLog::getCostUsd)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add)
-                    .setScale(2, RoundingMode.HALF_UP);
+        for (EndpointUsage endpointUsage : usage) {
+            long requestCount = endpointUsage.requestCount();
+            BigDecimal totalCost = endpointUsage.costUsd().setScale(2, RoundingMode.HALF_UP);
             
             // Calculer le prix unitaire moyen
             BigDecimal unitPrice = requestCount > 0
@@ -343,7 +331,7 @@ public class InvoiceService {
             
             InvoiceItem item = new InvoiceItem();
             item.setInvoice(invoice);
-            item.setDescription(getEndpointDescription(endpoint));
+            item.setDescription(getEndpointDescription(endpointUsage.endpoint()));
             item.setQuantity((int) requestCount);
             item.setUnitPrice(unitPrice);
             item.setTotalPrice(totalCost);
@@ -353,22 +341,13 @@ public class InvoiceService {
         }
         
         // Ajouter une ligne récapitulative pour les tokens si nécessaire
-        long totalTokens = usageLogs.stream()
-                .filter(log -> log.getTokensUsed() != null)
-                .mapToLong(UsageLog::getTokensUsed)
-                .sum();
+        long totalTokens = EndpointUsage.totalTokens(usage);
         
         if (totalTokens > 0) {
-            // Calculer le coût total des tokens
-            BigDecimal totalTokenCost = usageLogs.stream()
-                    .filter(log -> log.getCostUsd() != null)
-                    .map(UsageLog::getCostUsd)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add)
-                    .setScale(2, RoundingMode.HALF_UP);
+            // Coût total des tokens : somme exacte de tous les coûts, arrondie une seule fois
+            BigDecimal totalTokenCost = EndpointUsage.totalCost(usage).setScale(2, RoundingMode.HALF_UP);
             
-            BigDecimal tokenUnitPrice = totalTokens > 0
-                    ? totalTokenCost.divide(BigDecimal.valueOf(totalTokens), 6, RoundingMode.HALF_UP)
-                    : BigDecimal.ZERO;
+            BigDecimal tokenUnitPrice = totalTokenCost.divide(BigDecimal.valueOf(totalTokens), 6, RoundingMode.HALF_UP);
             
             InvoiceItem tokenItem = new InvoiceItem();
             tokenItem.setInvoice(invoice);
@@ -447,6 +426,16 @@ public class InvoiceService {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * Récupère les factures dont la période commence dans le mois donné (export ZIP des PDF).
+     */
+    public List<InvoiceDto> getInvoicesByPeriodMonth(YearMonth month) {
+        return invoiceRepository.findByPeriodStartBetweenOrderByInvoiceNumber(month.atDay(1), month.atEndOfMonth())
+                .stream()
+                .map(this::toDto)
+                .collect(Collectors.toList());
+    }
+    
     /**
      * Met à jour le statut d'une facture.
      * Envoie un email de notification si le statut est mis à PENDING.
@@ -457,6 +446,7 @@ public class InvoiceService {
                 .orElseThrow(() -> new IllegalArgumentException("Facture non trouvée avec l'ID: " + invoiceId));
         
         Invoice.InvoiceStatus previousStatus = invoice.getStatus();
+        InvoiceDto previousDto = toDto(invoice);
         invoice.setStatus(status);
         if (notes != null && !notes.trim().isEmpty()) {
             invoice.setNotes(notes);
@@ -471,6 +461,7 @@ public class InvoiceService {
         log.info("Statut de la facture {} mis à jour: {} -> {}", invoice.getInvoiceNumber(), previousStatus, status);
         
         InvoiceDto invoiceDto = toDto(invoice);
+        invoicePdfStore.replace(previousDto, invoiceDto);
         
         // Envoyer un email de notification si le statut est mis à PENDING
         // (seulement si le statut précédent n'était pas déjà PENDING pour éviter les doublons)
@@ -520,6 +511,28 @@ public class InvoiceService {
      * Convertit une Invoice en DTO.
      */
     private InvoiceDto toDto(Invoice invoice) {
+        InvoiceDto dto = toRenderDto(invoice);
+        
+        // Calculer les statistiques d'utilisation pour la période
+        LocalDateTime startDateTime = invoice.getPeriodStart().atStartOfDay();
+        LocalDateTime endDateTime = invoice.getPeriodEnd().atTime(LocalTime.MAX);
+        
+        Long orgId = invoice.getOrganizationId();
+        List<EndpointUsage> usage = orgId != null 
+                ? usageLogRepository.sumByEndpoint(orgId, startDateTime, endDateTime)
+                : List.of();
+        
+        dto.setTotalRequests(EndpointUsage.totalRequests(usage));
+        dto.setTotalTokens(EndpointUsage.totalTokens(usage));
+        dto.setTotalCostUsd(EndpointUsage.totalCost(usage).setScale(2, RoundingMode.HALF_UP));
+        
+        return dto;
+    }
+    
+    /**
+     * Champs de la facture et ses lignes, sans les statistiques d'utilisation (absentes du PDF).
+     */
+    private InvoiceDto toRenderDto(Invoice invoice) {
         InvoiceDto dto = new InvoiceDto();
         dto.setId(invoice.getId());
         dto.setOrganizationId(invoice.getOrganizationId());
@@ -546,26 +559,6 @@ public class InvoiceService {
             dto.setItems(new ArrayList<>());
         }
         
-        // Calculer les statistiques d'utilisation pour la période
-        LocalDateTime startDateTime = invoice.getPeriodStart().atStartOfDay();
-        LocalDateTime endDateTime = invoice.getPeriodEnd().atTime(LocalTime.MAX);
-        
-        Long orgId = invoice.getOrganizationId();
-        List<UsageLog> usageLogs = orgId != null 
-                ? usageLogRepository.findByOrganizationIdAndTimestampBetween(orgId, startDateTime, endDateTime)
-                : new ArrayList<>();
-        
-        dto.setTotalRequests((long) usageLogs.size());
-        dto.setTotalTokens(usageLogs.stream()
-                .filter(log -> log.getTokensUsed() != null)
-                .mapToLong(UsageLog::getTokensUsed)
-                .sum());
-        dto.setTotalCostUsd(usageLogs.stream()
-                .filter(log -> log.getCostUsd() != null)
-                .map(UsageLog::getCostUsd)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .setScale(2, RoundingMode.HALF_UP));
-        
         return dto;
     }
     
@@ -587,6 +580,7 @@ public class InvoiceService {
      * Envoie un email de notification pour une nouvelle facture.
      * Envoie l'email à l'organisation et à tous les utilisateurs de l'organisation.
      * L'email est envoyé uniquement si le statut de la facture est PENDING (en attente).
+     * Il est placé dans l'outbox dans la transaction de la facture (envoi par EmailOutboxWorker).
      */
     private void sendInvoiceNotificationEmail(InvoiceDto invoice, OrganizationDto organization) {
         // Envoyer l'email uniquement si le statut est PENDING
@@ -653,63 +647,40 @@ public class InvoiceService {
     }
     
     /**
-     * Génère les factures mensuelles pour toutes les organisations ayant une utilisation.
-     * 
-     * @param year Année
-     * @param month Mois (1-12)
-     * @return Liste des factures générées
+     * Supprime, après le commit, les PDF en cache des factures d'une organisation.
+     * À appeler avant la suppression de ses factures et de leurs lignes.
      */
-    @Transactional
-    public List<InvoiceDto> generateMonthlyInvoicesForAllOrganizations(int year, int month) {
-        List<InvoiceDto> invoices = new ArrayList<>();
-        
-        // Récupérer toutes les organisations
-        List<OrganizationDto> organizations = organizationService.getAllOrganizations();
-        
-        YearMonth yearMonth = YearMonth.of(year, month);
-        LocalDate periodStart = yearMonth.atDay(1);
-        LocalDate periodEnd = yearMonth.atEndOfMonth();
-        
-        LocalDateTime startDateTime = periodStart.atStartOfDay();
-        LocalDateTime endDateTime = periodEnd.atTime(LocalTime.MAX);
+    public void evictInvoicePdfs(Long organizationId) {
+        List<String> keys = invoiceRepository.findByOrganizationIdOrderByCreatedAtDesc(organizationId)
+                .stream()
+                .map(invoice -> invoicePdfStore.keyOf(toRenderDto(invoice)))
+                .toList();
+        invoicePdfStore.evict(keys);
+    }
+    
+    /**
+     * Tâche planifiée qui supprime du cache disque les PDF ne correspondant plus à aucune facture
+     * (états antérieurs aux webhooks de paiement, factures supprimées).
+     * Exécutée quotidiennement à 4h30 ; les factures sont lues par pages.
+     */
+    @Scheduled(cron = "${invoice.pdf.sweep-cron:0 30 4 * * ?}")
+    public void sweepInvoicePdfs() {
+        Instant olderThan = Instant.now().minus(PDF_SWEEP_GRACE);
+        Set<String> liveKeys = new HashSet<>();
+        Page<Invoice> page;
+        int pageNumber = 0;
+        do {
+            page = invoiceRepository.findAll(PageRequest.of(pageNumber++, PDF_SWEEP_PAGE_SIZE, Sort.by("id")));
+            page.forEach(invoice -> liveKeys.add(invoicePdfStore.keyOf(toRenderDto(invoice))));
+        } while (page.hasNext());
         
-        for (OrganizationDto organization : organizations) {
-            try {
-                // Vérifier si une facture existe déjà
-                if (invoiceRepository.existsByOrganizationIdAndPeriodStartAndPeriodEnd(
-                        organization.getId(), periodStart, periodEnd)) {
-                    log.debug("Facture déjà existante pour l'organisation {} pour la période {}",
-                            organization.getName(), yearMonth.format(DateTimeFormatter.ofPattern("yyyy-MM")));
-                    continue;
-                }
-                
-                // Vérifier s'il y a de l'utilisation pour cette période
-                List<UsageLog> usageLogs = usageLogRepository.findByOrganizationIdAndTimestampBetween(
-                        organization.getId(), startDateTime, endDateTime);
-                
-                if (usageLogs.isEmpty()) {
-                    log.debug("Aucune utilisation pour l'organisation {} pour la période {}",
-                            organization.getName(), yearMonth.format(DateTimeFormatter.ofPattern("yyyy-MM")));
-                    continue;
-                }
-                
-                // Générer la facture
-                InvoiceDto invoice = generateMonthlyInvoice(organization.getId(), year, month);
-                invoices.add(invoice);
-                
-                log.info("Facture générée pour l'organisation {}: {}",
-                        organization.getName(), invoice.getInvoiceNumber());
-                
-            } catch (Exception e) {
-                log.error("Erreur lors de la génération de la facture pour l'organisation {}: {}",
-                        organization.getName(), e.getMessage(), e);
-            }
+        try {
+            int deleted = invoicePdfStore.sweep(liveKeys, olderThan);
+            log.info("Balayage du cache des PDF de facture : {} fichier(s) orphelin(s) supprimé(s), {} facture(s)",
+                    deleted, liveKeys.size());
+        } catch (IOException e) {
+            log.error("Erreur lors du balayage du cache des PDF de facture: {}", e.getMessage(), e);
         }
-        
-        log.info("Génération de factures terminée. {} facture(s) générée(s) pour la période {}",
-                invoices.size(), yearMonth.format(DateTimeFormatter.ofPattern("yyyy-MM")));
-        
-        return invoices;
     }
     
     /**
@@ -735,6 +706,7 @@ public class InvoiceService {
         for (Invoice invoice : overdueInvoices) {
             try {
                 // Marquer comme en retard
+                InvoiceDto previousDto = toDto(invoice);
                 invoice.setStatus(Invoice.InvoiceStatus.OVERDUE);
                 invoice = invoiceRepository.save(invoice);
                 
@@ -743,6 +715,7 @@ public class InvoiceService {
                 
                 // Envoyer un email de rappel
                 InvoiceDto invoiceDto = toDto(invoice);
+                invoicePdfStore.replace(previousDto, invoiceDto);
                 OrganizationDto organization = organizationService.getOrganizationById(invoice.getOrganizationId());
                 if (organization != null) {
                     sendOverdueInvoiceReminderEmail(invoiceDto, organization);
@@ -963,6 +936,7 @@ public class InvoiceService {
                 finalInvoiceNumber, organization.getName(), plan.getName(), creditAmount);
         
         InvoiceDto invoiceDto = toDto(invoice);
+        invoicePdfStore.prerender(invoiceDto);
         
         // Envoyer un email de notification
         sendInvoiceNotificationEmail(invoiceDto, organization);
@@ -1045,6 +1019,7 @@ public class InvoiceService {
                 finalInvoiceNumber, organization.getName(), plan.getName(), proratedAmount);
         
         InvoiceDto invoiceDto = toDto(invoice);
+        invoicePdfStore.prerender(invoiceDto);
         
         // Envoyer un email de notification
         sendInvoiceNotificationEmail(invoiceDto, organization);
@@ -1082,12 +1057,9 @@ public class InvoiceService {
         // Récupérer l'historique des requêtes du cycle
         LocalDateTime cycleStart = startDate.atStartOfDay();
         LocalDateTime cycleEnd = endDate.atTime(LocalTime.MAX);
-        List<UsageLog> usageLogs = usageLogRepository.findByOrganizationIdAndTimestampBetween(
-                organizationId, cycleStart, cycleEnd);
-        long requestCount = usageLogs.size();
-        long totalTokens = usageLogs.stream()
-                .mapToLong(log -> log.getTokensUsed() != null ? log.getTokensUsed() : 0)
-                .sum();
+        List<EndpointUsage> usage = usageLogRepository.sumByEndpoint(organizationId, cycleStart, cycleEnd);
+        long requestCount = EndpointUsage.totalRequests(usage);
+        long totalTokens = EndpointUsage.totalTokens(usage);
         Integer planQuota = plan.getMonthlyQuota();
 
         // Générer le numéro de facture
@@ -1152,6 +1124,7 @@ public class InvoiceService {
                 requestCount, planQuota != null ? planQuota : "∞", totalAmount, plan.getCurrency());
         
         InvoiceDto invoiceDto = toDto(invoice);
+        invoicePdfStore.prerender(invoiceDto);
         sendInvoiceNotificationEmail(invoiceDto, organization);
         
         return invoiceDto;
@@ -1199,12 +1172,9 @@ public class InvoiceService {
 
         LocalDateTime cycleStart = startDate.atStartOfDay();
         LocalDateTime cycleEnd = endDate.atTime(LocalTime.MAX);
-        List<UsageLog> usageLogs = usageLogRepository.findByOrganizationIdAndTimestampBetween(
-                organizationId, cycleStart, cycleEnd);
-        long requestCount = usageLogs.size();
-        long totalTokens = usageLogs.stream()
-                .mapToLong(log -> log.getTokensUsed() != null ? log.getTokensUsed() : 0)
-                .sum();
+        List<EndpointUsage> usage = usageLogRepository.sumByEndpoint(organizationId, cycleStart, cycleEnd);
+        long requestCount = EndpointUsage.totalRequests(usage);
+        long totalTokens = EndpointUsage.totalTokens(usage);
         Integer planQuota = plan.getMonthlyQuota();
 
         YearMonth yearMonth = YearMonth.from(startDate);
@@ -1259,7 +1229,9 @@ public class InvoiceService {
                 finalInvoiceNumber, organization.getName(), plan.getName(),
                 requestCount, planQuota != null ? planQuota : "∞");
 
-        return toDto(invoice);
+        InvoiceDto invoiceDto = toDto(invoice);
+        invoicePdfStore.prerender(invoiceDto);
+        return invoiceDto;
     }
 
     /**
@@ -1290,22 +1262,17 @@ public class InvoiceService {
         LocalDateTime startDateTime = startDate.atStartOfDay();
         LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
         
-        List<UsageLog> usageLogs = usageLogRepository.findByOrganizationIdAndTimestampBetween(
-                organizationId, startDateTime, endDateTime);
+        List<EndpointUsage> usage = usageLogRepository.sumByEndpoint(organizationId, startDateTime, endDateTime);
         
         // Si aucune utilisation, ne pas générer de facture
-        if (usageLogs.isEmpty()) {
+        if (usage.isEmpty()) {
             log.info("Aucune utilisation trouvée pour l'organisation {} sur la période {} - {}. Facture non générée.",
                     organizationId, startDate, endDate);
             return null;
         }
         
         // Calculer le total (somme des coûts des requêtes)
-        BigDecimal totalAmount = usageLogs.stream()
-                .filter(log -> log.getCostUsd() != null)
-                .map(UsageLog::getCostUsd)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .setScale(2, RoundingMode.HALF_UP);
+        BigDecimal totalAmount = EndpointUsage.totalCost(usage).setScale(2, RoundingMode.HALF_UP);
         
         // Générer le numéro de facture
         YearMonth yearMonth = YearMonth.from(startDate);
@@ -1336,7 +1303,7 @@ public class InvoiceService {
         invoice = invoiceRepository.save(invoice);
         
         // Créer les lignes de facture
-        List<InvoiceItem> items = createInvoiceItems(invoice, usageLogs);
+        List<InvoiceItem> items = createInvoiceItems(invoice, usage);
         if (!items.isEmpty()) {
             invoiceItemRepository.saveAll(items);
         }
@@ -1345,6 +1312,7 @@ public class InvoiceService {
                 finalInvoiceNumber, organization.getName(), plan.getName(), totalAmount, plan.getCurrency());
         
         InvoiceDto invoiceDto = toDto(invoice);
+        invoicePdfStore.prerender(invoiceDto);
         sendInvoiceNotificationEmail(invoiceDto, organization);
         
         return invoiceDto;
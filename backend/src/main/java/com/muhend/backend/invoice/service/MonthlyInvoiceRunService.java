@@ -0,0 +1,228 @@
+package com.muhend.backend.invoice.service;
+
+import com.muhend.backend.invoice.dto.InvoiceDto;
+import com.muhend.backend.invoice.dto.InvoiceRunReport;
+import com.muhend.backend.invoice.model.InvoiceRun;
+import com.muhend.backend.invoice.model.InvoiceRun.RunStatus;
+import com.muhend.backend.invoice.repository.InvoiceRepository;
+import com.muhend.backend.invoice.repository.InvoiceRunRepository;
+import com.muhend.backend.organization.repository.OrganizationRepository;
+import com.muhend.backend.usage.repository.UsageLogRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Facturation mensuelle de toutes les organisations, en campagne découpée en lots.
+ *
+ * - Les organisations sont parcourues par ID croissant, par lots de invoice.run.chunk-size,
+ *   traités en parallèle par invoice.run.workers threads.
+ * - Chaque organisation est facturée dans sa propre transaction (InvoiceService.generateMonthlyInvoice) :
+ *   une erreur n'annule que sa facture.
+ * - Le point de reprise (invoice_run) est enregistré après chaque lot : une campagne interrompue
+ *   reprend au lot suivant. Une campagne terminée avec des erreurs repart du début, les organisations
+ *   déjà facturées étant ignorées.
+ * - Les emails de facture sont placés dans l'outbox (email_outbox) dans la transaction de la facture
+ *   et envoyés par EmailOutboxWorker.
+ */
+@Service
+@Slf4j
+public class MonthlyInvoiceRunService {
+
+    private final InvoiceService invoiceService;
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceRunRepository invoiceRunRepository;
+    private final OrganizationRepository organizationRepository;
+    private final UsageLogRepository usageLogRepository;
+    private final int workers;
+    private final int chunkSize;
+    private final Timer generatedTimer;
+    private final Timer skippedTimer;
+    private final Timer errorTimer;
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    public MonthlyInvoiceRunService(InvoiceService invoiceService,
+                                    InvoiceRepository invoiceRepository,
+                                    InvoiceRunRepository invoiceRunRepository,
+                                    OrganizationRepository organizationRepository,
+                                    UsageLogRepository usageLogRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${invoice.run.workers:4}") int workers,
+                                    @Value("${invoice.run.chunk-size:100}") int chunkSize) {
+        this.invoiceService = invoiceService;
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceRunRepository = invoiceRunRepository;
+        this.organizationRepository = organizationRepository;
+        this.usageLogRepository = usageLogRepository;
+        this.workers = Math.max(1, workers);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.generatedTimer = meterRegistry.timer("invoice.run.organization", "resultat", "facturee");
+        this.skippedTimer = meterRegistry.timer("invoice.run.organization", "resultat", "ignoree");
+        this.errorTimer = meterRegistry.timer("invoice.run.organization", "resultat", "erreur");
+    }
+
+    private enum Outcome { GENERATED, SKIPPED, ERROR }
+
+    private record OrganizationResult(Long organizationId, Outcome outcome, InvoiceDto invoice) {
+    }
+
+    /**
+     * Lance (ou reprend) la facturation du mois pour toutes les organisations ayant une utilisation.
+     *
+     * @throws IllegalStateException si une campagne est déjà en cours sur cette instance
+     */
+    public InvoiceRunReport run(int year, int month) {
+        if (!runLock.tryLock()) {
+            throw new IllegalStateException("Une facturation mensuelle est déjà en cours");
+        }
+        try {
+            return doRun(YearMonth.of(year, month));
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private InvoiceRunReport doRun(YearMonth period) {
+        InvoiceRun run = invoiceRunRepository.findByPeriodYearAndPeriodMonth(period.getYear(), period.getMonthValue())
+                .orElseGet(() -> {
+                    InvoiceRun created = new InvoiceRun();
+                    created.setPeriodYear(period.getYear());
+                    created.setPeriodMonth(period.getMonthValue());
+                    return created;
+                });
+        boolean resumed = run.getId() != null && run.getStatus() == RunStatus.RUNNING && run.getLastOrganizationId() > 0;
+        if (!resumed) {
+            restart(run);
+        }
+        run = invoiceRunRepository.save(run);
+        log.info("=== Facturation mensuelle {} : {} à partir de l'organisation {} ({} threads, lots de {}) ===",
+                period, resumed ? "reprise" : "démarrage", run.getLastOrganizationId() + 1, workers, chunkSize);
+
+        int processed = 0;
+        int generated = 0;
+        int skipped = 0;
+        int errors = 0;
+        List<InvoiceDto> invoices = new ArrayList<>();
+        long start = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(workers)) {
+            List<Long> chunk;
+            while (!(chunk = organizationRepository.findIdsAfter(run.getLastOrganizationId(), PageRequest.of(0, chunkSize))).isEmpty()) {
+                List<Future<OrganizationResult>> futures = new ArrayList<>(chunk.size());
+                for (Long organizationId : chunk) {
+                    futures.add(executor.submit(() -> invoiceOrganization(organizationId, period)));
+                }
+                int chunkGenerated = 0;
+                int chunkSkipped = 0;
+                int chunkErrors = 0;
+                for (Future<OrganizationResult> future : futures) {
+                    OrganizationResult result = await(future);
+                    switch (result.outcome()) {
+                        case GENERATED -> {
+                            chunkGenerated++;
+                            invoices.add(result.invoice());
+                        }
+                        case SKIPPED -> chunkSkipped++;
+                        case ERROR -> chunkErrors++;
+                    }
+                }
+                processed += chunk.size();
+                generated += chunkGenerated;
+                skipped += chunkSkipped;
+                errors += chunkErrors;
+
+                // Point de reprise : le lot est entièrement traité
+                run.setLastOrganizationId(chunk.get(chunk.size() - 1));
+                run.setProcessedCount(run.getProcessedCount() + chunk.size());
+                run.setGeneratedCount(run.getGeneratedCount() + chunkGenerated);
+                run.setSkippedCount(run.getSkippedCount() + chunkSkipped);
+                run.setErrorCount(run.getErrorCount() + chunkErrors);
+                run = invoiceRunRepository.save(run);
+
+                log.info("Facturation {} : {} organisation(s) traitée(s) ({}/s), point de reprise {}",
+                        period, processed, String.format("%.1f", perSecond(processed, start)), run.getLastOrganizationId());
+            }
+        }
+
+        run.setStatus(run.getErrorCount() > 0 ? RunStatus.COMPLETED_WITH_ERRORS : RunStatus.COMPLETED);
+        run.setFinishedAt(LocalDateTime.now());
+        run = invoiceRunRepository.save(run);
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        double throughput = perSecond(processed, start);
+        log.info("=== Facturation mensuelle {} terminée ({}) : {} organisation(s) en {} ms ({}/s) — {} facture(s), {} ignorée(s), {} erreur(s) ===",
+                period, run.getStatus(), processed, durationMs, String.format("%.1f", throughput), generated, skipped, errors);
+
+        return new InvoiceRunReport(period.getYear(), period.getMonthValue(), run.getStatus(), resumed,
+                processed, generated, skipped, errors, durationMs, throughput, List.copyOf(invoices));
+    }
+
+    private static void restart(InvoiceRun run) {
+        run.setStatus(RunStatus.RUNNING);
+        run.setLastOrganizationId(0L);
+        run.setProcessedCount(0);
+        run.setGeneratedCount(0);
+        run.setSkippedCount(0);
+        run.setErrorCount(0);
+        run.setStartedAt(LocalDateTime.now());
+        run.setFinishedAt(null);
+    }
+
+    /**
+     * Facture une organisation (thread du pool) ; les erreurs sont journalisées, jamais propagées.
+     */
+    private OrganizationResult invoiceOrganization(Long organizationId, YearMonth period) {
+        long start = System.nanoTime();
+        LocalDate periodStart = period.atDay(1);
+        LocalDate periodEnd = period.atEndOfMonth();
+        try {
+            if (invoiceRepository.existsByOrganizationIdAndPeriodStartAndPeriodEnd(organizationId, periodStart, periodEnd)
+                    || !usageLogRepository.existsByOrganizationIdAndTimestampBetween(
+                            organizationId, periodStart.atStartOfDay(), periodEnd.atTime(LocalTime.MAX))) {
+                skippedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return new OrganizationResult(organizationId, Outcome.SKIPPED, null);
+            }
+            InvoiceDto invoice = invoiceService.generateMonthlyInvoice(organizationId, period.getYear(), period.getMonthValue());
+            generatedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.debug("Facture {} générée pour l'organisation {}", invoice.getInvoiceNumber(), organizationId);
+            return new OrganizationResult(organizationId, Outcome.GENERATED, invoice);
+        } catch (Exception e) {
+            errorTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.error("Erreur lors de la génération de la facture {} pour l'organisation {}: {}",
+                    period, organizationId, e.getMessage(), e);
+            return new OrganizationResult(organizationId, Outcome.ERROR, null);
+        }
+    }
+
+    private static OrganizationResult await(Future<OrganizationResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Facturation mensuelle interrompue", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Erreur inattendue de la facturation mensuelle", e.getCause());
+        }
+    }
+
+    private static double perSecond(int count, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        return seconds > 0 ? count / seconds : 0;
+    }
+}
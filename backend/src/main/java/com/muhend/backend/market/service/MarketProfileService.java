@@ -5,24 +5,32 @@ import com.muhend.backend.market.dto.MarketProfileDto;
 import com.muhend.backend.market.dto.UpdateMarketProfileRequest;
 import com.muhend.backend.market.model.MarketProfile;
 import com.muhend.backend.market.repository.MarketProfileRepository;
+import com.muhend.backend.pricing.service.PricingCatalogCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Service pour gérer les profils de marché.
+ * Les lectures passent par {@link PricingCatalogCache} : les profils, peu nombreux, sont gardés en liste
+ * et les recherches par ID, version ou code pays se font en mémoire.
  */
 @Service
 @Slf4j
 public class MarketProfileService {
     
     private final MarketProfileRepository marketProfileRepository;
+    private final PricingCatalogCache pricingCatalogCache;
     
-    public MarketProfileService(MarketProfileRepository marketProfileRepository) {
+    public MarketProfileService(MarketProfileRepository marketProfileRepository,
+                                PricingCatalogCache pricingCatalogCache) {
         this.marketProfileRepository = marketProfileRepository;
+        this.pricingCatalogCache = pricingCatalogCache;
     }
     
     /**
@@ -30,10 +38,10 @@ public class MarketProfileService {
      */
     @Transactional(readOnly = true)
     public List<MarketProfileDto> getAllActiveMarketProfiles() {
-        List<MarketProfile> profiles = marketProfileRepository.findByIsActiveTrueOrderByDisplayOrderAsc();
-        return profiles.stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return pricingCatalogCache.marketProfiles(true, activeOnly ->
+                marketProfileRepository.findByIsActiveTrueOrderByDisplayOrderAsc().stream()
+                        .map(this::toDto)
+                        .collect(Collectors.toList()));
     }
     
     /**
@@ -41,10 +49,10 @@ public class MarketProfileService {
      */
     @Transactional(readOnly = true)
     public List<MarketProfileDto> getAllMarketProfiles() {
-        List<MarketProfile> profiles = marketProfileRepository.findAll();
-        return profiles.stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return pricingCatalogCache.marketProfiles(false, activeOnly ->
+                marketProfileRepository.findAll().stream()
+                        .map(this::toDto)
+                        .collect(Collectors.toList()));
     }
     
     /**
@@ -52,9 +60,8 @@ public class MarketProfileService {
      */
     @Transactional(readOnly = true)
     public MarketProfileDto getMarketProfileById(Long id) {
-        MarketProfile profile = marketProfileRepository.findById(id)
+        return findCached(profile -> profile.getId().equals(id))
                 .orElseThrow(() -> new IllegalArgumentException("Profil de marché introuvable avec l'ID: " + id));
-        return toDto(profile);
     }
     
     /**
@@ -62,9 +69,8 @@ public class MarketProfileService {
      */
     @Transactional(readOnly = true)
     public MarketProfileDto getMarketProfileByVersion(String marketVersion) {
-        MarketProfile profile = marketProfileRepository.findByMarketVersion(marketVersion)
+        return findCached(profile -> profile.getMarketVersion().equals(marketVersion))
                 .orElseThrow(() -> new IllegalArgumentException("Profil de marché introuvable pour la version: " + marketVersion));
-        return toDto(profile);
     }
     
     /**
@@ -72,9 +78,14 @@ public class MarketProfileService {
      */
     @Transactional(readOnly = true)
     public MarketProfileDto getMarketProfileByCountryCode(String countryCode) {
-        MarketProfile profile = marketProfileRepository.findByCountryCodeIsoAlpha2(countryCode)
+        return findCached(profile -> profile.getCountryCodeIsoAlpha2().equals(countryCode))
                 .orElseThrow(() -> new IllegalArgumentException("Profil de marché introuvable pour le code pays: " + countryCode));
-        return toDto(profile);
+    }
+    
+    private Optional<MarketProfileDto> findCached(Predicate<MarketProfileDto> predicate) {
+        return getAllMarketProfiles().stream()
+                .filter(predicate)
+                .findFirst();
     }
     
     /**
@@ -94,6 +105,7 @@ public class MarketProfileService {
         
         MarketProfile profile = toEntity(request);
         profile = marketProfileRepository.save(profile);
+        pricingCatalogCache.evictMarketProfiles();
         log.info("Profil de marché créé: {} (version: {})", profile.getCountryName(), profile.getMarketVersion());
         
         return toDto(profile);
@@ -166,6 +178,7 @@ public class MarketProfileService {
         }
         
         profile = marketProfileRepository.save(profile);
+        pricingCatalogCache.evictMarketProfiles();
         log.info("Profil de marché mis à jour: {} (ID: {})", profile.getCountryName(), profile.getId());
         
         return toDto(profile);
@@ -180,6 +193,7 @@ public class MarketProfileService {
             throw new IllegalArgumentException("Profil de marché introuvable avec l'ID: " + id);
         }
         marketProfileRepository.deleteById(id);
+        pricingCatalogCache.evictMarketProfiles();
         log.info("Profil de marché supprimé (ID: {})", id);
     }
     
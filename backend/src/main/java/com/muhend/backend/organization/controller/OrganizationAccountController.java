@@ -10,15 +10,21 @@ import com.muhend.backend.organization.service.CollaboratorService;
 import com.muhend.backend.organization.service.OrganizationService;
 import com.muhend.backend.organization.service.PlanChangeService;
 import com.muhend.backend.usage.model.UsageLog;
-import com.muhend.backend.usage.repository.UsageLogRepository;
+import com.muhend.backend.usage.model.UsageLogCursor;
+import com.muhend.backend.usage.service.UsageLogService;
+import com.muhend.backend.usage.service.UsageRollupService;
+import com.muhend.backend.usage.service.UsageRollupService.UsageTotals;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -36,15 +42,21 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.keycloak.representations.idm.UserRepresentation;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/organization/account")
@@ -57,8 +69,17 @@ public class OrganizationAccountController {
     private final OrganizationService organizationService;
     private final PlanChangeService planChangeService;
     private final CollaboratorService collaboratorService;
-    private final UsageLogRepository usageLogRepository;
+    private final UsageLogService usageLogService;
+    private final UsageRollupService usageRollupService;
     private final KeycloakAdminService keycloakAdminService;
+    private final ObjectMapper objectMapper;
+
+    private static final int MAX_USAGE_LOGS_PAGE_SIZE = 500;
+
+    /** Colonnes de l'export CSV, dans l'ordre des clés de toUsageLogMap. */
+    private static final List<String> USAGE_LOG_EXPORT_COLUMNS = List.of(
+            "id", "timestamp", "keycloakUserId", "collaboratorName", "endpoint", "searchTerm",
+            "tokensUsed", "tokenCostUsd", "totalCostUsd", "baseCostUsd");
     
     @Value("${BASE_REQUEST_PRICE:0.01}")
     private String baseRequestPriceStr;
@@ -307,129 +328,67 @@ public class OrganizationAccountController {
     @GetMapping("/usage-logs")
     @PreAuthorize("isAuthenticated()")
     @Operation(
-            summary = "Récupérer toutes les requêtes de l'organisation",
-            description = "Retourne la liste de toutes les requêtes effectuées par les collaborateurs de l'organisation, " +
-                         "avec les noms des collaborateurs. Paramètres optionnels: ?startDate=... et ?endDate=... pour filtrer par période (format: yyyy-MM-dd).",
+            summary = "Récupérer les requêtes de l'organisation (paginé)",
+            description = "Retourne les requêtes effectuées par les collaborateurs de l'organisation, de la plus récente à la plus ancienne, " +
+                         "avec les noms des collaborateurs, par pages de ?limit=... requêtes (défaut 100, max 500). " +
+                         "La réponse contient nextCursor, à repasser en ?cursor=... pour la page suivante (null en fin de période). " +
+                         "Paramètres optionnels: ?startDate=... et ?endDate=... pour filtrer par période (format: yyyy-MM-dd).",
             security = @SecurityRequirement(name = "bearerAuth")
     )
     public ResponseEntity<?> getOrganizationUsageLogs(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
         String organizationUserId = getCurrentUserId();
         if (organizationUserId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "AUTH_REQUIRED", "message", "Authentification requise"));
         }
+        UsageLogCursor from;
+        try {
+            from = cursor != null && !cursor.isBlank() ? UsageLogCursor.decode(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "INVALID_CURSOR", "message", e.getMessage()));
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_USAGE_LOGS_PAGE_SIZE));
         try {
             OrganizationDto organization = organizationService.getOrganizationByKeycloakUserId(organizationUserId);
             
-            // Déterminer la période
-            LocalDateTime startDateTime;
-            LocalDateTime endDateTime;
-            
-            if (startDate != null && endDate != null) {
-                startDateTime = startDate.atStartOfDay();
-                endDateTime = endDate.atTime(LocalTime.MAX);
-            } else {
-                // Par défaut, ce mois en cours
-                LocalDateTime now = LocalDateTime.now();
-                startDateTime = now.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
-                endDateTime = now.withDayOfMonth(now.toLocalDate().lengthOfMonth())
-                        .withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-            }
+            // Déterminer la période (par défaut, ce mois en cours)
+            LocalDate today = LocalDate.now();
+            LocalDate periodStart = startDate != null && endDate != null ? startDate : today.withDayOfMonth(1);
+            LocalDate periodEnd = startDate != null && endDate != null ? endDate : today.withDayOfMonth(today.lengthOfMonth());
+            LocalDateTime startDateTime = periodStart.atStartOfDay();
+            LocalDateTime endDateTime = periodEnd.atTime(LocalTime.MAX);
             
-            // Récupérer tous les logs de l'organisation
-            List<UsageLog> logs = usageLogRepository.findByOrganizationIdAndTimestampBetween(
-                    organization.getId(), startDateTime, endDateTime);
+            // Page courante (pagination par clé sur timestamp, id)
+            List<UsageLog> logs = usageLogService.getUsageLogsPageByOrganization(
+                    organization.getId(), startDateTime, endDateTime, from, pageSize);
             
-            // Récupérer les informations des collaborateurs depuis Keycloak
-            Map<String, String> userNamesMap = new LinkedHashMap<>();
-            for (UsageLog usageLog : logs) {
-                String keycloakUserId = usageLog.getKeycloakUserId();
-                if (!userNamesMap.containsKey(keycloakUserId)) {
-                    try {
-                        UserRepresentation user = keycloakAdminService.getUserRepresentation(keycloakUserId);
-                        if (user != null) {
-                            String firstName = user.getFirstName();
-                            String lastName = user.getLastName();
-                            String username = user.getUsername();
-                            String fullName = (firstName != null && lastName != null) 
-                                    ? firstName + " " + lastName 
-                                    : (firstName != null ? firstName : (lastName != null ? lastName : username));
-                            userNamesMap.put(keycloakUserId, fullName);
-                        } else {
-                            userNamesMap.put(keycloakUserId, "Utilisateur inconnu");
-                        }
-                    } catch (Exception e) {
-                        log.warn("Impossible de récupérer les informations de l'utilisateur {}: {}", keycloakUserId, e.getMessage());
-                        userNamesMap.put(keycloakUserId, "Utilisateur inconnu");
-                    }
-                }
-            }
-            
-            // Convertir les logs en Map avec les noms des collaborateurs
+            // Noms des collaborateurs : une lecture groupée de l'annuaire Keycloak pour toute la page
+            Map<String, String> userNamesMap = new HashMap<>();
+            keycloakAdminService.getUserRepresentations(logs.stream().map(UsageLog::getKeycloakUserId).toList())
+                    .forEach((id, user) -> userNamesMap.put(id, collaboratorName(user)));
             List<Map<String, Object>> usageLogsWithNames = logs.stream()
-                    .sorted((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()))
-                    .map(usageLog -> {
-                        Map<String, Object> logMap = new LinkedHashMap<>();
-                        logMap.put("id", usageLog.getId());
-                        logMap.put("keycloakUserId", usageLog.getKeycloakUserId());
-                        logMap.put("collaboratorName", userNamesMap.getOrDefault(usageLog.getKeycloakUserId(), "Utilisateur inconnu"));
-                        logMap.put("endpoint", usageLog.getEndpoint());
-                        logMap.put("searchTerm", usageLog.getSearchTerm());
-                        logMap.put("tokensUsed", usageLog.getTokensUsed());
-                        
-                        // NOUVELLE POLITIQUE : 
-                        // - costUsd = BASE_REQUEST_PRICE (dans la devise du marché) = prix de la requête
-                        // - tokenCostUsd = coût des tokens en USD (affiché uniquement aux admins)
-                        BigDecimal requestPrice = usageLog.getCostUsd() != null ? usageLog.getCostUsd() : BigDecimal.ZERO;
-                        BigDecimal baseCost = BigDecimal.valueOf(baseRequestPrice);
-                        
-                        // Calculer le coût des tokens en USD à partir de tokensUsed
-                        // Utiliser les mêmes tarifs que dans OpenAiService
-                        BigDecimal tokenCost = BigDecimal.ZERO;
-                        if (usageLog.getTokensUsed() != null && usageLog.getTokensUsed() > 0) {
-                            // Tarifs GPT-4o mini (au 1er sept 2025) - en USD
-                            final double PRICE_INPUT_USD = 0.15 / 1_000_000;   // $ par token input
-                            final double PRICE_OUTPUT_USD = 0.60 / 1_000_000;  // $ par token output
-                            
-                            // Estimation : on suppose un ratio moyen de 70% input / 30% output
-                            // (basé sur les observations typiques des requêtes)
-                            int totalTokens = usageLog.getTokensUsed();
-                            int estimatedPromptTokens = (int) (totalTokens * 0.7);
-                            int estimatedCompletionTokens = totalTokens - estimatedPromptTokens;
-                            
-                            // Calculer le coût des tokens
-                            double tokenCostDouble = (estimatedPromptTokens * PRICE_INPUT_USD) + (estimatedCompletionTokens * PRICE_OUTPUT_USD);
-                            tokenCost = BigDecimal.valueOf(tokenCostDouble);
-                            
-                            log.debug("Calcul coût tokens pour log ID {}: totalTokens={}, estimatedPrompt={}, estimatedCompletion={}, tokenCost={}", 
-                                usageLog.getId(), totalTokens, estimatedPromptTokens, estimatedCompletionTokens, tokenCost);
-                        }
-                        
-                        // Log pour diagnostic
-                        log.debug("Calcul coût pour log ID {}: requestPrice={} (devise marché), baseCost={}, tokensUsed={}, tokenCostUsd={}", 
-                            usageLog.getId(), requestPrice, baseCost, usageLog.getTokensUsed(), tokenCost);
-                        
-                        // Arrondir à 5 décimales pour le coût des tokens, 3 décimales pour le prix de la requête
-                        BigDecimal tokenCostRounded = tokenCost.setScale(5, RoundingMode.HALF_UP);
-                        BigDecimal requestPriceRounded = requestPrice.setScale(3, RoundingMode.HALF_UP);
-                        
-                        logMap.put("tokenCostUsd", tokenCostRounded.doubleValue()); // Coût des tokens en USD (pour admins uniquement)
-                        logMap.put("totalCostUsd", requestPriceRounded.doubleValue()); // Prix de la requête dans devise marché
-                        logMap.put("baseCostUsd", baseCost.setScale(3, RoundingMode.HALF_UP).doubleValue()); // BASE_REQUEST_PRICE
-                        logMap.put("timestamp", usageLog.getTimestamp().toString());
-                        return logMap;
-                    })
-                    .collect(Collectors.toList());
+                    .map(usageLog -> toUsageLogMap(usageLog, resolveCollaboratorName(usageLog.getKeycloakUserId(), userNamesMap)))
+                    .toList();
+            
+            // Totaux de la période depuis les agrégats d'utilisation (indépendants de la page)
+            UsageTotals totals = usageRollupService.getTotals(periodStart, periodEnd, organization.getId(), null);
             
             Map<String, Object> response = new LinkedHashMap<>();
             response.put("organizationId", organization.getId());
             response.put("organizationName", organization.getName());
             response.put("startDate", startDateTime.toString());
             response.put("endDate", endDateTime.toString());
-            response.put("totalRequests", usageLogsWithNames.size());
+            response.put("totalRequests", totals.requestCount());
+            response.put("totalTokens", totals.tokensUsed());
+            response.put("totalCostUsd", totals.costUsd().doubleValue());
             response.put("usageLogs", usageLogsWithNames);
+            response.put("nextCursor", logs.size() == pageSize
+                    ? UsageLogCursor.after(logs.get(logs.size() - 1)).encode()
+                    : null);
             
             return ResponseEntity.ok(response);
         } catch (IllegalArgumentException e) {
@@ -443,6 +402,174 @@ public class OrganizationAccountController {
         }
     }
 
+    @GetMapping("/usage-logs/export")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(
+            summary = "Exporter les requêtes de l'organisation",
+            description = "Exporte toutes les requêtes de la période, de la plus récente à la plus ancienne, au format ?format=csv (défaut) ou ndjson. " +
+                         "Le fichier est écrit au fil de la lecture en base, sans limite de volume. " +
+                         "Paramètres optionnels: ?startDate=... et ?endDate=... pour filtrer par période (format: yyyy-MM-dd).",
+            security = @SecurityRequirement(name = "bearerAuth")
+    )
+    public void exportOrganizationUsageLogs(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
+        String organizationUserId = getCurrentUserId();
+        if (organizationUserId == null) {
+            response.sendError(HttpStatus.UNAUTHORIZED.value(), "Authentification requise");
+            return;
+        }
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if (!ndjson && !"csv".equalsIgnoreCase(format)) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Format d'export inconnu: " + format + " (csv ou ndjson)");
+            return;
+        }
+        OrganizationDto organization;
+        try {
+            organization = organizationService.getOrganizationByKeycloakUserId(organizationUserId);
+        } catch (IllegalArgumentException e) {
+            log.warn("Export des logs d'utilisation refusé: {}", e.getMessage());
+            response.sendError(HttpStatus.FORBIDDEN.value(), e.getMessage());
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        LocalDate periodStart = startDate != null && endDate != null ? startDate : today.withDayOfMonth(1);
+        LocalDate periodEnd = startDate != null && endDate != null ? endDate : today.withDayOfMonth(today.lengthOfMonth());
+
+        String filename = "requetes-" + organization.getId() + "-" + periodStart + "_" + periodEnd + (ndjson ? ".ndjson" : ".csv");
+        response.setContentType(ndjson ? "application/x-ndjson" : "text/csv");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+
+        // Écriture ligne à ligne pendant le parcours du curseur : rien n'est accumulé en mémoire
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        if (!ndjson) {
+            writer.write(String.join(",", USAGE_LOG_EXPORT_COLUMNS));
+            writer.write('\n');
+        }
+        Map<String, String> userNamesMap = new HashMap<>();
+        long[] count = {0};
+        usageLogService.streamUsageLogsByOrganization(organization.getId(),
+                periodStart.atStartOfDay(), periodEnd.atTime(LocalTime.MAX), usageLog -> {
+                    Map<String, Object> row = toUsageLogMap(usageLog,
+                            resolveCollaboratorName(usageLog.getKeycloakUserId(), userNamesMap));
+                    try {
+                        writer.write(ndjson ? objectMapper.writeValueAsString(row) : toCsvLine(row));
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+        writer.flush();
+        log.info("Export {} des logs d'utilisation de l'organisation {} : {} lignes ({} - {})",
+                ndjson ? "NDJSON" : "CSV", organization.getId(), count[0], periodStart, periodEnd);
+    }
+
+    /**
+     * Nom affiché d'un collaborateur, résolu une seule fois par requête HTTP (cache fourni par l'appelant,
+     * lui-même alimenté par l'annuaire Keycloak en cache).
+     */
+    private String resolveCollaboratorName(String keycloakUserId, Map<String, String> userNamesMap) {
+        return userNamesMap.computeIfAbsent(keycloakUserId, id -> {
+            try {
+                UserRepresentation user = keycloakAdminService.getUserRepresentation(id);
+                return user != null ? collaboratorName(user) : "Utilisateur inconnu";
+            } catch (Exception e) {
+                log.warn("Impossible de récupérer les informations de l'utilisateur {}: {}", id, e.getMessage());
+                return "Utilisateur inconnu";
+            }
+        });
+    }
+
+    private static String collaboratorName(UserRepresentation user) {
+        String firstName = user.getFirstName();
+        String lastName = user.getLastName();
+        return (firstName != null && lastName != null)
+                ? firstName + " " + lastName
+                : (firstName != null ? firstName : (lastName != null ? lastName : user.getUsername()));
+    }
+
+    /**
+     * Ligne de log exposée à l'organisation (JSON paginé et exports), clés dans l'ordre de USAGE_LOG_EXPORT_COLUMNS.
+     */
+    private Map<String, Object> toUsageLogMap(UsageLog usageLog, String collaboratorName) {
+        Map<String, Object> logMap = new LinkedHashMap<>();
+        logMap.put("id", usageLog.getId());
+        logMap.put("timestamp", usageLog.getTimestamp().toString());
+        logMap.put("keycloakUserId", usageLog.getKeycloakUserId());
+        logMap.put("collaboratorName", collaboratorName);
+        logMap.put("endpoint", usageLog.getEndpoint());
+        logMap.put("searchTerm", usageLog.getSearchTerm());
+        logMap.put("tokensUsed", usageLog.getTokensUsed());
+        
+        // NOUVELLE POLITIQUE : 
+        // - costUsd = BASE_REQUEST_PRICE (dans la devise du marché) = prix de la requête
+        // - tokenCostUsd = coût des tokens en USD (affiché uniquement aux admins)
+        BigDecimal requestPrice = usageLog.getCostUsd() != null ? usageLog.getCostUsd() : BigDecimal.ZERO;
+        BigDecimal baseCost = BigDecimal.valueOf(baseRequestPrice);
+        
+        // Calculer le coût des tokens en USD à partir de tokensUsed
+        // Utiliser les mêmes tarifs que dans OpenAiService
+        BigDecimal tokenCost = BigDecimal.ZERO;
+        if (usageLog.getTokensUsed() != null && usageLog.getTokensUsed() > 0) {
+            // Tarifs GPT-4o mini (au 1er sept 2025) - en USD
+            final double PRICE_INPUT_USD = 0.15 / 1_000_000;   // $ par token input
+            final double PRICE_OUTPUT_USD = 0.60 / 1_000_000;  // $ par token output
+            
+            // Estimation : on suppose un ratio moyen de 70% input / 30% output
+            // (basé sur les observations typiques des requêtes)
+            int totalTokens = usageLog.getTokensUsed();
+            int estimatedPromptTokens = (int) (totalTokens * 0.7);
+            int estimatedCompletionTokens = totalTokens - estimatedPromptTokens;
+            
+            // Calculer le coût des tokens
+            double tokenCostDouble = (estimatedPromptTokens * PRICE_INPUT_USD) + (estimatedCompletionTokens * PRICE_OUTPUT_USD);
+            tokenCost = BigDecimal.valueOf(tokenCostDouble);
+        }
+        
+        // Arrondir à 5 décimales pour le coût des tokens, 3 décimales pour le prix de la requête
+        BigDecimal tokenCostRounded = tokenCost.setScale(5, RoundingMode.HALF_UP);
+        BigDecimal requestPriceRounded = requestPrice.setScale(3, RoundingMode.HALF_UP);
+        
+        logMap.put("tokenCostUsd", tokenCostRounded.doubleValue()); // Coût des tokens en USD (pour admins uniquement)
+        logMap.put("totalCostUsd", requestPriceRounded.doubleValue()); // Prix de la requête dans devise marché
+        logMap.put("baseCostUsd", baseCost.setScale(3, RoundingMode.HALF_UP).doubleValue()); // BASE_REQUEST_PRICE
+        return logMap;
+    }
+
+    private static String toCsvLine(Map<String, Object> row) {
+        StringBuilder line = new StringBuilder();
+        for (String column : USAGE_LOG_EXPORT_COLUMNS) {
+            if (!line.isEmpty()) {
+                line.append(',');
+            }
+            line.append(csvField(row.get(column)));
+        }
+        return line.toString();
+    }
+
+    /**
+     * Champ CSV (RFC 4180). Les valeurs saisies commençant par =, +, - ou @ sont préfixées d'une apostrophe
+     * pour ne pas être interprétées comme formules par les tableurs.
+     */
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (value instanceof String && !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
     private String getCurrentUserId() {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -7,11 +7,14 @@ import com.muhend.backend.organization.repository.OrganizationUserRepository;
 import com.muhend.backend.usage.model.UsageLog;
 import com.muhend.backend.usage.repository.UsageLogRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Mapper pour convertir les entités Organisation en DTO.
@@ -104,6 +107,28 @@ public class OrganizationMapper {
      * Convertit une OrganizationUser en DTO.
      */
     public OrganizationUserDto toOrganizationUserDto(OrganizationUser organizationUser) {
+        UserRepresentation userRepresentation = null;
+        try {
+            userRepresentation = keycloakAdminService.getUserRepresentation(organizationUser.getKeycloakUserId());
+        } catch (Exception e) {
+            log.warn("Impossible de récupérer les informations utilisateur pour {}: {}",
+                    organizationUser.getKeycloakUserId(), e.getMessage());
+        }
+        return toOrganizationUserDto(organizationUser, userRepresentation);
+    }
+
+    /**
+     * Convertit une liste d'OrganizationUser en DTO avec une seule lecture groupée de l'annuaire Keycloak.
+     */
+    public List<OrganizationUserDto> toOrganizationUserDtos(List<OrganizationUser> organizationUsers) {
+        Map<String, UserRepresentation> users = keycloakAdminService.getUserRepresentations(
+                organizationUsers.stream().map(OrganizationUser::getKeycloakUserId).toList());
+        return organizationUsers.stream()
+                .map(ou -> toOrganizationUserDto(ou, users.get(ou.getKeycloakUserId())))
+                .collect(Collectors.toList());
+    }
+
+    private OrganizationUserDto toOrganizationUserDto(OrganizationUser organizationUser, UserRepresentation userRepresentation) {
         OrganizationUserDto dto = new OrganizationUserDto();
         dto.setId(organizationUser.getId());
         dto.setOrganizationId(organizationUser.getOrganization().getId());
@@ -114,21 +139,13 @@ public class OrganizationMapper {
         dto.setFirstName(null);
         dto.setLastName(null);
         dto.setEnabled(null);
-        try {
-            var userRepresentation = keycloakAdminService.getUserRepresentation(organizationUser.getKeycloakUserId());
-            if (userRepresentation != null) {
-                dto.setUsername(userRepresentation.getUsername());
-                dto.setEmail(userRepresentation.getEmail());
-                dto.setFirstName(userRepresentation.getFirstName());
-                dto.setLastName(userRepresentation.getLastName());
-                dto.setEnabled(userRepresentation.isEnabled() != null && userRepresentation.isEnabled());
-            } else {
-                dto.setUsername("N/A");
-                dto.setEnabled(false);
-            }
-        } catch (Exception e) {
-            log.warn("Impossible de récupérer les informations utilisateur pour {}: {}",
-                    organizationUser.getKeycloakUserId(), e.getMessage());
+        if (userRepresentation != null) {
+            dto.setUsername(userRepresentation.getUsername());
+            dto.setEmail(userRepresentation.getEmail());
+            dto.setFirstName(userRepresentation.getFirstName());
+            dto.setLastName(userRepresentation.getLastName());
+            dto.setEnabled(userRepresentation.isEnabled() != null && userRepresentation.isEnabled());
+        } else {
             dto.setUsername("N/A");
             dto.setEnabled(false);
         }
@@ -141,19 +158,23 @@ public class OrganizationMapper {
      * Calcule la somme de crédits consommés à partir d'une liste de logs d'utilisation.
      */
     public long computeCredits(List<UsageLog> logs) {
-        return logs.stream().mapToLong(log -> {
-            String ep = log.getEndpoint();
-            if (ep == null)
-                return creditsDefault;
-            if (ep.contains("positions10"))
-                return creditsPositions10;
-            if (ep.contains("positions6"))
-                return creditsPositions6;
-            if (ep.contains("decode-p10"))
-                return creditsDecodep10;
-            if (ep.contains("decode"))
-                return creditsDecode;
+        return logs.stream().mapToLong(log -> creditsFor(log.getEndpoint())).sum();
+    }
+
+    /**
+     * Crédits consommés par un appel à un endpoint.
+     */
+    public long creditsFor(String ep) {
+        if (ep == null)
             return creditsDefault;
-        }).sum();
+        if (ep.contains("positions10"))
+            return creditsPositions10;
+        if (ep.contains("positions6"))
+            return creditsPositions6;
+        if (ep.contains("decode-p10"))
+            return creditsDecodep10;
+        if (ep.contains("decode"))
+            return creditsDecode;
+        return creditsDefault;
     }
 }
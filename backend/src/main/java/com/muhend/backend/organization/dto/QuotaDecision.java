@@ -0,0 +1,16 @@
+package com.muhend.backend.organization.dto;
+
+/**
+ * Décision « l'organisation peut-elle lancer une recherche ? » et crédits restants avant le quota.
+ * remainingCredits vaut UNLIMITED sans quota mensuel, 0 si la décision est négative.
+ */
+public record QuotaDecision(boolean canSearch, long remainingCredits) {
+
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    public static final QuotaDecision DENIED = new QuotaDecision(false, 0);
+
+    public static QuotaDecision unlimited() {
+        return new QuotaDecision(true, UNLIMITED);
+    }
+}
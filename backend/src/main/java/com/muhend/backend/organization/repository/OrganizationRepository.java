@@ -1,6 +1,7 @@
 package com.muhend.backend.organization.repository;
 
 import com.muhend.backend.organization.model.Organization;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -43,6 +44,12 @@ public interface OrganizationRepository extends JpaRepository<Organization, Long
      * Trouve une organisation par l'identifiant Keycloak de son compte principal.
      */
     Optional<Organization> findByKeycloakUserId(String keycloakUserId);
+
+    /**
+     * IDs des organisations strictement après afterId, par ordre croissant (lots de la facturation mensuelle).
+     */
+    @Query("SELECT o.id FROM Organization o WHERE o.id > :afterId ORDER BY o.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
     
     /**
      * Trouve les organisations avec un changement de plan en attente dont la date d'effet est arrivée ou passée.
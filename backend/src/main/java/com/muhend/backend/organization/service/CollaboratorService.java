@@ -24,15 +24,18 @@ public class CollaboratorService {
     private final OrganizationUserRepository organizationUserRepository;
     private final KeycloakAdminService keycloakAdminService;
     private final OrganizationMapper organizationMapper;
+    private final QuotaDecisionCache quotaDecisionCache;
 
     public CollaboratorService(OrganizationRepository organizationRepository,
                                OrganizationUserRepository organizationUserRepository,
                                KeycloakAdminService keycloakAdminService,
-                               OrganizationMapper organizationMapper) {
+                               OrganizationMapper organizationMapper,
+                               QuotaDecisionCache quotaDecisionCache) {
         this.organizationRepository = organizationRepository;
         this.organizationUserRepository = organizationUserRepository;
         this.keycloakAdminService = keycloakAdminService;
         this.organizationMapper = organizationMapper;
+        this.quotaDecisionCache = quotaDecisionCache;
     }
 
     /**
@@ -52,6 +55,7 @@ public class CollaboratorService {
         organizationUser.setOrganization(organization);
         organizationUser.setKeycloakUserId(keycloakUserId);
         organizationUser = organizationUserRepository.save(organizationUser);
+        quotaDecisionCache.invalidateUser(keycloakUserId);
 
         log.info("Utilisateur {} ajouté à l'organisation {} ({})",
                 keycloakUserId, organizationId, organization.getName());
@@ -69,6 +73,7 @@ public class CollaboratorService {
         }
 
         organizationUserRepository.deleteByOrganizationIdAndKeycloakUserId(organizationId, keycloakUserId);
+        quotaDecisionCache.invalidateUser(keycloakUserId);
         log.info("Utilisateur {} retiré de l'organisation {}", keycloakUserId, organizationId);
     }
 
@@ -141,6 +146,7 @@ public class CollaboratorService {
         }
 
         organizationUserRepository.deleteByOrganizationIdAndKeycloakUserId(organizationId, keycloakUserId);
+        quotaDecisionCache.invalidateUser(keycloakUserId);
         log.info("Collaborateur {} retiré de l'organisation {}", keycloakUserId, organizationId);
 
         try {
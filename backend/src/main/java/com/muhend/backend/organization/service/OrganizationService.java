@@ -43,19 +43,22 @@ public class OrganizationService {
     private final PricingPlanService pricingPlanService;
     private final EmailService emailService;
     private final OrganizationMapper organizationMapper;
+    private final QuotaDecisionCache quotaDecisionCache;
 
     public OrganizationService(OrganizationRepository organizationRepository,
             OrganizationUserRepository organizationUserRepository,
             KeycloakAdminService keycloakAdminService,
             PricingPlanService pricingPlanService,
             EmailService emailService,
-            OrganizationMapper organizationMapper) {
+            OrganizationMapper organizationMapper,
+            QuotaDecisionCache quotaDecisionCache) {
         this.organizationRepository = organizationRepository;
         this.organizationUserRepository = organizationUserRepository;
         this.keycloakAdminService = keycloakAdminService;
         this.pricingPlanService = pricingPlanService;
         this.emailService = emailService;
         this.organizationMapper = organizationMapper;
+        this.quotaDecisionCache = quotaDecisionCache;
     }
 
     // =====================================================================
@@ -223,13 +226,10 @@ public class OrganizationService {
                 .orElseThrow(() -> new IllegalArgumentException(
                         "Organisation non trouvée pour cet identifiant utilisateur."));
         String ownerKeycloakUserId = organization.getKeycloakUserId();
-        return organizationUserRepository.findByOrganizationId(organization.getId()).stream()
-                .map(ou -> {
-                    OrganizationUserDto dto = organizationMapper.toOrganizationUserDto(ou);
-                    dto.setIsOwner(ownerKeycloakUserId != null && ownerKeycloakUserId.equals(ou.getKeycloakUserId()));
-                    return dto;
-                })
-                .collect(Collectors.toList());
+        List<OrganizationUserDto> users = organizationMapper.toOrganizationUserDtos(
+                organizationUserRepository.findByOrganizationId(organization.getId()));
+        users.forEach(dto -> dto.setIsOwner(ownerKeycloakUserId != null && ownerKeycloakUserId.equals(dto.getKeycloakUserId())));
+        return users;
     }
 
     /**
@@ -245,9 +245,7 @@ public class OrganizationService {
      * Récupère tous les utilisateurs d'une organisation.
      */
     public List<OrganizationUserDto> getUsersByOrganization(Long organizationId) {
-        return organizationUserRepository.findByOrganizationId(organizationId).stream()
-                .map(organizationMapper::toOrganizationUserDto)
-                .collect(Collectors.toList());
+        return organizationMapper.toOrganizationUserDtos(organizationUserRepository.findByOrganizationId(organizationId));
     }
 
     /**
@@ -312,6 +310,7 @@ public class OrganizationService {
 
         organization.setEnabled(false);
         organization = organizationRepository.save(organization);
+        quotaDecisionCache.invalidateOrganization(organizationId);
 
         log.info("Organisation {} (ID: {}) désactivée par un administrateur", organization.getName(), organizationId);
 
@@ -333,6 +332,7 @@ public class OrganizationService {
 
         organization.setEnabled(true);
         organization = organizationRepository.save(organization);
+        quotaDecisionCache.invalidateOrganization(organizationId);
 
         log.info("Organisation {} (ID: {}) réactivée par un administrateur", organization.getName(), organizationId);
 
@@ -6,6 +6,7 @@ import com.muhend.backend.invoice.service.InvoiceService;
 import com.muhend.backend.organization.dto.OrganizationDto;
 import com.muhend.backend.organization.dto.OrganizationMapper;
 import com.muhend.backend.organization.dto.QuotaCheckResult;
+import com.muhend.backend.organization.dto.QuotaDecision;
 import com.muhend.backend.organization.model.Organization;
 import com.muhend.backend.organization.model.OrganizationUser;
 import com.muhend.backend.organization.repository.OrganizationRepository;
@@ -13,6 +14,8 @@ import com.muhend.backend.organization.repository.OrganizationUserRepository;
 import com.muhend.backend.pricing.dto.PricingPlanDto;
 import com.muhend.backend.pricing.service.PricingPlanService;
 import com.muhend.backend.usage.repository.UsageLogRepository;
+import com.muhend.backend.usage.service.UsageLogPartitionService;
+import com.muhend.backend.usage.service.UsageRollupService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -42,6 +45,9 @@ public class PlanChangeService {
     private final CollaboratorService collaboratorService;
     private final QuotaAlertRepository quotaAlertRepository;
     private final OrganizationMapper organizationMapper;
+    private final UsageRollupService usageRollupService;
+    private final QuotaDecisionCache quotaDecisionCache;
+    private final UsageLogPartitionService usageLogPartitionService;
 
     public PlanChangeService(OrganizationRepository organizationRepository,
                              OrganizationUserRepository organizationUserRepository,
@@ -52,7 +58,10 @@ public class PlanChangeService {
                              QuotaService quotaService,
                              CollaboratorService collaboratorService,
                              QuotaAlertRepository quotaAlertRepository,
-                             OrganizationMapper organizationMapper) {
+                             OrganizationMapper organizationMapper,
+                             UsageRollupService usageRollupService,
+                             QuotaDecisionCache quotaDecisionCache,
+                             UsageLogPartitionService usageLogPartitionService) {
         this.organizationRepository = organizationRepository;
         this.organizationUserRepository = organizationUserRepository;
         this.usageLogRepository = usageLogRepository;
@@ -63,6 +72,9 @@ public class PlanChangeService {
         this.collaboratorService = collaboratorService;
         this.quotaAlertRepository = quotaAlertRepository;
         this.organizationMapper = organizationMapper;
+        this.usageRollupService = usageRollupService;
+        this.quotaDecisionCache = quotaDecisionCache;
+        this.usageLogPartitionService = usageLogPartitionService;
     }
 
     /**
@@ -181,6 +193,7 @@ public class PlanChangeService {
         }
 
         organization = organizationRepository.save(organization);
+        quotaDecisionCache.invalidateOrganization(organizationId);
         log.info("💾 Plan tarifaire changé pour l'organisation {} (ID: {}): planId={}, nouveau quota={}",
                 organization.getName(), organizationId, pricingPlanId, organization.getMonthlyQuota());
 
@@ -225,12 +238,15 @@ public class PlanChangeService {
         organization.setMonthlyPlanEndDate(today.plusDays(30));
 
         int deletedLogs = usageLogRepository.deleteByOrganizationId(organizationId);
+        usageRollupService.deleteByOrganizationId(organizationId);
+        usageLogPartitionService.purgeArchives(List.of(organizationId), List.of());
         log.info("Historique effacé pour forcer la consommation à 0 : {} logs supprimés.", deletedLogs);
 
         organization.setTrialRenewCount(
                 organization.getTrialRenewCount() == null ? 1 : organization.getTrialRenewCount() + 1);
 
         organization = organizationRepository.save(organization);
+        quotaDecisionCache.invalidateOrganization(organizationId);
         collaboratorService.reactivateAllCollaborators(organization);
 
         log.info("Plan réinitialisé pour l'organisation {} (ID: {}). Nouveau cycle: {} -> {}, Expire le: {}, trialRenewCount={}",
@@ -260,6 +276,7 @@ public class PlanChangeService {
         org.setPendingMonthlyPlanChangeDate(null);
         org.setPendingPayPerRequestPlanId(null);
         org.setPendingPayPerRequestChangeDate(null);
+        quotaDecisionCache.invalidateOrganization(org.getId());
     }
 
     /**
@@ -293,6 +310,9 @@ public class PlanChangeService {
         organizationRepository.save(org);
 
         int deleted = usageLogRepository.deleteByOrganizationId(organizationId);
+        usageRollupService.deleteByOrganizationId(organizationId);
+        usageLogPartitionService.purgeArchives(List.of(organizationId), List.of());
+        quotaDecisionCache.invalidateOrganization(organizationId);
         log.info("Plan {} activé pour l'organisation {} — {} logs supprimés pour le nouveau cycle",
                 planId, organizationId, deleted);
 
@@ -428,20 +448,27 @@ public class PlanChangeService {
      */
     @Transactional(readOnly = true)
     public boolean canOrganizationMakeRequests(Organization organization) {
+        return evaluateRequests(organization).canSearch();
+    }
+
+    /**
+     * Décide si une organisation peut effectuer des requêtes et calcule les crédits restants avant son quota.
+     */
+    public QuotaDecision evaluateRequests(Organization organization) {
         if (!Boolean.TRUE.equals(organization.getEnabled())) {
             log.debug("Organisation {} désactivée par un administrateur", organization.getId());
-            return false;
+            return QuotaDecision.DENIED;
         }
 
         if (isTrialExpired(organization)) {
-            return false;
+            return QuotaDecision.DENIED;
         }
 
         if (organization.getMonthlyPlanEndDate() != null
                 && LocalDate.now().isAfter(organization.getMonthlyPlanEndDate())) {
             log.debug("Organisation {} bloquée : plan mensuel expiré le {}",
                     organization.getId(), organization.getMonthlyPlanEndDate());
-            return false;
+            return QuotaDecision.DENIED;
         }
 
         Integer monthlyQuota = organization.getMonthlyQuota();
@@ -470,11 +497,12 @@ public class PlanChangeService {
             if (currentUsage >= monthlyQuota) {
                 log.debug("Organisation {} bloquée : quota de crédits épuisé ({}/{})",
                         organization.getId(), currentUsage, monthlyQuota);
-                return false;
+                return QuotaDecision.DENIED;
             }
+            return new QuotaDecision(true, monthlyQuota - currentUsage);
         }
 
-        return true;
+        return QuotaDecision.unlimited();
     }
 
     /**
@@ -482,12 +510,20 @@ public class PlanChangeService {
      */
     @Transactional
     public boolean canOrganizationMakeRequests(Long organizationId) {
+        return evaluateRequests(organizationId).canSearch();
+    }
+
+    /**
+     * Décision de quota d'une organisation à partir de son ID (chargée par QuotaDecisionCache en cas d'absence).
+     */
+    @Transactional
+    public QuotaDecision evaluateRequests(Long organizationId) {
         Optional<Organization> organizationOpt = organizationRepository.findById(organizationId);
         if (organizationOpt.isEmpty()) {
             log.warn("Organisation {} introuvable lors de la vérification de l'essai", organizationId);
-            return false;
+            return QuotaDecision.DENIED;
         }
-        return canOrganizationMakeRequests(organizationOpt.get());
+        return evaluateRequests(organizationOpt.get());
     }
 
     /**
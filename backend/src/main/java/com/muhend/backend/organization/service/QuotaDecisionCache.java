@@ -0,0 +1,145 @@
+package com.muhend.backend.organization.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muhend.backend.organization.dto.QuotaDecision;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caches de /internal/quota-check, appelé avant chaque recherche :
+ * - utilisateur → organisation (quota.cache.user-ttl) ;
+ * - organisation → décision de quota avec les crédits restants (quota.cache.decision-ttl).
+ *
+ * Une décision positive est décrémentée à chaque log d'utilisation enregistré sur cette instance ;
+ * elle est invalidée quand les crédits restants s'épuisent (franchissement du quota). Les changements
+ * de plan, paiements, activations/désactivations et alertes de quota l'invalident explicitement,
+ * aussi après le commit de la transaction en cours. Le TTL court couvre les autres instances du backend
+ * et les échéances (fin d'essai, fin de cycle).
+ *
+ * Le cache ne connaît pas les services : les chargements sont fournis par l'appelant.
+ */
+@Service
+@Slf4j
+public class QuotaDecisionCache {
+
+    private final Cache<String, Long> organizationByUser;
+    private final Cache<Long, Entry> decisions;
+
+    public QuotaDecisionCache(MeterRegistry meterRegistry,
+                              @Value("${quota.cache.user-ttl:10m}") Duration userTtl,
+                              @Value("${quota.cache.decision-ttl:30s}") Duration decisionTtl,
+                              @Value("${quota.cache.maximum-size:10000}") long maximumSize) {
+        this.organizationByUser = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(userTtl)
+                .recordStats()
+                .build();
+        this.decisions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(decisionTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, organizationByUser, "quota.user-organization");
+        CaffeineCacheMetrics.monitor(meterRegistry, decisions, "quota.decision");
+    }
+
+    /**
+     * Décision en cache avec ses crédits restants (décrémentés sans recharger l'organisation).
+     */
+    private record Entry(boolean canSearch, AtomicLong remainingCredits) {
+
+        static Entry of(QuotaDecision decision) {
+            return new Entry(decision.canSearch(), new AtomicLong(decision.remainingCredits()));
+        }
+    }
+
+    /**
+     * Organisation d'un utilisateur ; une exception du chargement (utilisateur sans organisation) n'est pas mise en cache.
+     */
+    public Long organizationIdFor(String keycloakUserId, Function<String, Long> loader) {
+        return organizationByUser.get(keycloakUserId, loader);
+    }
+
+    /**
+     * Indique si l'organisation peut lancer une recherche.
+     */
+    public boolean canSearch(Long organizationId, Function<Long, QuotaDecision> loader) {
+        return decisions.get(organizationId, id -> Entry.of(loader.apply(id))).canSearch();
+    }
+
+    /**
+     * Décompte des crédits consommés par un log d'utilisation : la décision est invalidée
+     * dès que les crédits restants atteignent zéro.
+     */
+    public void recordConsumption(Long organizationId, long credits) {
+        if (organizationId == null) {
+            return;
+        }
+        Entry entry = decisions.getIfPresent(organizationId);
+        if (entry == null || !entry.canSearch() || entry.remainingCredits().get() == QuotaDecision.UNLIMITED) {
+            return;
+        }
+        if (entry.remainingCredits().addAndGet(-credits) <= 0) {
+            log.debug("Quota atteint pour l'organisation {} : décision de quota invalidée", organizationId);
+            decisions.invalidate(organizationId);
+        }
+    }
+
+    /**
+     * Invalide la décision d'une organisation (plan, paiement, activation, alerte de quota).
+     */
+    public void invalidateOrganization(Long organizationId) {
+        if (organizationId == null) {
+            return;
+        }
+        decisions.invalidate(organizationId);
+        afterCommit(() -> decisions.invalidate(organizationId));
+    }
+
+    /**
+     * Invalide l'organisation associée à un utilisateur (ajout, retrait ou suppression d'un collaborateur).
+     */
+    public void invalidateUser(String keycloakUserId) {
+        if (keycloakUserId == null) {
+            return;
+        }
+        organizationByUser.invalidate(keycloakUserId);
+        afterCommit(() -> organizationByUser.invalidate(keycloakUserId));
+    }
+
+    /**
+     * Invalide tout (suppression d'organisation : ses utilisateurs ne sont pas connus individuellement).
+     */
+    public void invalidateAll() {
+        organizationByUser.invalidateAll();
+        decisions.invalidateAll();
+        afterCommit(() -> {
+            organizationByUser.invalidateAll();
+            decisions.invalidateAll();
+        });
+    }
+
+    /**
+     * Rejoue l'invalidation après le commit : une vérification concurrente aurait pu recharger l'état non encore validé.
+     */
+    private static void afterCommit(Runnable invalidation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+}
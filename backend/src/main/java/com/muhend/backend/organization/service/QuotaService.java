@@ -32,6 +32,7 @@ public class QuotaService {
     private final UsageLogRepository usageLogRepository;
     private final PricingPlanService pricingPlanService;
     private final OrganizationMapper organizationMapper;
+    private final QuotaDecisionCache quotaDecisionCache;
 
     @Value("${credits.positions10:15}")
     private int creditsPositions10;
@@ -47,11 +48,13 @@ public class QuotaService {
     public QuotaService(OrganizationRepository organizationRepository,
                         UsageLogRepository usageLogRepository,
                         PricingPlanService pricingPlanService,
-                        OrganizationMapper organizationMapper) {
+                        OrganizationMapper organizationMapper,
+                        QuotaDecisionCache quotaDecisionCache) {
         this.organizationRepository = organizationRepository;
         this.usageLogRepository = usageLogRepository;
         this.pricingPlanService = pricingPlanService;
         this.organizationMapper = organizationMapper;
+        this.quotaDecisionCache = quotaDecisionCache;
     }
 
     /**
@@ -275,6 +278,7 @@ public class QuotaService {
 
         organization.setMonthlyQuota(monthlyQuota);
         organization = organizationRepository.save(organization);
+        quotaDecisionCache.invalidateOrganization(organizationId);
 
         log.info("Quota mensuel mis à jour pour l'organisation {} (ID: {}): {} requêtes/mois",
                 organization.getName(), organizationId, monthlyQuota != null ? monthlyQuota : "illimité");
@@ -0,0 +1,12 @@
+package com.muhend.backend.pricing.event;
+
+/**
+ * Événement applicatif publié quand un catalogue tarifaire est modifié (plans ou profils de marché).
+ */
+public record PricingCatalogChangedEvent(Catalog catalog) {
+
+    public enum Catalog {
+        PRICING_PLANS,
+        MARKET_PROFILES
+    }
+}
@@ -0,0 +1,138 @@
+package com.muhend.backend.pricing.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muhend.backend.market.dto.MarketProfileDto;
+import com.muhend.backend.pricing.dto.PricingPlanDto;
+import com.muhend.backend.pricing.event.PricingCatalogChangedEvent;
+import com.muhend.backend.pricing.event.PricingCatalogChangedEvent.Catalog;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Cache en lecture des plans tarifaires et des profils de marché, qui ne changent que quelques fois par an
+ * mais sont relus à chaque vérification de quota, alerte ou facture :
+ * - plans actifs par ID ;
+ * - listes de plans actifs par version de marché ;
+ * - listes de profils de marché (actifs / tous), les recherches par ID, version ou pays s'y font en mémoire.
+ *
+ * Chaque création ou modification vide le catalogue concerné, à nouveau après le commit, et publie un
+ * {@link PricingCatalogChangedEvent} relayé aux autres instances du backend par RabbitMQ. Le TTL
+ * (pricing.cache.ttl) borne l'écart si un message d'éviction est perdu.
+ *
+ * Les DTO en cache sont partagés : les appelants ne doivent pas les modifier.
+ */
+@Service
+@Slf4j
+public class PricingCatalogCache {
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final Cache<Long, Optional<PricingPlanDto>> activePlansById;
+    private final Cache<String, List<PricingPlanDto>> activePlansByMarket;
+    private final Cache<Boolean, List<MarketProfileDto>> marketProfiles;
+
+    public PricingCatalogCache(MeterRegistry meterRegistry,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${pricing.cache.ttl:1h}") Duration ttl,
+                               @Value("${pricing.cache.maximum-size:1000}") long maximumSize) {
+        this.eventPublisher = eventPublisher;
+        this.activePlansById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.activePlansByMarket = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.marketProfiles = Caffeine.newBuilder()
+                .maximumSize(2)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, activePlansById, "pricing.plans-by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, activePlansByMarket, "pricing.plans-by-market");
+        CaffeineCacheMetrics.monitor(meterRegistry, marketProfiles, "market.profiles");
+    }
+
+    // ==================== Lectures ====================
+
+    /**
+     * Plan actif d'ID donné ; un plan introuvable ou inactif est aussi mémorisé (vide).
+     */
+    public Optional<PricingPlanDto> activePlan(Long id, Function<Long, Optional<PricingPlanDto>> loader) {
+        return activePlansById.get(id, loader);
+    }
+
+    /**
+     * Liste non modifiable de plans actifs pour une clé de marché (construite par {@link PricingPlanService}).
+     */
+    public List<PricingPlanDto> activePlans(String marketKey, Function<String, List<PricingPlanDto>> loader) {
+        return activePlansByMarket.get(marketKey, key -> List.copyOf(loader.apply(key)));
+    }
+
+    /**
+     * Profils de marché triés par ordre d'affichage, actifs uniquement ou tous.
+     */
+    public List<MarketProfileDto> marketProfiles(boolean activeOnly, Function<Boolean, List<MarketProfileDto>> loader) {
+        return marketProfiles.get(activeOnly, key -> List.copyOf(loader.apply(key)));
+    }
+
+    // ==================== Évictions ====================
+
+    /**
+     * Vide les plans tarifaires après une création, une modification ou une suppression,
+     * sur cette instance et sur les autres.
+     */
+    public void evictPricingPlans() {
+        evict(Catalog.PRICING_PLANS);
+    }
+
+    /**
+     * Vide les profils de marché après une création, une modification ou une suppression,
+     * sur cette instance et sur les autres.
+     */
+    public void evictMarketProfiles() {
+        evict(Catalog.MARKET_PROFILES);
+    }
+
+    /**
+     * Éviction locale, sans nouvelle diffusion (message reçu d'une autre instance).
+     */
+    public void evictLocally(Catalog catalog) {
+        switch (catalog) {
+            case PRICING_PLANS -> {
+                activePlansById.invalidateAll();
+                activePlansByMarket.invalidateAll();
+            }
+            case MARKET_PROFILES -> marketProfiles.invalidateAll();
+        }
+        log.debug("Catalogue {} vidé", catalog);
+    }
+
+    private void evict(Catalog catalog) {
+        evictLocally(catalog);
+        // Une lecture concurrente a pu recharger l'état non encore validé
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictLocally(catalog);
+                }
+            });
+        }
+        eventPublisher.publishEvent(new PricingCatalogChangedEvent(catalog));
+    }
+}
@@ -9,7 +9,6 @@ import com.muhend.backend.pricing.model.PricingPlan;
 import com.muhend.backend.pricing.repository.PricingPlanRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
@@ -25,64 +24,86 @@ import java.util.stream.Collectors;
 @Slf4j
 public class PricingPlanService {
     
+    /** Clés du cache des listes de plans actifs (voir {@link PricingCatalogCache}). */
+    private static final String ALL_MARKETS_KEY = "*";
+    private static final String MARKET_KEY_PREFIX = "market:";
+    private static final String EXACT_MARKET_KEY_PREFIX = "exact:";
+    
     private final PricingPlanRepository pricingPlanRepository;
     private final OrganizationRepository organizationRepository;
+    private final PricingCatalogCache pricingCatalogCache;
     
     public PricingPlanService(PricingPlanRepository pricingPlanRepository,
-                             OrganizationRepository organizationRepository) {
+                             OrganizationRepository organizationRepository,
+                             PricingCatalogCache pricingCatalogCache) {
         this.pricingPlanRepository = pricingPlanRepository;
         this.organizationRepository = organizationRepository;
+        this.pricingCatalogCache = pricingCatalogCache;
     }
     
     /**
      * Récupère tous les plans tarifaires actifs, triés par ordre d'affichage.
-     * Si marketVersion est fourni, filtre par version de marché.
+     * Si marketVersion est fourni, filtre par version de marché (plans DEFAULT inclus).
+     * La liste retournée est en cache et non modifiable.
      */
     @Transactional(readOnly = true)
     public List<PricingPlanDto> getActivePricingPlans(String marketVersion) {
         try {
-            List<PricingPlan> plans;
-            log.info("🔍 Récupération des plans tarifaires - marketVersion reçu: '{}'", marketVersion);
-            if (marketVersion != null && !marketVersion.isEmpty() && !marketVersion.trim().isEmpty()) {
-                String trimmedVersion = marketVersion.trim();
-                log.info("🔍 Utilisation de marketVersion trim: '{}'", trimmedVersion);
-
-                // Inclure les plans du marché demandé ET les plans DEFAULT
-                List<String> versions = trimmedVersion.equals("DEFAULT")
-                        ? List.of("DEFAULT")
-                        : Arrays.asList(trimmedVersion, "DEFAULT");
-                plans = pricingPlanRepository.findByMarketVersionInAndIsActiveTrueAndIsCustomFalseOrderByDisplayOrderAsc(versions);
-                log.info("✅ {} plan(s) trouvé(s) pour marketVersions='{}'", plans.size(), versions);
-                
-                if (plans.isEmpty()) {
-                    log.warn("⚠️ Aucun plan trouvé pour marketVersion='{}'. Vérifiez que les plans ont bien market_version='{}' en base de données.", trimmedVersion, trimmedVersion);
-                    // Log tous les plans actifs pour déboguer
-                    List<PricingPlan> allActivePlans = pricingPlanRepository.findByIsActiveTrueOrderByDisplayOrderAsc();
-                    log.warn("⚠️ Plans actifs disponibles en base: {}", 
-                        allActivePlans.stream()
-                            .map(p -> String.format("%s (market_version='%s', is_custom=%s)", 
-                                p.getName(), p.getMarketVersion(), p.getIsCustom()))
-                            .collect(Collectors.joining(", ")));
-                } else {
-                    log.info("✅ Plans trouvés: {}", 
-                        plans.stream()
-                            .map(p -> String.format("%s (market_version='%s')", p.getName(), p.getMarketVersion()))
-                            .collect(Collectors.joining(", ")));
-                }
-            } else {
-                // Par défaut, récupérer tous les plans actifs (comportement existant)
-                plans = pricingPlanRepository.findByIsActiveTrueOrderByDisplayOrderAsc();
-                log.warn("⚠️ marketVersion non fourni ou vide - Récupération de tous les plans actifs: {}", plans.size());
-            }
-            return plans.stream()
-                    .map(this::toDto)
-                    .collect(Collectors.toList());
+            return pricingCatalogCache.activePlans(activeMarketKey(marketVersion), this::loadActivePricingPlans);
         } catch (Exception e) {
             log.error("Erreur lors de la récupération des plans tarifaires actifs depuis la base de données", e);
             throw e; // Re-lancer l'exception pour que le controller puisse la gérer
         }
     }
     
+    private static String activeMarketKey(String marketVersion) {
+        if (marketVersion == null || marketVersion.trim().isEmpty()) {
+            return ALL_MARKETS_KEY;
+        }
+        return MARKET_KEY_PREFIX + marketVersion.trim();
+    }
+    
+    /**
+     * Chargement des plans actifs pour une clé de {@link #activeMarketKey(String)} (absence du cache).
+     */
+    private List<PricingPlanDto> loadActivePricingPlans(String marketKey) {
+        List<PricingPlan> plans;
+        if (marketKey.startsWith(MARKET_KEY_PREFIX)) {
+            String trimmedVersion = marketKey.substring(MARKET_KEY_PREFIX.length());
+            log.info("🔍 Chargement des plans tarifaires pour marketVersion: '{}'", trimmedVersion);
+
+            // Inclure les plans du marché demandé ET les plans DEFAULT
+            List<String> versions = trimmedVersion.equals("DEFAULT")
+                    ? List.of("DEFAULT")
+                    : Arrays.asList(trimmedVersion, "DEFAULT");
+            plans = pricingPlanRepository.findByMarketVersionInAndIsActiveTrueAndIsCustomFalseOrderByDisplayOrderAsc(versions);
+            log.info("✅ {} plan(s) trouvé(s) pour marketVersions='{}'", plans.size(), versions);
+            
+            if (plans.isEmpty()) {
+                log.warn("⚠️ Aucun plan trouvé pour marketVersion='{}'. Vérifiez que les plans ont bien market_version='{}' en base de données.", trimmedVersion, trimmedVersion);
+                // Log tous les plans actifs pour déboguer
+                List<PricingPlan> allActivePlans = pricingPlanRepository.findByIsActiveTrueOrderByDisplayOrderAsc();
+                log.warn("⚠️ Plans actifs disponibles en base: {}", 
+                    allActivePlans.stream()
+                        .map(p -> String.format("%s (market_version='%s', is_custom=%s)", 
+                            p.getName(), p.getMarketVersion(), p.getIsCustom()))
+                        .collect(Collectors.joining(", ")));
+            } else {
+                log.info("✅ Plans trouvés: {}", 
+                    plans.stream()
+                        .map(p -> String.format("%s (market_version='%s')", p.getName(), p.getMarketVersion()))
+                        .collect(Collectors.joining(", ")));
+            }
+        } else {
+            // Par défaut, récupérer tous les plans actifs (comportement existant)
+            plans = pricingPlanRepository.findByIsActiveTrueOrderByDisplayOrderAsc();
+            log.warn("⚠️ marketVersion non fourni ou vide - Récupération de tous les plans actifs: {}", plans.size());
+        }
+        return plans.stream()
+                .map(this::toDto)
+                .collect(Collectors.toList());
+    }
+    
     /**
      * Récupère les plans personnalisés d'une organisation.
      */
@@ -104,20 +125,8 @@ public class PricingPlanService {
      */
     @Transactional(readOnly = true)
     public List<PricingPlanDto> getAvailablePricingPlansForOrganization(String marketVersion, Long organizationId) {
-        List<PricingPlan> plans;
-        
         // Récupérer les plans selon la version de marché (inclut DEFAULT en fallback)
-        if (marketVersion != null && !marketVersion.trim().isEmpty()) {
-            String trimmedVersion = marketVersion.trim();
-            List<String> versions = trimmedVersion.equals("DEFAULT")
-                    ? List.of("DEFAULT")
-                    : Arrays.asList(trimmedVersion, "DEFAULT");
-            plans = pricingPlanRepository.findByMarketVersionInAndIsActiveTrueAndIsCustomFalseOrderByDisplayOrderAsc(versions);
-            log.info("🔍 Récupération des plans pour marketVersions='{}': {} plan(s) trouvé(s)", versions, plans.size());
-        } else {
-            plans = pricingPlanRepository.findByIsActiveTrueOrderByDisplayOrderAsc();
-            log.info("🔍 Récupération de tous les plans actifs: {} plan(s) trouvé(s)", plans.size());
-        }
+        List<PricingPlanDto> plans = getActivePricingPlans(marketVersion);
         
         // Si une organisation est spécifiée, vérifier si elle a déjà utilisé l'essai gratuit
         if (organizationId != null) {
@@ -175,9 +184,7 @@ public class PricingPlanService {
             }
         }
         
-        return plans.stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return plans;
     }
     
     /**
@@ -202,12 +209,11 @@ public class PricingPlanService {
     }
 
     /**
-     * Récupère un plan tarifaire par son ID (seulement si actif).
+     * Récupère un plan tarifaire par son ID (seulement si actif), depuis le cache.
+     * Sans transaction propre : un plan introuvable ne marque pas la transaction appelante en rollback-only.
      */
-    @Transactional(readOnly = true, propagation = Propagation.REQUIRES_NEW)
     public PricingPlanDto getPricingPlanById(Long id) {
-        return pricingPlanRepository.findByIdAndIsActiveTrue(id)
-                .map(this::toDto)
+        return pricingCatalogCache.activePlan(id, planId -> pricingPlanRepository.findByIdAndIsActiveTrue(planId).map(this::toDto))
                 .orElseThrow(() -> new IllegalArgumentException("Plan tarifaire introuvable ou inactif: " + id));
     }
     
@@ -251,21 +257,24 @@ public class PricingPlanService {
         plan.setOrganizationId(orgId != null && orgId > 0 ? orgId : null);
 
         PricingPlan savedPlan = pricingPlanRepository.save(plan);
+        pricingCatalogCache.evictPricingPlans();
         log.info("Plan tarifaire créé: id={}, name={}, marketVersion={}", savedPlan.getId(), savedPlan.getName(), savedPlan.getMarketVersion());
 
         return toDto(savedPlan);
     }
 
     /**
-     * Récupère tous les plans tarifaires (actifs et inactifs) pour une version de marché donnée.
+     * Récupère les plans tarifaires actifs d'une version de marché donnée, sans les plans DEFAULT.
      */
     @Transactional(readOnly = true)
     public List<PricingPlanDto> getPlansByMarketVersion(String marketVersion) {
-        List<PricingPlan> plans = pricingPlanRepository.findByMarketVersionAndIsActiveTrueAndIsCustomFalseOrderByDisplayOrderAsc(marketVersion);
-        log.info("Récupération des plans pour marketVersion='{}': {} plan(s)", marketVersion, plans.size());
-        return plans.stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return pricingCatalogCache.activePlans(EXACT_MARKET_KEY_PREFIX + marketVersion, key -> {
+            List<PricingPlan> plans = pricingPlanRepository.findByMarketVersionAndIsActiveTrueAndIsCustomFalseOrderByDisplayOrderAsc(marketVersion);
+            log.info("Récupération des plans pour marketVersion='{}': {} plan(s)", marketVersion, plans.size());
+            return plans.stream()
+                    .map(this::toDto)
+                    .collect(Collectors.toList());
+        });
     }
 
     /**
@@ -329,6 +338,7 @@ public class PricingPlanService {
 
         // Les champs updatedAt sont mis à jour automatiquement par @PreUpdate
         PricingPlan updatedPlan = pricingPlanRepository.save(plan);
+        pricingCatalogCache.evictPricingPlans();
         log.info("Plan tarifaire mis à jour: id={}, name={}", updatedPlan.getId(), updatedPlan.getName());
         
         return toDto(updatedPlan);
@@ -0,0 +1,417 @@
+package com.muhend.backend.usage.archive;
+
+import com.muhend.backend.usage.model.UsageLog;
+import com.muhend.backend.usage.service.UsageRollupService.UsageTotals;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archive colonnaire compressée d'un mois de usage_log.
+ *
+ * Un répertoire par partition (usage_log_pYYYYMM) contenant un fichier GZIP par colonne et un manifest.
+ * Les valeurs sont écrites en binaire (DataOutputStream), une entrée par log dans l'ordre des ids ;
+ * une valeur nullable est précédée d'un booléen de présence. Agréger une archive ne décompresse
+ * que les colonnes lues (organisation, utilisateur, tokens, coût), pas les termes de recherche.
+ *
+ * Les fichiers et répertoires sont synchronisés sur disque (fsync) avant que l'archive soit visible :
+ * la partition peut être supprimée dès le retour de {@link #write}.
+ */
+public final class UsageLogArchive {
+
+    public static final String MANIFEST = "manifest.properties";
+    public static final String FORMAT = "usage-log-columnar-v1";
+
+    /** Coût stocké en millionièmes (NUMERIC(10, 6)). */
+    private static final int COST_SCALE = 6;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    enum Column {
+        ID("id"),
+        TIMESTAMP("timestamp"),
+        KEYCLOAK_USER_ID("keycloak_user_id"),
+        ORGANIZATION_ID("organization_id"),
+        ENDPOINT("endpoint"),
+        SEARCH_TERM("search_term"),
+        TOKENS_USED("tokens_used"),
+        COST_USD("cost_usd");
+
+        private final String fileName;
+
+        Column(String columnName) {
+            this.fileName = columnName + ".bin.gz";
+        }
+    }
+
+    private UsageLogArchive() {
+    }
+
+    /**
+     * Description d'une archive (contenu du manifest).
+     */
+    public record Manifest(String partition, YearMonth month, long rows, Instant createdAt) {
+    }
+
+    /**
+     * Agrégats d'une archive : totaux, par organisation (hors logs sans organisation) et par utilisateur.
+     */
+    public record ArchiveStats(Manifest manifest, UsageTotals totals,
+                               Map<Long, UsageTotals> byOrganization, Map<String, UsageTotals> byUser) {
+    }
+
+    /**
+     * Écrit l'archive d'une partition dans root/partition. Les logs sont fournis par source, qui reçoit
+     * le consommateur d'écriture. L'archive n'apparaît qu'une fois complète et synchronisée sur disque
+     * (répertoire temporaire renommé) ; une archive existante est remplacée.
+     *
+     * @return nombre de logs archivés
+     */
+    public static long write(Path root, String partition, YearMonth month,
+                             Consumer<Consumer<UsageLog>> source) throws IOException {
+        Path target = root.resolve(partition);
+        Path tmp = root.resolve(partition + ".tmp");
+        deleteDirectory(tmp);
+        Files.createDirectories(tmp);
+
+        long rows;
+        try (ColumnWriter writer = new ColumnWriter(tmp)) {
+            source.accept(writer::append);
+            rows = writer.rows;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Properties manifest = new Properties();
+        manifest.setProperty("format", FORMAT);
+        manifest.setProperty("partition", partition);
+        manifest.setProperty("month", month.toString());
+        manifest.setProperty("rows", Long.toString(rows));
+        manifest.setProperty("createdAt", Instant.now().toString());
+        try (OutputStream out = Files.newOutputStream(tmp.resolve(MANIFEST))) {
+            manifest.store(out, "Archive usage_log " + month);
+        }
+
+        for (Column column : Column.values()) {
+            force(tmp.resolve(column.fileName));
+        }
+        force(tmp.resolve(MANIFEST));
+        force(tmp);
+
+        // L'archive précédente est écartée (partition.old) jusqu'à ce que la nouvelle soit en place
+        Path previous = root.resolve(partition + ".old");
+        if (Files.exists(target)) {
+            deleteDirectory(previous);
+            Files.move(target, previous, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        force(root);
+        deleteDirectory(previous);
+        return rows;
+    }
+
+    /**
+     * Termine les remplacements d'archive interrompus : une archive écartée (partition.old) est
+     * supprimée si la nouvelle est complète, remise en place sinon.
+     */
+    public static void recover(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (var directories = Files.list(root)) {
+            for (Path previous : directories.filter(d -> d.getFileName().toString().endsWith(".old")).toList()) {
+                String name = previous.getFileName().toString();
+                Path target = root.resolve(name.substring(0, name.length() - ".old".length()));
+                if (readManifest(target) != null) {
+                    deleteDirectory(previous);
+                } else {
+                    deleteDirectory(target);
+                    Files.move(previous, target, StandardCopyOption.ATOMIC_MOVE);
+                    force(root);
+                }
+            }
+        }
+    }
+
+    /**
+     * Réécrit l'archive sans les logs des organisations et utilisateurs donnés.
+     * L'archive n'est pas réécrite si elle n'en contient aucun.
+     *
+     * @return nombre de logs retirés
+     */
+    public static long remove(Path root, String partition, Set<Long> organizationIds, Set<String> userIds)
+            throws IOException {
+        Path directory = root.resolve(partition);
+        Manifest manifest = readManifest(directory);
+        if (manifest == null) {
+            throw new IOException("Archive incomplète ou absente: " + directory);
+        }
+        long matching = 0;
+        try (DataInputStream organizations = open(directory, Column.ORGANIZATION_ID);
+             DataInputStream users = open(directory, Column.KEYCLOAK_USER_ID)) {
+            for (long row = 0; row < manifest.rows(); row++) {
+                Long organizationId = organizations.readBoolean() ? organizations.readLong() : null;
+                String userId = users.readBoolean() ? users.readUTF() : null;
+                if (matches(organizationId, userId, organizationIds, userIds)) {
+                    matching++;
+                }
+            }
+        }
+        if (matching == 0) {
+            return 0;
+        }
+        long kept = write(root, partition, manifest.month(), consumer -> {
+            try {
+                read(directory, manifest.rows(), usageLog -> {
+                    if (!matches(usageLog.getOrganizationId(), usageLog.getKeycloakUserId(), organizationIds, userIds)) {
+                        consumer.accept(usageLog);
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return manifest.rows() - kept;
+    }
+
+    /**
+     * Lit le manifest d'une archive ; null si le répertoire n'est pas une archive complète.
+     */
+    public static Manifest readManifest(Path directory) throws IOException {
+        Path file = directory.resolve(MANIFEST);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return new Manifest(properties.getProperty("partition"),
+                YearMonth.parse(properties.getProperty("month")),
+                Long.parseLong(properties.getProperty("rows")),
+                Instant.parse(properties.getProperty("createdAt")));
+    }
+
+    /**
+     * Agrège une archive en ne lisant que les colonnes organisation, utilisateur, tokens et coût.
+     */
+    public static ArchiveStats aggregate(Path directory) throws IOException {
+        Manifest manifest = readManifest(directory);
+        if (manifest == null) {
+            throw new IOException("Archive incomplète ou absente: " + directory);
+        }
+        Totals total = new Totals();
+        Map<Long, Totals> byOrganization = new HashMap<>();
+        Map<String, Totals> byUser = new HashMap<>();
+
+        try (DataInputStream organizations = open(directory, Column.ORGANIZATION_ID);
+             DataInputStream users = open(directory, Column.KEYCLOAK_USER_ID);
+             DataInputStream tokens = open(directory, Column.TOKENS_USED);
+             DataInputStream costs = open(directory, Column.COST_USD)) {
+            for (long row = 0; row < manifest.rows(); row++) {
+                Long organizationId = organizations.readBoolean() ? organizations.readLong() : null;
+                String userId = users.readBoolean() ? users.readUTF() : null;
+                long tokensUsed = tokens.readBoolean() ? tokens.readInt() : 0;
+                long costMicros = costs.readBoolean() ? costs.readLong() : 0;
+
+                total.add(tokensUsed, costMicros);
+                if (organizationId != null) {
+                    byOrganization.computeIfAbsent(organizationId, id -> new Totals()).add(tokensUsed, costMicros);
+                }
+                if (userId != null) {
+                    byUser.computeIfAbsent(userId, id -> new Totals()).add(tokensUsed, costMicros);
+                }
+            }
+        }
+
+        Map<Long, UsageTotals> organizationTotals = new LinkedHashMap<>();
+        byOrganization.forEach((id, totals) -> organizationTotals.put(id, totals.toUsageTotals()));
+        Map<String, UsageTotals> userTotals = new LinkedHashMap<>();
+        byUser.forEach((id, totals) -> userTotals.put(id, totals.toUsageTotals()));
+        return new ArchiveStats(manifest, total.toUsageTotals(), organizationTotals, userTotals);
+    }
+
+    private static boolean matches(Long organizationId, String userId, Set<Long> organizationIds, Set<String> userIds) {
+        return organizationId != null && organizationIds.contains(organizationId)
+                || userId != null && userIds.contains(userId);
+    }
+
+    /**
+     * Relit toutes les colonnes d'une archive, log par log.
+     */
+    private static void read(Path directory, long rows, Consumer<UsageLog> consumer) throws IOException {
+        Map<Column, DataInputStream> columns = new EnumMap<>(Column.class);
+        try {
+            for (Column column : Column.values()) {
+                columns.put(column, open(directory, column));
+            }
+            for (long row = 0; row < rows; row++) {
+                UsageLog usageLog = new UsageLog();
+                usageLog.setId(columns.get(Column.ID).readLong());
+                long micros = columns.get(Column.TIMESTAMP).readLong();
+                usageLog.setTimestamp(LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                        (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC));
+                usageLog.setKeycloakUserId(readString(columns.get(Column.KEYCLOAK_USER_ID)));
+                DataInputStream organization = columns.get(Column.ORGANIZATION_ID);
+                usageLog.setOrganizationId(organization.readBoolean() ? organization.readLong() : null);
+                usageLog.setEndpoint(readString(columns.get(Column.ENDPOINT)));
+                usageLog.setSearchTerm(readString(columns.get(Column.SEARCH_TERM)));
+                DataInputStream tokens = columns.get(Column.TOKENS_USED);
+                usageLog.setTokensUsed(tokens.readBoolean() ? tokens.readInt() : null);
+                DataInputStream cost = columns.get(Column.COST_USD);
+                usageLog.setCostUsd(cost.readBoolean() ? BigDecimal.valueOf(cost.readLong(), COST_SCALE) : null);
+                consumer.accept(usageLog);
+            }
+        } finally {
+            for (DataInputStream in : columns.values()) {
+                in.close();
+            }
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static DataInputStream open(Path directory, Column column) throws IOException {
+        return new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(directory.resolve(column.fileName)), BUFFER_SIZE), BUFFER_SIZE));
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static final class Totals {
+        long requests;
+        long tokens;
+        long costMicros;
+
+        void add(long tokensUsed, long cost) {
+            requests++;
+            tokens += tokensUsed;
+            costMicros += cost;
+        }
+
+        UsageTotals toUsageTotals() {
+            return new UsageTotals(requests, tokens, BigDecimal.valueOf(costMicros, COST_SCALE));
+        }
+    }
+
+    /**
+     * Un flux GZIP par colonne, alimentés ligne à ligne.
+     */
+    private static final class ColumnWriter implements Closeable {
+
+        private final Map<Column, DataOutputStream> columns = new EnumMap<>(Column.class);
+        private long rows;
+
+        ColumnWriter(Path directory) throws IOException {
+            try {
+                for (Column column : Column.values()) {
+                    columns.put(column, new DataOutputStream(new BufferedOutputStream(
+                            new GZIPOutputStream(Files.newOutputStream(directory.resolve(column.fileName)), BUFFER_SIZE),
+                            BUFFER_SIZE)));
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        void append(UsageLog usageLog) {
+            try {
+                columns.get(Column.ID).writeLong(usageLog.getId());
+                LocalDateTime timestamp = usageLog.getTimestamp();
+                columns.get(Column.TIMESTAMP).writeLong(
+                        timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000);
+                writeString(Column.KEYCLOAK_USER_ID, usageLog.getKeycloakUserId());
+                DataOutputStream organization = columns.get(Column.ORGANIZATION_ID);
+                organization.writeBoolean(usageLog.getOrganizationId() != null);
+                if (usageLog.getOrganizationId() != null) {
+                    organization.writeLong(usageLog.getOrganizationId());
+                }
+                writeString(Column.ENDPOINT, usageLog.getEndpoint());
+                writeString(Column.SEARCH_TERM, usageLog.getSearchTerm());
+                DataOutputStream tokens = columns.get(Column.TOKENS_USED);
+                tokens.writeBoolean(usageLog.getTokensUsed() != null);
+                if (usageLog.getTokensUsed() != null) {
+                    tokens.writeInt(usageLog.getTokensUsed());
+                }
+                DataOutputStream cost = columns.get(Column.COST_USD);
+                cost.writeBoolean(usageLog.getCostUsd() != null);
+                if (usageLog.getCostUsd() != null) {
+                    BigInteger micros = usageLog.getCostUsd().setScale(COST_SCALE, RoundingMode.HALF_UP).unscaledValue();
+                    cost.writeLong(micros.longValueExact());
+                }
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeString(Column column, String value) throws IOException {
+            DataOutputStream out = columns.get(column);
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (DataOutputStream out : columns.values()) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    failure = failure != null ? failure : e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.muhend.backend.usage.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Totaux des logs d'utilisation d'un endpoint sur une période, calculés en SQL
+ * (voir UsageLogRepository.sumByEndpoint). costUsd n'est pas arrondi.
+ */
+public record EndpointUsage(String endpoint, Long requestCount, Long tokensUsed, BigDecimal costUsd) {
+
+    public EndpointUsage {
+        requestCount = requestCount != null ? requestCount : 0L;
+        tokensUsed = tokensUsed != null ? tokensUsed : 0L;
+        costUsd = costUsd != null ? costUsd : BigDecimal.ZERO;
+    }
+
+    public static long totalRequests(List<EndpointUsage> usage) {
+        return usage.stream().mapToLong(EndpointUsage::requestCount).sum();
+    }
+
+    public static long totalTokens(List<EndpointUsage> usage) {
+        return usage.stream().mapToLong(EndpointUsage::tokensUsed).sum();
+    }
+
+    /**
+     * Somme exacte des coûts (arrondi laissé à l'appelant).
+     */
+    public static BigDecimal totalCost(List<EndpointUsage> usage) {
+        return usage.stream().map(EndpointUsage::costUsd).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
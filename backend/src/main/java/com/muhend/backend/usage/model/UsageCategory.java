@@ -0,0 +1,49 @@
+package com.muhend.backend.usage.model;
+
+/**
+ * Catégorie d'endpoint utilisée par les agrégats d'utilisation.
+ * Même découpage que le barème des crédits (OrganizationMapper.computeCredits).
+ */
+public enum UsageCategory {
+
+    POSITIONS10("positions10"),
+    POSITIONS6("positions6"),
+    DECODE_P10("decode-p10"),
+    DECODE("decode"),
+    DEFAULT("default");
+
+    private final String code;
+
+    UsageCategory(String code) {
+        this.code = code;
+    }
+
+    /**
+     * Valeur stockée dans la colonne endpoint_category.
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Catégorie d'un endpoint ; l'ordre des tests compte ("positions10" avant "positions6", "decode-p10" avant "decode").
+     */
+    public static UsageCategory of(String endpoint) {
+        if (endpoint == null) {
+            return DEFAULT;
+        }
+        if (endpoint.contains("positions10")) {
+            return POSITIONS10;
+        }
+        if (endpoint.contains("positions6")) {
+            return POSITIONS6;
+        }
+        if (endpoint.contains("decode-p10")) {
+            return DECODE_P10;
+        }
+        if (endpoint.contains("decode")) {
+            return DECODE;
+        }
+        return DEFAULT;
+    }
+}
@@ -0,0 +1,47 @@
+package com.muhend.backend.usage.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position de reprise de la pagination par clé des logs d'utilisation (tri timestamp DESC, id DESC) :
+ * la page suivante commence au premier log strictement avant (timestamp, id).
+ * Transmis au client sous forme opaque (Base64 URL).
+ */
+public record UsageLogCursor(LocalDateTime timestamp, long id) {
+
+    /**
+     * Curseur de la première page d'une période : tous les logs jusqu'à end inclus.
+     */
+    public static UsageLogCursor first(LocalDateTime end) {
+        return new UsageLogCursor(end, Long.MAX_VALUE);
+    }
+
+    public static UsageLogCursor after(UsageLog last) {
+        return new UsageLogCursor(last.getTimestamp(), last.getId());
+    }
+
+    public String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException si le curseur n'a pas été produit par {@link #encode()}
+     */
+    public static UsageLogCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Curseur invalide: " + cursor);
+            }
+            return new UsageLogCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Curseur invalide: " + cursor, e);
+        }
+    }
+}
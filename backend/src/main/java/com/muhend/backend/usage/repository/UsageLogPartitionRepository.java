@@ -0,0 +1,158 @@
+package com.muhend.backend.usage.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * DDL des partitions mensuelles de usage_log (voir V40) : usage_log_pYYYYMM couvre [1er du mois, 1er du mois suivant).
+ */
+@Repository
+public class UsageLogPartitionRepository {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final Pattern PARTITION_NAME = Pattern.compile("usage_log_p\\d{6}");
+    /** Clé du verrou consultatif PostgreSQL de la maintenance des partitions et archives. */
+    private static final long ARCHIVE_LOCK_KEY = 0x75736167655F6C6FL;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UsageLogPartitionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Partition mensuelle, rattachée à usage_log ou détachée en attente d'archivage.
+     */
+    public record MonthlyPartition(String name, YearMonth month, boolean attached) {
+    }
+
+    /**
+     * Exécute action sous le verrou consultatif des archives, partagé par toutes les instances.
+     * Le verrou est tenu par une connexion dédiée pendant toute l'action : il est libéré si l'instance s'arrête.
+     *
+     * @param wait attend le verrou s'il est tenu ailleurs ; sinon l'action n'est pas exécutée
+     * @return false si le verrou n'a pas été obtenu
+     */
+    public boolean withArchiveLock(boolean wait, Runnable action) {
+        Boolean acquired = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (PreparedStatement lock = connection.prepareStatement(
+                    wait ? "SELECT pg_advisory_lock(?)" : "SELECT pg_try_advisory_lock(?)")) {
+                lock.setLong(1, ARCHIVE_LOCK_KEY);
+                try (ResultSet rs = lock.executeQuery()) {
+                    if (!wait && !(rs.next() && rs.getBoolean(1))) {
+                        return false;
+                    }
+                }
+            }
+            try {
+                action.run();
+            } finally {
+                try (PreparedStatement unlock = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+                    unlock.setLong(1, ARCHIVE_LOCK_KEY);
+                    unlock.execute();
+                }
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(acquired);
+    }
+
+    public static String partitionName(YearMonth month) {
+        return "usage_log_p" + month.format(SUFFIX);
+    }
+
+    /**
+     * Partitions mensuelles existantes (tables usage_log_pYYYYMM), rattachées ou non.
+     */
+    public List<MonthlyPartition> findMonthlyPartitions() {
+        return jdbcTemplate.query("""
+                SELECT c.relname, c.relispartition
+                FROM pg_class c
+                JOIN pg_namespace n ON n.oid = c.relnamespace
+                WHERE n.nspname = current_schema()
+                  AND c.relkind = 'r'
+                  AND c.relname ~ '^usage_log_p[0-9]{6}$'
+                ORDER BY c.relname
+                """,
+                (rs, rowNum) -> {
+                    String name = rs.getString("relname");
+                    return new MonthlyPartition(name,
+                            YearMonth.parse(name.substring("usage_log_p".length()), SUFFIX),
+                            rs.getBoolean("relispartition"));
+                });
+    }
+
+    /**
+     * Indique si la partition par défaut contient des logs du mois (ils empêchent la création de sa partition).
+     */
+    public boolean defaultPartitionHasRows(YearMonth month) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM usage_log_default WHERE timestamp >= ? AND timestamp < ?)",
+                Boolean.class, start(month), end(month));
+        return Boolean.TRUE.equals(exists);
+    }
+
+    public void createPartition(YearMonth month) {
+        jdbcTemplate.execute(createPartitionSql(month));
+    }
+
+    /**
+     * Crée la partition d'un mois dont des logs sont tombés dans la partition par défaut (partition créée trop tard) :
+     * la partition par défaut est détachée le temps de déplacer ces logs.
+     */
+    @Transactional
+    public int createPartitionFromDefault(YearMonth month) {
+        jdbcTemplate.execute("ALTER TABLE usage_log DETACH PARTITION usage_log_default");
+        jdbcTemplate.execute(createPartitionSql(month));
+        int moved = jdbcTemplate.update("""
+                INSERT INTO usage_log (id, keycloak_user_id, organization_id, endpoint, search_term, tokens_used, cost_usd, timestamp)
+                SELECT id, keycloak_user_id, organization_id, endpoint, search_term, tokens_used, cost_usd, timestamp
+                FROM usage_log_default
+                WHERE timestamp >= ? AND timestamp < ?
+                """, start(month), end(month));
+        jdbcTemplate.update("DELETE FROM usage_log_default WHERE timestamp >= ? AND timestamp < ?", start(month), end(month));
+        jdbcTemplate.execute("ALTER TABLE usage_log ATTACH PARTITION usage_log_default DEFAULT");
+        return moved;
+    }
+
+    /**
+     * Détache une partition : ses logs disparaissent de usage_log mais la table reste lisible jusqu'à son archivage.
+     */
+    public void detachPartition(String name) {
+        jdbcTemplate.execute("ALTER TABLE usage_log DETACH PARTITION " + checked(name));
+    }
+
+    public void dropPartition(String name) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + checked(name));
+    }
+
+    static String checked(String name) {
+        if (!PARTITION_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Nom de partition usage_log invalide: " + name);
+        }
+        return name;
+    }
+
+    private static String createPartitionSql(YearMonth month) {
+        return "CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF usage_log FOR VALUES FROM ('"
+                + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')";
+    }
+
+    private static Timestamp start(YearMonth month) {
+        return Timestamp.valueOf(month.atDay(1).atStartOfDay());
+    }
+
+    private static Timestamp end(YearMonth month) {
+        return Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+    }
+}
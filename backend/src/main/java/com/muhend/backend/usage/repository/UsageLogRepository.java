@@ -1,5 +1,6 @@
 package com.muhend.backend.usage.repository;
 
+import com.muhend.backend.usage.model.EndpointUsage;
 import com.muhend.backend.usage.model.UsageLog;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -59,7 +60,79 @@ public interface UsageLogRepository extends JpaRepository<UsageLog, Long> {
         LocalDateTime end
     );
 
-    
+    /**
+     * Indique si une organisation a au moins un log entre deux dates.
+     */
+    boolean existsByOrganizationIdAndTimestampBetween(
+        Long organizationId,
+        LocalDateTime start,
+        LocalDateTime end
+    );
+
+    /**
+     * Nombre de requêtes, tokens et coût d'une organisation par endpoint entre deux dates (bornes incluses),
+     * sans charger les logs. Liste vide s'il n'y a aucune utilisation.
+     */
+    @Query("""
+            SELECT new com.muhend.backend.usage.model.EndpointUsage(u.endpoint, COUNT(u), SUM(u.tokensUsed), SUM(u.costUsd))
+            FROM UsageLog u
+            WHERE u.organizationId = :organizationId
+              AND u.timestamp BETWEEN :start AND :end
+            GROUP BY u.endpoint
+            ORDER BY u.endpoint
+            """)
+    List<EndpointUsage> sumByEndpoint(
+        @Param("organizationId") Long organizationId,
+        @Param("start") LocalDateTime start,
+        @Param("end") LocalDateTime end
+    );
+
+    /**
+     * 10 logs les plus récents entre deux dates (statistiques admin).
+     */
+    List<UsageLog> findTop10ByTimestampBetweenOrderByTimestampDesc(LocalDateTime start, LocalDateTime end);
+
+    /**
+     * 10 logs les plus récents d'une organisation entre deux dates.
+     */
+    List<UsageLog> findTop10ByOrganizationIdAndTimestampBetweenOrderByTimestampDesc(
+        Long organizationId,
+        LocalDateTime start,
+        LocalDateTime end
+    );
+
+    /**
+     * 10 logs les plus récents d'un utilisateur dans une organisation entre deux dates.
+     */
+    List<UsageLog> findTop10ByKeycloakUserIdAndOrganizationIdAndTimestampBetweenOrderByTimestampDesc(
+        String keycloakUserId,
+        Long organizationId,
+        LocalDateTime start,
+        LocalDateTime end
+    );
+
+    /**
+     * Page de logs d'une organisation, du plus récent au plus ancien, reprenant strictement avant
+     * (cursorTimestamp, cursorId). Pagination par clé : coût constant quelle que soit la profondeur
+     * (index idx_usage_log_org_timestamp_id).
+     */
+    @Query(value = """
+            SELECT * FROM usage_log
+            WHERE organization_id = :organizationId
+              AND timestamp >= :start AND timestamp <= :end
+              AND (timestamp, id) < (:cursorTimestamp, :cursorId)
+            ORDER BY timestamp DESC, id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<UsageLog> findPageByOrganizationId(
+        @Param("organizationId") Long organizationId,
+        @Param("start") LocalDateTime start,
+        @Param("end") LocalDateTime end,
+        @Param("cursorTimestamp") LocalDateTime cursorTimestamp,
+        @Param("cursorId") long cursorId,
+        @Param("limit") int limit
+    );
+
     /**
      * Supprime tous les logs d'un utilisateur.
      */
@@ -0,0 +1,89 @@
+package com.muhend.backend.usage.repository;
+
+import com.muhend.backend.usage.model.UsageLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Lecture en flux des logs d'utilisation pour les exports : curseur JDBC côté serveur,
+ * les lignes sont lues par lots de fetch-size et transmises une à une, sans liste intermédiaire.
+ *
+ * Le driver PostgreSQL n'utilise un curseur que hors autocommit : d'où la transaction en lecture seule.
+ */
+@Repository
+public class UsageLogStreamRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+
+    public UsageLogStreamRepository(JdbcTemplate jdbcTemplate,
+                                    @Value("${usage.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Parcourt les logs d'une organisation sur [start, end], du plus récent au plus ancien.
+     * Les objets transmis ne sont pas des entités gérées.
+     */
+    @Transactional(readOnly = true)
+    public void streamByOrganizationId(Long organizationId, LocalDateTime start, LocalDateTime end,
+                                       Consumer<UsageLog> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("""
+                    SELECT id, keycloak_user_id, organization_id, endpoint, search_term, tokens_used, cost_usd, timestamp
+                    FROM usage_log
+                    WHERE organization_id = ? AND timestamp >= ? AND timestamp <= ?
+                    ORDER BY timestamp DESC, id DESC
+                    """, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, organizationId);
+            ps.setTimestamp(2, Timestamp.valueOf(start));
+            ps.setTimestamp(3, Timestamp.valueOf(end));
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(toUsageLog(rs)));
+    }
+
+    /**
+     * Parcourt tous les logs d'une partition mensuelle détachée (archivage), dans l'ordre des ids.
+     */
+    @Transactional(readOnly = true)
+    public void streamPartition(String partitionName, Consumer<UsageLog> consumer) {
+        String table = UsageLogPartitionRepository.checked(partitionName);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT id, keycloak_user_id, organization_id, endpoint, search_term, tokens_used, cost_usd, timestamp"
+                            + " FROM " + table + " ORDER BY id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(toUsageLog(rs)));
+    }
+
+    private static UsageLog toUsageLog(ResultSet rs) throws SQLException {
+        UsageLog usageLog = new UsageLog();
+        usageLog.setId(rs.getLong("id"));
+        usageLog.setKeycloakUserId(rs.getString("keycloak_user_id"));
+        long organizationId = rs.getLong("organization_id");
+        usageLog.setOrganizationId(rs.wasNull() ? null : organizationId);
+        usageLog.setEndpoint(rs.getString("endpoint"));
+        usageLog.setSearchTerm(rs.getString("search_term"));
+        int tokens = rs.getInt("tokens_used");
+        usageLog.setTokensUsed(rs.wasNull() ? null : tokens);
+        BigDecimal cost = rs.getBigDecimal("cost_usd");
+        usageLog.setCostUsd(cost);
+        usageLog.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
+        return usageLog;
+    }
+}
@@ -0,0 +1,242 @@
+package com.muhend.backend.usage.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accès aux tables d'agrégats usage_rollup_hourly / usage_rollup_daily (voir V38).
+ * En JDBC : upserts ON CONFLICT et INSERT ... SELECT n'ont pas d'équivalent JPA sur ces tables sans entité.
+ *
+ * organization_id vaut 0 pour les logs sans organisation.
+ */
+@Repository
+public class UsageRollupRepository {
+
+    /** Catégorie d'endpoint calculée en SQL, même ordre que UsageCategory.of. */
+    private static final String CATEGORY_SQL = """
+            CASE
+                WHEN endpoint LIKE '%positions10%' THEN 'positions10'
+                WHEN endpoint LIKE '%positions6%' THEN 'positions6'
+                WHEN endpoint LIKE '%decode-p10%' THEN 'decode-p10'
+                WHEN endpoint LIKE '%decode%' THEN 'decode'
+                ELSE 'default'
+            END""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UsageRollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Regroupement des totaux retournés par {@link #sumBy}.
+     */
+    public enum GroupBy {
+        NONE("NULL"),
+        ORGANIZATION("organization_id"),
+        USER("keycloak_user_id");
+
+        private final String column;
+
+        GroupBy(String column) {
+            this.column = column;
+        }
+    }
+
+    /**
+     * Totaux d'un groupe : key vaut null pour GroupBy.NONE, l'ID d'organisation (Long) ou l'ID Keycloak (String) sinon.
+     */
+    public record UsageTotalsRow(Object key, long requestCount, long tokensUsed, BigDecimal costUsd) {
+    }
+
+    public record RollupState(LocalDateTime hourlyUntil, LocalDate dailyUntil) {
+    }
+
+    /**
+     * Ajoute un log à l'agrégat de son heure (création de la ligne au premier log), ou à celui de son jour
+     * si ce jour est déjà compacté : une ligne horaire antérieure à daily_until ne serait plus jamais lue.
+     *
+     * La ligne d'état est lue FOR SHARE jusqu'à la fin de la transaction : un incrément attend la fin
+     * d'une compaction en cours (FOR UPDATE), qui elle attend les transactions ayant déjà incrémenté.
+     */
+    public void increment(LocalDateTime bucketStart, long organizationId, String keycloakUserId,
+                          String category, long tokens, BigDecimal costUsd) {
+        Timestamp bucket = Timestamp.valueOf(bucketStart);
+        jdbcTemplate.update("""
+                WITH state AS (
+                    SELECT daily_until FROM usage_rollup_state WHERE id = 1 FOR SHARE
+                ), hourly AS (
+                    INSERT INTO usage_rollup_hourly (bucket_start, organization_id, keycloak_user_id, endpoint_category,
+                                                     request_count, tokens_used, cost_usd)
+                    SELECT CAST(? AS TIMESTAMP), ?, ?, ?, 1, ?, ?
+                    FROM state WHERE CAST(CAST(? AS TIMESTAMP) AS DATE) >= state.daily_until
+                    ON CONFLICT (bucket_start, organization_id, keycloak_user_id, endpoint_category)
+                    DO UPDATE SET request_count = usage_rollup_hourly.request_count + 1,
+                                  tokens_used = usage_rollup_hourly.tokens_used + EXCLUDED.tokens_used,
+                                  cost_usd = usage_rollup_hourly.cost_usd + EXCLUDED.cost_usd
+                )
+                INSERT INTO usage_rollup_daily (bucket_date, organization_id, keycloak_user_id, endpoint_category,
+                                                request_count, tokens_used, cost_usd)
+                SELECT CAST(CAST(? AS TIMESTAMP) AS DATE), ?, ?, ?, 1, ?, ?
+                FROM state WHERE CAST(CAST(? AS TIMESTAMP) AS DATE) < state.daily_until
+                ON CONFLICT (bucket_date, organization_id, keycloak_user_id, endpoint_category)
+                DO UPDATE SET request_count = usage_rollup_daily.request_count + 1,
+                              tokens_used = usage_rollup_daily.tokens_used + EXCLUDED.tokens_used,
+                              cost_usd = usage_rollup_daily.cost_usd + EXCLUDED.cost_usd
+                """,
+                bucket, organizationId, keycloakUserId, category, tokens, costUsd, bucket,
+                bucket, organizationId, keycloakUserId, category, tokens, costUsd, bucket);
+    }
+
+    /**
+     * Horloge de la base : la compaction ne dépend pas de l'horloge de l'instance qui l'exécute.
+     */
+    public LocalDateTime currentTimestamp() {
+        return jdbcTemplate.queryForObject("SELECT LOCALTIMESTAMP", LocalDateTime.class);
+    }
+
+    /**
+     * État de la compaction, ligne verrouillée jusqu'à la fin de la transaction courante.
+     */
+    public RollupState lockState() {
+        return jdbcTemplate.queryForObject(
+                "SELECT hourly_until, daily_until FROM usage_rollup_state WHERE id = 1 FOR UPDATE",
+                (rs, rowNum) -> new RollupState(
+                        rs.getTimestamp("hourly_until").toLocalDateTime(),
+                        rs.getDate("daily_until").toLocalDate()));
+    }
+
+    /**
+     * Premier jour non encore compacté : les jours antérieurs se lisent dans usage_rollup_daily.
+     */
+    public LocalDate findDailyUntil() {
+        return jdbcTemplate.queryForObject("SELECT daily_until FROM usage_rollup_state WHERE id = 1", LocalDate.class);
+    }
+
+    public void updateState(LocalDateTime hourlyUntil, LocalDate dailyUntil) {
+        jdbcTemplate.update("UPDATE usage_rollup_state SET hourly_until = ?, daily_until = ? WHERE id = 1",
+                Timestamp.valueOf(hourlyUntil), Date.valueOf(dailyUntil));
+    }
+
+    /**
+     * Recalcule depuis usage_log les agrégats horaires de [from, to) : corrige les incréments perdus
+     * (erreur après l'enregistrement du log) ou en double.
+     */
+    public int rebuildHourly(LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.update("DELETE FROM usage_rollup_hourly WHERE bucket_start >= ? AND bucket_start < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        return jdbcTemplate.update("""
+                INSERT INTO usage_rollup_hourly (bucket_start, organization_id, keycloak_user_id, endpoint_category,
+                                                 request_count, tokens_used, cost_usd)
+                SELECT date_trunc('hour', timestamp), COALESCE(organization_id, 0), keycloak_user_id,
+                       %s,
+                       COUNT(*), COALESCE(SUM(tokens_used), 0), COALESCE(SUM(cost_usd), 0)
+                FROM usage_log
+                WHERE timestamp >= ? AND timestamp < ?
+                GROUP BY 1, 2, 3, 4
+                """.formatted(CATEGORY_SQL),
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * Reporte les agrégats horaires des jours [from, to) dans usage_rollup_daily puis supprime les lignes horaires.
+     */
+    public int foldHourlyIntoDaily(LocalDate from, LocalDate to) {
+        Timestamp start = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(to.atStartOfDay());
+        int days = jdbcTemplate.update("""
+                INSERT INTO usage_rollup_daily (bucket_date, organization_id, keycloak_user_id, endpoint_category,
+                                                request_count, tokens_used, cost_usd)
+                SELECT CAST(bucket_start AS DATE), organization_id, keycloak_user_id, endpoint_category,
+                       SUM(request_count), SUM(tokens_used), SUM(cost_usd)
+                FROM usage_rollup_hourly
+                WHERE bucket_start >= ? AND bucket_start < ?
+                GROUP BY 1, 2, 3, 4
+                ON CONFLICT (bucket_date, organization_id, keycloak_user_id, endpoint_category)
+                DO UPDATE SET request_count = EXCLUDED.request_count,
+                              tokens_used = EXCLUDED.tokens_used,
+                              cost_usd = EXCLUDED.cost_usd
+                """, start, end);
+        jdbcTemplate.update("DELETE FROM usage_rollup_hourly WHERE bucket_start >= ? AND bucket_start < ?", start, end);
+        return days;
+    }
+
+    /**
+     * Totaux sur trois segments contigus : jours [dailyFrom, dailyTo) des agrégats journaliers,
+     * heures [hourlyFrom, hourlyTo) des agrégats horaires et logs bruts [rawFrom, rawTo) (heure en cours).
+     * Un segment vide (from >= to) ne contribue pas. Filtres organisation / utilisateur optionnels.
+     */
+    public List<UsageTotalsRow> sumBy(GroupBy groupBy,
+                                      LocalDate dailyFrom, LocalDate dailyTo,
+                                      LocalDateTime hourlyFrom, LocalDateTime hourlyTo,
+                                      LocalDateTime rawFrom, LocalDateTime rawTo,
+                                      Long organizationId, String keycloakUserId) {
+        StringBuilder filter = new StringBuilder();
+        List<Object> filterArgs = new ArrayList<>();
+        if (organizationId != null) {
+            filter.append(" AND organization_id = ?");
+            filterArgs.add(organizationId);
+        }
+        if (keycloakUserId != null) {
+            filter.append(" AND keycloak_user_id = ?");
+            filterArgs.add(keycloakUserId);
+        }
+
+        List<String> segments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (dailyFrom.isBefore(dailyTo)) {
+            segments.add("SELECT organization_id, keycloak_user_id, request_count, tokens_used, cost_usd"
+                    + " FROM usage_rollup_daily WHERE bucket_date >= ? AND bucket_date < ?" + filter);
+            args.add(Date.valueOf(dailyFrom));
+            args.add(Date.valueOf(dailyTo));
+            args.addAll(filterArgs);
+        }
+        if (hourlyFrom.isBefore(hourlyTo)) {
+            segments.add("SELECT organization_id, keycloak_user_id, request_count, tokens_used, cost_usd"
+                    + " FROM usage_rollup_hourly WHERE bucket_start >= ? AND bucket_start < ?" + filter);
+            args.add(Timestamp.valueOf(hourlyFrom));
+            args.add(Timestamp.valueOf(hourlyTo));
+            args.addAll(filterArgs);
+        }
+        if (rawFrom.isBefore(rawTo)) {
+            segments.add("SELECT COALESCE(organization_id, 0) AS organization_id, keycloak_user_id, 1 AS request_count,"
+                    + " COALESCE(tokens_used, 0) AS tokens_used, COALESCE(cost_usd, 0) AS cost_usd"
+                    + " FROM usage_log WHERE timestamp >= ? AND timestamp < ?" + filter);
+            args.add(Timestamp.valueOf(rawFrom));
+            args.add(Timestamp.valueOf(rawTo));
+            args.addAll(filterArgs);
+        }
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+
+        String sql = "SELECT " + groupBy.column + " AS group_key,"
+                + " SUM(request_count) AS request_count, SUM(tokens_used) AS tokens_used, SUM(cost_usd) AS cost_usd"
+                + " FROM (" + String.join(" UNION ALL ", segments) + ") u"
+                + (groupBy == GroupBy.NONE ? "" : " GROUP BY " + groupBy.column);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new UsageTotalsRow(
+                        rs.getObject("group_key"),
+                        rs.getLong("request_count"),
+                        rs.getLong("tokens_used"),
+                        rs.getBigDecimal("cost_usd") != null ? rs.getBigDecimal("cost_usd") : BigDecimal.ZERO),
+                args.toArray());
+    }
+
+    public int deleteByOrganizationId(long organizationId) {
+        return jdbcTemplate.update("DELETE FROM usage_rollup_hourly WHERE organization_id = ?", organizationId)
+                + jdbcTemplate.update("DELETE FROM usage_rollup_daily WHERE organization_id = ?", organizationId);
+    }
+
+    public int deleteByKeycloakUserId(String keycloakUserId) {
+        return jdbcTemplate.update("DELETE FROM usage_rollup_hourly WHERE keycloak_user_id = ?", keycloakUserId)
+                + jdbcTemplate.update("DELETE FROM usage_rollup_daily WHERE keycloak_user_id = ?", keycloakUserId);
+    }
+}
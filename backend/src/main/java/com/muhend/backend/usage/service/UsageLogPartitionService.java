@@ -0,0 +1,260 @@
+package com.muhend.backend.usage.service;
+
+import com.muhend.backend.usage.archive.UsageLogArchive;
+import com.muhend.backend.usage.archive.UsageLogArchive.ArchiveStats;
+import com.muhend.backend.usage.archive.UsageLogArchive.Manifest;
+import com.muhend.backend.usage.repository.UsageLogPartitionRepository;
+import com.muhend.backend.usage.repository.UsageLogPartitionRepository.MonthlyPartition;
+import com.muhend.backend.usage.repository.UsageLogStreamRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Cycle de vie des partitions mensuelles de usage_log (voir V40).
+ *
+ * - Les partitions des mois à venir sont créées à l'avance (usage.partition.months-ahead).
+ * - Les mois plus anciens que usage.partition.archive-after-months sont détachés, écrits dans une archive
+ *   colonnaire compressée sur disque (usage.archive.dir), puis supprimés.
+ * - Les agrégats journaliers restent en base : les statistiques des mois archivés restent disponibles,
+ *   l'archive ne sert qu'au détail (par organisation ou utilisateur) d'un mois ancien.
+ * - La maintenance et la purge des archives prennent un verrou consultatif PostgreSQL : une seule instance
+ *   archive à la fois. usage.archive.dir doit être un stockage partagé par toutes les instances (volume
+ *   usage-archive en production), sinon chaque instance ne voit que les archives qu'elle a écrites.
+ * - Les logs des organisations et utilisateurs supprimés sont retirés des archives ({@link #purgeArchives}).
+ */
+@Service
+@Slf4j
+public class UsageLogPartitionService {
+
+    private static final Pattern ARCHIVE_NAME = Pattern.compile("usage_log_p\\d{6}");
+
+    private final UsageLogPartitionRepository partitionRepository;
+    private final UsageLogStreamRepository streamRepository;
+    private final int monthsAhead;
+    private final int archiveAfterMonths;
+    private final Path archiveDir;
+
+    public UsageLogPartitionService(UsageLogPartitionRepository partitionRepository,
+                                    UsageLogStreamRepository streamRepository,
+                                    @Value("${usage.partition.months-ahead:3}") int monthsAhead,
+                                    @Value("${usage.partition.archive-after-months:13}") int archiveAfterMonths,
+                                    @Value("${usage.archive.dir:./data/usage-archive}") String archiveDir) {
+        this.partitionRepository = partitionRepository;
+        this.streamRepository = streamRepository;
+        this.monthsAhead = monthsAhead;
+        this.archiveAfterMonths = archiveAfterMonths;
+        this.archiveDir = Path.of(archiveDir);
+    }
+
+    /**
+     * Au démarrage : garantit les partitions du mois courant et des mois à venir.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            ensurePartitions(YearMonth.now());
+        } catch (Exception e) {
+            log.error("Impossible de créer les partitions usage_log à venir: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Maintenance quotidienne : création des partitions à venir puis archivage des mois anciens.
+     * Chaque étape est idempotente : une exécution interrompue est reprise le lendemain.
+     */
+    @Scheduled(cron = "0 30 1 * * ?") // Tous les jours à 01:30
+    public void maintain() {
+        if (!partitionRepository.withArchiveLock(false, () -> maintain(YearMonth.now()))) {
+            log.info("Maintenance des partitions usage_log déjà en cours sur une autre instance");
+        }
+    }
+
+    void maintain(YearMonth currentMonth) {
+        try {
+            UsageLogArchive.recover(archiveDir);
+        } catch (Exception e) {
+            log.error("Erreur lors de la reprise des archives usage_log: {}", e.getMessage(), e);
+        }
+        try {
+            ensurePartitions(currentMonth);
+        } catch (Exception e) {
+            log.error("Erreur lors de la création des partitions usage_log: {}", e.getMessage(), e);
+        }
+        YearMonth oldestKept = currentMonth.minusMonths(archiveAfterMonths);
+        for (MonthlyPartition partition : partitionRepository.findMonthlyPartitions()) {
+            if (partition.month().isBefore(oldestKept)) {
+                try {
+                    archive(partition);
+                } catch (Exception e) {
+                    log.error("Erreur lors de l'archivage de la partition {}: {}", partition.name(), e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Crée les partitions manquantes du mois courant aux monthsAhead mois suivants.
+     * Si des logs d'un de ces mois sont tombés dans la partition par défaut, ils y sont rapatriés.
+     */
+    void ensurePartitions(YearMonth currentMonth) {
+        Set<YearMonth> existing = partitionRepository.findMonthlyPartitions().stream()
+                .map(MonthlyPartition::month)
+                .collect(Collectors.toSet());
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = currentMonth.plusMonths(i);
+            if (existing.contains(month)) {
+                continue;
+            }
+            if (partitionRepository.defaultPartitionHasRows(month)) {
+                int moved = partitionRepository.createPartitionFromDefault(month);
+                log.warn("Partition {} créée tardivement: {} log(s) rapatrié(s) depuis usage_log_default",
+                        UsageLogPartitionRepository.partitionName(month), moved);
+            } else {
+                partitionRepository.createPartition(month);
+                log.info("Partition {} créée", UsageLogPartitionRepository.partitionName(month));
+            }
+        }
+    }
+
+    /**
+     * Détache la partition, écrit son archive (sauf si elle existe déjà) puis supprime la table.
+     * L'archive est synchronisée sur disque avant la suppression.
+     * DETACH sans CONCURRENTLY : interdit en présence d'une partition par défaut, et bref sur un mois clos.
+     */
+    void archive(MonthlyPartition partition) throws IOException {
+        if (partition.attached()) {
+            partitionRepository.detachPartition(partition.name());
+            log.info("Partition {} détachée de usage_log", partition.name());
+        }
+        Path directory = archiveDir.resolve(partition.name());
+        Manifest manifest = UsageLogArchive.readManifest(directory);
+        if (manifest == null) {
+            Files.createDirectories(archiveDir);
+            long rows = UsageLogArchive.write(archiveDir, partition.name(), partition.month(),
+                    consumer -> streamRepository.streamPartition(partition.name(), consumer));
+            log.info("Partition {} archivée: {} log(s) dans {}", partition.name(), rows, directory);
+        } else {
+            log.info("Archive {} déjà présente ({} log(s))", directory, manifest.rows());
+        }
+        partitionRepository.dropPartition(partition.name());
+        log.info("Partition {} supprimée", partition.name());
+    }
+
+    /**
+     * Archives disponibles, de la plus récente à la plus ancienne.
+     */
+    public List<Manifest> listArchives() {
+        List<Manifest> manifests = new ArrayList<>();
+        try {
+            for (Path directory : archiveDirectories()) {
+                Manifest manifest = UsageLogArchive.readManifest(directory);
+                if (manifest != null) {
+                    manifests.add(manifest);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible de lister les archives usage_log", e);
+        }
+        manifests.sort(Comparator.comparing(Manifest::month).reversed());
+        return manifests;
+    }
+
+    /**
+     * Retire des archives les logs des organisations et utilisateurs supprimés, après le commit de leur
+     * suppression en base (usage_log et agrégats). Attend la fin d'une maintenance en cours.
+     */
+    public void purgeArchives(Collection<Long> organizationIds, Collection<String> keycloakUserIds) {
+        Set<Long> organizations = Set.copyOf(organizationIds);
+        Set<String> users = Set.copyOf(keycloakUserIds);
+        if (organizations.isEmpty() && users.isEmpty()) {
+            return;
+        }
+        Runnable purge = () -> {
+            try {
+                partitionRepository.withArchiveLock(true, () -> removeFromArchives(organizations, users));
+            } catch (Exception e) {
+                log.error("Erreur lors de la purge des archives usage_log (organisations {}, {} utilisateur(s)): {}",
+                        organizations, users.size(), e.getMessage(), e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    purge.run();
+                }
+            });
+        } else {
+            purge.run();
+        }
+    }
+
+    void removeFromArchives(Set<Long> organizationIds, Set<String> keycloakUserIds) {
+        try {
+            UsageLogArchive.recover(archiveDir);
+            for (Path directory : archiveDirectories()) {
+                String partition = directory.getFileName().toString();
+                if (UsageLogArchive.readManifest(directory) == null) {
+                    continue;
+                }
+                long removed = UsageLogArchive.remove(archiveDir, partition, organizationIds, keycloakUserIds);
+                if (removed > 0) {
+                    log.info("Archive {}: {} log(s) retiré(s) (organisations {}, {} utilisateur(s))",
+                            partition, removed, organizationIds, keycloakUserIds.size());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible de purger les archives usage_log", e);
+        }
+    }
+
+    /**
+     * Répertoires d'archive (usage_log_pYYYYMM), hors répertoires temporaires et archives écartées.
+     */
+    private List<Path> archiveDirectories() throws IOException {
+        if (!Files.isDirectory(archiveDir)) {
+            return List.of();
+        }
+        try (var directories = Files.list(archiveDir)) {
+            return directories
+                    .filter(directory -> Files.isDirectory(directory)
+                            && ARCHIVE_NAME.matcher(directory.getFileName().toString()).matches())
+                    .toList();
+        }
+    }
+
+    /**
+     * Agrégats d'un mois archivé ; vide si le mois n'a pas d'archive.
+     */
+    public Optional<ArchiveStats> readArchive(YearMonth month) {
+        Path directory = archiveDir.resolve(UsageLogPartitionRepository.partitionName(month));
+        try {
+            if (UsageLogArchive.readManifest(directory) == null) {
+                return Optional.empty();
+            }
+            return Optional.of(UsageLogArchive.aggregate(directory));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible de lire l'archive usage_log " + month, e);
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package com.muhend.backend.usage.service;
 
+import com.muhend.backend.organization.dto.OrganizationMapper;
+import com.muhend.backend.organization.service.QuotaDecisionCache;
 import com.muhend.backend.usage.model.UsageLog;
+import com.muhend.backend.usage.model.UsageLogCursor;
 import com.muhend.backend.usage.repository.UsageLogRepository;
+import com.muhend.backend.usage.repository.UsageLogStreamRepository;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service pour gérer les logs d'utilisation.
@@ -18,9 +27,23 @@ import java.util.List;
 public class UsageLogService {
     
     private final UsageLogRepository repository;
+    private final Tracer tracer;
+    private final UsageRollupService rollupService;
+    private final UsageLogStreamRepository streamRepository;
+    private final QuotaDecisionCache quotaDecisionCache;
+    private final OrganizationMapper organizationMapper;
+    private final TransactionTemplate transactionTemplate;
     
-    public UsageLogService(UsageLogRepository repository) {
+    public UsageLogService(UsageLogRepository repository, Tracer tracer, UsageRollupService rollupService,
+                           UsageLogStreamRepository streamRepository, QuotaDecisionCache quotaDecisionCache,
+                           OrganizationMapper organizationMapper, PlatformTransactionManager transactionManager) {
         this.repository = repository;
+        this.tracer = tracer;
+        this.rollupService = rollupService;
+        this.streamRepository = streamRepository;
+        this.quotaDecisionCache = quotaDecisionCache;
+        this.organizationMapper = organizationMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
     
     /**
@@ -47,7 +70,13 @@ public class UsageLogService {
      */
     private void logUsageInternal(String keycloakUserId, Long organizationId, String endpoint, String searchTerm, 
                                   Integer tokens, BigDecimal costUsd) {
-        try {
+        // Span enfant de la consommation RabbitMQ : rattache l'écriture à la trace de la recherche
+        Span span = tracer.nextSpan().name("usage.log")
+                .tag("usage.endpoint", endpoint != null ? endpoint : "")
+                .tag("usage.tokens", tokens != null ? tokens : 0)
+                .tag("organization.id", organizationId != null ? String.valueOf(organizationId) : "")
+                .start();
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
             UsageLog usageLog = new UsageLog();
             usageLog.setKeycloakUserId(keycloakUserId);
             usageLog.setOrganizationId(organizationId);
@@ -57,16 +86,25 @@ public class UsageLogService {
             usageLog.setCostUsd(costUsd);
             usageLog.setTimestamp(LocalDateTime.now());
             
-            repository.save(usageLog);
+            // Log et incrément de son agrégat dans la même transaction (voir UsageRollupService)
+            transactionTemplate.executeWithoutResult(status -> {
+                repository.save(usageLog);
+                rollupService.recordUsage(usageLog.getTimestamp(), organizationId, keycloakUserId, endpoint, tokens, costUsd);
+            });
+            quotaDecisionCache.recordConsumption(organizationId, organizationMapper.creditsFor(endpoint));
             log.debug("Usage log enregistré pour l'utilisateur: {}, endpoint: {}, coût: {} EUR", 
                      keycloakUserId, endpoint, costUsd != null ? costUsd : BigDecimal.ZERO);
         } catch (org.springframework.dao.DataAccessException e) {
             // Erreur de base de données (table absente, connexion, etc.) - non bloquant
+            span.error(e);
             log.warn("Impossible d'enregistrer le log d'utilisation en base de données (table peut-être absente ou erreur DB): {}", 
                     e.getMessage());
         } catch (Exception e) {
             // Toute autre exception - non bloquant
+            span.error(e);
             log.warn("Erreur lors de l'enregistrement du log d'utilisation (non bloquant): {}", e.getMessage());
+        } finally {
+            span.end();
         }
     }
     
@@ -93,13 +131,6 @@ public class UsageLogService {
         return repository.findByKeycloakUserIdAndTimestampBetween(keycloakUserId, start, end);
     }
     
-    /**
-     * Récupère tous les logs (pour l'admin).
-     */
-    public List<UsageLog> getAllUsageLogs() {
-        return repository.findAll();
-    }
-    
     /**
      * Récupère les logs d'une organisation entre deux dates.
      */
@@ -110,12 +141,20 @@ public class UsageLogService {
     }
     
     /**
-     * Récupère les logs d'une organisation.
+     * Page de logs d'une organisation (du plus récent au plus ancien) après le curseur donné.
+     * Le curseur de la page suivante est {@code UsageLogCursor.after(dernier log)} si la page est pleine.
      */
-    public List<UsageLog> getUsageLogsByOrganization(Long organizationId) {
-        return repository.findAll().stream()
-                .filter(log -> log.getOrganizationId() != null && log.getOrganizationId().equals(organizationId))
-                .collect(java.util.stream.Collectors.toList());
+    public List<UsageLog> getUsageLogsPageByOrganization(Long organizationId, LocalDateTime start, LocalDateTime end,
+                                                         UsageLogCursor cursor, int limit) {
+        UsageLogCursor from = cursor != null ? cursor : UsageLogCursor.first(end);
+        return repository.findPageByOrganizationId(organizationId, start, end, from.timestamp(), from.id(), limit);
+    }
+    
+    /**
+     * Parcourt en flux les logs d'une organisation (exports), sans les charger en mémoire.
+     */
+    public void streamUsageLogsByOrganization(Long organizationId, LocalDateTime start, LocalDateTime end,
+                                              Consumer<UsageLog> consumer) {
+        streamRepository.streamByOrganizationId(organizationId, start, end, consumer);
     }
 }
-
@@ -0,0 +1,188 @@
+package com.muhend.backend.usage.service;
+
+import com.muhend.backend.usage.model.UsageCategory;
+import com.muhend.backend.usage.repository.UsageRollupRepository;
+import com.muhend.backend.usage.repository.UsageRollupRepository.GroupBy;
+import com.muhend.backend.usage.repository.UsageRollupRepository.RollupState;
+import com.muhend.backend.usage.repository.UsageRollupRepository.UsageTotalsRow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agrégats d'utilisation horaires et journaliers (par organisation, utilisateur et catégorie d'endpoint).
+ *
+ * - À l'enregistrement d'un log, l'agrégat de son heure est incrémenté (upsert), dans la transaction
+ *   du log : la compaction voit le log et son incrément, ou aucun des deux. Un log d'un jour déjà
+ *   compacté incrémente directement l'agrégat journalier.
+ * - Toutes les heures, la compaction recalcule les heures closes depuis usage_log puis replie
+ *   les jours terminés dans la table journalière.
+ * - Les statistiques combinent jours compactés, heures closes et logs bruts de l'heure en cours :
+ *   le coût d'une requête sur un mois ne dépend plus du nombre de logs.
+ */
+@Service
+@Slf4j
+public class UsageRollupService {
+
+    private final UsageRollupRepository rollupRepository;
+    private final TransactionTemplate savepoint;
+
+    public UsageRollupService(UsageRollupRepository rollupRepository, PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.savepoint = new TransactionTemplate(transactionManager);
+        this.savepoint.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+    }
+
+    /**
+     * Totaux d'utilisation d'une période ou d'un groupe (organisation, utilisateur).
+     */
+    public record UsageTotals(long requestCount, long tokensUsed, BigDecimal costUsd) {
+
+        public static final UsageTotals EMPTY = new UsageTotals(0, 0, BigDecimal.ZERO);
+    }
+
+    /**
+     * Ajoute un log enregistré à l'agrégat de son heure, à appeler dans la transaction qui insère le log.
+     * Non bloquant : un échec est annulé jusqu'au point de sauvegarde (le log reste enregistré) et rattrapé
+     * par la compaction, qui recalcule l'heure depuis usage_log.
+     */
+    public void recordUsage(LocalDateTime timestamp, Long organizationId, String keycloakUserId,
+                            String endpoint, Integer tokens, BigDecimal costUsd) {
+        try {
+            savepoint.executeWithoutResult(status -> rollupRepository.increment(
+                    timestamp.truncatedTo(ChronoUnit.HOURS),
+                    organizationId != null ? organizationId : 0L,
+                    keycloakUserId,
+                    UsageCategory.of(endpoint).getCode(),
+                    tokens != null ? tokens : 0L,
+                    costUsd != null ? costUsd : BigDecimal.ZERO));
+        } catch (Exception e) {
+            log.warn("Impossible de mettre à jour l'agrégat d'utilisation (rattrapé par la compaction): {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Compaction horaire (à la 5e minute pour laisser passer les derniers logs de l'heure écoulée).
+     */
+    @Scheduled(cron = "0 5 * * * ?") // Toutes les heures à hh:05
+    @Transactional
+    public void compact() {
+        compact(rollupRepository.currentTimestamp());
+    }
+
+    void compact(LocalDateTime now) {
+        LocalDateTime currentHour = now.truncatedTo(ChronoUnit.HOURS);
+        LocalDate today = now.toLocalDate();
+        // Verrouille la ligne d'état : une seule instance compacte à la fois
+        RollupState state = rollupRepository.lockState();
+
+        LocalDateTime hourlyUntil = state.hourlyUntil();
+        if (hourlyUntil.isBefore(currentHour)) {
+            int rows = rollupRepository.rebuildHourly(hourlyUntil, currentHour);
+            log.debug("Agrégats horaires recalculés de {} à {} : {} lignes", hourlyUntil, currentHour, rows);
+            hourlyUntil = currentHour;
+        }
+
+        LocalDate dailyUntil = state.dailyUntil();
+        if (dailyUntil.isBefore(today)) {
+            int rows = rollupRepository.foldHourlyIntoDaily(dailyUntil, today);
+            log.info("Agrégats d'utilisation compactés en journalier du {} au {} : {} lignes", dailyUntil, today.minusDays(1), rows);
+            dailyUntil = today;
+        }
+
+        rollupRepository.updateState(hourlyUntil, dailyUntil);
+    }
+
+    /**
+     * Totaux des jours [startDate, endDate] (inclus), éventuellement filtrés par organisation et/ou utilisateur.
+     */
+    public UsageTotals getTotals(LocalDate startDate, LocalDate endDate, Long organizationId, String keycloakUserId) {
+        List<UsageTotalsRow> rows = sum(GroupBy.NONE, startDate, endDate, organizationId, keycloakUserId);
+        return rows.isEmpty() ? UsageTotals.EMPTY : toTotals(rows.get(0));
+    }
+
+    /**
+     * Totaux par organisation (les logs sans organisation sont exclus).
+     */
+    public Map<Long, UsageTotals> getTotalsByOrganization(LocalDate startDate, LocalDate endDate) {
+        Map<Long, UsageTotals> result = new LinkedHashMap<>();
+        for (UsageTotalsRow row : sum(GroupBy.ORGANIZATION, startDate, endDate, null, null)) {
+            long organizationId = ((Number) row.key()).longValue();
+            if (organizationId != 0L) {
+                result.put(organizationId, toTotals(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Totaux par utilisateur, éventuellement restreints à une organisation.
+     */
+    public Map<String, UsageTotals> getTotalsByUser(LocalDate startDate, LocalDate endDate, Long organizationId) {
+        Map<String, UsageTotals> result = new LinkedHashMap<>();
+        for (UsageTotalsRow row : sum(GroupBy.USER, startDate, endDate, organizationId, null)) {
+            result.put((String) row.key(), toTotals(row));
+        }
+        return result;
+    }
+
+    public int deleteByOrganizationId(Long organizationId) {
+        return rollupRepository.deleteByOrganizationId(organizationId);
+    }
+
+    public int deleteByKeycloakUserId(String keycloakUserId) {
+        return rollupRepository.deleteByKeycloakUserId(keycloakUserId);
+    }
+
+    /**
+     * Découpe [startDate, endDate] en trois segments : jours déjà compactés (journalier),
+     * heures closes depuis (horaire), heure en cours (usage_log).
+     */
+    private List<UsageTotalsRow> sum(GroupBy groupBy, LocalDate startDate, LocalDate endDate,
+                                     Long organizationId, String keycloakUserId) {
+        LocalDate endExclusive = endDate.plusDays(1);
+        LocalDateTime rangeStart = startDate.atStartOfDay();
+        LocalDateTime rangeEnd = endExclusive.atStartOfDay();
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        LocalDate dailyUntil = rollupRepository.findDailyUntil();
+
+        LocalDate dailyTo = min(endExclusive, dailyUntil);
+        LocalDateTime hourlyFrom = max(rangeStart, dailyUntil.atStartOfDay());
+        LocalDateTime hourlyTo = min(rangeEnd, currentHour);
+        LocalDateTime rawFrom = max(hourlyFrom, currentHour);
+
+        return rollupRepository.sumBy(groupBy,
+                startDate, dailyTo,
+                hourlyFrom, hourlyTo,
+                rawFrom, rangeEnd,
+                organizationId, keycloakUserId);
+    }
+
+    private static UsageTotals toTotals(UsageTotalsRow row) {
+        return new UsageTotals(row.requestCount(), row.tokensUsed(), row.costUsd());
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -10,6 +10,8 @@ import com.muhend.backend.pricing.dto.PricingPlanDto;
 import com.muhend.backend.pricing.service.PricingPlanService;
 import com.muhend.backend.usage.model.UsageLog;
 import com.muhend.backend.usage.repository.UsageLogRepository;
+import com.muhend.backend.usage.service.UsageRollupService;
+import com.muhend.backend.usage.service.UsageRollupService.UsageTotals;
 import org.springframework.http.HttpStatus;
 import jakarta.validation.Valid;
 import io.swagger.v3.oas.annotations.Operation;
@@ -29,7 +31,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.LinkedHashMap;
@@ -53,6 +54,7 @@ public class UserController {
     private final PlanChangeService planChangeService;
     private final UsageLogRepository usageLogRepository;
     private final PricingPlanService pricingPlanService;
+    private final UsageRollupService usageRollupService;
 
     /**
      * Récupère l'organisation de l'utilisateur connecté.
@@ -109,44 +111,21 @@ public class UserController {
             Long organizationId = organizationService.getOrganizationIdByUserId(userId);
             
             // Déterminer la période (par défaut, ce mois)
-            LocalDateTime startDateTime;
-            LocalDateTime endDateTime;
-            
-            if (startDate != null && endDate != null) {
-                startDateTime = startDate.atStartOfDay();
-                endDateTime = endDate.atTime(LocalTime.MAX);
-            } else {
-                // Par défaut, ce mois en cours
-                LocalDateTime now = LocalDateTime.now();
-                startDateTime = now.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
-                endDateTime = now.withDayOfMonth(now.toLocalDate().lengthOfMonth())
-                        .withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-            }
+            LocalDate today = LocalDate.now();
+            LocalDate periodStart = startDate != null && endDate != null ? startDate : today.withDayOfMonth(1);
+            LocalDate periodEnd = startDate != null && endDate != null ? endDate : today.withDayOfMonth(today.lengthOfMonth());
 
-            // Récupérer les logs de l'utilisateur (filtrer par organisation ET utilisateur)
-            List<UsageLog> userLogs = usageLogRepository.findByOrganizationIdAndTimestampBetween(organizationId, startDateTime, endDateTime)
+            // Statistiques de l'utilisateur dans son organisation, depuis les agrégats + heure en cours
+            UsageTotals totals = usageRollupService.getTotals(periodStart, periodEnd, organizationId, userId);
+
+            // Utilisations récentes (10 dernières)
+            List<Map<String, Object>> recentUsage = usageLogRepository
+                    .findTop10ByKeycloakUserIdAndOrganizationIdAndTimestampBetweenOrderByTimestampDesc(
+                            userId, organizationId, periodStart.atStartOfDay(), periodEnd.atTime(LocalTime.MAX))
                     .stream()
-                    .filter(log -> userId.equals(log.getKeycloakUserId()))
+                    .map(this::toUsageLogMap)
                     .toList();
 
-        // Calculer les statistiques
-        long totalRequests = userLogs.size();
-        BigDecimal totalCost = userLogs.stream()
-                .filter(log -> log.getCostUsd() != null)
-                .map(UsageLog::getCostUsd)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        long totalTokens = userLogs.stream()
-                .filter(log -> log.getTokensUsed() != null)
-                .mapToLong(UsageLog::getTokensUsed)
-                .sum();
-
-        // Utilisations récentes (10 dernières)
-        List<Map<String, Object>> recentUsage = userLogs.stream()
-                .sorted((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()))
-                .limit(10)
-                .map(this::toUsageLogMap)
-                .toList();
-
             // Statistiques du mois en cours (pour l'affichage du quota)
             LocalDateTime startOfMonth = LocalDateTime.now().withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
             LocalDateTime endOfMonth = LocalDateTime.now().withDayOfMonth(LocalDateTime.now().toLocalDate().lengthOfMonth())
@@ -155,9 +134,9 @@ public class UserController {
             long monthlyCredits = quotaService.computeUserCredits(userId, startOfMonth, endOfMonth);
 
             Map<String, Object> stats = new LinkedHashMap<>();
-            stats.put("totalRequests", totalRequests);
-            stats.put("totalCostUsd", totalCost.doubleValue());
-            stats.put("totalTokens", totalTokens);
+            stats.put("totalRequests", totals.requestCount());
+            stats.put("totalCostUsd", totals.costUsd().doubleValue());
+            stats.put("totalTokens", totals.tokensUsed());
             stats.put("monthlyRequests", monthlyCredits);
             stats.put("recentUsage", recentUsage);
             
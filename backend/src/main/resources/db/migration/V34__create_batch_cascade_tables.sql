@@ -0,0 +1,36 @@
+-- V34 : Tables de la cascade batch côté serveur (search-service)
+-- Un job regroupe N articles ; chaque article avance niveau par niveau (SECTIONS → POSITIONS10)
+-- au fil des batches soumis au provider. L'état est persisté pour reprendre après redémarrage.
+
+CREATE TABLE IF NOT EXISTS batch_cascade_job (
+    id VARCHAR(64) PRIMARY KEY,
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    max_level VARCHAR(20) NOT NULL,
+    provider VARCHAR(20),
+    round INTEGER NOT NULL DEFAULT 0,
+    total_items INTEGER NOT NULL DEFAULT 0,
+    created_by VARCHAR(255),
+    error_message TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP,
+    completed_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS batch_cascade_item (
+    id BIGSERIAL PRIMARY KEY,
+    job_id VARCHAR(64) NOT NULL REFERENCES batch_cascade_job(id) ON DELETE CASCADE,
+    custom_id VARCHAR(64) NOT NULL,
+    search_term TEXT NOT NULL,
+    current_level VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    batch_id VARCHAR(255),
+    levels_json TEXT,
+    result_json TEXT,
+    updated_at TIMESTAMP,
+    CONSTRAINT uk_batch_cascade_item_job_custom UNIQUE (job_id, custom_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_batch_cascade_job_status ON batch_cascade_job(status);
+CREATE INDEX IF NOT EXISTS idx_batch_cascade_item_job_status ON batch_cascade_item(job_id, status);
+CREATE INDEX IF NOT EXISTS idx_batch_cascade_item_batch_id ON batch_cascade_item(batch_id);
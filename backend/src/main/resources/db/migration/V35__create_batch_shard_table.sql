@@ -0,0 +1,16 @@
+-- V35 : Découpage automatique des gros batches (search-service)
+-- Un batch logique ("multi-...") est soumis au provider sous forme de plusieurs batches (shards)
+-- dimensionnés selon les limites du provider (nombre de requêtes, taille du fichier JSONL).
+
+CREATE TABLE IF NOT EXISTS batch_shard (
+    id BIGSERIAL PRIMARY KEY,
+    logical_id VARCHAR(64) NOT NULL,
+    shard_index INTEGER NOT NULL,
+    batch_id VARCHAR(255) NOT NULL,
+    provider VARCHAR(20),
+    request_count INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_batch_shard_logical_index UNIQUE (logical_id, shard_index)
+);
+
+CREATE INDEX IF NOT EXISTS idx_batch_shard_logical_id ON batch_shard(logical_id);
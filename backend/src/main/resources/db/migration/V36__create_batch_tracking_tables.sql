@@ -0,0 +1,47 @@
+-- V36 : Suivi en arrière-plan des batches soumis (search-service)
+-- Un poller interroge le provider avec un intervalle adaptatif, met en cache le dernier statut,
+-- stocke les résultats une seule fois à la fin du batch puis notifie (RabbitMQ / webhook).
+-- Les appels clients /batch-search/status et /results deviennent des lectures locales.
+
+CREATE TABLE IF NOT EXISTS batch_tracking (
+    batch_id VARCHAR(255) PRIMARY KEY,
+    provider VARCHAR(20),
+    state VARCHAR(20) NOT NULL DEFAULT 'TRACKING',
+    processing_status VARCHAR(20),
+    request_counts_json TEXT,
+    provider_created_at VARCHAR(64),
+    provider_ended_at VARCHAR(64),
+    results_url TEXT,
+    request_count INTEGER NOT NULL DEFAULT 0,
+    result_count INTEGER NOT NULL DEFAULT 0,
+    success_count INTEGER NOT NULL DEFAULT 0,
+    error_count INTEGER NOT NULL DEFAULT 0,
+    poll_count INTEGER NOT NULL DEFAULT 0,
+    poll_interval_seconds INTEGER NOT NULL DEFAULT 30,
+    next_poll_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_polled_at TIMESTAMP,
+    webhook_url TEXT,
+    notify_attempts INTEGER NOT NULL DEFAULT 0,
+    notified_at TIMESTAMP,
+    created_by VARCHAR(255),
+    error_message TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP,
+    completed_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS batch_tracking_result (
+    id BIGSERIAL PRIMARY KEY,
+    batch_id VARCHAR(255) NOT NULL REFERENCES batch_tracking(batch_id) ON DELETE CASCADE,
+    custom_id VARCHAR(255) NOT NULL,
+    result_type VARCHAR(20),
+    content TEXT,
+    input_tokens INTEGER,
+    output_tokens INTEGER,
+    error_type VARCHAR(100),
+    error_message TEXT,
+    provider VARCHAR(20)
+);
+
+CREATE INDEX IF NOT EXISTS idx_batch_tracking_state_next_poll ON batch_tracking(state, next_poll_at);
+CREATE INDEX IF NOT EXISTS idx_batch_tracking_result_batch ON batch_tracking_result(batch_id, id);
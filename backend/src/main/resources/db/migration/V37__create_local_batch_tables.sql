@@ -0,0 +1,35 @@
+-- V37 : File de travail persistante des batches exécutés localement (search-service, provider ollama)
+-- Ollama n'a pas d'API batch : les requêtes sont mises en file et traitées par un pool de workers
+-- interne. L'avancement est persisté pour reprendre après redémarrage.
+
+CREATE TABLE IF NOT EXISTS local_batch (
+    id VARCHAR(64) PRIMARY KEY,
+    provider VARCHAR(20),
+    status VARCHAR(20) NOT NULL DEFAULT 'IN_PROGRESS',
+    total_requests INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP,
+    ended_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS local_batch_request (
+    id BIGSERIAL PRIMARY KEY,
+    batch_id VARCHAR(64) NOT NULL REFERENCES local_batch(id) ON DELETE CASCADE,
+    custom_id VARCHAR(255) NOT NULL,
+    search_term TEXT NOT NULL,
+    rag_context TEXT,
+    niveau VARCHAR(20),
+    with_justification BOOLEAN NOT NULL DEFAULT TRUE,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INTEGER NOT NULL DEFAULT 0,
+    content TEXT,
+    input_tokens INTEGER,
+    output_tokens INTEGER,
+    error_message TEXT,
+    started_at TIMESTAMP,
+    finished_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_local_batch_status ON local_batch(status);
+CREATE INDEX IF NOT EXISTS idx_local_batch_request_status ON local_batch_request(status, id);
+CREATE INDEX IF NOT EXISTS idx_local_batch_request_batch ON local_batch_request(batch_id, id);
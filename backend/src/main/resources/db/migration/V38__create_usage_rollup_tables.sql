@@ -0,0 +1,87 @@
+-- V38 : Agrégats horaires et journaliers de usage_log pour les statistiques d'utilisation
+-- Une ligne par (période, organisation, utilisateur, catégorie d'endpoint).
+-- organization_id = 0 pour les logs sans organisation (la clé primaire n'accepte pas NULL).
+-- La catégorie reprend le barème des crédits : positions10, positions6, decode-p10, decode, default.
+
+CREATE TABLE IF NOT EXISTS usage_rollup_hourly (
+    bucket_start TIMESTAMP NOT NULL,
+    organization_id BIGINT NOT NULL DEFAULT 0,
+    keycloak_user_id VARCHAR(255) NOT NULL,
+    endpoint_category VARCHAR(20) NOT NULL,
+    request_count BIGINT NOT NULL DEFAULT 0,
+    tokens_used BIGINT NOT NULL DEFAULT 0,
+    cost_usd NUMERIC(18, 6) NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_start, organization_id, keycloak_user_id, endpoint_category)
+);
+
+CREATE INDEX IF NOT EXISTS idx_usage_rollup_hourly_org ON usage_rollup_hourly(organization_id, bucket_start);
+CREATE INDEX IF NOT EXISTS idx_usage_rollup_hourly_user ON usage_rollup_hourly(keycloak_user_id, bucket_start);
+
+CREATE TABLE IF NOT EXISTS usage_rollup_daily (
+    bucket_date DATE NOT NULL,
+    organization_id BIGINT NOT NULL DEFAULT 0,
+    keycloak_user_id VARCHAR(255) NOT NULL,
+    endpoint_category VARCHAR(20) NOT NULL,
+    request_count BIGINT NOT NULL DEFAULT 0,
+    tokens_used BIGINT NOT NULL DEFAULT 0,
+    cost_usd NUMERIC(18, 6) NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_date, organization_id, keycloak_user_id, endpoint_category)
+);
+
+CREATE INDEX IF NOT EXISTS idx_usage_rollup_daily_org ON usage_rollup_daily(organization_id, bucket_date);
+CREATE INDEX IF NOT EXISTS idx_usage_rollup_daily_user ON usage_rollup_daily(keycloak_user_id, bucket_date);
+
+-- Avancement de la compaction (ligne unique) :
+-- hourly_until : les heures antérieures ont été recalculées depuis usage_log ;
+-- daily_until : les jours antérieurs sont dans usage_rollup_daily (plus de lignes horaires).
+CREATE TABLE IF NOT EXISTS usage_rollup_state (
+    id SMALLINT PRIMARY KEY,
+    hourly_until TIMESTAMP NOT NULL,
+    daily_until DATE NOT NULL
+);
+
+-- Reprise de l'historique : jours complets en journalier, heures closes du jour en horaire
+INSERT INTO usage_rollup_daily (bucket_date, organization_id, keycloak_user_id, endpoint_category,
+                                request_count, tokens_used, cost_usd)
+SELECT CAST(timestamp AS DATE),
+       COALESCE(organization_id, 0),
+       keycloak_user_id,
+       CASE
+           WHEN endpoint LIKE '%positions10%' THEN 'positions10'
+           WHEN endpoint LIKE '%positions6%' THEN 'positions6'
+           WHEN endpoint LIKE '%decode-p10%' THEN 'decode-p10'
+           WHEN endpoint LIKE '%decode%' THEN 'decode'
+           ELSE 'default'
+       END AS category,
+       COUNT(*),
+       COALESCE(SUM(tokens_used), 0),
+       COALESCE(SUM(cost_usd), 0)
+FROM usage_log
+WHERE timestamp < CURRENT_DATE
+GROUP BY 1, 2, 3, 4
+ON CONFLICT DO NOTHING;
+
+INSERT INTO usage_rollup_hourly (bucket_start, organization_id, keycloak_user_id, endpoint_category,
+                                 request_count, tokens_used, cost_usd)
+SELECT date_trunc('hour', timestamp),
+       COALESCE(organization_id, 0),
+       keycloak_user_id,
+       CASE
+           WHEN endpoint LIKE '%positions10%' THEN 'positions10'
+           WHEN endpoint LIKE '%positions6%' THEN 'positions6'
+           WHEN endpoint LIKE '%decode-p10%' THEN 'decode-p10'
+           WHEN endpoint LIKE '%decode%' THEN 'decode'
+           ELSE 'default'
+       END AS category,
+       COUNT(*),
+       COALESCE(SUM(tokens_used), 0),
+       COALESCE(SUM(cost_usd), 0)
+FROM usage_log
+WHERE timestamp >= CURRENT_DATE
+  AND timestamp < date_trunc('hour', LOCALTIMESTAMP)
+GROUP BY 1, 2, 3, 4
+ON CONFLICT DO NOTHING;
+
+INSERT INTO usage_rollup_state (id, hourly_until, daily_until)
+VALUES (1, date_trunc('hour', LOCALTIMESTAMP), CURRENT_DATE)
+ON CONFLICT (id) DO NOTHING;
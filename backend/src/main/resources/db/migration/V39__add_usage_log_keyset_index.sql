@@ -0,0 +1,6 @@
+-- V39 : Index de pagination par clé (keyset) des logs d'utilisation d'une organisation
+-- Parcours ORDER BY timestamp DESC, id DESC avec reprise sur (timestamp, id) < (:ts, :id) :
+-- l'ID départage les logs de même timestamp. Remplace idx_usage_log_org_timestamp (préfixe).
+
+CREATE INDEX IF NOT EXISTS idx_usage_log_org_timestamp_id ON usage_log(organization_id, timestamp, id);
+DROP INDEX IF EXISTS idx_usage_log_org_timestamp;
@@ -0,0 +1,55 @@
+-- V40 : Partitionnement déclaratif mensuel de usage_log (RANGE sur timestamp)
+-- Toutes les requêtes (quota, factures, statistiques, exports) filtrent sur une plage de timestamp :
+-- PostgreSQL n'examine que les partitions concernées. Les mois anciens sont détachés puis archivés
+-- sur disque par UsageLogPartitionService, qui crée aussi les partitions des mois à venir.
+--
+-- La clé primaire d'une table partitionnée doit contenir la clé de partitionnement : (id, timestamp).
+-- Les ids sont conservés ; la séquence usage_log_id_seq est recréée à la suite du plus grand id
+-- (l'ancienne, BIGSERIAL ou IDENTITY selon l'historique de la base, disparaît avec l'ancienne table).
+
+ALTER TABLE usage_log RENAME TO usage_log_legacy;
+ALTER INDEX IF EXISTS usage_log_pkey RENAME TO usage_log_legacy_pkey;
+
+CREATE TABLE usage_log (
+    id BIGINT NOT NULL,
+    keycloak_user_id VARCHAR(255) NOT NULL,
+    organization_id BIGINT,
+    endpoint VARCHAR(255) NOT NULL,
+    search_term VARCHAR(500),
+    tokens_used INTEGER,
+    cost_usd NUMERIC(10, 6),
+    timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT usage_log_pkey PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+-- Filet de sécurité pour un log hors des partitions existantes (rapatrié à la création du mois)
+CREATE TABLE usage_log_default PARTITION OF usage_log DEFAULT;
+
+-- Une partition par mois, du plus ancien log jusqu'à 3 mois après le mois courant
+DO $$
+DECLARE
+    mois DATE := date_trunc('month', COALESCE((SELECT MIN(timestamp) FROM usage_log_legacy), LOCALTIMESTAMP))::date;
+    fin DATE := (date_trunc('month', LOCALTIMESTAMP) + INTERVAL '4 months')::date;
+BEGIN
+    WHILE mois < fin LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF usage_log FOR VALUES FROM (%L) TO (%L)',
+                       'usage_log_p' || to_char(mois, 'YYYYMM'), mois, (mois + INTERVAL '1 month')::date);
+        mois := (mois + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO usage_log (id, keycloak_user_id, organization_id, endpoint, search_term, tokens_used, cost_usd, timestamp)
+SELECT id, keycloak_user_id, organization_id, endpoint, search_term, tokens_used, cost_usd, timestamp
+FROM usage_log_legacy;
+
+DROP TABLE usage_log_legacy;
+
+CREATE SEQUENCE usage_log_id_seq OWNED BY usage_log.id;
+SELECT setval('usage_log_id_seq', COALESCE((SELECT MAX(id) FROM usage_log), 0) + 1, false);
+ALTER TABLE usage_log ALTER COLUMN id SET DEFAULT nextval('usage_log_id_seq');
+
+-- Index partitionnés (créés sur chaque partition, y compris les futures).
+-- Les index simples organization_id / keycloak_user_id de V30 sont couverts par les index composites.
+CREATE INDEX IF NOT EXISTS idx_usage_log_org_timestamp_id ON usage_log(organization_id, timestamp, id);
+CREATE INDEX IF NOT EXISTS idx_usage_log_user_timestamp ON usage_log(keycloak_user_id, timestamp);
+CREATE INDEX IF NOT EXISTS idx_usage_log_timestamp ON usage_log(timestamp);
@@ -0,0 +1,19 @@
+-- V41 : Suivi des campagnes de facturation mensuelle (une ligne par mois facturé)
+-- Les organisations sont traitées par ordre d'ID, par lots : last_organization_id est le point de reprise
+-- d'une campagne interrompue (statut RUNNING). Les compteurs portent sur la campagne en cours.
+
+CREATE TABLE IF NOT EXISTS invoice_run (
+    id BIGSERIAL PRIMARY KEY,
+    period_year INTEGER NOT NULL,
+    period_month INTEGER NOT NULL,
+    status VARCHAR(30) NOT NULL,
+    last_organization_id BIGINT NOT NULL DEFAULT 0,
+    processed_count INTEGER NOT NULL DEFAULT 0,
+    generated_count INTEGER NOT NULL DEFAULT 0,
+    skipped_count INTEGER NOT NULL DEFAULT 0,
+    error_count INTEGER NOT NULL DEFAULT 0,
+    started_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP,
+    CONSTRAINT uk_invoice_run_period UNIQUE (period_year, period_month)
+);
@@ -0,0 +1,22 @@
+-- V42 : Outbox des emails transactionnels
+-- Les emails sont écrits dans la transaction métier qui les déclenche (facture, changement de plan...)
+-- puis envoyés par EmailOutboxWorker, avec reprise en cas d'échec SMTP (next_attempt_at, attempts).
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    template VARCHAR(100) NOT NULL,
+    recipient VARCHAR(320) NOT NULL,
+    subject VARCHAR(500) NOT NULL,
+    body TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP NOT NULL,
+    sent_at TIMESTAMP
+);
+
+-- Lecture des messages à envoyer par le worker
+CREATE INDEX IF NOT EXISTS idx_email_outbox_pending ON email_outbox (next_attempt_at, id) WHERE status = 'PENDING';
+-- Purge des messages envoyés
+CREATE INDEX IF NOT EXISTS idx_email_outbox_sent_at ON email_outbox (sent_at) WHERE status = 'SENT';
@@ -0,0 +1,10 @@
+-- V43 : Bail des requêtes de batch local prises par un worker (search-service, provider ollama)
+-- Une requête RUNNING appartient à l'instance qui l'a prise (lease_owner) jusqu'à lease_expires_at,
+-- prolongé tant que l'instance la traite. Seules les requêtes dont le bail a expiré, ou celles de
+-- l'instance qui redémarre, sont remises en file : les autres instances ne sont pas dépossédées.
+
+ALTER TABLE local_batch_request ADD COLUMN IF NOT EXISTS lease_owner VARCHAR(128);
+ALTER TABLE local_batch_request ADD COLUMN IF NOT EXISTS lease_expires_at TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_local_batch_request_running_lease
+    ON local_batch_request(lease_expires_at) WHERE status = 'RUNNING';
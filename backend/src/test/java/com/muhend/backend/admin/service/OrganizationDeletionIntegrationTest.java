@@ -5,8 +5,13 @@ import com.muhend.backend.invoice.model.Invoice;
 import com.muhend.backend.invoice.repository.InvoiceRepository;
 import com.muhend.backend.organization.model.Organization;
 import com.muhend.backend.organization.repository.OrganizationRepository;
+import com.muhend.backend.organization.service.QuotaDecisionCache;
 import com.muhend.backend.payment.model.Payment;
 import com.muhend.backend.payment.repository.PaymentRepository;
+import com.muhend.backend.pricing.service.PricingCatalogCache;
+import com.muhend.backend.usage.repository.UsageRollupRepository;
+import com.muhend.backend.usage.service.UsageRollupService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -23,7 +28,8 @@ import org.springframework.context.annotation.Import;
  * d'une organisation ne cause jamais d'erreur 500 liée à des dépendances circulaires 
  * de la base de données.
  */
-@Import(OrganizationDeletionService.class)
+@Import({OrganizationDeletionService.class, UsageRollupService.class, UsageRollupRepository.class,
+        QuotaDecisionCache.class, PricingCatalogCache.class, SimpleMeterRegistry.class})
 public class OrganizationDeletionIntegrationTest extends BaseIntegrationTest {
 
     @Autowired
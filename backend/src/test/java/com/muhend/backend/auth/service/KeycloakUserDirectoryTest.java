@@ -0,0 +1,237 @@
+package com.muhend.backend.auth.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.ws.rs.NotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class KeycloakUserDirectoryTest {
+
+    private static final String REALM = "hscode-realm";
+
+    @Mock private Keycloak keycloak;
+    @Mock private RealmResource realmResource;
+    @Mock private UsersResource usersResource;
+
+    private final Map<String, UserResource> userResources = new ConcurrentHashMap<>();
+    private SimpleMeterRegistry meterRegistry;
+    private KeycloakUserDirectory directory;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(keycloak.realm(REALM)).thenReturn(realmResource);
+        lenient().when(realmResource.users()).thenReturn(usersResource);
+        lenient().when(usersResource.get(anyString())).thenAnswer(i -> userResources.get(i.<String>getArgument(0)));
+        directory = newDirectory(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        directory.shutdown();
+    }
+
+    private KeycloakUserDirectory newDirectory(int parallelism) {
+        return new KeycloakUserDirectory(keycloak, meterRegistry, REALM, Duration.ofMinutes(5), 1000, parallelism);
+    }
+
+    private UserResource stubUser(String id) {
+        UserRepresentation user = new UserRepresentation();
+        user.setId(id);
+        user.setUsername("user-" + id);
+        user.setEmail(id + "@example.com");
+        UserResource userResource = mock(UserResource.class);
+        lenient().when(userResource.toRepresentation()).thenReturn(user);
+        userResources.put(id, userResource);
+        return userResource;
+    }
+
+    // ==================== find ====================
+
+    @Test
+    void testFind_WhenCalledTwice_ShouldQueryKeycloakOnce() {
+        UserResource userResource = stubUser("u1");
+
+        Optional<UserRepresentation> first = directory.find("u1");
+        Optional<UserRepresentation> second = directory.find("u1");
+
+        assertEquals("user-u1", first.orElseThrow().getUsername());
+        assertEquals("user-u1", second.orElseThrow().getUsername());
+        verify(userResource, times(1)).toRepresentation();
+        assertEquals(1, meterRegistry.get("keycloak.directory.fetch").tag("resultat", "trouve").timer().count());
+    }
+
+    @Test
+    void testFind_WhenUserDoesNotExist_ShouldCacheAbsence() {
+        UserResource userResource = mock(UserResource.class);
+        when(userResource.toRepresentation()).thenThrow(new NotFoundException());
+        userResources.put("ghost", userResource);
+
+        assertTrue(directory.find("ghost").isEmpty());
+        assertTrue(directory.find("ghost").isEmpty());
+
+        verify(userResource, times(1)).toRepresentation();
+        assertEquals(1, meterRegistry.get("keycloak.directory.fetch").tag("resultat", "absent").timer().count());
+    }
+
+    @Test
+    void testFind_WhenKeycloakFails_ShouldNotCacheError() {
+        UserResource userResource = stubUser("u1");
+        when(userResource.toRepresentation())
+                .thenThrow(new RuntimeException("Keycloak indisponible"))
+                .thenReturn(new UserRepresentation());
+
+        assertThrows(RuntimeException.class, () -> directory.find("u1"));
+        assertTrue(directory.find("u1").isPresent());
+
+        verify(userResource, times(2)).toRepresentation();
+    }
+
+    @Test
+    void testInvalidate_ShouldReloadUserOnNextLookup() {
+        UserResource userResource = stubUser("u1");
+
+        directory.find("u1");
+        directory.invalidate("u1");
+        directory.find("u1");
+
+        verify(userResource, times(2)).toRepresentation();
+    }
+
+    @Test
+    void testFind_WhenCallerModifiesUser_ShouldNotAlterCachedEntry() {
+        stubUser("u1");
+
+        UserRepresentation first = directory.find("u1").orElseThrow();
+        assertEquals("u1@example.com", first.getEmail());
+        first.setEmail("modifie@example.com");
+        first.setEnabled(false);
+        directory.findAll(List.of("u1")).get("u1").setUsername("modifie");
+
+        UserRepresentation second = directory.find("u1").orElseThrow();
+        assertNotSame(first, second);
+        assertEquals("u1@example.com", second.getEmail());
+        assertEquals("user-u1", second.getUsername());
+        assertNull(second.isEnabled());
+    }
+
+    @Test
+    void testFindFresh_ShouldBypassCacheAndRefreshEntry() {
+        UserResource userResource = stubUser("u1");
+        assertNull(directory.find("u1").orElseThrow().isEnabled());
+        UserRepresentation disabled = new UserRepresentation();
+        disabled.setId("u1");
+        disabled.setUsername("user-u1");
+        disabled.setEnabled(false);
+        when(userResource.toRepresentation()).thenReturn(disabled);
+
+        assertEquals(Boolean.FALSE, directory.findFresh("u1").orElseThrow().isEnabled());
+        assertEquals(Boolean.FALSE, directory.find("u1").orElseThrow().isEnabled());
+
+        verify(userResource, times(2)).toRepresentation();
+    }
+
+    @Test
+    void testFind_WhenConcurrentMissesOnSameUser_ShouldCoalesceIntoOneCall() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        UserResource userResource = stubUser("u1");
+        UserRepresentation user = userResource.toRepresentation();
+        reset(userResource);
+        when(userResource.toRepresentation()).thenAnswer(i -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return user;
+        });
+
+        CompletableFuture<Optional<UserRepresentation>> first = CompletableFuture.supplyAsync(() -> directory.find("u1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Optional<UserRepresentation>> second = CompletableFuture.supplyAsync(() -> directory.find("u1"));
+        release.countDown();
+
+        assertEquals("user-u1", first.get(5, TimeUnit.SECONDS).orElseThrow().getUsername());
+        assertEquals("user-u1", second.get(5, TimeUnit.SECONDS).orElseThrow().getUsername());
+        verify(userResource, times(1)).toRepresentation();
+    }
+
+    // ==================== findAll ====================
+
+    @Test
+    void testFindAll_ShouldSkipMissingAndFailedUsersAndKeepOrder() {
+        stubUser("u1");
+        stubUser("u3");
+        UserResource missing = mock(UserResource.class);
+        when(missing.toRepresentation()).thenThrow(new NotFoundException());
+        userResources.put("u2", missing);
+        UserResource failing = mock(UserResource.class);
+        when(failing.toRepresentation()).thenThrow(new RuntimeException("timeout"));
+        userResources.put("u4", failing);
+
+        Map<String, UserRepresentation> users = directory.findAll(List.of("u3", "u2", "u1", "u4", "u1"));
+
+        assertEquals(List.of("u3", "u1"), List.copyOf(users.keySet()));
+    }
+
+    @Test
+    void testFindAll_ShouldBoundConcurrentKeycloakCalls() {
+        directory.shutdown();
+        directory = newDirectory(2);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<String> ids = List.of("a", "b", "c", "d", "e", "f");
+        for (String id : ids) {
+            UserResource userResource = stubUser(id);
+            UserRepresentation user = userResource.toRepresentation();
+            reset(userResource);
+            when(userResource.toRepresentation()).thenAnswer(i -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(50);
+                inFlight.decrementAndGet();
+                return user;
+            });
+        }
+
+        Map<String, UserRepresentation> users = directory.findAll(ids);
+
+        assertEquals(6, users.size());
+        assertTrue(maxInFlight.get() <= 2, "au plus 2 appels Keycloak simultanés, observé: " + maxInFlight.get());
+    }
+
+    @Test
+    void testFindAll_WhenUsersAlreadyCached_ShouldNotQueryKeycloak() {
+        UserResource u1 = stubUser("u1");
+        UserResource u2 = stubUser("u2");
+        directory.findAll(List.of("u1", "u2"));
+
+        directory.findAll(List.of("u2", "u1"));
+
+        verify(u1, times(1)).toRepresentation();
+        verify(u2, times(1)).toRepresentation();
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "keycloak.users").tag("result", "hit")
+                .functionCounter().count() >= 2);
+    }
+}
@@ -0,0 +1,88 @@
+package com.muhend.backend.email.service;
+
+import com.muhend.backend.email.model.EmailOutboxMessage;
+import com.muhend.backend.email.model.EmailOutboxMessage.Status;
+import com.muhend.backend.email.repository.EmailOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxServiceTest {
+
+    @Mock
+    private EmailOutboxRepository emailOutboxRepository;
+
+    private EmailOutboxService emailOutboxService;
+
+    @BeforeEach
+    void setUp() {
+        emailOutboxService = new EmailOutboxService(emailOutboxRepository, 3,
+                Duration.ofMinutes(1), Duration.ofMinutes(10), Duration.ofMinutes(5));
+        lenient().when(emailOutboxRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private static EmailOutboxMessage message(long id, int attempts) {
+        EmailOutboxMessage message = new EmailOutboxMessage();
+        message.setId(id);
+        message.setTemplate("invoice-notification");
+        message.setRecipient("a@test.com");
+        message.setAttempts(attempts);
+        message.setNextAttemptAt(LocalDateTime.now());
+        return message;
+    }
+
+    // ==================== Reprise ====================
+
+    @Test
+    void testBackoff_ShouldDoubleUntilMaximum() {
+        assertEquals(Duration.ofMinutes(1), emailOutboxService.backoff(1));
+        assertEquals(Duration.ofMinutes(2), emailOutboxService.backoff(2));
+        assertEquals(Duration.ofMinutes(8), emailOutboxService.backoff(4));
+        assertEquals(Duration.ofMinutes(10), emailOutboxService.backoff(5));
+        assertEquals(Duration.ofMinutes(10), emailOutboxService.backoff(100));
+    }
+
+    @Test
+    void testMarkFailed_ShouldRescheduleThenAbandonAfterMaxAttempts() {
+        EmailOutboxMessage retried = message(1L, 2);
+        EmailOutboxMessage abandoned = message(2L, 3);
+        when(emailOutboxRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(retried, abandoned));
+        LocalDateTime before = LocalDateTime.now();
+
+        int count = emailOutboxService.markFailed(Map.of(1L, "Connexion refusée", 2L, "Connexion refusée"));
+
+        assertEquals(1, count);
+        assertEquals(Status.PENDING, retried.getStatus());
+        assertFalse(retried.getNextAttemptAt().isBefore(before.plusMinutes(2)));
+        assertEquals("Connexion refusée", retried.getLastError());
+        assertEquals(Status.FAILED, abandoned.getStatus());
+    }
+
+    // ==================== Réservation ====================
+
+    @Test
+    void testClaim_ShouldCountAttemptAndLeaseMessages() {
+        EmailOutboxMessage pending = message(1L, 0);
+        when(emailOutboxRepository.lockPending(any(LocalDateTime.class), eq(50))).thenReturn(List.of(pending));
+        LocalDateTime before = LocalDateTime.now();
+
+        List<EmailOutboxMessage> claimed = emailOutboxService.claim(50);
+
+        assertEquals(List.of(pending), claimed);
+        assertEquals(1, pending.getAttempts());
+        assertFalse(pending.getNextAttemptAt().isBefore(before.plusMinutes(5)));
+    }
+}
@@ -0,0 +1,140 @@
+package com.muhend.backend.email.service;
+
+import com.muhend.backend.email.model.EmailOutboxMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxWorkerTest {
+
+    @Mock
+    private EmailOutboxService emailOutboxService;
+
+    @Mock
+    private JavaMailSender mailSender;
+
+    private SimpleMeterRegistry meterRegistry;
+    private EmailOutboxWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        worker = new EmailOutboxWorker(emailOutboxService, mailSender, new SyncTaskExecutor(), meterRegistry,
+                2, 50, Duration.ofDays(30));
+        lenient().when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+    }
+
+    private static EmailOutboxMessage message(long id, String recipient) {
+        EmailOutboxMessage message = new EmailOutboxMessage();
+        message.setId(id);
+        message.setTemplate("invoice-notification");
+        message.setRecipient(recipient);
+        message.setSubject("Nouvelle facture disponible - INV-202503-0001");
+        message.setBody("<p>Facture</p>");
+        message.setAttempts(1);
+        message.setCreatedAt(LocalDateTime.now().minusSeconds(5));
+        return message;
+    }
+
+    private double messages(String resultat) {
+        return meterRegistry.counter("email.outbox.messages", "resultat", resultat).count();
+    }
+
+    // ==================== Envoi par lots ====================
+
+    @Test
+    void testSend_ShouldSendBatchOverOneConnectionAndMarkSent() {
+        worker.send(List.of(message(1L, "a@test.com"), message(2L, "b@test.com")));
+
+        ArgumentCaptor<MimeMessage[]> sent = ArgumentCaptor.forClass(MimeMessage[].class);
+        verify(mailSender, times(1)).send(sent.capture());
+        assertEquals(2, sent.getValue().length);
+        verify(emailOutboxService).markSent(List.of(1L, 2L));
+        verify(emailOutboxService, never()).markFailed(anyMap());
+        assertEquals(2, messages("envoye"));
+    }
+
+    @Test
+    void testSend_WhenOneRecipientRejected_ShouldRetryOnlyThatMessage() {
+        doAnswer(invocation -> {
+            MimeMessage rejected = invocation.getArgument(1);
+            throw new MailSendException(Map.of(rejected, new IllegalStateException("550 Mailbox unavailable")));
+        }).when(mailSender).send(any(MimeMessage.class), any(MimeMessage.class));
+        when(emailOutboxService.markFailed(anyMap())).thenReturn(0);
+
+        worker.send(List.of(message(1L, "a@test.com"), message(2L, "b@test.com")));
+
+        verify(emailOutboxService).markSent(List.of(1L));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Long, String>> errors = ArgumentCaptor.forClass(Map.class);
+        verify(emailOutboxService).markFailed(errors.capture());
+        assertEquals(Map.of(2L, "550 Mailbox unavailable"), errors.getValue());
+        assertEquals(1, messages("reessai"));
+    }
+
+    @Test
+    void testSend_WhenSmtpUnavailable_ShouldRetryWholeBatch() {
+        doThrow(new MailSendException("Connexion refusée")).when(mailSender).send(any(MimeMessage[].class));
+        when(emailOutboxService.markFailed(anyMap())).thenReturn(1);
+
+        worker.send(List.of(message(1L, "a@test.com"), message(2L, "b@test.com")));
+
+        verify(emailOutboxService, never()).markSent(any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Long, String>> errors = ArgumentCaptor.forClass(Map.class);
+        verify(emailOutboxService).markFailed(errors.capture());
+        assertEquals(2, errors.getValue().size());
+        assertEquals(1, messages("reessai"));
+        assertEquals(1, messages("abandonne"));
+    }
+
+    // ==================== Workers ====================
+
+    @Test
+    void testPoll_WhenQueueEmpty_ShouldNotClaim() {
+        when(emailOutboxService.countPending()).thenReturn(0L);
+
+        worker.poll();
+
+        verify(emailOutboxService, never()).claim(anyInt());
+        assertEquals(0, meterRegistry.get("email.outbox.pending").gauge().value());
+    }
+
+    @Test
+    void testPoll_ShouldDrainUntilNoMessageIsDue() {
+        when(emailOutboxService.countPending()).thenReturn(3L);
+        when(emailOutboxService.claim(50))
+                .thenReturn(List.of(message(1L, "a@test.com"), message(2L, "b@test.com")))
+                .thenReturn(List.of(message(3L, "c@test.com")))
+                .thenReturn(List.of());
+
+        worker.poll();
+
+        verify(mailSender, times(2)).send(any(MimeMessage[].class));
+        verify(emailOutboxService, times(2)).markSent(any(Collection.class));
+        assertEquals(3, messages("envoye"));
+        assertEquals(3, meterRegistry.get("email.outbox.pending").gauge().value());
+    }
+}
@@ -0,0 +1,143 @@
+package com.muhend.backend.invoice.controller;
+
+import com.muhend.backend.invoice.dto.InvoiceDto;
+import com.muhend.backend.invoice.service.InvoicePdfStore;
+import com.muhend.backend.invoice.service.InvoiceService;
+import com.muhend.backend.invoice.service.MonthlyInvoiceRunService;
+import com.muhend.backend.organization.service.OrganizationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Téléchargement des PDF depuis le cache disque : ETag, requêtes Range et archive ZIP.
+ * Les règles @PreAuthorize ne sont pas appliquées par MockMvc en mode standalone.
+ */
+@ExtendWith(MockitoExtension.class)
+class InvoiceControllerTest {
+
+    private static final byte[] PDF = "%PDF-1.4 contenu de la facture de test".getBytes(StandardCharsets.US_ASCII);
+    private static final String KEY = "ab12cd34";
+
+    @Mock
+    private InvoiceService invoiceService;
+
+    @Mock
+    private InvoicePdfStore invoicePdfStore;
+
+    @Mock
+    private MonthlyInvoiceRunService monthlyInvoiceRunService;
+
+    @Mock
+    private OrganizationService organizationService;
+
+    @TempDir
+    Path directory;
+
+    private MockMvc mockMvc;
+    private InvoiceDto invoice;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        invoice = new InvoiceDto();
+        invoice.setId(1L);
+        invoice.setInvoiceNumber("INV-202503-0001");
+        Path path = Files.write(directory.resolve(KEY + ".pdf"), PDF);
+        when(invoicePdfStore.get(invoice)).thenReturn(new InvoicePdfStore.StoredPdf(KEY, path, PDF.length));
+
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                new InvoiceController(invoiceService, invoicePdfStore, monthlyInvoiceRunService, organizationService))
+                .build();
+    }
+
+    // ==================== PDF d'une facture ====================
+
+    @Test
+    void testDownloadInvoicePdf_ShouldServeFileWithETag() throws Exception {
+        when(invoiceService.getInvoiceById(1L)).thenReturn(invoice);
+
+        mockMvc.perform(get("/invoices/admin/1/pdf"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + KEY + "\""))
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, String.valueOf(PDF.length)))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"facture_INV-202503-0001.pdf\""))
+                .andExpect(content().bytes(PDF));
+    }
+
+    @Test
+    void testDownloadInvoicePdf_WhenETagMatches_ShouldReturnNotModified() throws Exception {
+        when(invoiceService.getInvoiceById(1L)).thenReturn(invoice);
+
+        mockMvc.perform(get("/invoices/admin/1/pdf").header(HttpHeaders.IF_NONE_MATCH, "\"" + KEY + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + KEY + "\""))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void testDownloadInvoicePdf_WhenETagDiffers_ShouldServeFile() throws Exception {
+        when(invoiceService.getInvoiceById(1L)).thenReturn(invoice);
+
+        mockMvc.perform(get("/invoices/admin/1/pdf").header(HttpHeaders.IF_NONE_MATCH, "\"ancienne-empreinte\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(PDF));
+    }
+
+    @Test
+    void testDownloadInvoicePdf_WithRange_ShouldReturnPartialContent() throws Exception {
+        when(invoiceService.getInvoiceById(1L)).thenReturn(invoice);
+
+        mockMvc.perform(get("/invoices/admin/1/pdf").header(HttpHeaders.RANGE, "bytes=0-9"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-9/" + PDF.length))
+                .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "10"))
+                .andExpect(content().bytes(Arrays.copyOfRange(PDF, 0, 10)));
+    }
+
+    // ==================== Archive ZIP ====================
+
+    @Test
+    void testDownloadInvoicePdfArchive_ShouldStorePdfWithoutCompression() throws Exception {
+        when(invoiceService.getInvoicesByPeriodMonth(YearMonth.of(2025, 3))).thenReturn(List.of(invoice));
+
+        byte[] archive = mockMvc.perform(get("/invoices/admin/pdf-archive").param("year", "2025").param("month", "3"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/zip"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertNotNull(entry);
+            assertEquals("facture_INV-202503-0001.pdf", entry.getName());
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            assertEquals(PDF.length, entry.getSize());
+            assertArrayEquals(PDF, zip.readAllBytes());
+            assertNull(zip.getNextEntry());
+        }
+    }
+}
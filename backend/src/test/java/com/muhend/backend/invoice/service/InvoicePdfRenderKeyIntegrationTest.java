@@ -0,0 +1,109 @@
+package com.muhend.backend.invoice.service;
+
+import com.muhend.backend.BaseIntegrationTest;
+import com.muhend.backend.invoice.dto.InvoiceDto;
+import com.muhend.backend.invoice.model.Invoice;
+import com.muhend.backend.invoice.model.InvoiceItem;
+import com.muhend.backend.invoice.repository.InvoiceItemRepository;
+import com.muhend.backend.invoice.repository.InvoiceRepository;
+import com.muhend.backend.usage.repository.UsageLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * L'empreinte calculée pour le rendu anticipé (facture tout juste enregistrée, valeurs en mémoire)
+ * doit être celle de la facture relue depuis la base : sinon le PDF pré-rendu n'est jamais servi.
+ */
+public class InvoicePdfRenderKeyIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private InvoiceItemRepository invoiceItemRepository;
+
+    @Autowired
+    private UsageLogRepository usageLogRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private InvoiceService invoiceService;
+    private InvoicePdfService invoicePdfService;
+
+    @BeforeEach
+    void setUp() {
+        invoiceService = new InvoiceService(invoiceRepository, invoiceItemRepository, usageLogRepository,
+                null, null, null, null, null);
+        invoicePdfService = new InvoicePdfService();
+    }
+
+    private Invoice saveInvoice(LocalDateTime createdAt) {
+        Invoice invoice = new Invoice();
+        invoice.setOrganizationId(1L);
+        invoice.setOrganizationName("Organisation Test");
+        invoice.setOrganizationEmail("facturation@test.com");
+        invoice.setInvoiceNumber("INV-202503-0001");
+        invoice.setPeriodStart(LocalDate.of(2025, 3, 1));
+        invoice.setPeriodEnd(LocalDate.of(2025, 3, 31));
+        // Échelle différente de celle de la colonne (2)
+        invoice.setTotalAmount(new BigDecimal("12.5"));
+        invoice.setCreatedAt(createdAt);
+        invoice = invoiceRepository.save(invoice);
+
+        InvoiceItem item = new InvoiceItem();
+        item.setInvoice(invoice);
+        item.setDescription("Recherche par sections");
+        item.setQuantity(5);
+        // Échelle différente de celle de la colonne (6)
+        item.setUnitPrice(new BigDecimal("2.5"));
+        item.setTotalPrice(new BigDecimal("12.5"));
+        item.setItemType("API_REQUEST");
+        invoiceItemRepository.save(item);
+        entityManager.flush();
+        return invoice;
+    }
+
+    private String reloadedKey(Long invoiceId) {
+        entityManager.clear();
+        return invoicePdfService.renderKey(invoiceService.getInvoiceById(invoiceId));
+    }
+
+    // ==================== Empreinte après relecture ====================
+
+    @Test
+    void testRenderKey_WhenCreatedAtSetOnPersist_ShouldSurviveReload() {
+        Invoice invoice = saveInvoice(null);
+        InvoiceDto beforeReload = invoiceService.getInvoiceById(invoice.getId());
+
+        String key = invoicePdfService.renderKey(beforeReload);
+
+        assertEquals(key, reloadedKey(invoice.getId()));
+    }
+
+    @Test
+    void testRenderKey_WhenCreatedAtHasNanoseconds_ShouldSurviveReload() {
+        Invoice invoice = saveInvoice(LocalDateTime.of(2025, 4, 1, 8, 0, 0, 123_456_789));
+        InvoiceDto beforeReload = invoiceService.getInvoiceById(invoice.getId());
+
+        String key = invoicePdfService.renderKey(beforeReload);
+
+        assertEquals(123_456_789, beforeReload.getCreatedAt().getNano());
+        assertEquals(key, reloadedKey(invoice.getId()));
+    }
+
+    @Test
+    void testOnCreate_ShouldTruncateCreatedAtToDatabasePrecision() {
+        Invoice invoice = saveInvoice(null);
+
+        assertEquals(0, invoice.getCreatedAt().getNano() % 1_000);
+    }
+}
@@ -0,0 +1,166 @@
+package com.muhend.backend.invoice.service;
+
+import com.muhend.backend.invoice.dto.InvoiceDto;
+import com.muhend.backend.invoice.dto.InvoiceItemDto;
+import com.muhend.backend.invoice.model.Invoice;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvoicePdfStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InvoicePdfStore store;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new InvoicePdfStore(new InvoicePdfService(), new SyncTaskExecutor(), meterRegistry, directory.toString());
+    }
+
+    private static InvoiceDto invoice(Invoice.InvoiceStatus status) {
+        InvoiceDto dto = new InvoiceDto();
+        dto.setId(1L);
+        dto.setOrganizationId(10L);
+        dto.setOrganizationName("Organisation Test");
+        dto.setOrganizationEmail("facturation@test.com");
+        dto.setInvoiceNumber("INV-202503-0001");
+        dto.setPeriodStart(LocalDate.of(2025, 3, 1));
+        dto.setPeriodEnd(LocalDate.of(2025, 3, 31));
+        dto.setCreatedAt(LocalDateTime.of(2025, 4, 1, 8, 0));
+        dto.setDueDate(LocalDate.of(2025, 4, 30));
+        dto.setTotalAmount(new BigDecimal("12.50"));
+        dto.setStatus(status);
+        InvoiceItemDto item = new InvoiceItemDto();
+        item.setDescription("Recherche par sections");
+        item.setQuantity(5);
+        item.setUnitPrice(new BigDecimal("2.500000"));
+        item.setTotalPrice(new BigDecimal("12.50"));
+        item.setItemType("API_REQUEST");
+        dto.setItems(List.of(item));
+        return dto;
+    }
+
+    private long renders() {
+        return meterRegistry.timer("invoice.pdf.render").count();
+    }
+
+    // ==================== Rendu et cache ====================
+
+    @Test
+    void testGet_WhenAlreadyRendered_ShouldServeStoredFile() throws IOException {
+        InvoicePdfStore.StoredPdf first = store.get(invoice(Invoice.InvoiceStatus.PENDING));
+        InvoicePdfStore.StoredPdf second = store.get(invoice(Invoice.InvoiceStatus.PENDING));
+
+        assertEquals(1, renders());
+        assertEquals(first, second);
+        assertTrue(first.size() > 0);
+        assertEquals("%PDF", new String(Files.readAllBytes(first.path()), 0, 4));
+        assertTrue(first.path().startsWith(directory));
+    }
+
+    @Test
+    void testGet_WhenStatusChanges_ShouldUseNewKey() throws IOException {
+        InvoicePdfStore.StoredPdf pending = store.get(invoice(Invoice.InvoiceStatus.PENDING));
+        InvoicePdfStore.StoredPdf paid = store.get(invoice(Invoice.InvoiceStatus.PAID));
+
+        assertNotEquals(pending.key(), paid.key());
+        assertEquals(2, renders());
+    }
+
+    @Test
+    void testPrerender_WithoutTransaction_ShouldRenderImmediately() throws IOException {
+        store.prerender(invoice(Invoice.InvoiceStatus.PENDING));
+        assertEquals(1, renders());
+
+        store.get(invoice(Invoice.InvoiceStatus.PENDING));
+        assertEquals(1, renders());
+    }
+
+    // ==================== Invalidation ====================
+
+    @Test
+    void testReplace_WhenStatusChanges_ShouldDeletePreviousAndRenderCurrent() throws IOException {
+        InvoiceDto pending = invoice(Invoice.InvoiceStatus.PENDING);
+        InvoiceDto paid = invoice(Invoice.InvoiceStatus.PAID);
+        Path previousPath = store.get(pending).path();
+
+        store.replace(pending, paid);
+
+        assertFalse(Files.exists(previousPath));
+        assertEquals(2, renders());
+        store.get(paid);
+        assertEquals(2, renders());
+    }
+
+    @Test
+    void testReplace_WhenRenderedFieldsUnchanged_ShouldKeepFile() throws IOException {
+        InvoiceDto before = invoice(Invoice.InvoiceStatus.PENDING);
+        InvoiceDto after = invoice(Invoice.InvoiceStatus.PENDING);
+        after.setViewedAt(LocalDateTime.now());
+        Path path = store.get(before).path();
+
+        store.replace(before, after);
+
+        assertTrue(Files.exists(path));
+        assertEquals(1, renders());
+    }
+
+    @Test
+    void testEvict_WithoutTransaction_ShouldDeleteFilesImmediately() throws IOException {
+        InvoicePdfStore.StoredPdf pdf = store.get(invoice(Invoice.InvoiceStatus.PENDING));
+
+        store.evict(List.of(pdf.key()));
+
+        assertFalse(Files.exists(pdf.path()));
+    }
+
+    // ==================== Balayage ====================
+
+    @Test
+    void testSweep_ShouldDeleteOldOrphansOnly() throws IOException {
+        Instant now = Instant.now();
+        InvoicePdfStore.StoredPdf live = store.get(invoice(Invoice.InvoiceStatus.PAID));
+        InvoicePdfStore.StoredPdf orphan = store.get(invoice(Invoice.InvoiceStatus.PENDING));
+        Path abandonedTmp = Files.createFile(orphan.path().resolveSibling(orphan.key() + ".pdf123.tmp"));
+        InvoicePdfStore.StoredPdf recentOrphan = store.get(invoice(Invoice.InvoiceStatus.OVERDUE));
+        for (Path path : List.of(live.path(), orphan.path(), abandonedTmp)) {
+            Files.setLastModifiedTime(path, FileTime.from(now.minus(Duration.ofDays(1))));
+        }
+
+        int deleted = store.sweep(Set.of(live.key()), now.minus(Duration.ofHours(1)));
+
+        assertEquals(2, deleted);
+        assertTrue(Files.exists(live.path()));
+        assertFalse(Files.exists(orphan.path()));
+        assertFalse(Files.exists(abandonedTmp));
+        assertTrue(Files.exists(recentOrphan.path()));
+    }
+
+    @Test
+    void testSweep_WhenDirectoryMissing_ShouldDoNothing() throws IOException {
+        InvoicePdfStore empty = new InvoicePdfStore(new InvoicePdfService(), new SyncTaskExecutor(), meterRegistry,
+                directory.resolve("absent").toString());
+
+        assertEquals(0, empty.sweep(Set.of(), Instant.now()));
+    }
+}
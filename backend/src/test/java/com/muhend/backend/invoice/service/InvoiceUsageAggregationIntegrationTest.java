@@ -0,0 +1,187 @@
+package com.muhend.backend.invoice.service;
+
+import com.muhend.backend.BaseIntegrationTest;
+import com.muhend.backend.invoice.model.Invoice;
+import com.muhend.backend.invoice.model.InvoiceItem;
+import com.muhend.backend.usage.model.EndpointUsage;
+import com.muhend.backend.usage.model.UsageLog;
+import com.muhend.backend.usage.repository.UsageLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Équivalence entre les lignes de facture calculées à partir des agrégats SQL (sumByEndpoint)
+ * et l'ancien calcul en mémoire sur la liste complète des logs.
+ */
+public class InvoiceUsageAggregationIntegrationTest extends BaseIntegrationTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2025, 3, 31, 23, 59, 59);
+
+    @Autowired
+    private UsageLogRepository usageLogRepository;
+
+    private InvoiceService invoiceService;
+
+    @BeforeEach
+    void setUp() {
+        invoiceService = new InvoiceService(null, null, usageLogRepository, null, null, null, null, null);
+    }
+
+    private void save(Long organizationId, String endpoint, Integer tokens, String cost, LocalDateTime timestamp) {
+        usageLogRepository.save(new UsageLog(null, "user-1", organizationId, endpoint, "cheval", tokens,
+                cost != null ? new BigDecimal(cost) : null, timestamp));
+    }
+
+    private void saveMonth() {
+        // Coûts à 6 décimales : l'arrondi par ligne diffère de l'arrondi du total
+        save(1L, "/recherche/positions10", 1200, "0.012345", START.plusDays(1));
+        save(1L, "/recherche/positions10", 800, "0.008765", START.plusDays(2));
+        save(1L, "/recherche/positions10", null, null, START.plusDays(3));
+        save(1L, "/recherche/positions6", 400, "0.004999", START.plusDays(4));
+        save(1L, "/recherche/sections", null, "0.001001", START.plusDays(5));
+        save(1L, "/decode/position10", null, null, END);
+        // Hors période ou autre organisation
+        save(1L, "/recherche/positions10", 5000, "1.000000", START.minusSeconds(1));
+        save(2L, "/recherche/positions10", 5000, "1.000000", START.plusDays(1));
+        usageLogRepository.flush();
+    }
+
+    // ==================== Agrégats SQL ====================
+
+    @Test
+    void testSumByEndpoint_ShouldMatchLogsOfPeriod() {
+        saveMonth();
+
+        List<EndpointUsage> usage = usageLogRepository.sumByEndpoint(1L, START, END);
+
+        assertEquals(List.of("/decode/position10", "/recherche/positions10", "/recherche/positions6", "/recherche/sections"),
+                usage.stream().map(EndpointUsage::endpoint).toList());
+        EndpointUsage positions10 = usage.get(1);
+        assertEquals(3, positions10.requestCount());
+        assertEquals(2000, positions10.tokensUsed());
+        assertEquals(0, new BigDecimal("0.021110").compareTo(positions10.costUsd()));
+        EndpointUsage decode = usage.get(0);
+        assertEquals(0, decode.tokensUsed());
+        assertEquals(0, BigDecimal.ZERO.compareTo(decode.costUsd()));
+        assertEquals(6, EndpointUsage.totalRequests(usage));
+    }
+
+    @Test
+    void testSumByEndpoint_WhenNoUsage_ShouldReturnEmptyList() {
+        saveMonth();
+
+        assertTrue(usageLogRepository.sumByEndpoint(3L, START, END).isEmpty());
+        assertFalse(usageLogRepository.existsByOrganizationIdAndTimestampBetween(3L, START, END));
+        assertTrue(usageLogRepository.existsByOrganizationIdAndTimestampBetween(1L, START, END));
+    }
+
+    // ==================== Équivalence des lignes de facture ====================
+
+    @Test
+    void testCreateInvoiceItems_ShouldMatchInMemoryAggregation() {
+        saveMonth();
+        Invoice invoice = new Invoice();
+
+        List<InvoiceItem> expected = legacyInvoiceItems(invoice,
+                usageLogRepository.findByOrganizationIdAndTimestampBetween(1L, START, END));
+        List<InvoiceItem> actual = invoiceService.createInvoiceItems(invoice,
+                usageLogRepository.sumByEndpoint(1L, START, END));
+
+        assertEquals(5, actual.size());
+        assertEquals(lines(expected), lines(actual));
+        assertEquals(
+                legacyTotal(usageLogRepository.findByOrganizationIdAndTimestampBetween(1L, START, END)),
+                EndpointUsage.totalCost(usageLogRepository.sumByEndpoint(1L, START, END)).setScale(2, RoundingMode.HALF_UP));
+    }
+
+    @Test
+    void testCreateInvoiceItems_WhenNoTokens_ShouldOmitTokenLine() {
+        save(1L, "/decode/position10", null, null, START.plusDays(1));
+        save(1L, "/decode/position10", null, null, START.plusDays(2));
+        usageLogRepository.flush();
+        Invoice invoice = new Invoice();
+
+        List<InvoiceItem> actual = invoiceService.createInvoiceItems(invoice,
+                usageLogRepository.sumByEndpoint(1L, START, END));
+
+        assertEquals(lines(legacyInvoiceItems(invoice,
+                usageLogRepository.findByOrganizationIdAndTimestampBetween(1L, START, END))), lines(actual));
+        assertEquals(1, actual.size());
+        assertEquals(2, actual.get(0).getQuantity());
+    }
+
+    private static Set<String> lines(List<InvoiceItem> items) {
+        return items.stream()
+                .map(item -> String.join("|", item.getItemType(), item.getDescription(),
+                        String.valueOf(item.getQuantity()), item.getUnitPrice().toPlainString(),
+                        item.getTotalPrice().toPlainString()))
+                .collect(Collectors.toSet());
+    }
+
+    private static BigDecimal legacyTotal(List<UsageLog> usageLogs) {
+        return usageLogs.stream()
+                .filter(log -> log.getCostUsd() != null)
+                .map(UsageLog::getCostUsd)
+                .reduce(BigDecimal.ZERO, BigDecimal::add)
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Ancien calcul des lignes (regroupement en mémoire de tous les logs de la période), gardé comme référence.
+     */
+    private static List<InvoiceItem> legacyInvoiceItems(Invoice invoice, List<UsageLog> usageLogs) {
+        List<InvoiceItem> items = new ArrayList<>();
+        var usageByEndpoint = usageLogs.stream()
+                .collect(Collectors.groupingBy(UsageLog::getEndpoint, Collectors.toList()));
+        for (var entry : usageByEndpoint.entrySet()) {
+            List<UsageLog> logs = entry.getValue();
+            long requestCount = logs.size();
+            BigDecimal totalCost = legacyTotal(logs);
+            BigDecimal unitPrice = requestCount > 0
+                    ? totalCost.divide(BigDecimal.valueOf(requestCount), 6, RoundingMode.HALF_UP)
+                    : BigDecimal.ZERO;
+            InvoiceItem item = new InvoiceItem();
+            item.setInvoice(invoice);
+            item.setDescription(switch (entry.getKey()) {
+                case "/recherche/sections" -> "Recherche par sections";
+                case "/recherche/chapitres" -> "Recherche par chapitres";
+                case "/recherche/positions4" -> "Recherche par positions (4 chiffres)";
+                case "/recherche/positions6" -> "Recherche par positions (6 chiffres)";
+                default -> "Requête API: " + entry.getKey();
+            });
+            item.setQuantity((int) requestCount);
+            item.setUnitPrice(unitPrice);
+            item.setTotalPrice(totalCost);
+            item.setItemType("API_REQUEST");
+            items.add(item);
+        }
+        long totalTokens = usageLogs.stream()
+                .filter(log -> log.getTokensUsed() != null)
+                .mapToLong(UsageLog::getTokensUsed)
+                .sum();
+        if (totalTokens > 0) {
+            BigDecimal totalTokenCost = legacyTotal(usageLogs);
+            InvoiceItem tokenItem = new InvoiceItem();
+            tokenItem.setInvoice(invoice);
+            tokenItem.setDescription("Utilisation de tokens (agrégé)");
+            tokenItem.setQuantity((int) totalTokens);
+            tokenItem.setUnitPrice(totalTokenCost.divide(BigDecimal.valueOf(totalTokens), 6, RoundingMode.HALF_UP));
+            tokenItem.setTotalPrice(totalTokenCost);
+            tokenItem.setItemType("TOKEN_USAGE");
+            items.add(tokenItem);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,168 @@
+package com.muhend.backend.invoice.service;
+
+import com.muhend.backend.invoice.dto.InvoiceDto;
+import com.muhend.backend.invoice.dto.InvoiceRunReport;
+import com.muhend.backend.invoice.model.InvoiceRun;
+import com.muhend.backend.invoice.model.InvoiceRun.RunStatus;
+import com.muhend.backend.invoice.repository.InvoiceRepository;
+import com.muhend.backend.invoice.repository.InvoiceRunRepository;
+import com.muhend.backend.organization.repository.OrganizationRepository;
+import com.muhend.backend.usage.repository.UsageLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MonthlyInvoiceRunServiceTest {
+
+    private static final LocalDate PERIOD_START = LocalDate.of(2025, 3, 1);
+    private static final LocalDate PERIOD_END = LocalDate.of(2025, 3, 31);
+
+    @Mock
+    private InvoiceService invoiceService;
+
+    @Mock
+    private InvoiceRepository invoiceRepository;
+
+    @Mock
+    private InvoiceRunRepository invoiceRunRepository;
+
+    @Mock
+    private OrganizationRepository organizationRepository;
+
+    @Mock
+    private UsageLogRepository usageLogRepository;
+
+    private MonthlyInvoiceRunService monthlyInvoiceRunService;
+
+    @BeforeEach
+    void setUp() {
+        monthlyInvoiceRunService = new MonthlyInvoiceRunService(invoiceService, invoiceRepository, invoiceRunRepository,
+                organizationRepository, usageLogRepository, new SimpleMeterRegistry(), 2, 2);
+        lenient().when(invoiceRunRepository.save(any(InvoiceRun.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(usageLogRepository.existsByOrganizationIdAndTimestampBetween(anyLong(), any(), any())).thenReturn(true);
+    }
+
+    private static InvoiceDto invoice(Long organizationId) {
+        InvoiceDto dto = new InvoiceDto();
+        dto.setOrganizationId(organizationId);
+        dto.setInvoiceNumber("INV-202503-" + organizationId);
+        return dto;
+    }
+
+    private static InvoiceRun interruptedRun(long lastOrganizationId) {
+        InvoiceRun run = new InvoiceRun();
+        run.setId(1L);
+        run.setPeriodYear(2025);
+        run.setPeriodMonth(3);
+        run.setStatus(RunStatus.RUNNING);
+        run.setLastOrganizationId(lastOrganizationId);
+        run.setProcessedCount(2);
+        run.setGeneratedCount(2);
+        return run;
+    }
+
+    // ==================== Campagne complète ====================
+
+    @Test
+    void testRun_ShouldInvoiceAllOrganizationsChunkByChunk() {
+        when(invoiceRunRepository.findByPeriodYearAndPeriodMonth(2025, 3)).thenReturn(Optional.empty());
+        when(organizationRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(1L, 2L));
+        when(organizationRepository.findIdsAfter(eq(2L), any())).thenReturn(List.of(3L));
+        when(organizationRepository.findIdsAfter(eq(3L), any())).thenReturn(List.of());
+        when(invoiceService.generateMonthlyInvoice(anyLong(), eq(2025), eq(3)))
+                .thenAnswer(invocation -> invoice(invocation.getArgument(0)));
+
+        InvoiceRunReport report = monthlyInvoiceRunService.run(2025, 3);
+
+        assertFalse(report.resumed());
+        assertEquals(RunStatus.COMPLETED, report.status());
+        assertEquals(3, report.processed());
+        assertEquals(3, report.generated());
+        assertEquals(3, report.invoices().size());
+        verify(invoiceService, times(3)).generateMonthlyInvoice(anyLong(), eq(2025), eq(3));
+    }
+
+    @Test
+    void testRun_WhenAlreadyInvoicedOrNoUsage_ShouldSkipOrganization() {
+        when(invoiceRunRepository.findByPeriodYearAndPeriodMonth(2025, 3)).thenReturn(Optional.empty());
+        when(organizationRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(1L, 2L));
+        when(organizationRepository.findIdsAfter(eq(2L), any())).thenReturn(List.of());
+        when(invoiceRepository.existsByOrganizationIdAndPeriodStartAndPeriodEnd(1L, PERIOD_START, PERIOD_END)).thenReturn(true);
+        when(usageLogRepository.existsByOrganizationIdAndTimestampBetween(eq(2L), any(), any())).thenReturn(false);
+
+        InvoiceRunReport report = monthlyInvoiceRunService.run(2025, 3);
+
+        assertEquals(2, report.skipped());
+        assertEquals(0, report.generated());
+        verify(invoiceService, never()).generateMonthlyInvoice(anyLong(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testRun_WhenOrganizationFails_ShouldContinueAndReportErrors() {
+        when(invoiceRunRepository.findByPeriodYearAndPeriodMonth(2025, 3)).thenReturn(Optional.empty());
+        when(organizationRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(1L, 2L));
+        when(organizationRepository.findIdsAfter(eq(2L), any())).thenReturn(List.of());
+        when(invoiceService.generateMonthlyInvoice(1L, 2025, 3)).thenThrow(new IllegalArgumentException("Organisation introuvable"));
+        when(invoiceService.generateMonthlyInvoice(2L, 2025, 3)).thenReturn(invoice(2L));
+
+        InvoiceRunReport report = monthlyInvoiceRunService.run(2025, 3);
+
+        assertEquals(RunStatus.COMPLETED_WITH_ERRORS, report.status());
+        assertEquals(1, report.errors());
+        assertEquals(1, report.generated());
+    }
+
+    // ==================== Reprise ====================
+
+    @Test
+    void testRun_WhenRunInterrupted_ShouldResumeAfterCheckpoint() {
+        InvoiceRun run = interruptedRun(2L);
+        when(invoiceRunRepository.findByPeriodYearAndPeriodMonth(2025, 3)).thenReturn(Optional.of(run));
+        when(organizationRepository.findIdsAfter(eq(2L), any())).thenReturn(List.of(3L));
+        when(organizationRepository.findIdsAfter(eq(3L), any())).thenReturn(List.of());
+        when(invoiceService.generateMonthlyInvoice(3L, 2025, 3)).thenReturn(invoice(3L));
+
+        InvoiceRunReport report = monthlyInvoiceRunService.run(2025, 3);
+
+        assertTrue(report.resumed());
+        assertEquals(1, report.processed());
+        assertEquals(3, run.getProcessedCount());
+        assertEquals(3, run.getGeneratedCount());
+        assertEquals(3L, run.getLastOrganizationId());
+        assertEquals(RunStatus.COMPLETED, run.getStatus());
+        verify(organizationRepository, never()).findIdsAfter(eq(0L), any());
+    }
+
+    @Test
+    void testRun_WhenPreviousRunCompletedWithErrors_ShouldRestartFromBeginning() {
+        InvoiceRun run = interruptedRun(3L);
+        run.setStatus(RunStatus.COMPLETED_WITH_ERRORS);
+        run.setErrorCount(1);
+        when(invoiceRunRepository.findByPeriodYearAndPeriodMonth(2025, 3)).thenReturn(Optional.of(run));
+        when(organizationRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(1L));
+        when(organizationRepository.findIdsAfter(eq(1L), any())).thenReturn(List.of());
+        when(invoiceRepository.existsByOrganizationIdAndPeriodStartAndPeriodEnd(1L, PERIOD_START, PERIOD_END)).thenReturn(true);
+
+        InvoiceRunReport report = monthlyInvoiceRunService.run(2025, 3);
+
+        assertFalse(report.resumed());
+        assertEquals(RunStatus.COMPLETED, report.status());
+        assertEquals(1, run.getProcessedCount());
+        assertEquals(0, run.getErrorCount());
+    }
+}
@@ -10,6 +10,8 @@ import com.muhend.backend.organization.repository.OrganizationRepository;
 import com.muhend.backend.organization.repository.OrganizationUserRepository;
 import com.muhend.backend.pricing.service.PricingPlanService;
 import com.muhend.backend.usage.repository.UsageLogRepository;
+import com.muhend.backend.usage.service.UsageLogPartitionService;
+import com.muhend.backend.usage.service.UsageRollupService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -37,6 +39,9 @@ class PlanChangeServiceTest {
     @Mock private CollaboratorService collaboratorService;
     @Mock private QuotaAlertRepository quotaAlertRepository;
     @Mock private OrganizationMapper organizationMapper;
+    @Mock private UsageRollupService usageRollupService;
+    @Mock private QuotaDecisionCache quotaDecisionCache;
+    @Mock private UsageLogPartitionService usageLogPartitionService;
 
     @InjectMocks
     private PlanChangeService planChangeService;
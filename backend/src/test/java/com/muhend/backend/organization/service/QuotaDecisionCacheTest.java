@@ -0,0 +1,96 @@
+package com.muhend.backend.organization.service;
+
+import com.muhend.backend.organization.dto.QuotaDecision;
+import com.muhend.backend.organization.exception.UserNotAssociatedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuotaDecisionCacheTest {
+
+    private QuotaDecisionCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new QuotaDecisionCache(new SimpleMeterRegistry(), Duration.ofMinutes(10), Duration.ofSeconds(30), 1000);
+        loads = new AtomicInteger();
+    }
+
+    private Function<Long, QuotaDecision> loader(QuotaDecision decision) {
+        return id -> {
+            loads.incrementAndGet();
+            return decision;
+        };
+    }
+
+    // ==================== Décisions ====================
+
+    @Test
+    void testCanSearch_WhenDecisionCached_ShouldNotReload() {
+        assertTrue(cache.canSearch(1L, loader(new QuotaDecision(true, 100))));
+        assertTrue(cache.canSearch(1L, loader(new QuotaDecision(true, 100))));
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testRecordConsumption_WhenRemainingCreditsExhausted_ShouldInvalidateDecision() {
+        cache.canSearch(1L, loader(new QuotaDecision(true, 20)));
+
+        cache.recordConsumption(1L, 15);
+        assertTrue(cache.canSearch(1L, loader(QuotaDecision.DENIED)));
+        assertEquals(1, loads.get());
+
+        cache.recordConsumption(1L, 5);
+        assertFalse(cache.canSearch(1L, loader(QuotaDecision.DENIED)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testRecordConsumption_WhenUnlimited_ShouldKeepDecision() {
+        cache.canSearch(1L, loader(QuotaDecision.unlimited()));
+
+        cache.recordConsumption(1L, 1_000_000);
+
+        assertTrue(cache.canSearch(1L, loader(QuotaDecision.DENIED)));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testInvalidateOrganization_ShouldReloadDecision() {
+        cache.canSearch(1L, loader(QuotaDecision.DENIED));
+
+        cache.invalidateOrganization(1L);
+
+        assertTrue(cache.canSearch(1L, loader(new QuotaDecision(true, 50))));
+        assertEquals(2, loads.get());
+    }
+
+    // ==================== Utilisateur → organisation ====================
+
+    @Test
+    void testOrganizationIdFor_WhenUserNotAssociated_ShouldNotCacheFailure() {
+        assertThrows(UserNotAssociatedException.class, () -> cache.organizationIdFor("u1", id -> {
+            throw new UserNotAssociatedException(id, "Aucune organisation");
+        }));
+
+        assertEquals(7L, cache.organizationIdFor("u1", id -> 7L));
+        assertEquals(7L, cache.organizationIdFor("u1", id -> 8L));
+    }
+
+    @Test
+    void testInvalidateUser_ShouldReloadOrganization() {
+        cache.organizationIdFor("u1", id -> 7L);
+
+        cache.invalidateUser("u1");
+
+        assertEquals(8L, cache.organizationIdFor("u1", id -> 8L));
+    }
+}
@@ -40,6 +40,9 @@ class QuotaServiceTest {
     @Mock
     private OrganizationMapper organizationMapper;
 
+    @Mock
+    private QuotaDecisionCache quotaDecisionCache;
+
     @InjectMocks
     private QuotaService quotaService;
 
@@ -151,6 +154,7 @@ class QuotaServiceTest {
         assertEquals(200, result.getMonthlyQuota());
         assertEquals(200, organization.getMonthlyQuota());
         verify(organizationRepository).save(organization);
+        verify(quotaDecisionCache).invalidateOrganization(1L);
     }
 
     @Test
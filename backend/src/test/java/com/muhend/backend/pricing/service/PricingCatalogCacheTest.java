@@ -0,0 +1,122 @@
+package com.muhend.backend.pricing.service;
+
+import com.muhend.backend.market.dto.MarketProfileDto;
+import com.muhend.backend.pricing.dto.PricingPlanDto;
+import com.muhend.backend.pricing.event.PricingCatalogChangedEvent;
+import com.muhend.backend.pricing.event.PricingCatalogChangedEvent.Catalog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PricingCatalogCacheTest {
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private PricingCatalogCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new PricingCatalogCache(new SimpleMeterRegistry(), eventPublisher, Duration.ofHours(1), 100);
+        loads = new AtomicInteger();
+    }
+
+    private static PricingPlanDto plan(Long id, String name) {
+        PricingPlanDto plan = new PricingPlanDto();
+        plan.setId(id);
+        plan.setName(name);
+        return plan;
+    }
+
+    private Optional<PricingPlanDto> loadPlan(Long id) {
+        loads.incrementAndGet();
+        return Optional.of(plan(id, "Plan " + id));
+    }
+
+    // ==================== Plans tarifaires ====================
+
+    @Test
+    void testActivePlan_WhenCached_ShouldNotReload() {
+        PricingPlanDto first = cache.activePlan(1L, this::loadPlan).orElseThrow();
+        PricingPlanDto second = cache.activePlan(1L, this::loadPlan).orElseThrow();
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testActivePlan_WhenPlanMissing_ShouldCacheAbsence() {
+        cache.activePlan(9L, id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        assertTrue(cache.activePlan(9L, this::loadPlan).isEmpty());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testActivePlans_ShouldReturnUnmodifiableList() {
+        List<PricingPlanDto> plans = cache.activePlans("market:DZ", key -> new ArrayList<>(List.of(plan(1L, "Starter"))));
+
+        assertThrows(UnsupportedOperationException.class, () -> plans.add(plan(2L, "Pro")));
+        assertSame(plans, cache.activePlans("market:DZ", key -> List.of()));
+    }
+
+    @Test
+    void testEvictPricingPlans_ShouldReloadPlansAndPublishEvent() {
+        cache.activePlan(1L, this::loadPlan);
+        cache.activePlans("*", key -> List.of(plan(1L, "Ancien")));
+
+        cache.evictPricingPlans();
+
+        cache.activePlan(1L, this::loadPlan);
+        assertEquals(2, loads.get());
+        assertEquals("Nouveau", cache.activePlans("*", key -> List.of(plan(1L, "Nouveau"))).get(0).getName());
+        verify(eventPublisher).publishEvent(new PricingCatalogChangedEvent(Catalog.PRICING_PLANS));
+    }
+
+    @Test
+    void testEvictLocally_ShouldNotPublishEvent() {
+        cache.activePlan(1L, this::loadPlan);
+
+        cache.evictLocally(Catalog.PRICING_PLANS);
+
+        cache.activePlan(1L, this::loadPlan);
+        assertEquals(2, loads.get());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    // ==================== Profils de marché ====================
+
+    @Test
+    void testEvictMarketProfiles_ShouldKeepPricingPlans() {
+        MarketProfileDto profile = new MarketProfileDto();
+        profile.setMarketVersion("DZ");
+        cache.marketProfiles(true, activeOnly -> List.of(profile));
+        cache.activePlan(1L, this::loadPlan);
+
+        cache.evictMarketProfiles();
+
+        assertTrue(cache.marketProfiles(true, activeOnly -> List.of()).isEmpty());
+        cache.activePlan(1L, this::loadPlan);
+        assertEquals(1, loads.get());
+        verify(eventPublisher).publishEvent(new PricingCatalogChangedEvent(Catalog.MARKET_PROFILES));
+    }
+}
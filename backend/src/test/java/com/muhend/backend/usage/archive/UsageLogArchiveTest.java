@@ -0,0 +1,115 @@
+package com.muhend.backend.usage.archive;
+
+import com.muhend.backend.usage.archive.UsageLogArchive.ArchiveStats;
+import com.muhend.backend.usage.archive.UsageLogArchive.Manifest;
+import com.muhend.backend.usage.model.UsageLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsageLogArchiveTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void testWriteAndAggregate_ShouldComputeTotalsByOrganizationAndUser() throws Exception {
+        List<UsageLog> logs = List.of(
+                log(1L, "user-a", 10L, 100, "0.001500"),
+                log(2L, "user-a", 10L, 50, "0.000500"),
+                log(3L, "user-b", 20L, null, null),
+                log(4L, "user-c", null, 30, "0.000250"));
+
+        long rows = UsageLogArchive.write(root, "usage_log_p202501", YearMonth.of(2025, 1), logs::forEach);
+
+        assertEquals(4, rows);
+        Path directory = root.resolve("usage_log_p202501");
+        assertFalse(Files.exists(root.resolve("usage_log_p202501.tmp")));
+
+        ArchiveStats stats = UsageLogArchive.aggregate(directory);
+        assertEquals(YearMonth.of(2025, 1), stats.manifest().month());
+        assertEquals(4, stats.totals().requestCount());
+        assertEquals(180, stats.totals().tokensUsed());
+        assertEquals(0, new BigDecimal("0.002250").compareTo(stats.totals().costUsd()));
+
+        assertEquals(2, stats.byOrganization().size());
+        assertEquals(2, stats.byOrganization().get(10L).requestCount());
+        assertEquals(150, stats.byOrganization().get(10L).tokensUsed());
+        assertEquals(1, stats.byOrganization().get(20L).requestCount());
+        assertEquals(0, stats.byOrganization().get(20L).tokensUsed());
+
+        assertEquals(3, stats.byUser().size());
+        assertEquals(0, new BigDecimal("0.000250").compareTo(stats.byUser().get("user-c").costUsd()));
+    }
+
+    @Test
+    void testReadManifest_WhenArchiveIsIncomplete_ShouldReturnNull() throws Exception {
+        Path directory = Files.createDirectories(root.resolve("usage_log_p202502"));
+
+        Manifest manifest = UsageLogArchive.readManifest(directory);
+
+        assertNull(manifest);
+        assertThrows(java.io.IOException.class, () -> UsageLogArchive.aggregate(directory));
+    }
+
+    @Test
+    void testRemove_ShouldRewriteArchiveWithoutDeletedOrganizationsAndUsers() throws Exception {
+        List<UsageLog> logs = List.of(
+                log(1L, "user-a", 10L, 100, "0.001500"),
+                log(2L, "user-b", 20L, 50, "0.000500"),
+                log(3L, "user-c", null, 30, "0.000250"),
+                log(4L, "user-d", 30L, 20, null));
+        UsageLogArchive.write(root, "usage_log_p202501", YearMonth.of(2025, 1), logs::forEach);
+
+        long removed = UsageLogArchive.remove(root, "usage_log_p202501", Set.of(10L), Set.of("user-c"));
+
+        assertEquals(2, removed);
+        assertFalse(Files.exists(root.resolve("usage_log_p202501.old")));
+        ArchiveStats stats = UsageLogArchive.aggregate(root.resolve("usage_log_p202501"));
+        assertEquals(2, stats.manifest().rows());
+        assertEquals(YearMonth.of(2025, 1), stats.manifest().month());
+        assertEquals(Set.of(20L, 30L), stats.byOrganization().keySet());
+        assertEquals(Set.of("user-b", "user-d"), stats.byUser().keySet());
+        assertEquals(70, stats.totals().tokensUsed());
+        assertEquals(0, new BigDecimal("0.000500").compareTo(stats.totals().costUsd()));
+    }
+
+    @Test
+    void testRemove_WhenNothingMatches_ShouldLeaveArchiveUntouched() throws Exception {
+        UsageLogArchive.write(root, "usage_log_p202501", YearMonth.of(2025, 1),
+                List.of(log(1L, "user-a", 10L, 100, "0.001500"))::forEach);
+        Manifest before = UsageLogArchive.readManifest(root.resolve("usage_log_p202501"));
+
+        long removed = UsageLogArchive.remove(root, "usage_log_p202501", Set.of(99L), Set.of("user-z"));
+
+        assertEquals(0, removed);
+        assertEquals(before, UsageLogArchive.readManifest(root.resolve("usage_log_p202501")));
+    }
+
+    @Test
+    void testRecover_WhenReplacementWasInterrupted_ShouldRestorePreviousArchive() throws Exception {
+        UsageLogArchive.write(root, "usage_log_p202501", YearMonth.of(2025, 1),
+                List.of(log(1L, "user-a", 10L, 100, "0.001500"))::forEach);
+        // Arrêt entre la mise à l'écart de l'archive et l'installation de la nouvelle
+        Files.move(root.resolve("usage_log_p202501"), root.resolve("usage_log_p202501.old"));
+
+        UsageLogArchive.recover(root);
+
+        assertFalse(Files.exists(root.resolve("usage_log_p202501.old")));
+        assertEquals(1, UsageLogArchive.readManifest(root.resolve("usage_log_p202501")).rows());
+    }
+
+    private static UsageLog log(Long id, String userId, Long organizationId, Integer tokens, String cost) {
+        return new UsageLog(id, userId, organizationId, "/recherche/positions10", "cheval", tokens,
+                cost != null ? new BigDecimal(cost) : null, LocalDateTime.of(2025, 1, 15, 9, 30));
+    }
+}
@@ -0,0 +1,36 @@
+package com.muhend.backend.usage.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsageLogCursorTest {
+
+    @Test
+    void testEncodeDecode_ShouldRoundTrip() {
+        UsageLogCursor cursor = new UsageLogCursor(LocalDateTime.of(2026, 3, 14, 10, 42, 7, 123456000), 98765L);
+
+        UsageLogCursor decoded = UsageLogCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+    }
+
+    @Test
+    void testAfter_ShouldResumeAfterLastLogOfPage() {
+        UsageLog last = new UsageLog();
+        last.setId(42L);
+        last.setTimestamp(LocalDateTime.of(2026, 3, 14, 10, 0));
+
+        UsageLogCursor cursor = UsageLogCursor.after(last);
+
+        assertEquals(new UsageLogCursor(LocalDateTime.of(2026, 3, 14, 10, 0), 42L), cursor);
+    }
+
+    @Test
+    void testDecode_WhenCursorIsForged_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> UsageLogCursor.decode("pas-un-curseur"));
+        assertThrows(IllegalArgumentException.class, () -> UsageLogCursor.decode("%%%"));
+    }
+}
@@ -0,0 +1,81 @@
+package com.muhend.backend.usage.service;
+
+import com.muhend.backend.BaseIntegrationTest;
+import com.muhend.backend.usage.repository.UsageRollupRepository;
+import com.muhend.backend.usage.service.UsageRollupService.UsageTotals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Incréments des agrégats d'utilisation sur PostgreSQL : un log d'un jour déjà compacté
+ * doit compter dans l'agrégat journalier, seul lu pour ce jour.
+ */
+@Import({UsageRollupService.class, UsageRollupRepository.class})
+public class UsageRollupIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private UsageRollupService rollupService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        today = jdbcTemplate.queryForObject("SELECT CURRENT_DATE", LocalDate.class);
+        jdbcTemplate.update("UPDATE usage_rollup_state SET hourly_until = ?, daily_until = ? WHERE id = 1",
+                Timestamp.valueOf(today.atStartOfDay()), Date.valueOf(today));
+    }
+
+    private long hourlyRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM usage_rollup_hourly WHERE keycloak_user_id = 'user-late'", Long.class);
+    }
+
+    private long dailyRequests(LocalDate day) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(request_count), 0) FROM usage_rollup_daily WHERE keycloak_user_id = 'user-late' AND bucket_date = ?",
+                Long.class, Date.valueOf(day));
+    }
+
+    // ==================== Incréments ====================
+
+    @Test
+    void testRecordUsage_WhenDayAlreadyCompacted_ShouldIncrementDailyRollup() {
+        LocalDateTime yesterday = today.minusDays(1).atTime(23, 59, 58);
+
+        rollupService.recordUsage(yesterday, 7L, "user-late", "/recherche/positions10", 100, new BigDecimal("0.01"));
+        rollupService.recordUsage(yesterday, 7L, "user-late", "/recherche/positions10", 50, new BigDecimal("0.02"));
+
+        assertEquals(0, hourlyRows());
+        assertEquals(2, dailyRequests(today.minusDays(1)));
+        UsageTotals totals = rollupService.getTotals(today.minusDays(1), today.minusDays(1), 7L, "user-late");
+        assertEquals(2, totals.requestCount());
+        assertEquals(150, totals.tokensUsed());
+        assertEquals(0, new BigDecimal("0.03").compareTo(totals.costUsd()));
+    }
+
+    @Test
+    void testRecordUsage_WhenDayNotCompacted_ShouldIncrementHourlyRollup() {
+        LocalDateTime now = jdbcTemplate.queryForObject("SELECT LOCALTIMESTAMP", LocalDateTime.class);
+
+        rollupService.recordUsage(now, 7L, "user-late", "/recherche/sections", 10, null);
+
+        assertEquals(1, hourlyRows());
+        assertEquals(0, dailyRequests(today));
+        assertEquals(now.truncatedTo(ChronoUnit.HOURS), jdbcTemplate.queryForObject(
+                "SELECT bucket_start FROM usage_rollup_hourly WHERE keycloak_user_id = 'user-late'", LocalDateTime.class));
+    }
+}
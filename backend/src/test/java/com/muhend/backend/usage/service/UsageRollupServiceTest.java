@@ -0,0 +1,195 @@
+package com.muhend.backend.usage.service;
+
+import com.muhend.backend.usage.repository.UsageRollupRepository;
+import com.muhend.backend.usage.repository.UsageRollupRepository.GroupBy;
+import com.muhend.backend.usage.repository.UsageRollupRepository.RollupState;
+import com.muhend.backend.usage.repository.UsageRollupRepository.UsageTotalsRow;
+import com.muhend.backend.usage.service.UsageRollupService.UsageTotals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UsageRollupServiceTest {
+
+    @Mock
+    private UsageRollupRepository rollupRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private UsageRollupService rollupService;
+
+    // =========================================================
+    // recordUsage
+    // =========================================================
+
+    @Test
+    void testRecordUsage_ShouldIncrementHourBucketWithCategory() {
+        LocalDateTime timestamp = LocalDateTime.of(2026, 3, 14, 10, 42, 7);
+
+        rollupService.recordUsage(timestamp, 5L, "user-1", "/recherche/positions10", 120, new BigDecimal("0.002"));
+
+        verify(rollupRepository).increment(LocalDateTime.of(2026, 3, 14, 10, 0), 5L, "user-1",
+                "positions10", 120L, new BigDecimal("0.002"));
+    }
+
+    @Test
+    void testRecordUsage_WithoutOrganization_ShouldUseZeroAndDefaults() {
+        LocalDateTime timestamp = LocalDateTime.of(2026, 3, 14, 10, 42);
+
+        rollupService.recordUsage(timestamp, null, "user-1", "/recherche/decode-p10", null, null);
+
+        verify(rollupRepository).increment(LocalDateTime.of(2026, 3, 14, 10, 0), 0L, "user-1",
+                "decode-p10", 0L, BigDecimal.ZERO);
+    }
+
+    @Test
+    void testRecordUsage_ShouldIncrementInsideSavepoint() {
+        rollupService.recordUsage(LocalDateTime.of(2026, 3, 14, 10, 42), 5L, "user-1", "/recherche/sections", 10, null);
+
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertEquals(TransactionDefinition.PROPAGATION_NESTED, definition.getValue().getPropagationBehavior());
+    }
+
+    @Test
+    void testRecordUsage_WhenRepositoryFails_ShouldNotThrow() {
+        doThrow(new DataAccessResourceFailureException("base indisponible"))
+                .when(rollupRepository).increment(any(), anyLong(), anyString(), anyString(), anyLong(), any());
+
+        assertDoesNotThrow(() -> rollupService.recordUsage(LocalDateTime.now(), 1L, "user-1", "/recherche/sections", 10, null));
+    }
+
+    // =========================================================
+    // compact
+    // =========================================================
+
+    @Test
+    void testCompact_WhenBehind_ShouldRebuildClosedHoursAndFoldFinishedDays() {
+        LocalDateTime now = LocalDateTime.of(2026, 3, 15, 2, 5);
+        when(rollupRepository.lockState()).thenReturn(
+                new RollupState(LocalDateTime.of(2026, 3, 14, 23, 0), LocalDate.of(2026, 3, 14)));
+
+        rollupService.compact(now);
+
+        verify(rollupRepository).rebuildHourly(LocalDateTime.of(2026, 3, 14, 23, 0), LocalDateTime.of(2026, 3, 15, 2, 0));
+        verify(rollupRepository).foldHourlyIntoDaily(LocalDate.of(2026, 3, 14), LocalDate.of(2026, 3, 15));
+        verify(rollupRepository).updateState(LocalDateTime.of(2026, 3, 15, 2, 0), LocalDate.of(2026, 3, 15));
+    }
+
+    @Test
+    void testCompact_ShouldUseDatabaseClock() {
+        when(rollupRepository.currentTimestamp()).thenReturn(LocalDateTime.of(2026, 3, 15, 2, 5));
+        when(rollupRepository.lockState()).thenReturn(
+                new RollupState(LocalDateTime.of(2026, 3, 15, 1, 0), LocalDate.of(2026, 3, 15)));
+
+        rollupService.compact();
+
+        verify(rollupRepository).rebuildHourly(LocalDateTime.of(2026, 3, 15, 1, 0), LocalDateTime.of(2026, 3, 15, 2, 0));
+        verify(rollupRepository).updateState(LocalDateTime.of(2026, 3, 15, 2, 0), LocalDate.of(2026, 3, 15));
+    }
+
+    @Test
+    void testCompact_WhenUpToDate_ShouldOnlyRewriteState() {
+        LocalDateTime now = LocalDateTime.of(2026, 3, 15, 2, 5);
+        when(rollupRepository.lockState()).thenReturn(
+                new RollupState(LocalDateTime.of(2026, 3, 15, 2, 0), LocalDate.of(2026, 3, 15)));
+
+        rollupService.compact(now);
+
+        verify(rollupRepository, never()).rebuildHourly(any(), any());
+        verify(rollupRepository, never()).foldHourlyIntoDaily(any(), any());
+        verify(rollupRepository).updateState(LocalDateTime.of(2026, 3, 15, 2, 0), LocalDate.of(2026, 3, 15));
+    }
+
+    // =========================================================
+    // getTotals / getTotalsByOrganization
+    // =========================================================
+
+    @Test
+    void testGetTotals_ForCompactedPastMonth_ShouldReadDailyRollupsOnly() {
+        LocalDate today = LocalDate.now();
+        LocalDate start = today.withDayOfMonth(1).minusMonths(1);
+        LocalDate end = start.withDayOfMonth(start.lengthOfMonth());
+        when(rollupRepository.findDailyUntil()).thenReturn(today);
+        when(rollupRepository.sumBy(eq(GroupBy.NONE), any(), any(), any(), any(), any(), any(), eq(7L), isNull()))
+                .thenReturn(List.of(new UsageTotalsRow(null, 42, 1000, new BigDecimal("1.5"))));
+
+        UsageTotals totals = rollupService.getTotals(start, end, 7L, null);
+
+        assertEquals(42, totals.requestCount());
+        assertEquals(1000, totals.tokensUsed());
+        assertEquals(new BigDecimal("1.5"), totals.costUsd());
+
+        ArgumentCaptor<LocalDate> dailyTo = ArgumentCaptor.forClass(LocalDate.class);
+        ArgumentCaptor<LocalDateTime> hourlyFrom = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> hourlyTo = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> rawFrom = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> rawTo = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(rollupRepository).sumBy(eq(GroupBy.NONE), eq(start), dailyTo.capture(),
+                hourlyFrom.capture(), hourlyTo.capture(), rawFrom.capture(), rawTo.capture(), eq(7L), isNull());
+        assertEquals(end.plusDays(1), dailyTo.getValue());
+        // Segments horaire et brut vides : toute la période est compactée
+        assertFalse(hourlyFrom.getValue().isBefore(hourlyTo.getValue()));
+        assertFalse(rawFrom.getValue().isBefore(rawTo.getValue()));
+    }
+
+    @Test
+    void testGetTotals_ForCurrentMonth_ShouldChainDailyHourlyAndRawSegments() {
+        LocalDate today = LocalDate.now();
+        LocalDate start = today.withDayOfMonth(1);
+        LocalDate end = today.withDayOfMonth(today.lengthOfMonth());
+        when(rollupRepository.findDailyUntil()).thenReturn(today);
+
+        UsageTotals totals = rollupService.getTotals(start, end, null, "user-1");
+
+        assertEquals(UsageTotals.EMPTY, totals);
+        ArgumentCaptor<LocalDateTime> hourlyFrom = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> hourlyTo = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> rawFrom = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(rollupRepository).sumBy(eq(GroupBy.NONE), eq(start), eq(today),
+                hourlyFrom.capture(), hourlyTo.capture(), rawFrom.capture(), eq(end.plusDays(1).atStartOfDay()),
+                isNull(), eq("user-1"));
+        assertEquals(today.atStartOfDay(), hourlyFrom.getValue());
+        // L'heure en cours est lue dans usage_log, juste après la dernière heure close
+        assertEquals(hourlyTo.getValue(), rawFrom.getValue());
+        assertEquals(0, hourlyTo.getValue().getMinute());
+    }
+
+    @Test
+    void testGetTotalsByOrganization_ShouldExcludeLogsWithoutOrganization() {
+        LocalDate today = LocalDate.now();
+        when(rollupRepository.findDailyUntil()).thenReturn(today);
+        when(rollupRepository.sumBy(eq(GroupBy.ORGANIZATION), any(), any(), any(), any(), any(), any(), isNull(), isNull()))
+                .thenReturn(List.of(
+                        new UsageTotalsRow(0L, 3, 30, BigDecimal.ONE),
+                        new UsageTotalsRow(12L, 5, 50, BigDecimal.TEN)));
+
+        Map<Long, UsageTotals> byOrganization = rollupService.getTotalsByOrganization(today, today);
+
+        assertEquals(1, byOrganization.size());
+        assertEquals(new UsageTotals(5, 50, BigDecimal.TEN), byOrganization.get(12L));
+    }
+}
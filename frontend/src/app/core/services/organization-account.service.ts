@@ -71,7 +71,11 @@ export interface OrganizationUsageLogsResponse {
   startDate: string;
   endDate: string;
   totalRequests: number;
+  totalTokens: number;
+  totalCostUsd: number;
   usageLogs: OrganizationUsageLog[];
+  /** Curseur de la page suivante (null en fin de période). */
+  nextCursor: string | null;
 }
 
 export interface OrganizationStatus {
@@ -113,7 +117,7 @@ export class OrganizationAccountService {
     return this.http.delete<{ message: string }>(`${this.baseUrl}/collaborators/${keycloakUserId}`);
   }
 
-  getOrganizationUsageLogs(startDate?: string, endDate?: string): Observable<OrganizationUsageLogsResponse> {
+  getOrganizationUsageLogs(startDate?: string, endDate?: string, cursor?: string | null, limit?: number): Observable<OrganizationUsageLogsResponse> {
     let url = `${this.baseUrl}/usage-logs`;
     const params: string[] = [];
     if (startDate) {
@@ -122,12 +126,29 @@ export class OrganizationAccountService {
     if (endDate) {
       params.push(`endDate=${encodeURIComponent(endDate)}`);
     }
+    if (cursor) {
+      params.push(`cursor=${encodeURIComponent(cursor)}`);
+    }
+    if (limit) {
+      params.push(`limit=${limit}`);
+    }
     if (params.length > 0) {
       url += '?' + params.join('&');
     }
     return this.http.get<OrganizationUsageLogsResponse>(url);
   }
 
+  exportOrganizationUsageLogs(format: 'csv' | 'ndjson', startDate?: string, endDate?: string): Observable<Blob> {
+    const params: string[] = [`format=${format}`];
+    if (startDate) {
+      params.push(`startDate=${encodeURIComponent(startDate)}`);
+    }
+    if (endDate) {
+      params.push(`endDate=${encodeURIComponent(endDate)}`);
+    }
+    return this.http.get(`${this.baseUrl}/usage-logs/export?${params.join('&')}`, { responseType: 'blob' });
+  }
+
   getOrganizationStatus(): Observable<OrganizationStatus> {
     return this.http.get<OrganizationStatus>(`${this.baseUrl}/status`);
   }
@@ -21,6 +21,7 @@ export interface Organization {
   lastPayPerRequestInvoiceDate?: string | null;
   pendingPayPerRequestPlanId?: number | null;
   pendingPayPerRequestChangeDate?: string | null;
+  currentMonthUsage?: number | null;
 }
 
 export interface UserUsageStats {
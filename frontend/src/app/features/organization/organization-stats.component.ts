@@ -392,6 +392,10 @@ Chart.register(...registerables);
           <div class="usage-logs-info">
             <p><strong>Période:</strong> {{ formatDate(organizationUsageLogs.startDate) }} - {{ formatDate(organizationUsageLogs.endDate) }}</p>
             <p><strong>Total:</strong> {{ organizationUsageLogs.totalRequests }} requête(s)</p>
+            <div class="usage-logs-export">
+              <button class="btn btn-secondary" (click)="exportUsageLogs('csv')" [disabled]="exportingUsageLogs">Exporter CSV</button>
+              <button class="btn btn-secondary" (click)="exportUsageLogs('ndjson')" [disabled]="exportingUsageLogs">Exporter NDJSON</button>
+            </div>
           </div>
           <table class="usage-table">
             <thead>
@@ -438,6 +442,13 @@ Chart.register(...registerables);
               }
             </tbody>
           </table>
+          @if (organizationUsageLogs.nextCursor) {
+            <div class="usage-logs-more">
+              <button class="btn btn-secondary" (click)="loadMoreUsageLogs()" [disabled]="loadingMoreUsageLogs">
+                {{ loadingMoreUsageLogs ? 'Chargement...' : 'Charger plus' }}
+              </button>
+            </div>
+          }
         } @else {
           <p class="empty-message">Aucune requête pour cette période.</p>
         }
@@ -471,6 +482,8 @@ export class OrganizationStatsComponent implements OnInit {
   loadingQuota = false;
   loadingStats = false;
   loadingUsageLogs = false;
+  loadingMoreUsageLogs = false;
+  exportingUsageLogs = false;
   errorMessage = '';
 
   isBetaMode = environment.betaMode === true; // Pour le basculement Bêta / Normal
@@ -980,6 +993,7 @@ export class OrganizationStatsComponent implements OnInit {
       return;
     }
 
+    // Les logs sont paginés : les totaux viennent du backend (période complète), les logs chargés servent de repli
     const logs = this.organizationUsageLogs.usageLogs;
 
     // Utiliser le cycle du plan si disponible, sinon mois calendaire (cohérent avec /api/user/quota)
@@ -1004,17 +1018,17 @@ export class OrganizationStatsComponent implements OnInit {
 
     // Total du cycle actuel (cohérent avec le quota affiché)
     const totalRequests = monthlyRequests;
-    const totalCredits = monthlyLogs.reduce((sum: number, log: OrganizationUsageLog) => {
+    const totalCredits = this.organization?.currentMonthUsage ?? monthlyLogs.reduce((sum: number, log: OrganizationUsageLog) => {
       return sum + this.creditsForEndpoint(log.endpoint);
     }, 0);
 
     // Calculer le coût total
-    const totalCostUsd = logs.reduce((sum: number, log: OrganizationUsageLog) => {
+    const totalCostUsd = this.organizationUsageLogs.totalCostUsd ?? logs.reduce((sum: number, log: OrganizationUsageLog) => {
       return sum + (log.totalCostUsd || 0);
     }, 0);
 
     // Calculer le total des tokens
-    const totalTokens = logs.reduce((sum: number, log: OrganizationUsageLog) => {
+    const totalTokens = this.organizationUsageLogs.totalTokens ?? logs.reduce((sum: number, log: OrganizationUsageLog) => {
       return sum + (log.tokensUsed || 0);
     }, 0);
 
@@ -1059,6 +1073,45 @@ export class OrganizationStatsComponent implements OnInit {
     });
   }
 
+  loadMoreUsageLogs() {
+    if (!this.organizationUsageLogs?.nextCursor) {
+      return;
+    }
+    this.loadingMoreUsageLogs = true;
+    this.organizationAccountService.getOrganizationUsageLogs(undefined, undefined, this.organizationUsageLogs.nextCursor).subscribe({
+      next: (page) => {
+        this.organizationUsageLogs = {
+          ...page,
+          usageLogs: [...this.organizationUsageLogs.usageLogs, ...page.usageLogs]
+        };
+        this.loadingMoreUsageLogs = false;
+      },
+      error: (err) => {
+        this.errorMessage = 'Erreur lors du chargement des logs d\'utilisation: ' + (err.error?.message || err.message);
+        this.loadingMoreUsageLogs = false;
+      }
+    });
+  }
+
+  exportUsageLogs(format: 'csv' | 'ndjson') {
+    this.exportingUsageLogs = true;
+    this.organizationAccountService.exportOrganizationUsageLogs(format).subscribe({
+      next: (blob) => {
+        const url = URL.createObjectURL(blob);
+        const link = document.createElement('a');
+        link.href = url;
+        link.download = `requetes-organisation.${format}`;
+        link.click();
+        URL.revokeObjectURL(url);
+        this.exportingUsageLogs = false;
+      },
+      error: (err) => {
+        this.notificationService.error('Erreur lors de l\'export des requêtes: ' + (err.error?.message || err.message));
+        this.exportingUsageLogs = false;
+      }
+    });
+  }
+
   updateQuotaChart() {
     if (!this.quota || !this.quota.hasOrganization || this.quota.isUnlimited) {
       return;
@@ -0,0 +1,74 @@
+#!/usr/bin/env python3
+"""
+jmh-compare.py
+Compare deux résultats JMH au format JSON (-rf json) : baseline enregistrée et exécution courante.
+Affiche, par benchmark et jeu de @Param, le score, l'écart en % et l'allocation par opération
+(gc.alloc.rate.norm si -prof gc), et signale les régressions au-delà du seuil.
+
+Usage:
+  mvn -Pjmh test-compile exec:exec "-Djmh.args=-prof gc -rf json -rff target/jmh-result.json"
+  python scripts/jmh-compare.py baseline.json search-service/target/jmh-result.json
+  python scripts/jmh-compare.py baseline.json courant.json --seuil 5 --strict
+Code retour 1 avec --strict si au moins une régression dépasse le seuil.
+"""
+
+import argparse, json, sys
+
+ALLOC = "gc.alloc.rate.norm"
+
+
+def cle(resultat: dict) -> str:
+    params = resultat.get("params") or {}
+    suffixe = ",".join(f"{k}={v}" for k, v in sorted(params.items()))
+    nom = resultat["benchmark"].rsplit(".", 2)
+    nom = ".".join(nom[-2:])
+    return f"{nom}({suffixe})" if suffixe else nom
+
+
+def charger(chemin: str) -> dict:
+    with open(chemin, encoding="utf-8") as f:
+        return {cle(r): r for r in json.load(f)}
+
+
+def alloc(resultat: dict):
+    secondaire = (resultat.get("secondaryMetrics") or {}).get(ALLOC)
+    return secondaire["score"] if secondaire else None
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Comparaison de résultats JMH")
+    parser.add_argument("baseline")
+    parser.add_argument("courant")
+    parser.add_argument("--seuil", type=float, default=10.0, help="régression signalée au-delà de ce %% (défaut 10)")
+    parser.add_argument("--strict", action="store_true", help="code retour 1 en cas de régression")
+    args = parser.parse_args()
+
+    baseline, courant = charger(args.baseline), charger(args.courant)
+    regressions = 0
+    largeur = max((len(k) for k in courant), default=20)
+    print(f"{'benchmark':<{largeur}}  {'baseline':>12}  {'courant':>12}  {'écart':>8}  {'alloc B/op':>22}")
+    for nom, r in sorted(courant.items()):
+        score, unite = r["primaryMetric"]["score"], r["primaryMetric"]["scoreUnit"]
+        b = baseline.get(nom)
+        if b is None:
+            print(f"{nom:<{largeur}}  {'-':>12}  {score:12.3f}  {'nouveau':>8}  {unite}")
+            continue
+        avant = b["primaryMetric"]["score"]
+        ecart = (score - avant) / avant * 100 if avant else 0.0
+        # AverageTime / SampleTime : plus haut = plus lent ; Throughput : plus bas = plus lent
+        plus_lent = ecart < 0 if r.get("mode") == "thrpt" else ecart > 0
+        marque = " !" if plus_lent and abs(ecart) > args.seuil else ""
+        regressions += 1 if marque else 0
+        a_avant, a_apres = alloc(b), alloc(r)
+        alloc_txt = f"{a_avant:.0f} → {a_apres:.0f}" if a_avant is not None and a_apres is not None else ""
+        print(f"{nom:<{largeur}}  {avant:12.3f}  {score:12.3f}  {ecart:+7.1f}%  {alloc_txt:>22}{marque}")
+    for nom in sorted(set(baseline) - set(courant)):
+        print(f"{nom:<{largeur}}  absent de l'exécution courante")
+
+    if regressions:
+        print(f"\n{regressions} régression(s) au-delà de {args.seuil:.0f} %")
+    sys.exit(1 if regressions and args.strict else 0)
+
+
+if __name__ == "__main__":
+    main()
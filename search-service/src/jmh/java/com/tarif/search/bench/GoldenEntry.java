@@ -0,0 +1,80 @@
+package com.tarif.search.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.tarif.search.service.SearchService.SearchLevel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Produit étiqueté du golden set : terme de recherche, code attendu (6 ou 10 chiffres, format "0808 10")
+ * et section attendue (chiffres romains).
+ */
+record GoldenEntry(String terme, String code, String section) {
+
+    private static final ObjectReader READER = new ObjectMapper().readerFor(GoldenEntry.class);
+
+    /**
+     * Code attendu au niveau donné (null si non évaluable) : section pour SECTIONS,
+     * sinon le code attendu tronqué à la profondeur du niveau.
+     */
+    String attendu(SearchLevel level) {
+        if (level == SearchLevel.SECTIONS) {
+            return section;
+        }
+        String chiffres = normaliser(code);
+        int profondeur = switch (level) {
+            case CHAPITRES -> 2;
+            case POSITIONS4 -> 4;
+            case POSITIONS6 -> 6;
+            default -> 10;
+        };
+        return chiffres.substring(0, Math.min(profondeur, chiffres.length()));
+    }
+
+    /**
+     * Un code obtenu correspond s'il commence par le code attendu (un code à 10 chiffres
+     * sous la bonne sous-position à 6 chiffres est correct si l'étiquette s'arrête à 6).
+     */
+    boolean correspond(SearchLevel level, String obtenu) {
+        String attendu = attendu(level);
+        if (attendu == null || obtenu == null) {
+            return false;
+        }
+        if (level == SearchLevel.SECTIONS) {
+            return attendu.trim().equalsIgnoreCase(obtenu.trim());
+        }
+        return normaliser(obtenu).startsWith(attendu);
+    }
+
+    static String normaliser(String code) {
+        return code == null ? "" : code.replaceAll("[\\s.]", "");
+    }
+
+    static List<GoldenEntry> load(String source) throws IOException {
+        try (InputStream in = source.startsWith("classpath:")
+                ? GoldenEntry.class.getResourceAsStream(source.substring("classpath:".length()))
+                : Files.newInputStream(Path.of(source))) {
+            if (in == null) {
+                throw new IOException("Golden set introuvable : " + source);
+            }
+            List<GoldenEntry> entries = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    entries.add(READER.readValue(line));
+                }
+            }
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.tarif.search.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.tarif.search.model.Position;
+import com.tarif.search.service.SearchService.SearchLevel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Agrégation des mesures du golden set et rapport JSON lisible par machine.
+ *
+ * Précision par niveau : la réponse retenue par l'IA à ce niveau est comparée au code attendu
+ * tronqué à la profondeur du niveau ; top-1 = la première position est correcte,
+ * any-hit = au moins une position est correcte. Un niveau non atteint compte comme un échec.
+ */
+class GoldenReport {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String provider;
+    private final String model;
+    private final boolean structuredOutput;
+    private final List<Long> latencesRecherche = new ArrayList<>();
+    private final Map<SearchLevel, Niveau> niveaux = new EnumMap<>(SearchLevel.class);
+    private final ArrayNode termes = objectMapper.createArrayNode();
+    private int finalTop1;
+    private int finalAnyHit;
+    private int erreurs;
+    private long appelsTotal;
+    private long tokensTotal;
+
+    /** Mesures cumulées d'un niveau de la cascade. */
+    private static final class Niveau {
+        final List<Long> latences = new ArrayList<>();
+        long appels;
+        long succes;
+        long tokens;
+        long cacheHits;
+        long tentatives;
+        int evalues;
+        int top1;
+        int anyHit;
+    }
+
+    GoldenReport(String provider, String model, boolean structuredOutput) {
+        this.provider = provider;
+        this.model = model;
+        this.structuredOutput = structuredOutput;
+        for (SearchLevel level : SearchLevel.values()) {
+            niveaux.put(level, new Niveau());
+        }
+    }
+
+    void ajouterTerme(GoldenEntry entry, long latenceNanos, List<MeasuringProvider.Appel> appels,
+                      Function<SearchLevel, List<Position>> reponses, List<Position> resultat, String erreur) {
+        latencesRecherche.add(latenceNanos);
+        long tokensTerme = 0;
+        for (MeasuringProvider.Appel appel : appels) {
+            Niveau n = niveaux.get(appel.level());
+            n.appels++;
+            n.latences.add(appel.latencyNanos());
+            n.tokens += appel.tokens();
+            if (appel.succes()) {
+                n.succes++;
+            }
+            if (appel.cacheHit()) {
+                n.cacheHits++;
+            }
+            tokensTerme += appel.tokens();
+        }
+        appelsTotal += appels.size();
+        tokensTotal += tokensTerme;
+        if (erreur != null) {
+            erreurs++;
+        }
+
+        ObjectNode terme = termes.addObject()
+                .put("terme", entry.terme())
+                .put("codeAttendu", entry.code())
+                .put("latencyMs", latenceNanos / 1_000_000.0)
+                .put("appels", appels.size())
+                .put("tokens", tokensTerme);
+        if (erreur != null) {
+            terme.put("erreur", erreur);
+        }
+        ObjectNode parNiveau = terme.putObject("niveaux");
+        for (SearchLevel level : SearchLevel.values()) {
+            List<Position> reponse = reponses.apply(level);
+            boolean top1 = !reponse.isEmpty() && entry.correspond(level, reponse.get(0).getCode());
+            boolean anyHit = reponse.stream().anyMatch(p -> entry.correspond(level, p.getCode()));
+            Niveau n = niveaux.get(level);
+            n.evalues++;
+            n.top1 += top1 ? 1 : 0;
+            n.anyHit += anyHit ? 1 : 0;
+            parNiveau.putObject(level.name())
+                    .put("codes", reponse.stream().map(Position::getCode).toList().toString())
+                    .put("top1", top1)
+                    .put("anyHit", anyHit);
+        }
+
+        // Résultat final : positions les plus profondes renvoyées (avec cascade, les niveaux précédents y figurent aussi)
+        int profondeur = resultat.stream().mapToInt(p -> GoldenEntry.normaliser(p.getCode()).length()).max().orElse(0);
+        List<Position> finales = resultat.stream()
+                .filter(p -> GoldenEntry.normaliser(p.getCode()).length() == profondeur)
+                .toList();
+        boolean top1 = !finales.isEmpty() && entry.correspond(SearchLevel.POSITIONS10, finales.get(0).getCode());
+        boolean anyHit = finales.stream().anyMatch(p -> entry.correspond(SearchLevel.POSITIONS10, p.getCode()));
+        finalTop1 += top1 ? 1 : 0;
+        finalAnyHit += anyHit ? 1 : 0;
+        terme.put("finalTop1", top1).put("finalAnyHit", anyHit);
+    }
+
+    /** Tentatives par niveau, lues sur le compteur ai.search.attempts de SearchService. */
+    void ajouterTentatives(MeterRegistry meterRegistry) {
+        for (Counter counter : meterRegistry.find("ai.search.attempts").counters()) {
+            String niveau = counter.getId().getTag("niveau");
+            if (niveau != null) {
+                niveaux.get(SearchLevel.valueOf(niveau)).tentatives += (long) counter.count();
+            }
+        }
+    }
+
+    JsonNode toJson() {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.putObject("run")
+                .put("provider", provider)
+                .put("model", model)
+                .put("structuredOutput", structuredOutput)
+                .put("termes", latencesRecherche.size())
+                .put("generatedAt", Instant.now().toString());
+
+        int total = latencesRecherche.size();
+        root.putObject("recherche")
+                .put("latencyP50Ms", percentileMs(latencesRecherche, 50))
+                .put("latencyP95Ms", percentileMs(latencesRecherche, 95))
+                .put("latencyMeanMs", moyenneMs(latencesRecherche))
+                .put("appelsParRecherche", total == 0 ? 0 : (double) appelsTotal / total)
+                .put("tokensParRecherche", total == 0 ? 0 : (double) tokensTotal / total)
+                .put("erreurs", erreurs)
+                .put("top1Accuracy", ratio(finalTop1, total))
+                .put("anyHitAccuracy", ratio(finalAnyHit, total));
+
+        ObjectNode parNiveau = root.putObject("niveaux");
+        niveaux.forEach((level, n) -> parNiveau.putObject(level.name())
+                .put("appels", n.appels)
+                .put("tentatives", n.tentatives)
+                .put("succes", n.succes)
+                .put("latencyP50Ms", percentileMs(n.latences, 50))
+                .put("latencyP95Ms", percentileMs(n.latences, 95))
+                .put("tokens", n.tokens)
+                .put("cacheHits", n.cacheHits)
+                .put("evalues", n.evalues)
+                .put("top1", n.top1)
+                .put("anyHit", n.anyHit)
+                .put("top1Accuracy", ratio(n.top1, n.evalues))
+                .put("anyHitAccuracy", ratio(n.anyHit, n.evalues)));
+
+        root.set("termes", termes);
+        return root;
+    }
+
+    /** Résumé console : une ligne par niveau. */
+    String resume() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "%d termes — p50 %.1f ms, p95 %.1f ms, top-1 %.1f %%, any-hit %.1f %%%n",
+                latencesRecherche.size(), percentileMs(latencesRecherche, 50), percentileMs(latencesRecherche, 95),
+                100 * ratio(finalTop1, latencesRecherche.size()), 100 * ratio(finalAnyHit, latencesRecherche.size())));
+        niveaux.forEach((level, n) -> sb.append(String.format(Locale.ROOT,
+                "  %-12s appels %4d  p50 %8.1f ms  tokens %8d  hits %4d  top-1 %5.1f %%  any-hit %5.1f %%%n",
+                level, n.appels, percentileMs(n.latences, 50), n.tokens, n.cacheHits,
+                100 * ratio(n.top1, n.evalues), 100 * ratio(n.anyHit, n.evalues))));
+        return sb.toString();
+    }
+
+    /** Écarts (courant − baseline) sur la latence, les tokens et la précision, globaux et par niveau. */
+    static String comparer(JsonNode baseline, JsonNode courant) {
+        StringBuilder sb = new StringBuilder("Écarts par rapport à la baseline :\n");
+        for (String champ : List.of("latencyP50Ms", "latencyP95Ms", "tokensParRecherche", "appelsParRecherche",
+                "top1Accuracy", "anyHitAccuracy")) {
+            ecart(sb, "recherche." + champ, baseline.path("recherche").path(champ), courant.path("recherche").path(champ));
+        }
+        for (SearchLevel level : SearchLevel.values()) {
+            for (String champ : List.of("latencyP50Ms", "tokens", "top1Accuracy", "anyHitAccuracy")) {
+                ecart(sb, level + "." + champ,
+                        baseline.path("niveaux").path(level.name()).path(champ),
+                        courant.path("niveaux").path(level.name()).path(champ));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void ecart(StringBuilder sb, String nom, JsonNode avant, JsonNode apres) {
+        if (!avant.isNumber() || !apres.isNumber()) {
+            return;
+        }
+        sb.append(String.format(Locale.ROOT, "  %-32s %12.3f → %12.3f  (%+.3f)%n",
+                nom, avant.asDouble(), apres.asDouble(), apres.asDouble() - avant.asDouble()));
+    }
+
+    private static double percentileMs(List<Long> nanos, int percentile) {
+        if (nanos.isEmpty()) {
+            return 0;
+        }
+        List<Long> tries = nanos.stream().sorted().toList();
+        int index = (int) Math.ceil(percentile / 100.0 * tries.size()) - 1;
+        return tries.get(Math.max(0, index)) / 1_000_000.0;
+    }
+
+    private static double moyenneMs(List<Long> nanos) {
+        return nanos.stream().mapToLong(Long::longValue).average().orElse(0) / 1_000_000.0;
+    }
+
+    private static double ratio(int n, int total) {
+        return total == 0 ? 0 : (double) n / total;
+    }
+}
@@ -0,0 +1,121 @@
+package com.tarif.search.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tarif.search.SearchServiceApplication;
+import com.tarif.search.model.Position;
+import com.tarif.search.service.ChapitreService;
+import com.tarif.search.service.Position10DzService;
+import com.tarif.search.service.Position4Service;
+import com.tarif.search.service.Position6DzService;
+import com.tarif.search.service.SearchService;
+import com.tarif.search.service.SearchService.SearchLevel;
+import com.tarif.search.service.SectionService;
+import com.tarif.search.service.ai.AiPrompts;
+import com.tarif.search.service.ai.AiProvider;
+import com.tarif.search.service.ai.AiService;
+import com.tarif.search.service.ai.ReplayAiProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Banc de précision et de coût de la cascade sur le golden set étiqueté (src/jmh/resources/golden).
+ *
+ * Chaque terme passe par SearchService.search jusqu'à POSITIONS10, avec le provider :
+ * - replay : ReplayAiProvider (ai.replay.*, store enregistré au préalable en mode record) ;
+ * - stub : StubAiProvider, bouchon local qui choisit le code attendu s'il est dans le RAG.
+ *
+ * Rapport JSON (target/golden/golden-report.json) : latence par recherche, appels et tokens,
+ * et par SearchLevel : appels, tentatives, latence p50/p95, tokens, hits du ReplayStore,
+ * précision top-1 et any-hit. --baseline=&lt;rapport&gt; affiche les écarts avec un rapport précédent.
+ *
+ * Nécessite la base nomenclature (mêmes variables d'environnement que le service) :
+ * mvn -Pjmh test-compile exec:exec@golden -Dgolden.args="--provider=replay"
+ */
+public class GoldenSetBenchmark {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        String providerName = options.getOrDefault("provider", "replay");
+        List<GoldenEntry> goldenSet = GoldenEntry.load(options.getOrDefault("golden", "classpath:/golden/golden-set.jsonl"));
+        int limit = Integer.parseInt(options.getOrDefault("limit", String.valueOf(goldenSet.size())));
+        goldenSet = goldenSet.subList(0, Math.min(limit, goldenSet.size()));
+        Path output = Path.of(options.getOrDefault("output", "target/golden"));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SearchServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("ai.provider=replay", "ai.batch.tracking.enabled=false", "ai.micro-batch.enabled=false")
+                .run(args)) {
+
+            AiPrompts aiPrompts = context.getBean(AiPrompts.class);
+            AiProvider delegate = "stub".equalsIgnoreCase(providerName)
+                    ? new StubAiProvider(goldenSet, Long.parseLong(options.getOrDefault("stub-latency-ms", "0")))
+                    : context.getBean(ReplayAiProvider.class);
+            MeasuringProvider provider = new MeasuringProvider(aiPrompts, delegate);
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            SearchService searchService = new SearchService(
+                    new AiService(provider, null, null, null, "openai", false, 15, 8, List.of("SECTIONS"), 120_000,
+                            meterRegistry, Tracer.NOOP),
+                    aiPrompts,
+                    context.getBean(SectionService.class),
+                    context.getBean(ChapitreService.class),
+                    context.getBean(Position4Service.class),
+                    context.getBean(Position6DzService.class),
+                    context.getBean(Position10DzService.class),
+                    meterRegistry,
+                    Tracer.NOOP);
+
+            GoldenReport report = new GoldenReport(providerName, provider.getModel(), provider.isStructuredOutput());
+            for (GoldenEntry entry : goldenSet) {
+                provider.nouveauTerme();
+                int appelsAvant = provider.appels().size();
+                long debut = System.nanoTime();
+                List<Position> resultat;
+                String erreur = null;
+                try {
+                    resultat = searchService.search(entry.terme(), SearchLevel.POSITIONS10);
+                } catch (RuntimeException e) {
+                    resultat = List.of();
+                    erreur = e.getMessage();
+                }
+                long latence = System.nanoTime() - debut;
+                report.ajouterTerme(entry, latence, provider.appels().subList(appelsAvant, provider.appels().size()),
+                        provider::reponse, resultat, erreur);
+            }
+            report.ajouterTentatives(meterRegistry);
+
+            Files.createDirectories(output);
+            Path fichier = output.resolve("golden-report.json");
+            JsonNode rapport = report.toJson();
+            objectMapper.writeValue(fichier.toFile(), rapport);
+            System.out.println("Rapport golden set : " + fichier.toAbsolutePath());
+            System.out.println(report.resume());
+
+            if (options.containsKey("baseline")) {
+                JsonNode baseline = objectMapper.readTree(Path.of(options.get("baseline")).toFile());
+                System.out.println(GoldenReport.comparer(baseline, rapport));
+            }
+        }
+    }
+
+    /** Arguments --cle=valeur ; les autres arguments sont passés tels quels à Spring. */
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+}
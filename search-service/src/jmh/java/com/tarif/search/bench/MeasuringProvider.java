@@ -0,0 +1,110 @@
+package com.tarif.search.bench;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.tarif.search.model.Position;
+import com.tarif.search.model.UsageInfo;
+import com.tarif.search.service.SearchService.SearchLevel;
+import com.tarif.search.service.ai.AiOutputSchema;
+import com.tarif.search.service.ai.AiPrompts;
+import com.tarif.search.service.ai.AiProvider;
+import com.tarif.search.service.ai.JsonUtils;
+import com.tarif.search.service.ai.OpenAiService;
+import com.tarif.search.service.ai.ReplayAiProvider;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provider instrumenté placé devant le provider mesuré (replay ou bouchon) : mesure chaque appel
+ * (niveau, latence, tokens, succès, hit du ReplayStore) et retient la dernière réponse non vide par
+ * niveau pour le terme en cours, afin d'évaluer la précision niveau par niveau.
+ *
+ * Étend OpenAiService pour se brancher dans AiService sans modifier le code de production
+ * (provider "openai" par défaut) ; aucun appel réseau n'est fait par la classe parente.
+ */
+class MeasuringProvider extends OpenAiService {
+
+    /** Un appel provider mesuré. */
+    record Appel(SearchLevel level, long latencyNanos, int tokens, boolean succes, boolean cacheHit) {
+    }
+
+    private final AiProvider delegate;
+    private final List<Appel> appels = new ArrayList<>();
+    private final Map<SearchLevel, List<Position>> reponses = new EnumMap<>(SearchLevel.class);
+
+    MeasuringProvider(AiPrompts aiPrompts, AiProvider delegate) {
+        super(aiPrompts, new RestTemplate(), "", "", "bench", 0, 0, 0, false);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String demanderAiAide(String titre, String question, boolean withJustification, String niveau) {
+        SearchLevel level = SearchLevel.valueOf(niveau);
+        long debut = System.nanoTime();
+        String reponse = null;
+        try {
+            reponse = delegate.demanderAiAide(titre, question, withJustification, niveau);
+            return reponse;
+        } finally {
+            long latence = System.nanoTime() - debut;
+            boolean succes = reponse != null && !reponse.isBlank();
+            UsageInfo usage = succes ? delegate.getLastUsageInfo() : null;
+            int tokens = usage != null && usage.getTokens() != null ? usage.getTokens() : 0;
+            // Hors rejeu (bouchon), aucun appel n'est un hit de cache
+            boolean cacheHit = succes && delegate instanceof ReplayAiProvider replay
+                    && replay.getMode() == ReplayAiProvider.Mode.REPLAY;
+            appels.add(new Appel(level, latence, tokens, succes, cacheHit));
+            if (succes) {
+                List<Position> positions = parse(reponse);
+                if (!positions.isEmpty()) {
+                    reponses.put(level, positions);
+                }
+            }
+        }
+    }
+
+    private List<Position> parse(String reponse) {
+        try {
+            return isStructuredOutput() ? AiOutputSchema.parse(reponse) : JsonUtils.parsePositions(reponse);
+        } catch (JsonProcessingException | RuntimeException e) {
+            return List.of();
+        }
+    }
+
+    /** Remet à zéro les réponses retenues avant un nouveau terme ; les mesures d'appels sont cumulées. */
+    void nouveauTerme() {
+        reponses.clear();
+    }
+
+    /** Dernière réponse non vide du provider pour ce niveau, pour le terme en cours. */
+    List<Position> reponse(SearchLevel level) {
+        return reponses.getOrDefault(level, List.of());
+    }
+
+    List<Appel> appels() {
+        return appels;
+    }
+
+    @Override
+    public String getModel() {
+        return delegate.getModel();
+    }
+
+    @Override
+    public boolean isStructuredOutput() {
+        return delegate.isStructuredOutput();
+    }
+
+    @Override
+    public UsageInfo getLastUsageInfo() {
+        return delegate.getLastUsageInfo();
+    }
+
+    @Override
+    public void clearUsageInfo() {
+        delegate.clearUsageInfo();
+    }
+}
@@ -0,0 +1,158 @@
+package com.tarif.search.bench;
+
+import com.tarif.search.model.Position;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fixtures des benchmarks générées à partir des migrations nomenclature du backend :
+ * V0_2 (sections, chapitres, positions 4 et 6) et V27 (positions 10 avec titres, dans l'ordre du tarif).
+ *
+ * Dossier des migrations : -Dnomenclature.migrations=... (par défaut ../backend/src/main/resources/db/migration,
+ * les benchmarks étant lancés depuis search-service).
+ */
+public final class NomenclatureFixtures {
+
+    private static final String V0_2 = "V0_2__create_nomenclature_tables.sql";
+    private static final String V27 = "V27__reload_position10_dz_ordered.sql";
+
+    private static final Map<String, List<String[]>> cache = new ConcurrentHashMap<>();
+
+    private NomenclatureFixtures() {
+    }
+
+    /** Sections (code, description), dans l'ordre de V0_2. */
+    public static List<Position> sections() {
+        return rows(V0_2, "section").stream().map(r -> new Position(r[1], r[0])).toList();
+    }
+
+    /** Positions 4 chiffres du chapitre (code sur 2 chiffres). */
+    public static List<Position> positions4(String chapitre) {
+        return rows(V0_2, "position4").stream()
+                .filter(r -> r[1].startsWith(chapitre))
+                .map(r -> new Position(r[1], r[0]))
+                .toList();
+    }
+
+    /** Positions 6 chiffres commençant par le préfixe, au plus max. */
+    public static List<Position> positions6(String prefixe, int max) {
+        return rows(V0_2, "position6_dz").stream()
+                .filter(r -> r[1].replace(" ", "").startsWith(prefixe) && r[1].replace(" ", "").length() == 6)
+                .limit(max)
+                .map(r -> new Position(r[1], r[0]))
+                .toList();
+    }
+
+    /**
+     * Positions 10 du préfixe avec les titres intercalés (code vide), comme
+     * Position10DzService.getPosition10DzsWithContextByPrefix.
+     */
+    public static List<Position> positions10AvecTitres(String prefixe) {
+        List<String[]> rows = rows(V27, "position10_dz");
+        int premier = -1;
+        int dernier = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i)[0].startsWith(prefixe)) {
+                premier = premier < 0 ? i : premier;
+                dernier = i;
+            }
+        }
+        if (premier < 0) {
+            return List.of();
+        }
+        return rows.subList(premier, dernier + 1).stream()
+                .filter(r -> r[0].isEmpty() || r[0].startsWith(prefixe))
+                .map(r -> new Position(r[0], r[1]))
+                .toList();
+    }
+
+    /** Toutes les lignes de position10_dz (code, description), titres compris. */
+    public static List<String[]> position10Rows() {
+        return rows(V27, "position10_dz");
+    }
+
+    private static List<String[]> rows(String migration, String table) {
+        return cache.computeIfAbsent(migration + "#" + table, k -> {
+            Path dossier = Path.of(System.getProperty("nomenclature.migrations", "../backend/src/main/resources/db/migration"));
+            try {
+                return SqlInserts.parse(Files.readString(dossier.resolve(migration), StandardCharsets.UTF_8), table);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Migration introuvable : " + dossier.resolve(migration), e);
+            }
+        });
+    }
+
+    /**
+     * Lecture minimale des INSERT INTO table (...) VALUES (...), (...); d'une migration :
+     * chaînes entre apostrophes ('' échappé), nombres et NULL ; commentaires -- ignorés.
+     */
+    static final class SqlInserts {
+
+        private SqlInserts() {
+        }
+
+        static List<String[]> parse(String sql, String table) {
+            List<String[]> rows = new ArrayList<>();
+            String marqueur = "INSERT INTO " + table + " ";
+            int from = 0;
+            int debut;
+            while ((debut = sql.indexOf(marqueur, from)) >= 0) {
+                int i = sql.indexOf("VALUES", debut) + "VALUES".length();
+                from = parseValues(sql, i, rows);
+            }
+            return rows;
+        }
+
+        /** Lit les tuples jusqu'au ';' final, retourne la position qui le suit. */
+        private static int parseValues(String sql, int i, List<String[]> rows) {
+            List<String> tuple = null;
+            StringBuilder valeur = new StringBuilder();
+            boolean chaine = false;
+            while (i < sql.length()) {
+                char c = sql.charAt(i);
+                if (chaine) {
+                    if (c == '\'' && i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                        valeur.append('\'');
+                        i += 2;
+                        continue;
+                    }
+                    if (c == '\'') {
+                        chaine = false;
+                    } else {
+                        valeur.append(c);
+                    }
+                } else if (c == '-' && i + 1 < sql.length() && sql.charAt(i + 1) == '-') {
+                    int fin = sql.indexOf('\n', i);
+                    i = fin < 0 ? sql.length() : fin;
+                    continue;
+                } else if (c == '\'') {
+                    chaine = true;
+                } else if (c == '(') {
+                    tuple = new ArrayList<>();
+                    valeur.setLength(0);
+                } else if (c == ',' && tuple != null) {
+                    tuple.add(valeur.toString().trim());
+                    valeur.setLength(0);
+                } else if (c == ')' && tuple != null) {
+                    tuple.add(valeur.toString().trim());
+                    rows.add(tuple.toArray(String[]::new));
+                    tuple = null;
+                } else if (c == ';' && tuple == null) {
+                    return i + 1;
+                } else if (tuple != null && !Character.isWhitespace(c)) {
+                    valeur.append(c);
+                }
+                i++;
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.tarif.search.bench;
+
+import com.tarif.search.model.UsageInfo;
+import com.tarif.search.service.SearchService.SearchLevel;
+import com.tarif.search.service.ai.AiProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Provider bouchon local : répond en « oracle » à partir du golden set, parmi les codes présents
+ * dans le RAG (le code attendu s'il y figure, sinon le premier code). Latence fixe, tokens estimés
+ * à 4 caractères par token.
+ *
+ * Sert à valider le harnais et à mesurer le coût de la cascade hors IA (RAG, parsing, enrichissement).
+ */
+class StubAiProvider implements AiProvider {
+
+    private static final Pattern CODE_RAG = Pattern.compile("^ - Code = (.+?) -$", Pattern.MULTILINE);
+
+    private final List<GoldenEntry> goldenSet;
+    private final long latencyMs;
+    private final ThreadLocal<UsageInfo> usage = new ThreadLocal<>();
+
+    StubAiProvider(List<GoldenEntry> goldenSet, long latencyMs) {
+        this.goldenSet = goldenSet;
+        this.latencyMs = latencyMs;
+    }
+
+    @Override
+    public String demanderAiAide(String titre, String question, boolean withJustification, String niveau) {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<String> codes = new ArrayList<>();
+        Matcher m = CODE_RAG.matcher(question);
+        while (m.find()) {
+            codes.add(m.group(1).trim());
+        }
+        SearchLevel level = SearchLevel.valueOf(niveau);
+        String choisi = goldenSet.stream()
+                .filter(e -> question.contains("\"" + e.terme() + "\""))
+                .findFirst()
+                .flatMap(e -> codes.stream().filter(c -> e.correspond(level, c)).findFirst())
+                .orElse(codes.isEmpty() ? null : codes.get(0));
+
+        String reponse = choisi == null ? "[]" : "[{\"code\":\"" + choisi + "\""
+                + (withJustification ? ",\"justification\":\"stub\"" : "") + "}]";
+        int promptTokens = question.length() / 4;
+        int completionTokens = reponse.length() / 4;
+        usage.set(new UsageInfo(promptTokens + completionTokens, 0.0, promptTokens, completionTokens, 0.0));
+        return reponse;
+    }
+
+    @Override
+    public String getModel() {
+        return "stub";
+    }
+
+    @Override
+    public UsageInfo getLastUsageInfo() {
+        return usage.get();
+    }
+
+    @Override
+    public void clearUsageInfo() {
+        usage.remove();
+    }
+}
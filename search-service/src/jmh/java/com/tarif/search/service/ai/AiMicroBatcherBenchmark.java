@@ -0,0 +1,105 @@
+package com.tarif.search.service.ai;
+
+import com.tarif.search.model.UsageInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Débit et latence des recherches Level 0 concurrentes, avec et sans micro-batching, face à un provider
+ * de latence fixe (une recherche = un appel provider sans regroupement). SampleTime donne le p95.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="AiMicroBatcherBenchmark"
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class AiMicroBatcherBenchmark {
+
+    private static final String RAG = "RAG pour la recherche des : SECTIONS\n\n - Code = I -\n";
+
+    @Param({"false", "true"})
+    public boolean batched;
+
+    /** Latence du provider, en millisecondes. */
+    @Param({"30"})
+    public long latenceMs;
+
+    private LatencyProvider provider;
+    private AiMicroBatcher batcher;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        provider = new LatencyProvider(latenceMs);
+        if (batched) {
+            batcher = new AiMicroBatcher(() -> provider, 10, 8, List.of("SECTIONS"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    @Benchmark
+    public String rechercher() throws Exception {
+        String terme = "produit " + sequence.incrementAndGet();
+        if (!batched) {
+            return provider.demanderAiAide("SECTIONS", AiPrompts.buildUserPrompt(RAG, terme), false, "SECTIONS");
+        }
+        return batcher.submit("SECTIONS", RAG, terme).get(10, TimeUnit.SECONDS).json();
+    }
+
+    /**
+     * Provider bouchon : latence fixe, répond à chaque produit d'un prompt groupé.
+     */
+    static class LatencyProvider implements AiProvider {
+        private static final Pattern PRODUIT = Pattern.compile("^  \"(p\\d+)\": \"((?:[^\"\\\\]|\\\\.)*)\",?$", Pattern.MULTILINE);
+        private final long latenceMs;
+        private final ThreadLocal<UsageInfo> usage = new ThreadLocal<>();
+
+        LatencyProvider(long latenceMs) {
+            this.latenceMs = latenceMs;
+        }
+
+        @Override
+        public String demanderAiAide(String titre, String question, boolean withJustification, String niveau) {
+            try {
+                Thread.sleep(latenceMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            usage.set(new UsageInfo(1100, 0.01, 1000, 100, 0.0011));
+            Matcher m = PRODUIT.matcher(question);
+            StringJoiner objet = new StringJoiner(",", "{", "}");
+            boolean groupe = false;
+            while (m.find()) {
+                groupe = true;
+                objet.add("\"" + m.group(1) + "\":[{\"code\":\"I\"}]");
+            }
+            return groupe ? objet.toString() : "[{\"code\":\"I\"}]";
+        }
+
+        @Override
+        public UsageInfo getLastUsageInfo() {
+            return usage.get();
+        }
+
+        @Override
+        public void clearUsageInfo() {
+            usage.remove();
+        }
+    }
+}
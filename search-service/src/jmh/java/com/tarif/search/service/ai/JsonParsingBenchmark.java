@@ -0,0 +1,135 @@
+package com.tarif.search.service.ai;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tarif.search.model.Position;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing d'une réponse provider enregistrée jusqu'à la List&lt;Position&gt; :
+ * ancien chemin (ObjectMapper par appel, corps en String, readTree, nettoyage + double validation,
+ * readTree / toString / readValue) contre la lecture en flux en une passe avec readers partagés.
+ *
+ * Temps et allocation par réponse : mvn -Pjmh test-compile exec:exec -Djmh.args="JsonParsingBenchmark -prof gc"
+ * (colonne gc.alloc.rate.norm = octets alloués par opération).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonParsingBenchmark {
+
+    @Param({
+            "openai-positions6-justification",
+            "openai-positions6-structured",
+            "anthropic-sections",
+            "ollama-chapitres"
+    })
+    public String payload;
+
+    private byte[] body;
+    private String provider;
+    private boolean structured;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/payloads/" + payload + ".json")) {
+            if (in == null) {
+                throw new IllegalStateException("Payload introuvable : " + payload);
+            }
+            body = in.readAllBytes();
+        }
+        provider = payload.substring(0, payload.indexOf('-'));
+        structured = payload.endsWith("structured");
+    }
+
+    @Benchmark
+    public List<Position> ancienParsing() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode rootNode = objectMapper.readTree(new String(body, StandardCharsets.UTF_8));
+        String content = switch (provider) {
+            case "openai" -> rootNode.path("choices").get(0).path("message").path("content").asText();
+            case "anthropic" -> rootNode.path("content").get(0).path("text").asText();
+            default -> rootNode.path("response").asText();
+        };
+        rootNode.path("usage").path("prompt_tokens").asInt();
+
+        String jsonNettoye = JsonUtils.cleanJsonString(content);
+        if (!JsonUtils.isValidJson(jsonNettoye)) {
+            return List.of();
+        }
+        return ancienneConversion(jsonNettoye);
+    }
+
+    @Benchmark
+    public List<Position> parsingEnFlux() throws Exception {
+        InputStream in = new ByteArrayInputStream(body);
+        String content = switch (provider) {
+            case "openai" -> AiResponses.<AiResponses.OpenAiChatResponse>jsonResponse(AiResponses.OPENAI_READER)
+                    .extractData(new RecordedResponse(in)).content();
+            case "anthropic" -> AiResponses.<AiResponses.AnthropicMessage>jsonResponse(AiResponses.ANTHROPIC_READER)
+                    .extractData(new RecordedResponse(in)).content().get(0).text();
+            default -> AiResponses.<AiResponses.OllamaGenerateResponse>jsonResponse(AiResponses.OLLAMA_READER)
+                    .extractData(new RecordedResponse(in)).response();
+        };
+        return structured ? AiOutputSchema.parse(content) : JsonUtils.parsePositions(content);
+    }
+
+    /** Conversion telle qu'elle existait avant la lecture en une passe. */
+    private static List<Position> ancienneConversion(String json) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        if (json.startsWith("[")) {
+            return objectMapper.readValue(json, new TypeReference<List<Position>>() {});
+        }
+        JsonNode tree = objectMapper.readTree(json);
+        var fields = tree.fields();
+        while (fields.hasNext()) {
+            var field = fields.next();
+            if (field.getValue().isArray()) {
+                return objectMapper.readValue(field.getValue().toString(), new TypeReference<List<Position>>() {});
+            }
+        }
+        return List.of(objectMapper.readValue(json, Position.class));
+    }
+
+    /** Réponse HTTP rejouée depuis le payload enregistré. */
+    private record RecordedResponse(InputStream body) implements ClientHttpResponse {
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatus.OK;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "OK";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.tarif.search.service.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.tarif.search.bench.NomenclatureFixtures;
+import com.tarif.search.model.Position;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction du prompt d'un niveau de la cascade sur un RAG réaliste (fixtures V0_2 / V27) :
+ * contexte RAG, system prompt, prompt utilisateur, puis parsing d'une réponse qui cite une partie des codes.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="PromptBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PromptBenchmark {
+
+    /** SECTIONS : 21 sections ; POSITIONS4 : chapitre 84 ; POSITIONS6 : 80 sous-positions (plafond de la cascade) ; POSITIONS10 : 8471 avec titres. */
+    @Param({"SECTIONS", "POSITIONS4", "POSITIONS6", "POSITIONS10"})
+    public String niveau;
+
+    @Param({"false", "true"})
+    public boolean withJustification;
+
+    private AiService aiService;
+    private List<Position> rag;
+    private String ragContext;
+    private String reponse;
+
+    @Setup
+    public void setUp() {
+        aiService = new AiService(null, null, null, null, "openai", false, 15, 8, List.of("SECTIONS"), 120_000,
+                new SimpleMeterRegistry(), Tracer.NOOP);
+        rag = switch (niveau) {
+            case "SECTIONS" -> NomenclatureFixtures.sections();
+            case "POSITIONS4" -> NomenclatureFixtures.positions4("84");
+            case "POSITIONS6" -> NomenclatureFixtures.positions6("85", 80);
+            default -> NomenclatureFixtures.positions10AvecTitres("8471");
+        };
+        ragContext = aiService.creerContexteRAG(niveau, rag).toString();
+
+        // Réponse type : un code sur dix du RAG, avec justification si demandée
+        List<String> lignes = new ArrayList<>();
+        for (int i = 0; i < rag.size(); i += 10) {
+            Position p = rag.get(i);
+            if (p.getCode() != null && !p.getCode().isBlank()) {
+                lignes.add("{\"code\":\"" + p.getCode() + "\""
+                        + (withJustification ? ",\"justification\":\"Correspond au produit recherché.\"" : "") + "}");
+            }
+        }
+        reponse = "```json\n[" + String.join(",", lignes) + "]\n```";
+    }
+
+    @Benchmark
+    public StringBuilder creerContexteRAG() {
+        return aiService.creerContexteRAG(niveau, rag);
+    }
+
+    @Benchmark
+    public String systemMessage() {
+        return AiPrompts.getSystemMessage(withJustification, niveau);
+    }
+
+    @Benchmark
+    public String userPrompt() {
+        return AiPrompts.buildUserPrompt(ragContext, "ordinateur portable");
+    }
+
+    @Benchmark
+    public List<Position> parsePositions() throws JsonProcessingException {
+        return JsonUtils.parsePositions(reponse);
+    }
+}
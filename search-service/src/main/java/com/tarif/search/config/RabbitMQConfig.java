@@ -23,6 +23,12 @@ public class RabbitMQConfig {
     @Value("${messaging.routing-key.search-completed:search.completed}")
     private String routingKey;
 
+    @Value("${messaging.queue.batch-completed:batch-completed-queue}")
+    private String batchCompletedQueueName;
+
+    @Value("${messaging.routing-key.batch-completed:batch.completed}")
+    private String batchCompletedRoutingKey;
+
     @Bean
     public TopicExchange searchExchange() {
         return new TopicExchange(exchangeName);
@@ -40,6 +46,18 @@ public class RabbitMQConfig {
                 .with(routingKey);
     }
 
+    @Bean
+    public Queue batchCompletedQueue() {
+        return QueueBuilder.durable(batchCompletedQueueName).build();
+    }
+
+    @Bean
+    public Binding batchCompletedBinding(Queue batchCompletedQueue, TopicExchange searchExchange) {
+        return BindingBuilder.bind(batchCompletedQueue)
+                .to(searchExchange)
+                .with(batchCompletedRoutingKey);
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -49,6 +67,8 @@ public class RabbitMQConfig {
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
         rabbitTemplate.setMessageConverter(jsonMessageConverter());
+        // Observation Micrometer : span producteur et contexte de trace dans les en-têtes du message
+        rabbitTemplate.setObservationEnabled(true);
         return rabbitTemplate;
     }
 }
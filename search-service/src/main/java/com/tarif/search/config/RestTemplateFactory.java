@@ -1,18 +1,77 @@
 package com.tarif.search.config;
 
+import io.micrometer.common.KeyValue;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.observation.ClientHttpObservationDocumentation.LowCardinalityKeyNames;
+import org.springframework.http.client.observation.ClientRequestObservationContext;
+import org.springframework.http.client.observation.ClientRequestObservationConvention;
+import org.springframework.http.client.observation.DefaultClientRequestObservationConvention;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
 
 @Configuration
 public class RestTemplateFactory {
 
+    /**
+     * Construit via le RestTemplateBuilder de Spring Boot pour bénéficier de l'observation des appels
+     * (span client par appel provider, en-têtes de propagation de trace).
+     */
     @Bean
-    public RestTemplate restTemplate() {
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder) {
         SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
         requestFactory.setConnectTimeout(5000);   // 5 secondes de timeout pour se connecter
         requestFactory.setReadTimeout(90000);     // 90 secondes de timeout pour la lecture (L'IA peut être lente)
-        return new RestTemplate(requestFactory);
+        return restTemplateBuilder.requestFactory(() -> requestFactory).build();
+    }
+
+    /**
+     * Tag uri de http.client.requests : les appels faits avec un gabarit ({batchId}) gardent leur gabarit ;
+     * les URL complètes (results_url Anthropic, webhooks clients) ont leurs segments d'identifiant remplacés
+     * par {id}, pour que la cardinalité ne croisse pas avec le nombre de batches ou de fichiers.
+     * Repris par l'auto-configuration de l'observation RestTemplate de Spring Boot.
+     */
+    @Bean
+    public ClientRequestObservationConvention clientRequestObservationConvention() {
+        return new DefaultClientRequestObservationConvention() {
+            @Override
+            protected KeyValue uri(ClientRequestObservationContext context) {
+                String template = context.getUriTemplate();
+                if (template == null || template.contains("{")) {
+                    return super.uri(context);
+                }
+                return KeyValue.of(LowCardinalityKeyNames.URI, normalizedPath(template));
+            }
+        };
+    }
+
+    /**
+     * Chemin d'une URL sans hôte ni paramètres, segments d'identifiant remplacés par {id}.
+     */
+    static String normalizedPath(String url) {
+        String path;
+        try {
+            path = UriComponentsBuilder.fromUriString(url).build().getPath();
+        } catch (IllegalArgumentException e) {
+            return "none";
+        }
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        return Arrays.stream(path.split("/", -1))
+                .map(segment -> isIdentifier(segment) ? "{id}" : segment)
+                .collect(Collectors.joining("/"));
+    }
+
+    /**
+     * Segment long, ou contenant un chiffre au-delà d'un préfixe de version (v1) : msgbatch_01..., file-abc123, UUID.
+     */
+    private static boolean isIdentifier(String segment) {
+        return segment.length() > 24 || (segment.length() > 3 && segment.chars().anyMatch(Character::isDigit));
     }
 }
@@ -0,0 +1,50 @@
+package com.tarif.search.config;
+
+import io.micrometer.context.ContextExecutorService;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.context.ContextSnapshotFactory;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JCircuitBreakerFactory;
+import org.springframework.cloud.client.circuitbreaker.Customizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Propagation du contexte de trace hors du thread de la requête.
+ *
+ * Les appels HTTP (Feign, RestTemplate des providers IA) et la publication RabbitMQ sont observés
+ * par Micrometer ; le contexte courant doit suivre les changements de thread pour que leurs spans
+ * restent rattachés à la trace de la recherche :
+ * - @Async (SearchEventPublisher) : décorateur appliqué par Spring Boot à l'executor applicatif ;
+ * - circuit breaker Feign : le TimeLimiter Resilience4j exécute l'appel dans son propre pool.
+ */
+@Configuration
+public class TracingConfig {
+
+    private static final ContextSnapshotFactory SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+    /**
+     * Pool du TimeLimiter, arrêté avec le contexte Spring. Volontairement pas exposé comme bean :
+     * un bean Executor ferait renoncer Spring Boot à son executor applicatif (@Async).
+     */
+    private final ExecutorService circuitBreakerExecutor =
+            ContextExecutorService.wrap(Executors.newCachedThreadPool(), SNAPSHOTS::captureAll);
+
+    @Bean
+    public ContextPropagatingTaskDecorator contextPropagatingTaskDecorator() {
+        return new ContextPropagatingTaskDecorator();
+    }
+
+    @Bean
+    public Customizer<Resilience4JCircuitBreakerFactory> tracingCircuitBreakerCustomizer() {
+        return factory -> factory.configureExecutorService(circuitBreakerExecutor);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        circuitBreakerExecutor.shutdown();
+    }
+}
@@ -1,20 +1,41 @@
 package com.tarif.search.controller;
 
+import com.tarif.search.model.BatchCascadeItem;
+import com.tarif.search.model.BatchCascadeJob;
+import com.tarif.search.model.Position;
+import com.tarif.search.service.SearchService.SearchLevel;
+import com.tarif.search.service.ai.batch.BatchCascadeService;
+import com.tarif.search.service.ai.batch.BatchResultsUnavailableException;
 import com.tarif.search.service.ai.batch.BatchService;
+import com.tarif.search.service.ai.batch.BatchTrackingService;
 import com.tarif.search.service.ai.batch.models.BatchResult;
 import com.tarif.search.service.ai.batch.models.BatchStatus;
 import com.tarif.search.service.ai.batch.models.SearchRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Contrôleur REST pour gérer les recherches de codes HS par lots (batch).
@@ -23,22 +44,39 @@ import java.util.Map;
  * Endpoints disponibles :
  * - POST /batch-search/submit : Soumettre un batch de recherches
  * - GET /batch-search/status/{batchId} : Vérifier le statut d'un batch
- * - GET /batch-search/results/{batchId} : Récupérer les résultats d'un batch terminé
+ * - GET /batch-search/results/{batchId} : Récupérer les résultats d'un batch terminé (pagination / NDJSON optionnels)
  * - POST /batch-search/cancel/{batchId} : Annuler un batch en cours
+ * - POST /batch-search/cascade/submit : Classification complète (Level 0 → niveau demandé) côté serveur
+ * - GET /batch-search/cascade/{jobId} : Avancement et résultats d'une cascade
+ * - POST /batch-search/cascade/{jobId}/cancel : Annuler une cascade
  */
 @RestController
 @RequestMapping("/batch-search")
 @Slf4j
 public class BatchSearchController {
 
-    private final BatchService batchService;
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final int DEFAULT_PAGE_SIZE = 500;
+    private static final int MAX_PAGE_SIZE = 5000;
 
-    public BatchSearchController(BatchService batchService) {
+    private final BatchService batchService;
+    private final BatchCascadeService batchCascadeService;
+    private final BatchTrackingService batchTrackingService;
+    private final ObjectMapper ndjsonMapper = new ObjectMapper()
+        .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    public BatchSearchController(BatchService batchService,
+                                 BatchCascadeService batchCascadeService,
+                                 BatchTrackingService batchTrackingService) {
         this.batchService = batchService;
+        this.batchCascadeService = batchCascadeService;
+        this.batchTrackingService = batchTrackingService;
     }
 
     /**
      * Soumet un batch de recherches de codes HS.
+     * Au-delà des limites du provider, le lot est découpé en plusieurs batches et l'ID retourné
+     * est un ID logique ("multi-...") utilisable tel quel sur les autres endpoints.
      *
      * Exemple de requête :
      * POST /batch-search/submit
@@ -49,9 +87,13 @@ public class BatchSearchController {
      *       "searchTerm": "Pommes fraîches",
      *       "ragContext": "RAG pour la recherche des : POSITIONS6\n\n - Code = 0808 10 -..."
      *     }
-     *   ]
+     *   ],
+     *   "webhookUrl": "https://client.example.com/hooks/batch"   (optionnel)
      * }
      *
+     * Le batch est ensuite suivi en arrière-plan : statut et résultats sont servis localement,
+     * et la fin est notifiée sur RabbitMQ (batch.completed) et au webhook éventuel.
+     *
      * @param request La requête contenant les recherches à traiter
      * @return La réponse avec l'ID du batch créé
      */
@@ -66,12 +108,16 @@ public class BatchSearchController {
                 .body(new BatchSubmitResponse(null, "Erreur: Liste de recherches vide", HttpStatus.BAD_REQUEST.value()));
         }
 
-        // Limiter le nombre de recherches par batch
-        if (request.getSearches().size() > 1000) {
-            return ResponseEntity.badRequest()
-                .body(new BatchSubmitResponse(null, "Erreur: Maximum 1000 recherches par batch", HttpStatus.BAD_REQUEST.value()));
+        if (request.getWebhookUrl() != null && !request.getWebhookUrl().isBlank()) {
+            try {
+                batchTrackingService.validateWebhookUrl(request.getWebhookUrl());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                    .body(new BatchSubmitResponse(null, "Erreur: " + e.getMessage(), HttpStatus.BAD_REQUEST.value()));
+            }
         }
 
+        // Pas de limite de taille : BatchService découpe les gros lots selon les limites du provider
         // Convertir les requêtes en format attendu par le service
         List<SearchRequest> searchRequests = new ArrayList<>();
         for (SearchItem item : request.getSearches()) {
@@ -89,6 +135,9 @@ public class BatchSearchController {
 
             if (batchId != null) {
                 log.info("Batch créé avec succès: {} (provider: {})", batchId, batchService.getActiveProviderName());
+                String webhookUrl = request.getWebhookUrl() != null && !request.getWebhookUrl().isBlank()
+                    ? request.getWebhookUrl() : null;
+                batchTrackingService.register(batchId, searchRequests.size(), getCurrentUserId(), webhookUrl);
                 return ResponseEntity.ok(new BatchSubmitResponse(
                     batchId,
                     "Batch créé avec succès. Utilisez l'ID pour suivre le statut.",
@@ -100,6 +149,9 @@ public class BatchSearchController {
                     .body(new BatchSubmitResponse(null, "Erreur lors de la création du batch", HttpStatus.INTERNAL_SERVER_ERROR.value()));
             }
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(new BatchSubmitResponse(null, "Erreur: " + e.getMessage(), HttpStatus.BAD_REQUEST.value()));
         } catch (UnsupportedOperationException e) {
             log.error("Opération batch non supportée: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
@@ -111,6 +163,7 @@ public class BatchSearchController {
 
     /**
      * Récupère le statut d'un batch.
+     * Pour un batch suivi, le dernier statut connu du poller est renvoyé sans appel au provider.
      *
      * @param batchId L'ID du batch
      * @return Le statut du batch avec les compteurs de requêtes
@@ -120,8 +173,12 @@ public class BatchSearchController {
     public ResponseEntity<BatchStatusResponse> getBatchStatus(@PathVariable String batchId) {
         log.debug("Demande de statut pour le batch: {}", batchId);
 
+        if (isTrackedForAnotherUser(batchId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
         try {
-            BatchStatus status = batchService.getBatchStatus(batchId);
+            BatchStatus status = resolveStatus(batchId);
 
             if (status != null) {
                 BatchStatusResponse response = new BatchStatusResponse();
@@ -149,17 +206,32 @@ public class BatchSearchController {
     /**
      * Récupère les résultats d'un batch terminé.
      *
+     * Les résultats sont lus en flux depuis le provider. Sans paramètre, la réponse JSON complète
+     * est conservée ; pour les gros lots :
+     * - page/size : seule la fenêtre demandée est conservée en mémoire (compteurs calculés sur tout le lot)
+     * - format=ndjson (ou Accept: application/x-ndjson) : un résultat par ligne, transmis au fil de la lecture
+     *
      * @param batchId L'ID du batch
      * @return La liste des résultats ou une erreur si le batch n'est pas terminé
      */
     @GetMapping("/results/{batchId}")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<BatchResultsResponse> getBatchResults(@PathVariable String batchId) {
+    public ResponseEntity<?> getBatchResults(
+            @PathVariable String batchId,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         log.debug("Demande de résultats pour le batch: {}", batchId);
 
+        if (isTrackedForAnotherUser(batchId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new BatchResultsResponse(batchId, null, "Batch introuvable"));
+        }
+
         try {
             // Récupérer d'abord le statut pour vérifier que le batch est terminé
-            BatchStatus status = batchService.getBatchStatus(batchId);
+            BatchStatus status = resolveStatus(batchId);
 
             if (status == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -180,34 +252,112 @@ public class BatchSearchController {
                     .body(new BatchResultsResponse(batchId, null, "Résultats non disponibles"));
             }
 
-            // Récupérer les résultats via le provider actif (prend batchId, pas resultsUrl)
-            List<BatchResult> results = batchService.getBatchResults(batchId);
+            if ("ndjson".equalsIgnoreCase(format) || (accept != null && accept.contains(NDJSON_VALUE))) {
+                return streamResultsAsNdjson(batchId);
+            }
 
-            if (results != null) {
-                BatchResultsResponse response = new BatchResultsResponse(
-                    batchId,
-                    results,
-                    "Résultats récupérés avec succès"
-                );
-                response.setTotalResults(results.size());
-                response.setSuccessCount((int) results.stream().filter(BatchResult::isSuccess).count());
-                response.setErrorCount((int) results.stream().filter(r -> !r.isSuccess()).count());
+            if (page != null || size != null) {
+                return ResponseEntity.ok(getResultsPage(batchId,
+                    Math.max(page != null ? page : 0, 0),
+                    Math.min(Math.max(size != null ? size : DEFAULT_PAGE_SIZE, 1), MAX_PAGE_SIZE)));
+            }
 
-                log.info("Résultats récupérés pour le batch {}: {} résultats ({} succès, {} erreurs)",
-                        batchId, results.size(), response.getSuccessCount(), response.getErrorCount());
+            // Récupérer les résultats (stockés localement si le batch est suivi, sinon via le provider actif)
+            List<BatchResult> results = new ArrayList<>();
+            streamResults(batchId, results::add);
 
-                return ResponseEntity.ok(response);
-            } else {
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(new BatchResultsResponse(batchId, null, "Erreur lors de la récupération des résultats"));
-            }
+            BatchResultsResponse response = new BatchResultsResponse(
+                batchId,
+                results,
+                "Résultats récupérés avec succès"
+            );
+            response.setTotalResults(results.size());
+            response.setSuccessCount((int) results.stream().filter(BatchResult::isSuccess).count());
+            response.setErrorCount((int) results.stream().filter(r -> !r.isSuccess()).count());
+
+            log.info("Résultats récupérés pour le batch {}: {} résultats ({} succès, {} erreurs)",
+                    batchId, results.size(), response.getSuccessCount(), response.getErrorCount());
 
+            return ResponseEntity.ok(response);
+
+        } catch (BatchResultsUnavailableException e) {
+            log.warn("Résultats du batch {} indisponibles: {}", batchId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new BatchResultsResponse(batchId, null, "Résultats momentanément indisponibles, réessayer plus tard"));
         } catch (UnsupportedOperationException e) {
             log.error("Opération batch non supportée: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
         }
     }
 
+    /**
+     * Parcourt tous les résultats en flux et ne conserve que la page demandée.
+     */
+    private BatchResultsResponse getResultsPage(String batchId, int page, int size) {
+        long from = (long) page * size;
+        List<BatchResult> window = new ArrayList<>(size);
+        int[] counts = new int[2]; // [succès, erreurs]
+
+        int total = streamResults(batchId, result -> {
+            long index = (long) counts[0] + counts[1];
+            if (index >= from && window.size() < size) {
+                window.add(result);
+            }
+            counts[result.isSuccess() ? 0 : 1]++;
+        });
+
+        BatchResultsResponse response = new BatchResultsResponse(batchId, window, "Résultats récupérés avec succès");
+        response.setTotalResults(total);
+        response.setSuccessCount(counts[0]);
+        response.setErrorCount(counts[1]);
+        response.setPage(page);
+        response.setSize(size);
+
+        log.info("Page {} (taille {}) des résultats du batch {}: {} / {} résultats",
+                page, size, batchId, window.size(), total);
+        return response;
+    }
+
+    /**
+     * Statut du batch : cache du poller si disponible, sinon appel direct au provider.
+     */
+    private BatchStatus resolveStatus(String batchId) {
+        return batchTrackingService.getCachedStatus(batchId)
+            .orElseGet(() -> batchService.getBatchStatus(batchId));
+    }
+
+    /**
+     * Parcourt les résultats : copie locale si le poller les a déjà stockés, sinon provider.
+     */
+    private int streamResults(String batchId, Consumer<BatchResult> consumer) {
+        if (batchTrackingService.hasStoredResults(batchId)) {
+            return batchTrackingService.streamStoredResults(batchId, consumer);
+        }
+        return batchService.streamBatchResults(batchId, consumer);
+    }
+
+    /**
+     * Transmet les résultats au format NDJSON au fil de la lecture du fichier provider.
+     */
+    private ResponseEntity<StreamingResponseBody> streamResultsAsNdjson(String batchId) {
+        StreamingResponseBody body = out -> {
+            SequenceWriter writer = ndjsonMapper.writer().withRootValueSeparator("\n").writeValues(out);
+            int total = streamResults(batchId, result -> {
+                try {
+                    writer.write(result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            out.write('\n');
+            log.info("Résultats du batch {} transmis en NDJSON: {} résultats", batchId, total);
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+            .body(body);
+    }
+
     /**
      * Annule un batch en cours de traitement.
      *
@@ -219,8 +369,19 @@ public class BatchSearchController {
     public ResponseEntity<Map<String, Object>> cancelBatch(@PathVariable String batchId) {
         log.info("Demande d'annulation du batch: {}", batchId);
 
+        if (isTrackedForAnotherUser(batchId)) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("batchId", batchId);
+            response.put("canceled", false);
+            response.put("message", "Batch introuvable");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+
         try {
             boolean success = batchService.cancelBatch(batchId);
+            if (success) {
+                batchTrackingService.pollSoon(batchId);
+            }
 
             Map<String, Object> response = new HashMap<>();
             response.put("batchId", batchId);
@@ -239,6 +400,176 @@ public class BatchSearchController {
         }
     }
 
+    /**
+     * Soumet une cascade de classification complète exécutée côté serveur.
+     * Le client ne fournit que les termes : le service soumet le Level 0 pour tous les articles,
+     * puis construit le RAG du niveau suivant de chaque article à partir de ses propres réponses.
+     *
+     * Exemple de requête :
+     * POST /batch-search/cascade/submit
+     * {
+     *   "maxLevel": "POSITIONS10",
+     *   "searches": [
+     *     { "customId": "product-1", "searchTerm": "Pommes fraîches de table" }
+     *   ]
+     * }
+     *
+     * @param request Les articles à classer et le niveau maximum (POSITIONS10 par défaut)
+     * @return L'ID du job de cascade
+     */
+    @PostMapping("/cascade/submit")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<BatchSubmitResponse> submitCascade(@RequestBody CascadeSubmitRequest request) {
+        if (request.getSearches() == null || request.getSearches().isEmpty()) {
+            return ResponseEntity.badRequest()
+                .body(new BatchSubmitResponse(null, "Erreur: Liste de recherches vide", HttpStatus.BAD_REQUEST.value()));
+        }
+
+        if (!batchService.isBatchingSupported()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
+                .body(new BatchSubmitResponse(null,
+                    "Le provider actuel ne supporte pas les opérations batch",
+                    HttpStatus.NOT_IMPLEMENTED.value()));
+        }
+
+        SearchLevel maxLevel;
+        try {
+            maxLevel = request.getMaxLevel() != null
+                ? SearchLevel.valueOf(request.getMaxLevel().toUpperCase())
+                : SearchLevel.POSITIONS10;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(new BatchSubmitResponse(null, "Erreur: Niveau inconnu " + request.getMaxLevel(), HttpStatus.BAD_REQUEST.value()));
+        }
+
+        LinkedHashMap<String, String> termes = new LinkedHashMap<>();
+        for (int i = 0; i < request.getSearches().size(); i++) {
+            SearchItem item = request.getSearches().get(i);
+            if (item.getSearchTerm() == null || item.getSearchTerm().isBlank()) {
+                continue;
+            }
+            String customId = item.getCustomId() != null && !item.getCustomId().isBlank()
+                ? item.getCustomId()
+                : "item-" + i;
+            if (termes.putIfAbsent(customId, item.getSearchTerm()) != null) {
+                return ResponseEntity.badRequest()
+                    .body(new BatchSubmitResponse(null, "Erreur: customId en double " + customId, HttpStatus.BAD_REQUEST.value()));
+            }
+        }
+
+        if (termes.isEmpty()) {
+            return ResponseEntity.badRequest()
+                .body(new BatchSubmitResponse(null, "Erreur: Aucun terme de recherche", HttpStatus.BAD_REQUEST.value()));
+        }
+
+        BatchCascadeJob job = batchCascadeService.startCascade(termes, maxLevel, getCurrentUserId());
+        log.info("Cascade batch créée: {} ({} articles, niveau max {})", job.getId(), termes.size(), maxLevel);
+        return ResponseEntity.ok(new BatchSubmitResponse(
+            job.getId(),
+            "Cascade créée avec succès. Utilisez l'ID pour suivre l'avancement.",
+            HttpStatus.OK.value()
+        ));
+    }
+
+    /**
+     * Récupère l'avancement d'une cascade et les résultats des articles terminés.
+     *
+     * @param jobId L'ID du job de cascade
+     * @return Le statut du job et les résultats par article
+     */
+    @GetMapping("/cascade/{jobId}")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<CascadeStatusResponse> getCascade(@PathVariable String jobId) {
+        return batchCascadeService.getJob(jobId)
+            .filter(job -> isVisibleToCaller(job.getCreatedBy()))
+            .map(job -> {
+                List<BatchCascadeItem> items = batchCascadeService.getItems(jobId);
+                CascadeStatusResponse response = new CascadeStatusResponse();
+                response.setJobId(job.getId());
+                response.setStatus(job.getStatus().name());
+                response.setMaxLevel(job.getMaxLevel());
+                response.setProvider(job.getProvider());
+                response.setRounds(job.getRound());
+                response.setTotalItems(items.size());
+                response.setCompletedItems((int) items.stream()
+                    .filter(i -> i.getStatus() == BatchCascadeItem.ItemStatus.DONE).count());
+                response.setCreatedAt(job.getCreatedAt());
+                response.setCompletedAt(job.getCompletedAt());
+                response.setMessage(job.getErrorMessage());
+
+                List<CascadeItemResult> results = new ArrayList<>();
+                for (BatchCascadeItem item : items) {
+                    CascadeItemResult result = new CascadeItemResult();
+                    result.setCustomId(item.getCustomId());
+                    result.setSearchTerm(item.getSearchTerm());
+                    result.setStatus(item.getStatus().name());
+                    result.setCurrentLevel(item.getCurrentLevel());
+                    result.setPositions(batchCascadeService.getResult(item));
+                    results.add(result);
+                }
+                response.setResults(results);
+                return ResponseEntity.ok(response);
+            })
+            .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    /**
+     * Annule une cascade : les batches en cours sont annulés chez le provider,
+     * les articles non terminés conservent les niveaux déjà obtenus.
+     *
+     * @param jobId L'ID du job de cascade
+     * @return Le résultat de l'annulation
+     */
+    @PostMapping("/cascade/{jobId}/cancel")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Map<String, Object>> cancelCascade(@PathVariable String jobId) {
+        log.info("Demande d'annulation de la cascade: {}", jobId);
+        boolean visible = batchCascadeService.getJob(jobId)
+            .map(job -> isVisibleToCaller(job.getCreatedBy()))
+            .orElse(false);
+        boolean success = visible && batchCascadeService.cancelCascade(jobId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", jobId);
+        response.put("canceled", success);
+        response.put("message", success ? "Cascade annulée avec succès" : "Cascade introuvable ou déjà terminée");
+
+        return success ? ResponseEntity.ok(response) : ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+
+    private String getCurrentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof Jwt jwt) {
+            return jwt.getClaimAsString("sub");
+        }
+        return null;
+    }
+
+    /**
+     * Vrai si l'appelant est le créateur de la ressource ou un administrateur.
+     * Une ressource d'un autre utilisateur est répondue 404, comme une ressource inexistante.
+     */
+    private boolean isVisibleToCaller(String createdBy) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null) {
+            return false;
+        }
+        if (auth.getAuthorities().stream().anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()))) {
+            return true;
+        }
+        return createdBy != null && createdBy.equals(getCurrentUserId());
+    }
+
+    /**
+     * Vrai si le batch est suivi et appartient à un autre utilisateur.
+     * Un batch non suivi n'a pas de créateur connu et reste accessible par son ID.
+     */
+    private boolean isTrackedForAnotherUser(String batchId) {
+        return batchTrackingService.find(batchId)
+            .map(tracking -> !isVisibleToCaller(tracking.getCreatedBy()))
+            .orElse(false);
+    }
+
     /**
      * Construit un message de statut lisible.
      */
@@ -271,6 +602,8 @@ public class BatchSearchController {
     @Data
     public static class BatchSearchRequest {
         private List<SearchItem> searches;
+        /** URL appelée (POST JSON) à la fin du batch (optionnel). */
+        private String webhookUrl;
     }
 
     /**
@@ -283,6 +616,45 @@ public class BatchSearchController {
         private String ragContext;
     }
 
+    /**
+     * Requête pour soumettre une cascade côté serveur (ragContext ignoré).
+     */
+    @Data
+    public static class CascadeSubmitRequest {
+        private List<SearchItem> searches;
+        private String maxLevel;
+    }
+
+    /**
+     * Réponse pour l'avancement d'une cascade.
+     */
+    @Data
+    public static class CascadeStatusResponse {
+        private String jobId;
+        private String status;
+        private String maxLevel;
+        private String provider;
+        private Integer rounds;
+        private Integer totalItems;
+        private Integer completedItems;
+        private LocalDateTime createdAt;
+        private LocalDateTime completedAt;
+        private String message;
+        private List<CascadeItemResult> results;
+    }
+
+    /**
+     * Résultat agrégé d'un article de la cascade.
+     */
+    @Data
+    public static class CascadeItemResult {
+        private String customId;
+        private String searchTerm;
+        private String status;
+        private String currentLevel;
+        private List<Position> positions;
+    }
+
     /**
      * Réponse lors de la soumission d'un batch.
      */
@@ -324,6 +696,9 @@ public class BatchSearchController {
         private Integer totalResults;
         private Integer successCount;
         private Integer errorCount;
+        /** Renseignés uniquement en mode paginé. */
+        private Integer page;
+        private Integer size;
 
         public BatchResultsResponse(String batchId, List<BatchResult> results, String message) {
             this.batchId = batchId;
@@ -0,0 +1,41 @@
+package com.tarif.search.controller;
+
+import com.tarif.search.explain.SearchTimeline;
+import com.tarif.search.explain.SearchTimelineStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * Consultation des timelines des recherches lancées avec explain=true (réservé aux administrateurs).
+ *
+ * Endpoints disponibles :
+ * - GET /recherche/explain : dernières timelines, de la plus récente à la plus ancienne (limit, userId optionnels)
+ * - GET /recherche/explain/{id} : timeline d'une recherche (identifiant de l'en-tête X-Search-Explain-Id)
+ */
+@RestController
+@RequestMapping("/recherche/explain")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class ExplainController {
+
+    private final SearchTimelineStore timelineStore;
+
+    @GetMapping(produces = "application/json")
+    public List<SearchTimeline> recentes(@RequestParam(defaultValue = "50") int limit,
+                                         @RequestParam(required = false) String userId) {
+        int borne = Math.max(1, Math.min(limit, timelineStore.capacite()));
+        return timelineStore.recent(borne, userId);
+    }
+
+    @GetMapping(value = "/{id}", produces = "application/json")
+    public SearchTimeline timeline(@PathVariable String id) {
+        return timelineStore.find(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Timeline introuvable (expirée du tampon ou autre instance) : " + id));
+    }
+}
@@ -3,11 +3,18 @@ package com.tarif.search.controller;
 import com.tarif.search.client.BackendClient;
 import com.tarif.search.dto.QuotaCheckResponse;
 import com.tarif.search.event.SearchEventPublisher;
+import com.tarif.search.explain.SearchExplain;
+import com.tarif.search.explain.SearchTimeline;
+import com.tarif.search.explain.SearchTimelineStore;
+import com.tarif.search.jfr.QuotaCheckEvent;
 import com.tarif.search.model.Position;
 import com.tarif.search.model.UsageInfo;
 import com.tarif.search.service.SearchService;
 import com.tarif.search.service.SearchService.SearchLevel;
 import com.tarif.search.service.ai.AiService;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -19,6 +26,7 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/recherche")
@@ -30,78 +38,141 @@ public class RechercheController {
     private final AiService aiService;
     private final BackendClient backendClient;
     private final SearchEventPublisher eventPublisher;
+    private final Tracer tracer;
+    private final SearchTimelineStore timelineStore;
+
+    /** En-tête de réponse portant l'identifiant de la timeline en mode explain. */
+    static final String EXPLAIN_HEADER = "X-Search-Explain-Id";
 
     @GetMapping(value = "/sections", produces = "application/json")
-    public List<Position> reponseSections(@RequestParam String termeRecherche) {
-        return executeSearch(termeRecherche, SearchLevel.SECTIONS, "/recherche/sections");
+    public List<Position> reponseSections(@RequestParam String termeRecherche,
+                                          @RequestParam(defaultValue = "false") boolean explain,
+                                          HttpServletResponse response) {
+        return executeSearch(termeRecherche, SearchLevel.SECTIONS, "/recherche/sections", explain, response);
     }
 
     @GetMapping(value = "/chapitres", produces = "application/json")
-    public List<Position> reponseChapitres(@RequestParam String termeRecherche) {
-        return executeSearch(termeRecherche, SearchLevel.CHAPITRES, "/recherche/chapitres");
+    public List<Position> reponseChapitres(@RequestParam String termeRecherche,
+                                           @RequestParam(defaultValue = "false") boolean explain,
+                                           HttpServletResponse response) {
+        return executeSearch(termeRecherche, SearchLevel.CHAPITRES, "/recherche/chapitres", explain, response);
     }
 
     @GetMapping(value = "/positions4", produces = "application/json")
-    public List<Position> reponsePositions4(@RequestParam String termeRecherche) {
-        return executeSearch(termeRecherche, SearchLevel.POSITIONS4, "/recherche/positions4");
+    public List<Position> reponsePositions4(@RequestParam String termeRecherche,
+                                            @RequestParam(defaultValue = "false") boolean explain,
+                                            HttpServletResponse response) {
+        return executeSearch(termeRecherche, SearchLevel.POSITIONS4, "/recherche/positions4", explain, response);
     }
 
     @GetMapping(value = "/positions6", produces = "application/json")
-    public List<Position> reponsePositions6(@RequestParam String termeRecherche) {
-        return executeSearch(termeRecherche, SearchLevel.POSITIONS6, "/recherche/positions6");
+    public List<Position> reponsePositions6(@RequestParam String termeRecherche,
+                                            @RequestParam(defaultValue = "false") boolean explain,
+                                            HttpServletResponse response) {
+        return executeSearch(termeRecherche, SearchLevel.POSITIONS6, "/recherche/positions6", explain, response);
     }
 
     @GetMapping(value = "/positions10", produces = "application/json")
-    public List<Position> reponsePositions10(@RequestParam String termeRecherche) {
-        return executeSearch(termeRecherche, SearchLevel.POSITIONS10, "/recherche/positions10");
+    public List<Position> reponsePositions10(@RequestParam String termeRecherche,
+                                             @RequestParam(defaultValue = "false") boolean explain,
+                                             HttpServletResponse response) {
+        return executeSearch(termeRecherche, SearchLevel.POSITIONS10, "/recherche/positions10", explain, response);
     }
 
-    private List<Position> executeSearch(String termeRecherche, SearchLevel level, String endpoint) {
+    /**
+     * Exécute une recherche après vérification du quota.
+     * Avec explain=true, le déroulé de la cascade (niveaux, tentatives, décisions de repli) est conservé
+     * dans le SearchTimelineStore et son identifiant renvoyé dans l'en-tête X-Search-Explain-Id.
+     */
+    private List<Position> executeSearch(String termeRecherche, SearchLevel level, String endpoint,
+                                         boolean explain, HttpServletResponse response) {
         log.info("Requête {} pour '{}'", endpoint, termeRecherche);
+        tagRequete("recherche.niveau_max", level.name());
         boolean searchExecuted = false;
         QuotaCheckResponse quotaCheck = null;
+        List<Position> result = null;
+
+        if (explain) {
+            SearchTimeline timeline = nouvelleTimeline(termeRecherche, level, endpoint);
+            SearchExplain.start(timeline);
+            response.setHeader(EXPLAIN_HEADER, timeline.getId());
+        }
 
         try {
             // Vérifier le quota via le backend
             quotaCheck = checkQuota();
 
             // Exécuter la recherche
-            List<Position> result = searchService.search(termeRecherche, level);
+            result = searchService.search(termeRecherche, level);
             searchExecuted = true;
 
             return result != null ? result : new ArrayList<>();
 
         } catch (QuotaExceededException e) {
             log.warn("Quota dépassé: {}", e.getMessage());
+            SearchExplain.erreur("Quota dépassé : " + e.getMessage());
             throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
         } catch (Exception e) {
             log.error("Erreur lors de la recherche: {}", e.getMessage(), e);
+            SearchExplain.erreur(e.getClass().getSimpleName() + ": " + e.getMessage());
             return new ArrayList<>();
         } finally {
             if (searchExecuted) {
                 publishSearchEvent(endpoint, termeRecherche, quotaCheck);
             }
             aiService.clearCurrentUsage();
+            SearchTimeline timeline = SearchExplain.finish(result);
+            if (timeline != null) {
+                timelineStore.add(timeline);
+            }
         }
     }
 
+    private SearchTimeline nouvelleTimeline(String termeRecherche, SearchLevel level, String endpoint) {
+        SearchTimeline timeline = new SearchTimeline();
+        timeline.setId(UUID.randomUUID().toString());
+        timeline.setUserId(getCurrentUserId());
+        timeline.setEndpoint(endpoint);
+        timeline.setTermeRecherche(termeRecherche);
+        timeline.setNiveauMax(level.name());
+        return timeline;
+    }
+
     private QuotaCheckResponse checkQuota() {
-        String authHeader = getAuthorizationHeader();
-        QuotaCheckResponse response = backendClient.checkQuota(authHeader);
+        QuotaCheckEvent event = new QuotaCheckEvent();
+        event.begin();
+        String status = "erreur";
+        QuotaCheckResponse response = null;
+        try {
+            String authHeader = getAuthorizationHeader();
+            response = backendClient.checkQuota(authHeader);
 
-        if (response == null) {
-            log.warn("Réponse quota null - Mode dégradé");
-            return QuotaCheckResponse.builder().canSearch(true).quotaOk(true).build();
-        }
+            if (response == null) {
+                log.warn("Réponse quota null - Mode dégradé");
+                status = "degrade";
+                return QuotaCheckResponse.builder().canSearch(true).quotaOk(true).build();
+            }
 
-        if (!response.isCanSearch()) {
-            throw new QuotaExceededException(response.getMessage() != null
-                    ? response.getMessage()
-                    : "Quota dépassé");
-        }
+            if (!response.isCanSearch()) {
+                status = "depasse";
+                throw new QuotaExceededException(response.getMessage() != null
+                        ? response.getMessage()
+                        : "Quota dépassé");
+            }
 
-        log.debug("Quota OK - Usage: {}/{}", response.getCurrentUsage(), response.getMonthlyQuota());
-        return response;
+            log.debug("Quota OK - Usage: {}/{}", response.getCurrentUsage(), response.getMonthlyQuota());
+            status = response.isQuotaOk() ? "ok" : "pay_per_request";
+            return response;
+        } finally {
+            tagRequete("quota.statut", status);
+            event.end();
+            if (event.shouldCommit()) {
+                event.status = status;
+                event.organizationId = response != null && response.getOrganizationId() != null
+                        ? response.getOrganizationId() : 0L;
+                event.commit();
+            }
+        }
     }
 
     private void publishSearchEvent(String endpoint, String searchTerm, QuotaCheckResponse quotaCheck) {
@@ -109,6 +180,9 @@ public class RechercheController {
             String userId = getCurrentUserId();
             UsageInfo usageInfo = aiService.getCurrentUsage();
 
+            if (usageInfo != null && usageInfo.getTokens() != null) {
+                tagRequete("ai.tokens.total", String.valueOf(usageInfo.getTokens()));
+            }
             if (userId != null && usageInfo != null) {
                 Long organizationId = quotaCheck != null ? quotaCheck.getOrganizationId() : null;
                 Double cost = determineCost(quotaCheck, usageInfo);
@@ -127,6 +201,16 @@ public class RechercheController {
         }
     }
 
+    /**
+     * Attribut du span serveur de la requête HTTP, racine de la trace de la recherche.
+     */
+    private void tagRequete(String key, String value) {
+        Span span = tracer.currentSpan();
+        if (span != null) {
+            span.tag(key, value);
+        }
+    }
+
     private Double determineCost(QuotaCheckResponse quotaCheck, UsageInfo usageInfo) {
         if (quotaCheck == null) {
             return null;
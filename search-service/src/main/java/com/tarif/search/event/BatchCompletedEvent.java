@@ -0,0 +1,41 @@
+package com.tarif.search.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Notification de fin d'un batch suivi : publiée sur RabbitMQ et envoyée au webhook éventuel.
+ * Les résultats ne sont pas inclus : ils sont disponibles via /batch-search/results/{batchId}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCompletedEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Builder.Default
+    private String eventId = UUID.randomUUID().toString();
+
+    @Builder.Default
+    private Instant timestamp = Instant.now();
+
+    private String batchId;
+    private String provider;
+    private String userId;
+    /** COMPLETED ou FAILED (voir BatchTracking.TrackingState). */
+    private String state;
+    private Map<String, Integer> requestCounts;
+    private Integer resultCount;
+    private Integer successCount;
+    private Integer errorCount;
+    private String errorMessage;
+}
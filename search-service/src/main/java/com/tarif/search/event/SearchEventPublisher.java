@@ -20,6 +20,9 @@ public class SearchEventPublisher {
     @Value("${messaging.routing-key.search-completed:search.completed}")
     private String routingKey;
 
+    @Value("${messaging.routing-key.batch-completed:batch.completed}")
+    private String batchCompletedRoutingKey;
+
     @Async
     public void publishSearchCompleted(
             String userId,
@@ -46,4 +49,21 @@ public class SearchEventPublisher {
             log.error("Erreur publication event RabbitMQ: {}", e.getMessage());
         }
     }
+
+    /**
+     * Publie la fin d'un batch suivi. Synchrone : le poller doit savoir si la publication
+     * a réussi pour la retenter au cycle suivant.
+     *
+     * @return true si l'événement a été remis au broker
+     */
+    public boolean publishBatchCompleted(BatchCompletedEvent event) {
+        try {
+            rabbitTemplate.convertAndSend(exchange, batchCompletedRoutingKey, event);
+            log.debug("Event publié: {} - batchId={}, state={}", batchCompletedRoutingKey, event.getBatchId(), event.getState());
+            return true;
+        } catch (Exception e) {
+            log.error("Erreur publication event RabbitMQ: {}", e.getMessage());
+            return false;
+        }
+    }
 }
@@ -0,0 +1,159 @@
+package com.tarif.search.explain;
+
+import com.tarif.search.model.Position;
+import com.tarif.search.model.UsageInfo;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Enregistreur du mode explain, lié au thread de la requête (la cascade temps réel est synchrone).
+ *
+ * Sans timeline active (cas normal), chaque méthode se réduit à la lecture d'un ThreadLocal :
+ * les points d'instrumentation de SearchService et AiService restent en place en permanence.
+ */
+public final class SearchExplain {
+
+    private static final ThreadLocal<State> current = new ThreadLocal<>();
+
+    private static final class State {
+        final SearchTimeline timeline;
+        final long debutNanos = System.nanoTime();
+        SearchTimeline.Niveau niveau;
+        long niveauNanos;
+        SearchTimeline.Tentative tentative;
+        long tentativeNanos;
+
+        State(SearchTimeline timeline) {
+            this.timeline = timeline;
+        }
+    }
+
+    private SearchExplain() {
+    }
+
+    public static void start(SearchTimeline timeline) {
+        timeline.setDebut(Instant.now());
+        current.set(new State(timeline));
+    }
+
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+
+    /**
+     * Clôt la timeline du thread courant et la retourne (null si le mode explain n'était pas actif).
+     */
+    public static SearchTimeline finish(List<Position> resultat) {
+        State state = current.get();
+        if (state == null) {
+            return null;
+        }
+        current.remove();
+        SearchTimeline timeline = state.timeline;
+        timeline.setDureeMs(millis(state.debutNanos));
+        if (resultat != null) {
+            timeline.setCodesRetournes(codes(resultat));
+        }
+        return timeline;
+    }
+
+    public static void erreur(String message) {
+        State state = current.get();
+        if (state != null) {
+            state.timeline.setErreur(message);
+        }
+    }
+
+    public static void debutNiveau(String niveau, String mode, int ragSize) {
+        State state = current.get();
+        if (state == null) {
+            return;
+        }
+        SearchTimeline.Niveau bloc = new SearchTimeline.Niveau();
+        bloc.setNiveau(niveau);
+        bloc.setMode(mode);
+        bloc.setRagSize(ragSize);
+        state.timeline.getNiveaux().add(bloc);
+        state.niveau = bloc;
+        state.niveauNanos = System.nanoTime();
+    }
+
+    public static void finNiveau(String resultat, List<Position> positions) {
+        State state = current.get();
+        if (state == null || state.niveau == null) {
+            return;
+        }
+        state.niveau.setResultat(resultat);
+        state.niveau.setDureeMs(millis(state.niveauNanos));
+        if (positions != null) {
+            state.niveau.setCodesRetenus(codes(positions));
+        }
+        state.niveau = null;
+    }
+
+    public static void debutTentative(int numero) {
+        State state = current.get();
+        if (state == null || state.niveau == null) {
+            return;
+        }
+        SearchTimeline.Tentative tentative = new SearchTimeline.Tentative();
+        tentative.setNumero(numero);
+        state.niveau.getTentatives().add(tentative);
+        state.tentative = tentative;
+        state.tentativeNanos = System.nanoTime();
+    }
+
+    public static void finTentative(int positions, String resultat, String erreur) {
+        State state = current.get();
+        if (state == null || state.tentative == null) {
+            return;
+        }
+        state.tentative.setPositions(positions);
+        state.tentative.setResultat(resultat);
+        state.tentative.setErreur(erreur);
+        state.tentative.setDureeMs(millis(state.tentativeNanos));
+        state.tentative = null;
+    }
+
+    public static void prompt(int promptBytes) {
+        State state = current.get();
+        if (state != null && state.tentative != null) {
+            state.tentative.setPromptBytes(promptBytes);
+        }
+    }
+
+    /**
+     * Appel provider de la tentative en cours : provider, modèle, latence et tokens consommés.
+     */
+    public static void appelProvider(String provider, String model, long latenceNanos, UsageInfo usage) {
+        State state = current.get();
+        if (state == null || state.tentative == null) {
+            return;
+        }
+        state.tentative.setProvider(provider);
+        state.tentative.setModel(model);
+        state.tentative.setLatenceProviderMs(Duration.ofNanos(latenceNanos).toMillis());
+        if (usage != null) {
+            state.tentative.setPromptTokens(usage.getPromptTokens());
+            state.tentative.setCompletionTokens(usage.getCompletionTokens());
+        }
+    }
+
+    public static void decision(String niveau, String raison, String detail) {
+        State state = current.get();
+        if (state != null) {
+            state.timeline.getDecisions().add(new SearchTimeline.Decision(niveau, raison, detail));
+        }
+    }
+
+    private static List<String> codes(List<Position> positions) {
+        return positions.stream().map(Position::getCode).filter(Objects::nonNull).toList();
+    }
+
+    private static long millis(long debutNanos) {
+        return Duration.ofNanos(System.nanoTime() - debutNanos).toMillis();
+    }
+}
@@ -0,0 +1,67 @@
+package com.tarif.search.explain;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Déroulé d'une recherche cascade en mode explain : un bloc par niveau exécuté (RAG, tentatives,
+ * codes retenus) et les décisions de repli ou d'arrêt prises entre les niveaux.
+ */
+@Data
+public class SearchTimeline {
+
+    private String id;
+    private Instant debut;
+    private String userId;
+    private String endpoint;
+    private String termeRecherche;
+    private String niveauMax;
+    private long dureeMs;
+    /** Codes renvoyés au client. */
+    private List<String> codesRetournes = new ArrayList<>();
+    private List<Niveau> niveaux = new ArrayList<>();
+    private List<Decision> decisions = new ArrayList<>();
+    /** Erreur ayant interrompu la recherche (quota, exception), null sinon. */
+    private String erreur;
+
+    @Data
+    public static class Niveau {
+        private String niveau;
+        private String mode;
+        /** Lignes du RAG (codes et notes). */
+        private int ragSize;
+        private long dureeMs;
+        /** ok, vide ou erreur. */
+        private String resultat;
+        private List<String> codesRetenus = new ArrayList<>();
+        private List<Tentative> tentatives = new ArrayList<>();
+    }
+
+    @Data
+    public static class Tentative {
+        private int numero;
+        private String provider;
+        private String model;
+        /** Taille UTF-8 du prompt utilisateur envoyé au provider. */
+        private int promptBytes;
+        /** Latence de l'appel provider seul. */
+        private long latenceProviderMs;
+        /** Durée totale de la tentative (contexte, appel, parsing). */
+        private long dureeMs;
+        private Integer promptTokens;
+        private Integer completionTokens;
+        private int positions;
+        /** ok, vide ou erreur. */
+        private String resultat;
+        private String erreur;
+    }
+
+    /**
+     * Décision de la cascade : niveau_vide, rag_trop_volumineux, rag_vide ou expansion_chapitre.
+     */
+    public record Decision(String niveau, String raison, String detail) {
+    }
+}
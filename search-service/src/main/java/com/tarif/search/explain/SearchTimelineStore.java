@@ -0,0 +1,57 @@
+package com.tarif.search.explain;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tampon circulaire borné des dernières timelines explain (search.explain.buffer-size).
+ * En mémoire, par instance : les plus anciennes sont évincées à l'ajout, rien n'est persisté.
+ */
+@Component
+public class SearchTimelineStore {
+
+    private final int capacite;
+    private final Deque<SearchTimeline> timelines;
+
+    public SearchTimelineStore(@Value("${search.explain.buffer-size:200}") int capacite) {
+        this.capacite = Math.max(1, capacite);
+        this.timelines = new ArrayDeque<>(this.capacite);
+    }
+
+    public synchronized void add(SearchTimeline timeline) {
+        if (timelines.size() == capacite) {
+            timelines.removeLast();
+        }
+        timelines.addFirst(timeline);
+    }
+
+    /**
+     * Dernières timelines, de la plus récente à la plus ancienne, éventuellement filtrées par utilisateur.
+     */
+    public synchronized List<SearchTimeline> recent(int limit, String userId) {
+        List<SearchTimeline> resultat = new ArrayList<>(Math.min(limit, timelines.size()));
+        Iterator<SearchTimeline> it = timelines.iterator();
+        while (it.hasNext() && resultat.size() < limit) {
+            SearchTimeline timeline = it.next();
+            if (userId == null || userId.equals(timeline.getUserId())) {
+                resultat.add(timeline);
+            }
+        }
+        return resultat;
+    }
+
+    public synchronized Optional<SearchTimeline> find(String id) {
+        return timelines.stream().filter(t -> t.getId().equals(id)).findFirst();
+    }
+
+    public int capacite() {
+        return capacite;
+    }
+}
@@ -0,0 +1,43 @@
+package com.tarif.search.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Exécution d'un niveau de la cascade (toutes tentatives IA comprises) par SearchService.
+ * La durée de l'événement couvre les appels IA et le parsing ; le thread permet de corréler
+ * avec les événements GC, I/O et verrous de la même recherche.
+ */
+@Name(CascadeLevelEvent.NAME)
+@Label("Niveau de cascade")
+@Category({"Tarif", "Recherche"})
+@Description("Exécution d'un niveau de la cascade de classification")
+@StackTrace(false)
+public class CascadeLevelEvent extends Event {
+
+    public static final String NAME = "com.tarif.search.CascadeLevel";
+
+    @Label("Niveau")
+    public String niveau;
+
+    @Label("Mode")
+    @Description("structured ou libre")
+    public String mode;
+
+    @Label("Taille du RAG")
+    public int ragSize;
+
+    @Label("Tentatives")
+    public int tentatives;
+
+    @Label("Positions retenues")
+    public int resultats;
+
+    @Label("Résultat")
+    @Description("ok, vide ou erreur")
+    public String resultat;
+}
@@ -0,0 +1,144 @@
+package com.tarif.search.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Analyse hors ligne d'un enregistrement JFR : latence par niveau de cascade, par provider / modèle
+ * et des vérifications de quota, avec le temps de pause GC survenu pendant les niveaux.
+ *
+ * N'utilise que le JDK, lançable directement depuis les sources :
+ * java search-service/src/main/java/com/tarif/search/jfr/JfrAnalyzer.java recording.jfr
+ */
+public final class JfrAnalyzer {
+
+    // Noms des événements en clair : l'analyseur reste autonome (lancement depuis le fichier source seul)
+    private static final String CASCADE_LEVEL = "com.tarif.search.CascadeLevel";
+    private static final String PROVIDER_CALL = "com.tarif.search.ProviderCall";
+    private static final String QUOTA_CHECK = "com.tarif.search.QuotaCheck";
+    private static final String GC_PAUSE = "jdk.GCPhasePause";
+
+    /** Durées et compteurs d'un groupe d'événements. */
+    static final class Groupe {
+        final List<Duration> durees = new ArrayList<>();
+        final Map<String, Integer> resultats = new TreeMap<>();
+        long tentatives;
+        long tokens;
+        Duration pauseGc = Duration.ZERO;
+
+        Duration percentile(int p) {
+            if (durees.isEmpty()) {
+                return Duration.ZERO;
+            }
+            List<Duration> tries = durees.stream().sorted().toList();
+            return tries.get(Math.max(0, (int) Math.ceil(p / 100.0 * tries.size()) - 1));
+        }
+    }
+
+    /** Résultat de l'analyse, regroupé par clé (niveau, provider/modèle/niveau, quota). */
+    record Rapport(Map<String, Groupe> niveaux, Map<String, Groupe> providers, Groupe quota) {
+    }
+
+    private JfrAnalyzer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage : java JfrAnalyzer.java <fichier.jfr>");
+            System.exit(2);
+        }
+        afficher(analyser(Path.of(args[0])), System.out);
+    }
+
+    static Rapport analyser(Path fichier) throws IOException {
+        List<RecordedEvent> niveaux = new ArrayList<>();
+        List<Instant[]> pauses = new ArrayList<>();
+        Map<String, Groupe> providers = new TreeMap<>();
+        Groupe quota = new Groupe();
+
+        try (RecordingFile recording = new RecordingFile(fichier)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                switch (event.getEventType().getName()) {
+                    case CASCADE_LEVEL -> niveaux.add(event);
+                    case PROVIDER_CALL -> {
+                        Groupe g = providers.computeIfAbsent(event.getString("provider") + " / "
+                                + event.getString("model") + " / " + event.getString("niveau"), k -> new Groupe());
+                        g.durees.add(event.getDuration());
+                        g.tokens += event.getInt("promptTokens") + event.getInt("completionTokens");
+                        g.resultats.merge(String.valueOf(event.getString("status")), 1, Integer::sum);
+                    }
+                    case QUOTA_CHECK -> {
+                        quota.durees.add(event.getDuration());
+                        quota.resultats.merge(String.valueOf(event.getString("status")), 1, Integer::sum);
+                    }
+                    case GC_PAUSE -> pauses.add(new Instant[]{event.getStartTime(), event.getEndTime()});
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        Map<String, Groupe> parNiveau = new TreeMap<>();
+        for (RecordedEvent event : niveaux) {
+            Groupe g = parNiveau.computeIfAbsent(event.getString("niveau"), k -> new Groupe());
+            g.durees.add(event.getDuration());
+            g.tentatives += event.getInt("tentatives");
+            g.resultats.merge(String.valueOf(event.getString("resultat")), 1, Integer::sum);
+            for (Instant[] pause : pauses) {
+                Instant debut = max(pause[0], event.getStartTime());
+                Instant fin = min(pause[1], event.getEndTime());
+                if (debut.isBefore(fin)) {
+                    g.pauseGc = g.pauseGc.plus(Duration.between(debut, fin));
+                }
+            }
+        }
+        return new Rapport(parNiveau, providers, quota);
+    }
+
+    static void afficher(Rapport rapport, PrintStream out) {
+        out.println("Niveaux de cascade");
+        out.printf(Locale.ROOT, "  %-12s %6s %10s %10s %10s %10s %9s %10s  %s%n",
+                "niveau", "n", "p50 ms", "p95 ms", "p99 ms", "max ms", "tent/niv", "GC ms", "résultats");
+        rapport.niveaux().forEach((niveau, g) -> out.printf(Locale.ROOT,
+                "  %-12s %6d %10.1f %10.1f %10.1f %10.1f %9.2f %10.1f  %s%n",
+                niveau, g.durees.size(), ms(g.percentile(50)), ms(g.percentile(95)), ms(g.percentile(99)),
+                ms(g.percentile(100)), (double) g.tentatives / g.durees.size(), ms(g.pauseGc), g.resultats));
+
+        out.println();
+        out.println("Appels provider (provider / modèle / niveau)");
+        rapport.providers().forEach((cle, g) -> out.printf(Locale.ROOT,
+                "  %-48s %6d  p50 %8.1f ms  p95 %8.1f ms  tokens %9d  %s%n",
+                cle, g.durees.size(), ms(g.percentile(50)), ms(g.percentile(95)), g.tokens, g.resultats));
+
+        Groupe quota = rapport.quota();
+        if (!quota.durees.isEmpty()) {
+            out.println();
+            out.printf(Locale.ROOT, "Vérifications quota : %d  p50 %.1f ms  p95 %.1f ms  %s%n",
+                    quota.durees.size(), ms(quota.percentile(50)), ms(quota.percentile(95)), quota.resultats);
+        }
+    }
+
+    private static double ms(Duration duree) {
+        return duree.toNanos() / 1_000_000.0;
+    }
+
+    private static Instant max(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
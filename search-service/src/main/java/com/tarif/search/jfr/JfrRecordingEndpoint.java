@@ -0,0 +1,191 @@
+package com.tarif.search.jfr;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.OptionalParameter;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Endpoint actuator /actuator/jfr : enregistrement JDK Flight Recorder à la demande.
+ *
+ * - GET  /actuator/jfr        : état de l'enregistrement en cours
+ * - POST /actuator/jfr/start  : démarre un enregistrement (settings=default|profile, maxAgeSeconds)
+ * - POST /actuator/jfr/dump   : écrit le contenu courant dans jfr.dump-dir, l'enregistrement continue
+ * - POST /actuator/jfr/stop   : arrête, écrit le fichier et libère l'enregistrement
+ *
+ * Avec jfr.continuous.enabled=true, un enregistrement « default » (surcoût ~1 %) démarre avec le service
+ * et garde une fenêtre glissante de jfr.continuous.max-age : un dump après un incident suffit.
+ * Les événements de la cascade (CascadeLevelEvent, ProviderCallEvent, QuotaCheckEvent) y figurent.
+ *
+ * Réservé aux administrateurs (SecurityConfig). Seuls les jfr.max-dumps fichiers les plus récents
+ * sont conservés dans jfr.dump-dir : chaque dump supprime les plus anciens.
+ */
+@Component
+@Endpoint(id = "jfr")
+@Slf4j
+public class JfrRecordingEndpoint {
+
+    private static final DateTimeFormatter FICHIER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path dumpDir;
+    private final boolean continuous;
+    private final Duration continuousMaxAge;
+    private final String continuousSettings;
+    private final int maxDumps;
+
+    private Recording recording;
+
+    public JfrRecordingEndpoint(
+            @Value("${jfr.dump-dir:${java.io.tmpdir}/jfr}") String dumpDir,
+            @Value("${jfr.continuous.enabled:false}") boolean continuous,
+            @Value("${jfr.continuous.max-age:PT6H}") Duration continuousMaxAge,
+            @Value("${jfr.continuous.settings:default}") String continuousSettings,
+            @Value("${jfr.max-dumps:10}") int maxDumps) {
+        this.dumpDir = Path.of(dumpDir);
+        this.continuous = continuous;
+        this.continuousMaxAge = continuousMaxAge;
+        this.continuousSettings = continuousSettings;
+        this.maxDumps = Math.max(1, maxDumps);
+    }
+
+    @PostConstruct
+    void startContinuous() {
+        if (continuous) {
+            Map<String, Object> etat = start(continuousSettings, continuousMaxAge.toSeconds());
+            log.info("Enregistrement JFR continu démarré : {}", etat);
+        }
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    @ReadOperation
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> etat = new LinkedHashMap<>();
+        etat.put("dumpDir", dumpDir.toAbsolutePath().toString());
+        if (recording == null) {
+            etat.put("state", "NONE");
+            return etat;
+        }
+        etat.put("name", recording.getName());
+        etat.put("state", recording.getState().name());
+        etat.put("startTime", String.valueOf(recording.getStartTime()));
+        etat.put("maxAgeSeconds", recording.getMaxAge() != null ? recording.getMaxAge().toSeconds() : null);
+        etat.put("sizeBytes", recording.getSize());
+        return etat;
+    }
+
+    @WriteOperation
+    public synchronized Map<String, Object> action(@Selector String action,
+                                                   @OptionalParameter String settings,
+                                                   @OptionalParameter Long maxAgeSeconds) {
+        return switch (action) {
+            case "start" -> start(settings != null ? settings : "default", maxAgeSeconds);
+            case "dump" -> dump(false);
+            case "stop" -> dump(true);
+            default -> throw new InvalidEndpointRequestException("Action JFR inconnue : " + action,
+                    "Action inconnue (start, dump ou stop attendu)");
+        };
+    }
+
+    private synchronized Map<String, Object> start(String settings, Long maxAgeSeconds) {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new InvalidEndpointRequestException("Un enregistrement JFR est déjà en cours",
+                    "Enregistrement déjà en cours");
+        }
+        close();
+        try {
+            recording = new Recording(Configuration.getConfiguration(settings));
+        } catch (IOException | ParseException e) {
+            throw new InvalidEndpointRequestException("Configuration JFR invalide : " + settings,
+                    "Configuration inconnue (default ou profile attendu)");
+        }
+        recording.setName("search-service-" + LocalDateTime.now().format(FICHIER));
+        recording.setToDisk(true);
+        if (maxAgeSeconds != null && maxAgeSeconds > 0) {
+            recording.setMaxAge(Duration.ofSeconds(maxAgeSeconds));
+        }
+        recording.start();
+        log.info("Enregistrement JFR {} démarré (settings={}, maxAge={}s)", recording.getName(), settings, maxAgeSeconds);
+        return status();
+    }
+
+    private Map<String, Object> dump(boolean stop) {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new InvalidEndpointRequestException("Aucun enregistrement JFR en cours", "Aucun enregistrement en cours");
+        }
+        Path fichier = dumpDir.resolve(recording.getName() + "-" + LocalDateTime.now().format(FICHIER) + ".jfr");
+        try {
+            Files.createDirectories(dumpDir);
+            if (stop) {
+                recording.stop();
+            }
+            recording.dump(fichier);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Écriture du dump JFR impossible : " + fichier, e);
+        }
+        Map<String, Object> etat = status();
+        etat.put("file", fichier.toAbsolutePath().toString());
+        etat.put("fileSizeBytes", fichier.toFile().length());
+        if (stop) {
+            close();
+            etat.put("state", RecordingState.STOPPED.name());
+        }
+        log.info("Dump JFR écrit : {}", fichier.toAbsolutePath());
+        rotate(dumpDir, maxDumps);
+        return etat;
+    }
+
+    /**
+     * Supprime les dumps .jfr les plus anciens au-delà de keep fichiers.
+     */
+    static void rotate(Path dumpDir, int keep) {
+        List<Path> dumps;
+        try (Stream<Path> fichiers = Files.list(dumpDir)) {
+            dumps = fichiers
+                    .filter(f -> f.getFileName().toString().endsWith(".jfr") && Files.isRegularFile(f))
+                    .sorted(Comparator.comparing((Path f) -> f.toFile().lastModified()).reversed())
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Rotation des dumps JFR impossible dans {}: {}", dumpDir, e.getMessage());
+            return;
+        }
+        for (Path ancien : dumps.subList(Math.min(keep, dumps.size()), dumps.size())) {
+            try {
+                Files.deleteIfExists(ancien);
+                log.info("Ancien dump JFR supprimé : {}", ancien);
+            } catch (IOException e) {
+                log.warn("Suppression du dump JFR {} impossible: {}", ancien, e.getMessage());
+            }
+        }
+    }
+}
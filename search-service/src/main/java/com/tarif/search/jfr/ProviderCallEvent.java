@@ -0,0 +1,50 @@
+package com.tarif.search.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Appel à AiProvider.demanderAiAide (direct ou via micro-batch) depuis AiService.
+ */
+@Name(ProviderCallEvent.NAME)
+@Label("Appel provider IA")
+@Category({"Tarif", "IA"})
+@Description("Appel au provider IA actif pour un niveau de la cascade")
+@StackTrace(false)
+public class ProviderCallEvent extends Event {
+
+    public static final String NAME = "com.tarif.search.ProviderCall";
+
+    @Label("Provider")
+    public String provider;
+
+    @Label("Modèle")
+    public String model;
+
+    @Label("Niveau")
+    public String niveau;
+
+    @Label("Tokens prompt")
+    public int promptTokens;
+
+    @Label("Tokens réponse")
+    public int completionTokens;
+
+    @Label("Taille du contexte (caractères)")
+    @Description("Taille du RAG formaté envoyé au provider")
+    public int requestChars;
+
+    @Label("Taille de la réponse (caractères)")
+    public int responseChars;
+
+    @Label("Statut")
+    @Description("ok, vide ou erreur")
+    public String status;
+
+    @Label("Exception")
+    public String exception;
+}
@@ -0,0 +1,28 @@
+package com.tarif.search.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Vérification du quota auprès du backend (Feign) avant une recherche.
+ */
+@Name(QuotaCheckEvent.NAME)
+@Label("Vérification quota")
+@Category({"Tarif", "Quota"})
+@Description("Appel de vérification du quota au backend")
+@StackTrace(false)
+public class QuotaCheckEvent extends Event {
+
+    public static final String NAME = "com.tarif.search.QuotaCheck";
+
+    @Label("Statut")
+    @Description("ok, depasse, pay_per_request, degrade ou erreur")
+    public String status;
+
+    @Label("Organisation")
+    public long organizationId;
+}
@@ -0,0 +1,72 @@
+package com.tarif.search.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Article d'un {@link BatchCascadeJob}. Chaque article avance indépendamment dans la cascade :
+ * ses réponses d'un niveau servent à construire le RAG du niveau suivant.
+ */
+@Entity
+@Table(name = "batch_cascade_item")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCascadeItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false, length = 64)
+    private String jobId;
+
+    @Column(name = "custom_id", nullable = false, length = 64)
+    private String customId;
+
+    @Column(name = "search_term", nullable = false, columnDefinition = "TEXT")
+    private String searchTerm;
+
+    /** Niveau en attente de réponse (nom de SearchService.SearchLevel). */
+    @Column(name = "current_level", nullable = false, length = 20)
+    private String currentLevel;
+
+    /** Nombre de tentatives déjà soumises au niveau courant. */
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private ItemStatus status = ItemStatus.PENDING;
+
+    /** ID du batch provider contenant la requête en cours (si SUBMITTED). */
+    @Column(name = "batch_id")
+    private String batchId;
+
+    /** Positions retenues par niveau : {"SECTIONS": [...], "CHAPITRES": [...], ...}. */
+    @Column(name = "levels_json", columnDefinition = "TEXT")
+    private String levelsJson;
+
+    /** Résultat final agrégé (même forme que la réponse de /recherche/*). */
+    @Column(name = "result_json", columnDefinition = "TEXT")
+    private String resultJson;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum ItemStatus {
+        PENDING,    // À soumettre au prochain batch
+        SUBMITTED,  // Requête en cours chez le provider
+        DONE        // Niveau final atteint (ou cascade interrompue)
+    }
+}
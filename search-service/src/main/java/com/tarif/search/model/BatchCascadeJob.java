@@ -0,0 +1,79 @@
+package com.tarif.search.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Job de cascade batch : classification complète (SECTIONS → POSITIONS10) d'un lot d'articles
+ * via l'API batch du provider. Les articles sont portés par {@link BatchCascadeItem}.
+ * Table créée par la migration Flyway du backend (V34).
+ */
+@Entity
+@Table(name = "batch_cascade_job")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCascadeJob {
+
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private JobStatus status = JobStatus.RUNNING;
+
+    /** Niveau le plus fin demandé (nom de SearchService.SearchLevel). */
+    @Column(name = "max_level", nullable = false, length = 20)
+    private String maxLevel;
+
+    @Column(length = 20)
+    private String provider;
+
+    /** Nombre de batches soumis au provider depuis le début du job. */
+    @Column(nullable = false)
+    private int round;
+
+    @Column(name = "total_items", nullable = false)
+    private int totalItems;
+
+    @Column(name = "created_by")
+    private String createdBy;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (status == null) {
+            status = JobStatus.RUNNING;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum JobStatus {
+        RUNNING,    // Des articles sont encore en attente ou soumis
+        COMPLETED,  // Tous les articles ont atteint leur niveau final
+        CANCELED    // Annulé par l'utilisateur
+    }
+}
@@ -0,0 +1,51 @@
+package com.tarif.search.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sous-batch (shard) d'un batch logique trop volumineux pour une seule soumission au provider.
+ * Table créée par la migration Flyway du backend (V35).
+ */
+@Entity
+@Table(name = "batch_shard")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** ID logique retourné au client ("multi-..."). */
+    @Column(name = "logical_id", nullable = false, length = 64)
+    private String logicalId;
+
+    @Column(name = "shard_index", nullable = false)
+    private int shardIndex;
+
+    /** ID du batch chez le provider. */
+    @Column(name = "batch_id", nullable = false)
+    private String batchId;
+
+    @Column(length = 20)
+    private String provider;
+
+    @Column(name = "request_count", nullable = false)
+    private int requestCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.tarif.search.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Suivi en arrière-plan d'un batch soumis via /batch-search/submit.
+ * Porte le dernier statut connu du provider (servi localement aux clients)
+ * et l'état de la notification de fin de batch.
+ * Table créée par la migration Flyway du backend (V36).
+ */
+@Entity
+@Table(name = "batch_tracking")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTracking {
+
+    /** ID retourné au client (ID provider ou ID logique "multi-..."). */
+    @Id
+    @Column(name = "batch_id")
+    private String batchId;
+
+    @Column(length = 20)
+    private String provider;
+
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private TrackingState state = TrackingState.TRACKING;
+
+    // --- Dernier BatchStatus connu ---
+
+    @Column(name = "processing_status", length = 20)
+    private String processingStatus;
+
+    @Column(name = "request_counts_json", columnDefinition = "TEXT")
+    private String requestCountsJson;
+
+    @Column(name = "provider_created_at", length = 64)
+    private String providerCreatedAt;
+
+    @Column(name = "provider_ended_at", length = 64)
+    private String providerEndedAt;
+
+    @Column(name = "results_url", columnDefinition = "TEXT")
+    private String resultsUrl;
+
+    // --- Compteurs ---
+
+    @Column(name = "request_count", nullable = false)
+    private int requestCount;
+
+    @Column(name = "result_count", nullable = false)
+    private int resultCount;
+
+    @Column(name = "success_count", nullable = false)
+    private int successCount;
+
+    @Column(name = "error_count", nullable = false)
+    private int errorCount;
+
+    // --- Planification du polling ---
+
+    @Column(name = "poll_count", nullable = false)
+    private int pollCount;
+
+    /** Intervalle courant (backoff adaptatif) avant la prochaine interrogation du provider. */
+    @Column(name = "poll_interval_seconds", nullable = false)
+    private int pollIntervalSeconds;
+
+    @Column(name = "next_poll_at", nullable = false)
+    private LocalDateTime nextPollAt;
+
+    @Column(name = "last_polled_at")
+    private LocalDateTime lastPolledAt;
+
+    // --- Notification ---
+
+    @Column(name = "webhook_url", columnDefinition = "TEXT")
+    private String webhookUrl;
+
+    @Column(name = "notify_attempts", nullable = false)
+    private int notifyAttempts;
+
+    @Column(name = "notified_at")
+    private LocalDateTime notifiedAt;
+
+    @Column(name = "created_by")
+    private String createdBy;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (state == null) {
+            state = TrackingState.TRACKING;
+        }
+        if (nextPollAt == null) {
+            nextPollAt = createdAt;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum TrackingState {
+        TRACKING,   // Batch en cours chez le provider, interrogé périodiquement
+        COMPLETED,  // Batch terminé, résultats stockés localement
+        FAILED      // Abandonné (délai maximal dépassé ou résultats irrécupérables)
+    }
+}
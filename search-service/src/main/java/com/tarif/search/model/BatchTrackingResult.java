@@ -0,0 +1,49 @@
+package com.tarif.search.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Résultat individuel d'un batch suivi, stocké localement une fois le batch terminé.
+ * Table créée par la migration Flyway du backend (V36).
+ */
+@Entity
+@Table(name = "batch_tracking_result")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTrackingResult {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "batch_id", nullable = false)
+    private String batchId;
+
+    @Column(name = "custom_id", nullable = false)
+    private String customId;
+
+    @Column(name = "result_type", length = 20)
+    private String resultType;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    @Column(name = "input_tokens")
+    private Integer inputTokens;
+
+    @Column(name = "output_tokens")
+    private Integer outputTokens;
+
+    @Column(name = "error_type", length = 100)
+    private String errorType;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(length = 20)
+    private String provider;
+}
@@ -0,0 +1,64 @@
+package com.tarif.search.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Batch exécuté localement (provider sans API batch, ex : Ollama).
+ * Les requêtes sont portées par {@link LocalBatchRequest}.
+ * Table créée par la migration Flyway du backend (V37).
+ */
+@Entity
+@Table(name = "local_batch")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocalBatch {
+
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(length = 20)
+    private String provider;
+
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private Status status = Status.IN_PROGRESS;
+
+    @Column(name = "total_requests", nullable = false)
+    private int totalRequests;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "ended_at")
+    private LocalDateTime endedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (status == null) {
+            status = Status.IN_PROGRESS;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum Status {
+        IN_PROGRESS,  // Des requêtes sont en attente ou en cours
+        ENDED         // Toutes les requêtes sont terminées (succès, erreur ou annulation)
+    }
+}
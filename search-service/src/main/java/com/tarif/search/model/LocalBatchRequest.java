@@ -0,0 +1,83 @@
+package com.tarif.search.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Requête individuelle d'un batch local : élément de la file de travail persistante.
+ * Table créée par la migration Flyway du backend (V37).
+ */
+@Entity
+@Table(name = "local_batch_request")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocalBatchRequest {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "batch_id", nullable = false, length = 64)
+    private String batchId;
+
+    @Column(name = "custom_id", nullable = false)
+    private String customId;
+
+    @Column(name = "search_term", nullable = false, columnDefinition = "TEXT")
+    private String searchTerm;
+
+    @Column(name = "rag_context", columnDefinition = "TEXT")
+    private String ragContext;
+
+    @Column(length = 20)
+    private String niveau;
+
+    @Column(name = "with_justification", nullable = false)
+    private boolean withJustification = true;
+
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    @Column(name = "input_tokens")
+    private Integer inputTokens;
+
+    @Column(name = "output_tokens")
+    private Integer outputTokens;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    /** Instance qui traite la requête (RUNNING). */
+    @Column(name = "lease_owner", length = 128)
+    private String leaseOwner;
+
+    /** Fin du bail : au-delà, la requête RUNNING est considérée abandonnée et remise en file. */
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    public enum Status {
+        PENDING,    // En file d'attente
+        RUNNING,    // Pris par un worker
+        SUCCEEDED,
+        ERRORED,
+        CANCELED
+    }
+}
@@ -0,0 +1,18 @@
+package com.tarif.search.repository;
+
+import com.tarif.search.model.BatchCascadeItem;
+import com.tarif.search.model.BatchCascadeItem.ItemStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BatchCascadeItemRepository extends JpaRepository<BatchCascadeItem, Long> {
+
+    List<BatchCascadeItem> findByJobIdOrderByIdAsc(String jobId);
+
+    List<BatchCascadeItem> findByJobIdAndStatus(String jobId, ItemStatus status);
+
+    long countByJobIdAndStatus(String jobId, ItemStatus status);
+}
@@ -0,0 +1,14 @@
+package com.tarif.search.repository;
+
+import com.tarif.search.model.BatchCascadeJob;
+import com.tarif.search.model.BatchCascadeJob.JobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BatchCascadeJobRepository extends JpaRepository<BatchCascadeJob, String> {
+
+    List<BatchCascadeJob> findByStatus(JobStatus status);
+}
@@ -0,0 +1,13 @@
+package com.tarif.search.repository;
+
+import com.tarif.search.model.BatchShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BatchShardRepository extends JpaRepository<BatchShard, Long> {
+
+    List<BatchShard> findByLogicalIdOrderByShardIndexAsc(String logicalId);
+}
@@ -0,0 +1,17 @@
+package com.tarif.search.repository;
+
+import com.tarif.search.model.BatchTracking;
+import com.tarif.search.model.BatchTracking.TrackingState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface BatchTrackingRepository extends JpaRepository<BatchTracking, String> {
+
+    List<BatchTracking> findTop100ByStateAndNextPollAtLessThanEqualOrderByNextPollAtAsc(TrackingState state, LocalDateTime now);
+
+    List<BatchTracking> findByStateAndNotifiedAtIsNull(TrackingState state);
+}
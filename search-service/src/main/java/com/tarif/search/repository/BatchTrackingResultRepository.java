@@ -0,0 +1,23 @@
+package com.tarif.search.repository;
+
+import com.tarif.search.model.BatchTrackingResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface BatchTrackingResultRepository extends JpaRepository<BatchTrackingResult, Long> {
+
+    /** Lecture par tranches (keyset sur l'id) pour parcourir de gros lots sans tout charger. */
+    List<BatchTrackingResult> findTop1000ByBatchIdAndIdGreaterThanOrderByIdAsc(String batchId, Long afterId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM BatchTrackingResult r WHERE r.batchId = :batchId")
+    int deleteByBatchId(@Param("batchId") String batchId);
+}
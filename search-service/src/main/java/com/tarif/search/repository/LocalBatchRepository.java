@@ -0,0 +1,9 @@
+package com.tarif.search.repository;
+
+import com.tarif.search.model.LocalBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LocalBatchRepository extends JpaRepository<LocalBatch, String> {
+}
@@ -0,0 +1,69 @@
+package com.tarif.search.repository;
+
+import com.tarif.search.model.LocalBatchRequest;
+import com.tarif.search.model.LocalBatchRequest.Status;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LocalBatchRequestRepository extends JpaRepository<LocalBatchRequest, Long> {
+
+    /**
+     * Prochaines requêtes en attente, verrouillées en SKIP LOCKED (PostgreSQL) :
+     * plusieurs instances peuvent dépiler la même file sans se marcher dessus.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT r FROM LocalBatchRequest r WHERE r.status = :status ORDER BY r.id ASC")
+    List<LocalBatchRequest> findForClaim(@Param("status") Status status, Pageable pageable);
+
+    @Query("SELECT r.status, COUNT(r) FROM LocalBatchRequest r WHERE r.batchId = :batchId GROUP BY r.status")
+    List<Object[]> countByStatus(@Param("batchId") String batchId);
+
+    long countByBatchIdAndStatusIn(String batchId, Collection<Status> statuses);
+
+    /** Lecture par tranches (keyset sur l'id) des requêtes d'un batch. */
+    List<LocalBatchRequest> findTop1000ByBatchIdAndIdGreaterThanOrderByIdAsc(String batchId, Long afterId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE LocalBatchRequest r SET r.status = :to WHERE r.batchId = :batchId AND r.status = :from")
+    int updateStatus(@Param("batchId") String batchId, @Param("from") Status from, @Param("to") Status to);
+
+    /**
+     * Au démarrage de l'instance owner : ses requêtes RUNNING (interrompues par le redémarrage) et celles
+     * dont le bail a expiré sont remises en file. Les requêtes en cours sur d'autres instances vivantes
+     * ne sont pas touchées.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE LocalBatchRequest r SET r.status = :to, r.leaseOwner = NULL, r.leaseExpiresAt = NULL "
+            + "WHERE r.status = :from AND (r.leaseOwner = :owner OR r.leaseExpiresAt IS NULL OR r.leaseExpiresAt < :now)")
+    int requeueAbandoned(@Param("from") Status from, @Param("to") Status to,
+                         @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    /**
+     * Requêtes RUNNING dont le bail a expiré (instance disparue) : remises en file. Sans critère d'instance,
+     * les requêtes en cours de l'appelant, dont le bail vient d'être prolongé, ne sont jamais reprises.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE LocalBatchRequest r SET r.status = :to, r.leaseOwner = NULL, r.leaseExpiresAt = NULL "
+            + "WHERE r.status = :from AND (r.leaseExpiresAt IS NULL OR r.leaseExpiresAt < :now)")
+    int requeueExpired(@Param("from") Status from, @Param("to") Status to, @Param("now") LocalDateTime now);
+
+    /** Prolonge le bail des requêtes que l'instance owner est en train de traiter. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE LocalBatchRequest r SET r.leaseExpiresAt = :until WHERE r.status = :status AND r.leaseOwner = :owner")
+    int renewLeases(@Param("status") Status status, @Param("owner") String owner, @Param("until") LocalDateTime until);
+}
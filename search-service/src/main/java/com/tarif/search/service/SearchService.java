@@ -1,16 +1,25 @@
 package com.tarif.search.service;
 
+import com.tarif.search.explain.SearchExplain;
+import com.tarif.search.jfr.CascadeLevelEvent;
 import com.tarif.search.model.Chapitre;
 import com.tarif.search.model.Position;
 import com.tarif.search.model.Section;
 import com.tarif.search.service.ai.AiPrompts;
 import com.tarif.search.service.ai.AiService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,12 +34,40 @@ public class SearchService {
     private final Position4Service position4Service;
     private final Position6DzService position6DzService;
     private final Position10DzService position10DzService;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+
+    /** Recherches cascade en cours (jauge cascade.search.inflight). */
+    private final AtomicInteger recherchesEnCours = new AtomicInteger();
 
     public enum SearchLevel {
         SECTIONS, CHAPITRES, POSITIONS4, POSITIONS6, POSITIONS10
     }
 
+    /** Au-delà de ce nombre de positions6 candidates, la cascade s'arrête au Level 2. */
+    public static final int MAX_RAG_POSITIONS6 = 80;
+
+    @PostConstruct
+    void registerGauges() {
+        meterRegistry.gauge("cascade.search.inflight", recherchesEnCours);
+    }
+
+    /**
+     * Recherche cascade instrumentée : durée totale par niveau max (cascade.search.duration)
+     * et recherches en cours (cascade.search.inflight).
+     */
     public List<Position> search(String termeRecherche, SearchLevel maxLevel) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        recherchesEnCours.incrementAndGet();
+        try {
+            return cascade(termeRecherche, maxLevel);
+        } finally {
+            recherchesEnCours.decrementAndGet();
+            sample.stop(meterRegistry.timer("cascade.search.duration", "niveau_max", maxLevel.name()));
+        }
+    }
+
+    private List<Position> cascade(String termeRecherche, SearchLevel maxLevel) {
         log.info("Recherche cascade pour '{}' (niveau max: {})", termeRecherche, maxLevel);
 
         List<Position> reponseList = new ArrayList<>();
@@ -40,13 +77,14 @@ public class SearchService {
         int tentativesMax = 2;
 
         // Level 0 : Sections — 3 tentatives car c'est le point d'entrée critique
-        ragNiveau = ragSections();
+        ragNiveau = ragMesure(SearchLevel.SECTIONS, null);
         log.info("[DIAG] Level 0 (Sections) - RAG size: {}", ragNiveau.size());
 
         positions = executeWithRetry(SearchLevel.SECTIONS.toString(), termeRecherche, ragNiveau, 3, maxLevel == SearchLevel.SECTIONS);
 
         if (positions == null || positions.isEmpty()) {
             log.info("Level 0 - Aucun résultat après 3 tentatives, arrêt cascade");
+            recordEarlyExit(SearchLevel.SECTIONS, "niveau_vide", "Aucune section retenue, arrêt de la cascade");
             return new ArrayList<>();
         }
 
@@ -63,13 +101,14 @@ public class SearchService {
 
         // Level 1 : Chapitres
         reponseListLevel.clear();
-        ragNiveau = ragChapitres(positions);
+        ragNiveau = ragMesure(SearchLevel.CHAPITRES, positions);
         log.info("[DIAG] Level 1 (Chapitres) - RAG size: {} - sections choisies: {}", ragNiveau.size(), positions.stream().map(p -> p.getCode()+":"+p.getDescription()).toList());
 
         positions = executeWithRetry(SearchLevel.CHAPITRES.toString(), termeRecherche, ragNiveau, tentativesMax, maxLevel == SearchLevel.CHAPITRES);
 
         if (positions == null || positions.isEmpty()) {
             log.info("Level 1 - Aucun résultat, arrêt cascade");
+            recordEarlyExit(SearchLevel.CHAPITRES, "niveau_vide", "Aucun chapitre retenu, arrêt de la cascade");
             return new ArrayList<>();
         }
 
@@ -86,13 +125,14 @@ public class SearchService {
 
         // Level 2 : Positions 4
         reponseListLevel.clear();
-        ragNiveau = ragPositions4(positions);
+        ragNiveau = ragMesure(SearchLevel.POSITIONS4, positions);
         log.info("[DIAG] Level 2 (Positions4) - RAG size: {} - chapitres choisis: {}", ragNiveau.size(), positions.stream().map(p -> p.getCode()+":"+p.getDescription()).toList());
 
         positions = executeWithRetry(SearchLevel.POSITIONS4.toString(), termeRecherche, ragNiveau, tentativesMax, maxLevel == SearchLevel.POSITIONS4);
 
         if (positions == null || positions.isEmpty()) {
             log.info("Level 2 - Aucun résultat, arrêt cascade");
+            recordEarlyExit(SearchLevel.POSITIONS4, "niveau_vide", "Aucune position4 retenue, arrêt de la cascade");
             return new ArrayList<>();
         }
 
@@ -114,13 +154,15 @@ public class SearchService {
 
         // Level 3 : Positions 6
         reponseListLevel.clear();
-        ragNiveau = ragPositions6(positions);
+        ragNiveau = ragMesure(SearchLevel.POSITIONS6, positions);
         log.info("[DIAG] Level 3 (Positions6) - RAG size: {} - pos4 choisies: {}", ragNiveau.size(), positions.stream().map(p -> p.getCode()).toList());
 
         // Protection : si le RAG est trop volumineux (terme trop générique),
         // on retourne les résultats Level 2 plutôt que de risquer un timeout IA
-        if (ragNiveau.size() > 80) {
+        if (ragNiveau.size() > MAX_RAG_POSITIONS6) {
             log.info("Level 3 - RAG trop volumineux ({} items), retour des résultats Level 2", ragNiveau.size());
+            recordEarlyExit(SearchLevel.POSITIONS6, "rag_trop_volumineux",
+                    "RAG de " + ragNiveau.size() + " lignes > " + MAX_RAG_POSITIONS6 + ", retour des résultats Level 2");
             return aiPrompts.getDefTheme().isWithCascade() ? reponseList : reponseListLevel.isEmpty() ? new ArrayList<>(positionsLevel2) : reponseListLevel;
         }
 
@@ -128,6 +170,7 @@ public class SearchService {
 
         if (positions == null || positions.isEmpty()) {
             log.info("Level 3 - Aucun résultat, utilisation Level 2");
+            recordEarlyExit(SearchLevel.POSITIONS6, "niveau_vide", "Aucune position6 retenue, repli sur les résultats Level 2");
             positions = positionsLevel2;
         }
 
@@ -145,7 +188,7 @@ public class SearchService {
 
         // Level 4 : Positions 10
         reponseListLevel.clear();
-        ragNiveau = ragPositions10(positions);
+        ragNiveau = ragMesure(SearchLevel.POSITIONS10, positions);
         log.debug("Level 4 (Positions10) - RAG size: {}", ragNiveau.size());
 
         if (!ragNiveau.isEmpty()) {
@@ -163,6 +206,8 @@ public class SearchService {
 
         if (reponseListLevel.isEmpty()) {
             log.info("Level 4 - Aucun résultat, utilisation Level 3");
+            recordEarlyExit(SearchLevel.POSITIONS10, ragNiveau.isEmpty() ? "rag_vide" : "niveau_vide",
+                    "Aucune position10 retenue, repli sur les résultats Level 3");
             reponseListLevel.addAll(positionsLevel3);
         }
 
@@ -172,33 +217,115 @@ public class SearchService {
     private List<Position> executeWithRetry(String niveau, String terme, List<Position> rag, int maxTentatives, boolean withJustification) {
         int tentatives = 0;
         Exception lastException = null;
-
-        while (tentatives < maxTentatives) {
-            tentatives++;
-            log.info("[DIAG] {} - Tentative {}/{}", niveau, tentatives, maxTentatives);
-            try {
-                List<Position> result = aiService.promptEtReponse(niveau, terme, rag, withJustification);
-                if (!result.isEmpty()) {
-                    return result;
+        String mode = aiService.isStructuredOutput() ? "structured" : "libre";
+        CascadeLevelEvent event = new CascadeLevelEvent();
+        event.begin();
+        Span span = tracer.nextSpan().name("cascade.niveau")
+                .tag("cascade.niveau", niveau)
+                .tag("cascade.mode", mode)
+                .tag("cascade.rag.size", rag.size())
+                .start();
+        SearchExplain.debutNiveau(niveau, mode, rag.size());
+
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            while (tentatives < maxTentatives) {
+                tentatives++;
+                SearchExplain.debutTentative(tentatives);
+                log.info("[DIAG] {} - Tentative {}/{}", niveau, tentatives, maxTentatives);
+                meterRegistry.counter("ai.search.attempts", "niveau", niveau, "mode", mode).increment();
+                if (tentatives > 1) {
+                    meterRegistry.counter("ai.search.retries", "niveau", niveau, "mode", mode).increment();
                 }
-                log.info("[DIAG] {} - Réponse vide (tentative {})", niveau, tentatives);
-            } catch (Exception e) {
-                lastException = e;
-                log.warn("{} - Erreur technique tentative {}/{}: {}", niveau, tentatives, maxTentatives, e.getMessage());
+                try {
+                    List<Position> result = aiService.promptEtReponse(niveau, terme, rag, withJustification);
+                    if (!result.isEmpty()) {
+                        SearchExplain.finTentative(result.size(), "ok", null);
+                        SearchExplain.finNiveau("ok", result);
+                        recordCall(niveau, mode, "ok");
+                        commitLevelEvent(event, span, niveau, mode, rag, tentatives, result.size(), "ok");
+                        return result;
+                    }
+                    log.info("[DIAG] {} - Réponse vide (tentative {})", niveau, tentatives);
+                    SearchExplain.finTentative(0, "vide", null);
+                    meterRegistry.counter("ai.search.empty", "niveau", niveau, "mode", mode).increment();
+                } catch (Exception e) {
+                    lastException = e;
+                    SearchExplain.finTentative(0, "erreur", e.getClass().getSimpleName() + ": " + e.getMessage());
+                    log.warn("{} - Erreur technique tentative {}/{}: {}", niveau, tentatives, maxTentatives, e.getMessage());
+                }
+            }
+
+            if (lastException != null) {
+                log.error("{} - Toutes les tentatives ont échoué (erreur technique)", niveau);
             }
+            String resultat = lastException != null ? "erreur" : "vide";
+            recordCall(niveau, mode, resultat);
+            SearchExplain.finNiveau(resultat, List.of());
+            commitLevelEvent(event, span, niveau, mode, rag, tentatives, 0, resultat);
+            return new ArrayList<>();
+        } finally {
+            span.end();
         }
+    }
 
-        if (lastException != null) {
-            log.error("{} - Toutes les tentatives ont échoué (erreur technique)", niveau);
+    private void commitLevelEvent(CascadeLevelEvent event, Span span, String niveau, String mode, List<Position> rag,
+                                  int tentatives, int resultats, String resultat) {
+        span.tag("cascade.tentatives", tentatives)
+                .tag("cascade.resultats", resultats)
+                .tag("cascade.resultat", resultat);
+        event.end();
+        if (event.shouldCommit()) {
+            event.niveau = niveau;
+            event.mode = mode;
+            event.ragSize = rag.size();
+            event.tentatives = tentatives;
+            event.resultats = resultats;
+            event.resultat = resultat;
+            event.commit();
         }
-        return new ArrayList<>();
     }
 
-    private void enrichWithDescriptions(List<Position> positions, SearchLevel level) {
+    /**
+     * Un appel par niveau et par recherche. Taux de retry = ai.search.attempts / ai.search.calls - 1,
+     * comparable entre le mode libre et la sortie structurée (tag mode).
+     */
+    private void recordCall(String niveau, String mode, String resultat) {
+        meterRegistry.counter("ai.search.calls", "niveau", niveau, "mode", mode, "resultat", resultat).increment();
+    }
+
+    /**
+     * Arrêt anticipé ou repli de la cascade au niveau donné :
+     * niveau_vide, rag_trop_volumineux (> MAX_RAG_POSITIONS6) ou rag_vide.
+     * Le détail n'est conservé que dans la timeline explain.
+     */
+    private void recordEarlyExit(SearchLevel level, String raison, String detail) {
+        meterRegistry.counter("cascade.early_exit", "niveau", level.name(), "raison", raison).increment();
+        SearchExplain.decision(level.name(), raison, detail);
+    }
+
+    /**
+     * Construction du RAG d'un niveau, mesurée (cascade.stage.duration, etape=rag) avec sa taille
+     * en nombre de lignes (cascade.rag.size).
+     */
+    private List<Position> ragMesure(SearchLevel level, List<Position> selectionPrecedente) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<Position> rag = buildRag(level, selectionPrecedente);
+        sample.stop(meterRegistry.timer("cascade.stage.duration", "niveau", level.name(), "etape", "rag"));
+        DistributionSummary.builder("cascade.rag.size")
+                .description("Nombre de lignes du RAG (codes et notes)")
+                .baseUnit("lignes")
+                .tag("niveau", level.name())
+                .register(meterRegistry)
+                .record(rag.size());
+        return rag;
+    }
+
+    public void enrichWithDescriptions(List<Position> positions, SearchLevel level) {
         if (!aiPrompts.getDefTheme().isWithDescription()) {
             return;
         }
 
+        Timer.Sample sample = Timer.start(meterRegistry);
         for (Position position : positions) {
             String code = position.getCode();
             String description = switch (level) {
@@ -210,6 +337,7 @@ public class SearchService {
             };
             position.setDescription(description);
         }
+        sample.stop(meterRegistry.timer("cascade.stage.duration", "niveau", level.name(), "etape", "enrichissement"));
     }
 
     /**
@@ -217,7 +345,7 @@ public class SearchService {
      * on l'expande en toutes les positions4 réelles de ce chapitre.
      * Cela arrive quand le terme de recherche est trop générique (ex: "matières plastiques").
      */
-    private List<Position> expandChapterCodesToPosition4(List<Position> positions) {
+    public List<Position> expandChapterCodesToPosition4(List<Position> positions) {
         List<Position> expanded = new ArrayList<>();
         boolean hadExpansion = false;
 
@@ -230,6 +358,8 @@ public class SearchService {
                         .toList();
                 if (!pos4List.isEmpty()) {
                     log.info("[DIAG] Level 2 - Code chapitre '{}' expandé en {} positions4", code, pos4List.size());
+                    SearchExplain.decision(SearchLevel.POSITIONS4.name(), "expansion_chapitre",
+                            "Code chapitre '" + code + "' expandé en " + pos4List.size() + " positions4");
                     expanded.addAll(pos4List);
                     hadExpansion = true;
                 } else {
@@ -243,6 +373,19 @@ public class SearchService {
         return hadExpansion ? expanded : positions;
     }
 
+    /**
+     * Construit le RAG d'un niveau à partir des positions retenues au niveau précédent.
+     * Utilisé par la cascade batch, qui fait avancer chaque article niveau par niveau.
+     */
+    public List<Position> buildRag(SearchLevel level, List<Position> selectionPrecedente) {
+        return switch (level) {
+            case SECTIONS -> ragSections();
+            case CHAPITRES -> ragChapitres(selectionPrecedente);
+            case POSITIONS4 -> ragPositions4(selectionPrecedente);
+            case POSITIONS6 -> ragPositions6(selectionPrecedente);
+            case POSITIONS10 -> ragPositions10(selectionPrecedente);
+        };
+    }
 
     private List<Position> ragSections() {
         List<Section> sections = sectionService.getAllSections();
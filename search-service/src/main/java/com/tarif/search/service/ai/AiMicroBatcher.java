@@ -0,0 +1,237 @@
+package com.tarif.search.service.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.tarif.search.model.UsageInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Micro-batching des appels IA concurrents partageant le même RAG.
+ *
+ * Au Level 0 (SECTIONS), le RAG est identique pour tous les utilisateurs : les requêtes arrivant
+ * dans une même fenêtre de quelques millisecondes sont regroupées en un seul prompt multi-produits,
+ * dont la réponse JSON (indexée par produit) est redistribuée à chaque appelant.
+ * L'usage (tokens, coût) est réparti entre les appelants : tokens d'entrée à parts égales,
+ * tokens de sortie au prorata de la réponse de chacun.
+ *
+ * Seuls les appels sans justification sont regroupés (réponses courtes, max_tokens du niveau suffisant).
+ * Un produit absent de la réponse groupée est relancé seul, pour ne jamais dégrader le résultat.
+ */
+@Slf4j
+final class AiMicroBatcher implements AutoCloseable {
+
+    /** Réponse d'un appelant : JSON du produit (format réponse unitaire) et sa part d'usage. */
+    record Answer(String json, UsageInfo usage) {
+    }
+
+    private record Key(String niveau, String rag) {
+    }
+
+    private record Slot(String terme, CompletableFuture<Answer> future) {
+    }
+
+    private static final class Pending {
+        final Key key;
+        final List<Slot> slots = new ArrayList<>();
+        ScheduledFuture<?> timer;
+
+        Pending(Key key) {
+            this.key = key;
+        }
+    }
+
+    private final Supplier<AiProvider> provider;
+    private final long windowMs;
+    private final int maxBatchSize;
+    private final Set<String> levels;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ai-micro-batch-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Lots en cours de constitution, par (niveau, RAG). Protégé par this. */
+    private final Map<Key, Pending> pending = new HashMap<>();
+
+    AiMicroBatcher(Supplier<AiProvider> provider, long windowMs, int maxBatchSize, Collection<String> levels) {
+        this.provider = provider;
+        this.windowMs = Math.max(1, windowMs);
+        this.maxBatchSize = Math.max(2, maxBatchSize);
+        this.levels = Set.copyOf(levels);
+    }
+
+    /**
+     * Indique si un appel peut être regroupé.
+     */
+    boolean accepts(String niveau, boolean withJustification) {
+        return !withJustification && niveau != null && levels.contains(niveau);
+    }
+
+    /**
+     * Ajoute une recherche au lot en cours pour (niveau, RAG). Le lot part à l'expiration
+     * de la fenêtre ou dès qu'il atteint la taille maximale.
+     */
+    CompletableFuture<Answer> submit(String niveau, String rag, String terme) {
+        Key key = new Key(niveau, rag);
+        Slot slot = new Slot(terme, new CompletableFuture<>());
+        Pending complet = null;
+        synchronized (this) {
+            Pending lot = pending.computeIfAbsent(key, k -> {
+                Pending nouveau = new Pending(k);
+                nouveau.timer = timer.schedule(() -> flushOnTimer(nouveau), windowMs, TimeUnit.MILLISECONDS);
+                return nouveau;
+            });
+            lot.slots.add(slot);
+            if (lot.slots.size() >= maxBatchSize) {
+                pending.remove(key);
+                lot.timer.cancel(false);
+                complet = lot;
+            }
+        }
+        if (complet != null) {
+            Pending lot = complet;
+            executor.execute(() -> execute(lot));
+        }
+        return slot.future();
+    }
+
+    private void flushOnTimer(Pending lot) {
+        synchronized (this) {
+            if (pending.get(lot.key) != lot) {
+                return; // déjà parti (taille maximale atteinte)
+            }
+            pending.remove(lot.key);
+        }
+        executor.execute(() -> execute(lot));
+    }
+
+    private void execute(Pending lot) {
+        List<Slot> slots = lot.slots;
+        String niveau = lot.key.niveau();
+        try {
+            if (slots.size() == 1) {
+                executeSingle(niveau, lot.key.rag(), slots.get(0));
+                return;
+            }
+
+            Map<String, Slot> parId = new LinkedHashMap<>();
+            Map<String, String> produits = new LinkedHashMap<>();
+            for (int i = 0; i < slots.size(); i++) {
+                String id = "p" + (i + 1);
+                parId.put(id, slots.get(i));
+                produits.put(id, slots.get(i).terme());
+            }
+
+            AiProvider ai = provider.get();
+            String prompt = AiPrompts.buildMultiProductUserPrompt(lot.key.rag(), produits);
+            ai.clearUsageInfo();
+            String reponse;
+            UsageInfo usage;
+            try {
+                reponse = ai.demanderAiAide(niveau, prompt, false, niveau);
+                usage = ai.getLastUsageInfo();
+            } finally {
+                ai.clearUsageInfo();
+            }
+
+            Map<String, String> parts = splitAnswer(reponse, parId.keySet());
+            Map<String, UsageInfo> usages = shareUsage(usage, parts, slots.size());
+            log.debug("{} - micro-batch de {} produits : {} réponses exploitables", niveau, slots.size(), parts.size());
+
+            for (Map.Entry<String, Slot> entry : parId.entrySet()) {
+                String json = parts.get(entry.getKey());
+                if (json != null) {
+                    entry.getValue().future().complete(new Answer(json, usages.get(entry.getKey())));
+                } else {
+                    // Produit absent ou mal formé dans la réponse groupée : relance unitaire
+                    executeSingle(niveau, lot.key.rag(), entry.getValue());
+                }
+            }
+        } catch (Exception e) {
+            for (Slot slot : slots) {
+                slot.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void executeSingle(String niveau, String rag, Slot slot) {
+        try {
+            AiProvider ai = provider.get();
+            ai.clearUsageInfo();
+            try {
+                String reponse = ai.demanderAiAide(niveau, AiPrompts.buildUserPrompt(rag, slot.terme()), false, niveau);
+                slot.future().complete(new Answer(reponse, ai.getLastUsageInfo()));
+            } finally {
+                ai.clearUsageInfo();
+            }
+        } catch (Exception e) {
+            slot.future().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Extrait la réponse de chaque produit de l'objet JSON groupé.
+     * Les produits absents ou dont la valeur n'est pas exploitable sont omis.
+     */
+    static Map<String, String> splitAnswer(String reponse, Collection<String> ids) {
+        Map<String, String> parts = new LinkedHashMap<>();
+        if (reponse == null || reponse.isBlank()) {
+            return parts;
+        }
+        JsonNode root;
+        try {
+            root = JsonUtils.parseTree(reponse);
+        } catch (Exception e) {
+            return parts;
+        }
+        if (!root.isObject()) {
+            return parts;
+        }
+        for (String id : ids) {
+            JsonNode valeur = root.get(id);
+            if (valeur != null && (valeur.isArray() || valeur.isObject())) {
+                parts.put(id, valeur.toString());
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Répartit l'usage d'un appel groupé : tokens d'entrée (RAG + system, communs) à parts égales,
+     * tokens de sortie au prorata de la taille de la réponse de chaque produit. Le coût tokens suit
+     * la part de tokens ; le prix de base par requête reste dû par chaque appelant.
+     */
+    static Map<String, UsageInfo> shareUsage(UsageInfo usage, Map<String, String> parts, int nbProduits) {
+        Map<String, UsageInfo> usages = new HashMap<>();
+        if (usage == null || parts.isEmpty()) {
+            return usages;
+        }
+        int promptTokens = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+        int completionTokens = usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+        int totalTokens = usage.getTokens() != null ? usage.getTokens() : promptTokens + completionTokens;
+        double tokenCost = usage.getTokenCostUsd() != null ? usage.getTokenCostUsd() : 0.0;
+        long tailleTotale = parts.values().stream().mapToLong(String::length).sum();
+
+        for (Map.Entry<String, String> part : parts.entrySet()) {
+            int entree = promptTokens / nbProduits;
+            int sortie = tailleTotale > 0
+                    ? (int) Math.round((double) completionTokens * part.getValue().length() / tailleTotale)
+                    : completionTokens / parts.size();
+            int tokens = entree + sortie;
+            double cout = totalTokens > 0 ? tokenCost * tokens / totalTokens : 0.0;
+            usages.put(part.getKey(), new UsageInfo(tokens, usage.getCostUsd(), entree, sortie, cout));
+        }
+        return usages;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,100 @@
+package com.tarif.search.service.ai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.tarif.search.model.Position;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Schéma de sortie structurée des réponses IA (mode ai.structured-output.enabled).
+ *
+ * Le provider contraint lui-même le modèle à ce schéma (OpenAI json_schema strict, Anthropic tool-use,
+ * Ollama format) : la réponse est toujours un objet {"positions": [{code, justification}]},
+ * désérialisé directement en Position sans nettoyage ni réparation du JSON.
+ * La racine est un objet car OpenAI (strict) et Anthropic (input_schema) n'acceptent pas de tableau racine.
+ */
+public final class AiOutputSchema {
+
+    /** Propriété racine portant la liste des positions. */
+    public static final String ROOT_PROPERTY = "positions";
+
+    /** Nom du schéma (OpenAI) et de l'outil forcé (Anthropic). */
+    public static final String NAME = "enregistrer_positions";
+
+    private static final ObjectReader ENVELOPE_READER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .readerFor(Envelope.class);
+
+    private static final Map<String, Object> SCHEMA_SIMPLE = build(false);
+    private static final Map<String, Object> SCHEMA_JUSTIFIED = build(true);
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record Envelope(List<Position> positions) {
+    }
+
+    private AiOutputSchema() {
+    }
+
+    /**
+     * JSON Schema de la réponse. La justification n'est demandée (et requise) que si withJustification.
+     * Toutes les propriétés sont requises et additionalProperties=false : exigé par le mode strict d'OpenAI.
+     */
+    public static Map<String, Object> schema(boolean withJustification) {
+        return withJustification ? SCHEMA_JUSTIFIED : SCHEMA_SIMPLE;
+    }
+
+    /**
+     * Description de l'outil forcé côté Anthropic.
+     */
+    public static String description(boolean withJustification) {
+        return withJustification
+                ? "Enregistre les codes retenus pour le produit, avec la justification de chaque code."
+                : "Enregistre les codes retenus pour le produit.";
+    }
+
+    /**
+     * Désérialise directement une réponse conforme au schéma.
+     *
+     * @throws JsonProcessingException si la réponse n'est pas un objet conforme (ex. réponse tronquée)
+     */
+    public static List<Position> parse(String json) throws JsonProcessingException {
+        if (json == null || json.isBlank()) {
+            throw new JsonProcessingException("Réponse structurée vide") {
+            };
+        }
+        Envelope envelope = ENVELOPE_READER.readValue(json);
+        if (envelope == null || envelope.positions() == null) {
+            throw new JsonProcessingException("Propriété '" + ROOT_PROPERTY + "' absente de la réponse structurée") {
+            };
+        }
+        return envelope.positions();
+    }
+
+    private static Map<String, Object> build(boolean withJustification) {
+        Map<String, Object> itemProperties = new LinkedHashMap<>();
+        itemProperties.put("code", Map.of("type", "string"));
+        if (withJustification) {
+            itemProperties.put("justification", Map.of("type", "string"));
+        }
+
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("type", "object");
+        item.put("properties", itemProperties);
+        item.put("required", List.copyOf(itemProperties.keySet()));
+        item.put("additionalProperties", false);
+
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("type", "object");
+        root.put("properties", Map.of(ROOT_PROPERTY, Map.of("type", "array", "items", item)));
+        root.put("required", List.of(ROOT_PROPERTY));
+        root.put("additionalProperties", false);
+        return Collections.unmodifiableMap(root);
+    }
+}
@@ -27,4 +27,19 @@ public interface AiProvider {
      * Nettoie les informations d'utilisation.
      */
     void clearUsageInfo();
+
+    /**
+     * Indique si le provider contraint ses réponses au schéma {@link AiOutputSchema}
+     * (objet {"positions": [...]}, désérialisable sans nettoyage).
+     */
+    default boolean isStructuredOutput() {
+        return false;
+    }
+
+    /**
+     * Modèle utilisé par le provider (null si non applicable).
+     */
+    default String getModel() {
+        return null;
+    }
 }
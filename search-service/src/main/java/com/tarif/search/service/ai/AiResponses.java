@@ -0,0 +1,99 @@
+package com.tarif.search.service.ai;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
+
+import java.util.List;
+
+/**
+ * Enveloppes des réponses HTTP des providers et readers / writer partagés.
+ *
+ * Le corps HTTP est lu en flux, en une seule passe, directement dans ces records : seuls les champs
+ * utiles (texte de la réponse, bloc tool_use, usage) sont matérialisés, le reste est sauté sans arbre
+ * intermédiaire. ObjectReader / ObjectWriter sont immuables et partagés entre threads.
+ */
+final class AiResponses {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    static final ObjectWriter REQUEST_WRITER = objectMapper.writer();
+    static final ObjectReader OPENAI_READER = objectMapper.readerFor(OpenAiChatResponse.class);
+    static final ObjectReader ANTHROPIC_READER = objectMapper.readerFor(AnthropicMessage.class);
+    static final ObjectReader OLLAMA_READER = objectMapper.readerFor(OllamaGenerateResponse.class);
+
+    private AiResponses() {
+    }
+
+    /**
+     * Écrit le corps de requête directement dans le flux HTTP (pas de String intermédiaire).
+     */
+    static RequestCallback jsonRequest(HttpHeaders headers, Object body) {
+        return request -> {
+            request.getHeaders().addAll(headers);
+            REQUEST_WRITER.writeValue(request.getBody(), body);
+        };
+    }
+
+    /**
+     * Lit le corps de réponse en flux dans le type du reader.
+     */
+    static <T> ResponseExtractor<T> jsonResponse(ObjectReader reader) {
+        return response -> reader.readValue(response.getBody());
+    }
+
+    // ─── OpenAI /chat/completions ────────────────────────────────────────────
+
+    record OpenAiChatResponse(List<Choice> choices, OpenAiUsage usage) {
+
+        String content() {
+            if (choices == null || choices.isEmpty() || choices.get(0).message() == null) {
+                return null;
+            }
+            return choices.get(0).message().content();
+        }
+    }
+
+    record Choice(Message message) {
+    }
+
+    record Message(String content) {
+    }
+
+    record OpenAiUsage(
+            @JsonProperty("prompt_tokens") int promptTokens,
+            @JsonProperty("completion_tokens") int completionTokens,
+            @JsonProperty("total_tokens") int totalTokens) {
+    }
+
+    // ─── Anthropic /messages ─────────────────────────────────────────────────
+
+    record AnthropicMessage(List<ContentBlock> content, AnthropicUsage usage) {
+    }
+
+    /** Bloc de contenu : text (mode libre) ou tool_use avec input (sortie structurée). */
+    record ContentBlock(String type, String text, JsonNode input) {
+    }
+
+    record AnthropicUsage(
+            @JsonProperty("input_tokens") int inputTokens,
+            @JsonProperty("output_tokens") int outputTokens) {
+    }
+
+    // ─── Ollama /api/generate ────────────────────────────────────────────────
+
+    record OllamaGenerateResponse(
+            String response,
+            @JsonProperty("prompt_eval_count") int promptEvalCount,
+            @JsonProperty("eval_count") int evalCount) {
+    }
+}
@@ -1,13 +1,32 @@
 package com.tarif.search.service.ai;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.tarif.search.explain.SearchExplain;
+import com.tarif.search.jfr.ProviderCallEvent;
 import com.tarif.search.model.Position;
 import com.tarif.search.model.UsageInfo;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Service principal d'IA qui orchestre les différents providers.
@@ -19,53 +38,272 @@ public class AiService {
     private final OpenAiService openAiService;
     private final AnthropicService anthropicService;
     private final OllamaService ollamaService;
+    private final ReplayAiProvider replayAiProvider;
     private final String activeProvider;
 
+    /** Regroupement optionnel des appels concurrents sur un même RAG (null si désactivé). */
+    private final AiMicroBatcher microBatcher;
+    private final long microBatchTimeoutMs;
+
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+    /** Appels provider en cours (jauge ai.provider.inflight). */
+    private final AtomicInteger appelsEnCours = new AtomicInteger();
+
+    /** Part d'usage attribuée à l'appelant quand sa requête a été servie par un micro-batch. */
+    private static final ThreadLocal<UsageInfo> microBatchUsage = new ThreadLocal<>();
+
     public AiService(
             OpenAiService openAiService,
             AnthropicService anthropicService,
             OllamaService ollamaService,
-            @Value("${ai.provider:openai}") String activeProvider) {
+            ReplayAiProvider replayAiProvider,
+            @Value("${ai.provider:openai}") String activeProvider,
+            @Value("${ai.micro-batch.enabled:false}") boolean microBatchEnabled,
+            @Value("${ai.micro-batch.window-ms:15}") long microBatchWindowMs,
+            @Value("${ai.micro-batch.max-batch-size:8}") int microBatchMaxSize,
+            @Value("${ai.micro-batch.levels:SECTIONS}") List<String> microBatchLevels,
+            @Value("${ai.micro-batch.timeout-ms:120000}") long microBatchTimeoutMs,
+            MeterRegistry meterRegistry,
+            Tracer tracer) {
         this.openAiService = openAiService;
         this.anthropicService = anthropicService;
         this.ollamaService = ollamaService;
+        this.replayAiProvider = replayAiProvider;
         this.activeProvider = activeProvider;
+        this.microBatcher = microBatchEnabled
+                ? new AiMicroBatcher(this::getActiveProvider, microBatchWindowMs, microBatchMaxSize, microBatchLevels)
+                : null;
+        this.microBatchTimeoutMs = microBatchTimeoutMs;
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer;
+        Gauge.builder("ai.provider.inflight", appelsEnCours, AtomicInteger::get)
+                .description("Appels au provider IA en cours")
+                .tag("provider", activeProvider.toLowerCase())
+                .register(meterRegistry);
         log.info("AiService initialisé avec le provider: {}", activeProvider);
+        if (microBatchEnabled && getActiveProvider().isStructuredOutput()) {
+            log.warn("Micro-batching ignoré : incompatible avec la sortie structurée (schéma à une seule liste de positions)");
+        } else if (microBatchEnabled) {
+            log.info("Micro-batching activé : fenêtre {} ms, {} produits max, niveaux {}",
+                    microBatchWindowMs, microBatchMaxSize, microBatchLevels);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (microBatcher != null) {
+            microBatcher.close();
+        }
     }
 
     /**
      * Recherche les positions pertinentes en utilisant l'IA.
      */
     public List<Position> promptEtReponse(String titre, String termeRecherche, List<Position> listePositions, boolean withJustification) {
+        Timer.Sample etape = Timer.start(meterRegistry);
         StringBuilder leRAG = creerContexteRAG(titre, listePositions);
+        etape.stop(etapeTimer(titre, "contexte"));
         // AiProviderException remonte librement pour permettre le retry dans executeWithRetry
-        String reponseIaJson = obtenirReponseJsonDeIA(titre, leRAG, termeRecherche, withJustification);
-        String jsonNettoye = JsonUtils.cleanJsonString(reponseIaJson);
+        String reponseIaJson;
+        boolean structured = isStructuredOutput();
+        if (microBatcher != null && !structured && microBatcher.accepts(titre, withJustification)) {
+            reponseIaJson = appelProvider(titre, leRAG.length(), () -> obtenirReponseParMicroBatch(titre, leRAG, termeRecherche));
+        } else {
+            microBatchUsage.remove();
+            reponseIaJson = appelProvider(titre, leRAG.length(), () -> obtenirReponseJsonDeIA(titre, leRAG, termeRecherche, withJustification));
+        }
 
-        if (!JsonUtils.isValidJson(jsonNettoye)) {
-            log.warn("{} - Réponse IA non JSON : {}", titre, reponseIaJson);
-            return Collections.emptyList();
+        etape = Timer.start(meterRegistry);
+        try {
+            return parserReponse(titre, reponseIaJson, structured);
+        } finally {
+            etape.stop(etapeTimer(titre, "parsing"));
+        }
+    }
+
+    private List<Position> parserReponse(String titre, String reponseIaJson, boolean structured) {
+        if (structured) {
+            // Réponse contrainte par le schéma : désérialisation directe, sans nettoyage
+            try {
+                return AiOutputSchema.parse(reponseIaJson);
+            } catch (Exception ex) {
+                log.warn("{} - Réponse structurée non conforme ({}), repli sur le parsing libre", titre, ex.getMessage());
+            }
         }
 
         try {
-            return JsonUtils.conversionReponseIaToList(jsonNettoye);
-        } catch (Exception ex) {
+            return JsonUtils.parsePositions(reponseIaJson);
+        } catch (StreamReadException ex) {
+            // Réponse non JSON : remonte comme erreur technique pour déclencher le retry
+            throw new RuntimeException("Veuillez donner plus de précisions. La réponse n'est pas un JSON valide : " + reponseIaJson, ex);
+        } catch (JsonProcessingException ex) {
             log.warn("{} - Échec parsing JSON : {}", titre, ex.getMessage());
             return Collections.emptyList();
         }
     }
 
+    /**
+     * Appel au provider actif (direct ou via micro-batch) instrumenté par provider, modèle et niveau :
+     * latence (ai.provider.latency, tag resultat ok|erreur), tokens (ai.provider.tokens),
+     * erreurs par type d'exception (ai.provider.errors), appels en cours (ai.provider.inflight),
+     * événement JFR ProviderCallEvent, span ai.provider (parent du span HTTP client du provider)
+     * et tentative de la timeline explain.
+     */
+    private String appelProvider(String niveau, int requestChars, Supplier<String> appel) {
+        String provider = activeProvider.toLowerCase();
+        String model = Objects.requireNonNullElse(getActiveProvider().getModel(), "inconnu");
+        ProviderCallEvent event = new ProviderCallEvent();
+        event.begin();
+        Span span = tracer.nextSpan().name("ai.provider")
+                .tag("ai.provider", provider)
+                .tag("ai.model", model)
+                .tag("cascade.niveau", niveau)
+                .tag("ai.request.chars", requestChars)
+                .start();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        appelsEnCours.incrementAndGet();
+        String resultat = "erreur";
+        String reponse = null;
+        UsageInfo usage = null;
+        String exception = null;
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            reponse = appel.get();
+            resultat = "ok";
+            usage = getCurrentUsage();
+            enregistrerTokens(provider, model, niveau, usage);
+            return reponse;
+        } catch (RuntimeException e) {
+            exception = e.getClass().getSimpleName();
+            span.error(e);
+            meterRegistry.counter("ai.provider.errors", "provider", provider, "model", model, "niveau", niveau,
+                    "exception", exception).increment();
+            throw e;
+        } finally {
+            appelsEnCours.decrementAndGet();
+            long duree = sample.stop(meterRegistry.timer("ai.provider.latency", "provider", provider, "model", model,
+                    "niveau", niveau, "resultat", resultat));
+            etapeTimer(niveau, "provider").record(duree, TimeUnit.NANOSECONDS);
+            SearchExplain.appelProvider(provider, model, duree, usage);
+            tracerResultat(span, reponse, usage);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.provider = provider;
+                event.model = model;
+                event.niveau = niveau;
+                event.requestChars = requestChars;
+                event.responseChars = reponse != null ? reponse.length() : 0;
+                event.promptTokens = usage != null && usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+                event.completionTokens = usage != null && usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+                event.status = exception != null ? "erreur" : reponse == null || reponse.isBlank() ? "vide" : "ok";
+                event.exception = exception;
+                event.commit();
+            }
+        }
+    }
+
+    private static void tracerResultat(Span span, String reponse, UsageInfo usage) {
+        span.tag("ai.response.chars", reponse != null ? reponse.length() : 0);
+        if (usage != null && usage.getPromptTokens() != null) {
+            span.tag("ai.tokens.prompt", usage.getPromptTokens());
+        }
+        if (usage != null && usage.getCompletionTokens() != null) {
+            span.tag("ai.tokens.completion", usage.getCompletionTokens());
+        }
+        span.end();
+    }
+
+    private void enregistrerTokens(String provider, String model, String niveau, UsageInfo usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.getPromptTokens() != null) {
+            meterRegistry.counter("ai.provider.tokens", "provider", provider, "model", model, "niveau", niveau,
+                    "type", "prompt").increment(usage.getPromptTokens());
+        }
+        if (usage.getCompletionTokens() != null) {
+            meterRegistry.counter("ai.provider.tokens", "provider", provider, "model", model, "niveau", niveau,
+                    "type", "completion").increment(usage.getCompletionTokens());
+        }
+    }
+
+    private DistributionSummary taillePrompt(String niveau) {
+        return DistributionSummary.builder("cascade.prompt.size")
+                .description("Taille du prompt utilisateur envoyé au provider")
+                .baseUnit("chars")
+                .tag("niveau", niveau)
+                .register(meterRegistry);
+    }
+
+    /** Durée d'une étape d'un niveau de la cascade (même métrique que SearchService pour rag et enrichissement). */
+    private Timer etapeTimer(String niveau, String etape) {
+        return meterRegistry.timer("cascade.stage.duration", "niveau", niveau, "etape", etape);
+    }
+
     private String obtenirReponseJsonDeIA(String titre, StringBuilder ragString, String termeRecherche, boolean withJustification) {
         String prompt = AiPrompts.buildUserPrompt(ragString.toString(), termeRecherche);
         int maxTokens = AiPrompts.getMaxTokensForLevel(withJustification);
+        taillePrompt(titre).record(prompt.length());
+        if (SearchExplain.isActive()) {
+            SearchExplain.prompt(prompt.getBytes(StandardCharsets.UTF_8).length);
+        }
         log.debug("{} - max_tokens={}, justification={}, prompt ({} chars):\n{}", titre, maxTokens, withJustification, prompt.length(), prompt);
         return getActiveProvider().demanderAiAide(titre, prompt, withJustification, titre);
     }
 
+    /**
+     * Réponse via le micro-batcher : l'appel est regroupé avec les requêtes concurrentes
+     * sur le même RAG, la part d'usage de l'appelant est conservée pour getCurrentUsage().
+     */
+    private String obtenirReponseParMicroBatch(String titre, StringBuilder ragString, String termeRecherche) {
+        getActiveProvider().clearUsageInfo();
+        taillePrompt(titre).record(ragString.length());
+        if (SearchExplain.isActive()) {
+            SearchExplain.prompt(ragString.toString().getBytes(StandardCharsets.UTF_8).length);
+        }
+        try {
+            AiMicroBatcher.Answer answer = microBatcher.submit(titre, ragString.toString(), termeRecherche)
+                    .get(microBatchTimeoutMs, TimeUnit.MILLISECONDS);
+            if (answer.usage() != null) {
+                microBatchUsage.set(answer.usage());
+            } else {
+                microBatchUsage.remove();
+            }
+            return answer.json();
+        } catch (ExecutionException | CompletionException e) {
+            microBatchUsage.remove();
+            if (e.getCause() instanceof AiProviderException aiException) {
+                throw aiException;
+            }
+            throw new AiProviderException("Erreur micro-batch: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            microBatchUsage.remove();
+            throw new AiProviderException("Délai dépassé en attente du micro-batch", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            microBatchUsage.remove();
+            throw new AiProviderException("Attente du micro-batch interrompue", e);
+        }
+    }
+
+    /**
+     * Indique si le provider actif répond selon le schéma de sortie structurée.
+     */
+    public boolean isStructuredOutput() {
+        return getActiveProvider().isStructuredOutput();
+    }
+
     private AiProvider getActiveProvider() {
         return switch (activeProvider.toLowerCase()) {
             case "anthropic" -> anthropicService;
             case "ollama" -> ollamaService;
+            case "replay" -> {
+                if (replayAiProvider == null) {
+                    throw new IllegalStateException("Provider replay non disponible");
+                }
+                yield replayAiProvider;
+            }
             default -> openAiService;
         };
     }
@@ -82,7 +320,7 @@ public class AiService {
         return affichePosition;
     }
 
-    private StringBuilder creerContexteRAG(String titre, List<Position> positions) {
+    public StringBuilder creerContexteRAG(String titre, List<Position> positions) {
         StringBuilder stringRAG = new StringBuilder("RAG pour la recherche des : " + titre + "\n\n");
         for (Position position : positions) {
             if (position.getCode() == null || position.getCode().isBlank()) {
@@ -128,13 +366,15 @@ public class AiService {
      * Récupère les informations d'utilisation du provider actif.
      */
     public UsageInfo getCurrentUsage() {
-        return getActiveProvider().getLastUsageInfo();
+        UsageInfo partagee = microBatchUsage.get();
+        return partagee != null ? partagee : getActiveProvider().getLastUsageInfo();
     }
 
     /**
      * Nettoie les informations d'utilisation.
      */
     public void clearCurrentUsage() {
+        microBatchUsage.remove();
         getActiveProvider().clearUsageInfo();
     }
 }
@@ -1,18 +1,15 @@
 package com.tarif.search.service.ai;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tarif.search.model.UsageInfo;
 
 import lombok.extern.slf4j.Slf4j;
@@ -26,6 +23,7 @@ public class AnthropicService implements AiProvider {
     private final String model;
     private final String apiUrl;
     private final float temperature = 0.1F;
+    private final boolean structuredOutput;
 
     private static final ThreadLocal<UsageInfo> currentUsage = new ThreadLocal<>();
 
@@ -33,12 +31,14 @@ public class AnthropicService implements AiProvider {
             RestTemplate restTemplate,
             @Value("${ai.anthropic.api-key:}") String apiKey,
             @Value("${ai.anthropic.model:claude-haiku-4-5-20251001}") String model, // au lieu de claude-sonnet-4-5-20250929 trop cher
-            @Value("${ai.anthropic.base-url:https://api.anthropic.com/v1}") String baseUrl) {
+            @Value("${ai.anthropic.base-url:https://api.anthropic.com/v1}") String baseUrl,
+            @Value("${ai.structured-output.enabled:false}") boolean structuredOutput) {
         this.restTemplate = restTemplate;
         this.apiKey = apiKey;
         this.model = model;
         this.apiUrl = baseUrl + "/messages";
-        log.info("AnthropicService initialisé avec le modèle: {}", model);
+        this.structuredOutput = structuredOutput;
+        log.info("AnthropicService initialisé avec le modèle: {} (sortie structurée: {})", model, structuredOutput);
     }
 
     @Override
@@ -63,63 +63,47 @@ public class AnthropicService implements AiProvider {
         int maxTokens = AiPrompts.getMaxTokensForLevel(withJustification);
         requestBody.put("max_tokens", maxTokens);
         requestBody.put("temperature", temperature);
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        String body;
-        try {
-            body = objectMapper.writeValueAsString(requestBody);
-        } catch (Exception e) {
-            log.error("Erreur lors de la sérialisation JSON", e);
-            return "";
+        if (structuredOutput) {
+            // Tool-use forcé : la réponse arrive dans le bloc tool_use, déjà conforme à input_schema
+            requestBody.put("tools", new Object[]{
+                    Map.of("name", AiOutputSchema.NAME,
+                            "description", AiOutputSchema.description(withJustification),
+                            "input_schema", AiOutputSchema.schema(withJustification))
+            });
+            requestBody.put("tool_choice", Map.of("type", "tool", "name", AiOutputSchema.NAME));
         }
 
-        HttpEntity<String> entity = new HttpEntity<>(body, httpHeaders);
         try {
-            ResponseEntity<String> response = restTemplate.exchange(
+            AiResponses.AnthropicMessage reponse = restTemplate.execute(
                     apiUrl,
                     HttpMethod.POST,
-                    entity,
-                    String.class
+                    AiResponses.jsonRequest(httpHeaders, requestBody),
+                    AiResponses.jsonResponse(AiResponses.ANTHROPIC_READER)
             );
 
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                log.error("Erreur API Anthropic - Status: {}, Body: {}", response.getStatusCode(), response.getBody());
-                return "";
-            }
-
-            String responseBody = response.getBody();
-            if (responseBody == null) {
-                return "";
-            }
-
-            JsonNode rootNode = objectMapper.readTree(responseBody);
-
-            if (rootNode.has("content")) {
-                JsonNode contentNode = rootNode.path("content");
-                if (contentNode.isArray() && !contentNode.isEmpty()) {
-                    String assistantMessage = contentNode.get(0).path("text").asText();
-
-                    // Nettoyer la réponse : enlever les marqueurs markdown ```json si présents
-                    String cleanedMessage = cleanJsonResponse(assistantMessage);
-
-                    // Récupérer les tokens si disponibles
-                    int inputTokens = rootNode.path("usage").path("input_tokens").asInt(0);
-                    int outputTokens = rootNode.path("usage").path("output_tokens").asInt(0);
-
-                    UsageInfo usageInfo = new UsageInfo(
-                            inputTokens + outputTokens,
-                            0.01,
-                            inputTokens,
-                            outputTokens,
-                            0.0
-                    );
-                    currentUsage.set(usageInfo);
-
-                    return cleanedMessage;
-                }
+            if (reponse != null && reponse.content() != null && !reponse.content().isEmpty()) {
+                // Le texte est rendu tel quel : backticks / préfixe "json" sont sautés au parsing (JsonUtils)
+                String assistantMessage = structuredOutput
+                        ? extractToolInput(reponse.content())
+                        : reponse.content().get(0).text();
+
+                // Récupérer les tokens si disponibles
+                int inputTokens = reponse.usage() != null ? reponse.usage().inputTokens() : 0;
+                int outputTokens = reponse.usage() != null ? reponse.usage().outputTokens() : 0;
+
+                UsageInfo usageInfo = new UsageInfo(
+                        inputTokens + outputTokens,
+                        0.01,
+                        inputTokens,
+                        outputTokens,
+                        0.0
+                );
+                currentUsage.set(usageInfo);
+
+                return assistantMessage != null ? assistantMessage : "";
             }
 
-            log.warn("Structure de réponse inattendue: {}", responseBody);
+            log.warn("Structure de réponse inattendue (aucun bloc de contenu)");
             return "";
 
         } catch (org.springframework.web.client.HttpClientErrorException e) {
@@ -133,6 +117,16 @@ public class AnthropicService implements AiProvider {
         }
     }
 
+    @Override
+    public boolean isStructuredOutput() {
+        return structuredOutput;
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
     @Override
     public UsageInfo getLastUsageInfo() {
         return currentUsage.get();
@@ -144,30 +138,16 @@ public class AnthropicService implements AiProvider {
     }
 
     /**
-     * Nettoie la réponse JSON en enlevant les marqueurs markdown si présents.
-     * Claude retourne parfois le JSON enveloppé dans des blocs markdown ```json
-     *
-     * @param response La réponse brute de l'API
-     * @return Le JSON nettoyé
+     * Extrait l'entrée du bloc tool_use (sortie structurée), sérialisée telle quelle.
+     * Retourne une chaîne vide si le modèle n'a pas appelé l'outil (ex. max_tokens atteint).
      */
-    private String cleanJsonResponse(String response) {
-        if (response == null || response.isEmpty()) {
-            return response;
-        }
-
-        String cleaned = response.trim();
-
-        // Enlever les marqueurs markdown ```json et ```
-        if (cleaned.startsWith("```json")) {
-            cleaned = cleaned.substring(7); // Enlever "```json"
-        } else if (cleaned.startsWith("```")) {
-            cleaned = cleaned.substring(3); // Enlever "```"
-        }
-
-        if (cleaned.endsWith("```")) {
-            cleaned = cleaned.substring(0, cleaned.length() - 3); // Enlever "```" à la fin
+    private String extractToolInput(List<AiResponses.ContentBlock> content) {
+        for (AiResponses.ContentBlock block : content) {
+            if ("tool_use".equals(block.type()) && block.input() != null) {
+                return block.input().toString();
+            }
         }
-
-        return cleaned.trim();
+        log.warn("Aucun bloc tool_use dans la réponse structurée Anthropic");
+        return "";
     }
 }
@@ -1,53 +1,84 @@
 package com.tarif.search.service.ai;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import com.tarif.search.model.Position;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
  * Utilitaires pour le traitement JSON des réponses IA.
+ *
+ * Les readers sont immuables et partagés entre threads. {@link #parsePositions(String)} lit la réponse
+ * en une seule passe : nettoyage par indices (sans copies successives), puis lecture en flux
+ * directement en {@code List<Position>}, sans validation préalable ni arbre intermédiaire.
  */
 public class JsonUtils {
 
     private static final String JSON_PREFIX = "json";
     private static final char BACKTICK = '`';
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectReader POSITIONS_READER = objectMapper.readerFor(new TypeReference<List<Position>>() {});
+    private static final ObjectReader TREE_READER = objectMapper.reader();
 
     private JsonUtils() {
     }
 
-    public static List<Position> conversionReponseIaToList(String cleanedJson) throws JsonProcessingException {
-        String jsonPourListe = cleanedJson.trim();
+    /**
+     * Parse une réponse IA brute (éventuellement entourée de backticks / préfixe "json") en une seule passe.
+     *
+     * Formats acceptés : tableau direct [...], objet contenant un tableau ({"codes": [...]},
+     * fréquent avec response_format=json_object), ou objet Position seul.
+     *
+     * @throws RuntimeException si la réponse est vide
+     * @throws com.fasterxml.jackson.core.exc.StreamReadException si la réponse n'est pas du JSON
+     * @throws com.fasterxml.jackson.databind.DatabindException si le JSON ne correspond à aucun format attendu
+     */
+    public static List<Position> parsePositions(String reponseIa) throws JsonProcessingException {
+        try (JsonParser parser = createParser(reponseIa)) {
+            JsonToken token = parser.nextToken();
+
+            // Cas 1 : tableau direct [...]
+            if (token == JsonToken.START_ARRAY) {
+                return POSITIONS_READER.readValue(parser);
+            }
+
+            // Cas 2 : objet contenant un tableau, ou Position seule
+            if (token == JsonToken.START_OBJECT) {
+                return lireObjet(parser);
+            }
 
-        // Cas 1 : tableau direct [...]
-        if (jsonPourListe.startsWith("[")) {
-            return objectMapper.readValue(jsonPourListe, new TypeReference<List<Position>>() {});
+            throw MismatchedInputException.from(parser, List.class, "Format JSON inattendu : " + token);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // Lecture d'une chaîne en mémoire : n'arrive pas en pratique
+            throw new IllegalStateException(e);
         }
+    }
 
-        // Cas 2 : objet contenant un tableau (ex: {"codes": [...]} ou {"results": [...]})
-        // → fréquent quand response_format=json_object est activé
-        if (jsonPourListe.startsWith("{")) {
-            var tree = objectMapper.readTree(jsonPourListe);
-            // Chercher la première valeur qui est un tableau
-            var fields = tree.fields();
-            while (fields.hasNext()) {
-                var field = fields.next();
-                if (field.getValue().isArray()) {
-                    return objectMapper.readValue(
-                            field.getValue().toString(),
-                            new TypeReference<List<Position>>() {}
-                    );
-                }
-            }
-            // Aucun tableau trouvé → traiter l'objet racine comme un seul élément
-            Position single = objectMapper.readValue(jsonPourListe, Position.class);
-            return List.of(single);
+    /**
+     * Parse une réponse IA brute en arbre JSON, nettoyage compris, en une seule passe.
+     */
+    public static JsonNode parseTree(String reponseIa) throws JsonProcessingException {
+        try (JsonParser parser = createParser(reponseIa)) {
+            return TREE_READER.readTree(parser);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
         }
+    }
 
-        throw new RuntimeException("Format JSON inattendu : " + jsonPourListe.substring(0, Math.min(100, jsonPourListe.length())));
+    public static List<Position> conversionReponseIaToList(String cleanedJson) throws JsonProcessingException {
+        return parsePositions(cleanedJson);
     }
 
     public static String cleanJsonString(String jsonResponse) {
@@ -87,4 +118,62 @@ public class JsonUtils {
             return false;
         }
     }
+
+    /**
+     * Parser positionné sur le JSON utile : espaces, backticks et préfixe "json" sont sautés par indices.
+     */
+    private static JsonParser createParser(String reponseIa) throws IOException {
+        if (reponseIa == null || reponseIa.isBlank()) {
+            throw new RuntimeException("Réponse JSON vide ou nulle !");
+        }
+        int debut = 0;
+        int fin = reponseIa.length();
+        while (debut < fin && isEnveloppe(reponseIa.charAt(debut))) {
+            debut++;
+        }
+        while (fin > debut && isEnveloppe(reponseIa.charAt(fin - 1))) {
+            fin--;
+        }
+        if (reponseIa.startsWith(JSON_PREFIX, debut)) {
+            debut += JSON_PREFIX.length();
+        }
+        String json = debut == 0 && fin == reponseIa.length() ? reponseIa : reponseIa.substring(debut, fin);
+        return objectMapper.getFactory().createParser(json);
+    }
+
+    private static boolean isEnveloppe(char c) {
+        return c == BACKTICK || Character.isWhitespace(c);
+    }
+
+    /**
+     * Objet racine : le premier champ tableau est la liste des positions ; sans tableau,
+     * l'objet lui-même est une Position (champs inconnus refusés, comme Position.class).
+     */
+    private static List<Position> lireObjet(JsonParser parser) throws IOException {
+        Position single = new Position();
+        String champInconnu = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String champ = parser.currentName();
+            JsonToken valeur = parser.nextToken();
+            if (valeur == JsonToken.START_ARRAY) {
+                return POSITIONS_READER.readValue(parser);
+            }
+            if (valeur.isStructStart()) {
+                parser.skipChildren();
+                champInconnu = champInconnu != null ? champInconnu : champ;
+                continue;
+            }
+            String texte = valeur == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+            switch (champ) {
+                case "code" -> single.setCode(texte);
+                case "description" -> single.setDescription(texte);
+                case "justification" -> single.setJustification(texte);
+                default -> champInconnu = champInconnu != null ? champInconnu : champ;
+            }
+        }
+        if (champInconnu != null) {
+            throw MismatchedInputException.from(parser, Position.class, "Champ inattendu : " + champInconnu);
+        }
+        return List.of(single);
+    }
 }
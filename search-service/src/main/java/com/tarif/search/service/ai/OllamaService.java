@@ -1,14 +1,10 @@
 package com.tarif.search.service.ai;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tarif.search.model.UsageInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
@@ -26,6 +22,7 @@ public class OllamaService implements AiProvider {
     private final RestTemplate restTemplate;
     private final String baseUrl;
     private final String model;
+    private final boolean structuredOutput;
 
     private static final ThreadLocal<UsageInfo> currentUsage = new ThreadLocal<>();
 
@@ -33,12 +30,14 @@ public class OllamaService implements AiProvider {
             AiPrompts aiPrompts,
             RestTemplate restTemplate,
             @Value("${ai.ollama.base-url:http://localhost:11434}") String baseUrl,
-            @Value("${ai.ollama.model:llama3}") String model) {
+            @Value("${ai.ollama.model:llama3}") String model,
+            @Value("${ai.structured-output.enabled:false}") boolean structuredOutput) {
         this.aiPrompts = aiPrompts;
         this.restTemplate = restTemplate;
         this.baseUrl = baseUrl;
         this.model = model;
-        log.info("OllamaService initialisé avec le modèle: {} sur {}", model, baseUrl);
+        this.structuredOutput = structuredOutput;
+        log.info("OllamaService initialisé avec le modèle: {} sur {} (sortie structurée: {})", model, baseUrl, structuredOutput);
     }
 
     @Override
@@ -54,40 +53,26 @@ public class OllamaService implements AiProvider {
         requestBody.put("model", model);
         requestBody.put("prompt", fullPrompt);
         requestBody.put("stream", false);
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        String body;
-        try {
-            body = objectMapper.writeValueAsString(requestBody);
-        } catch (Exception e) {
-            log.error("Erreur lors de la sérialisation JSON", e);
-            return "";
+        if (structuredOutput) {
+            // Sortie structurée (Ollama >= 0.5) : génération contrainte par le JSON Schema
+            requestBody.put("format", AiOutputSchema.schema(withJustification));
         }
 
-        HttpEntity<String> entity = new HttpEntity<>(body, httpHeaders);
         try {
-            ResponseEntity<String> response = restTemplate.exchange(
+            AiResponses.OllamaGenerateResponse reponse = restTemplate.execute(
                     baseUrl + "/api/generate",
                     HttpMethod.POST,
-                    entity,
-                    String.class
+                    AiResponses.jsonRequest(httpHeaders, requestBody),
+                    AiResponses.jsonResponse(AiResponses.OLLAMA_READER)
             );
-
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                log.error("Erreur API Ollama - Status: {}", response.getStatusCode());
-                return "";
-            }
-
-            String responseBody = response.getBody();
-            if (responseBody == null) {
+            if (reponse == null) {
                 return "";
             }
 
-            JsonNode rootNode = objectMapper.readTree(responseBody);
-            String assistantMessage = rootNode.path("response").asText();
+            String assistantMessage = reponse.response() != null ? reponse.response() : "";
 
-            int promptTokens = rootNode.path("prompt_eval_count").asInt(0);
-            int completionTokens = rootNode.path("eval_count").asInt(0);
+            int promptTokens = reponse.promptEvalCount();
+            int completionTokens = reponse.evalCount();
 
             UsageInfo usageInfo = new UsageInfo(
                     promptTokens + completionTokens,
@@ -107,6 +92,16 @@ public class OllamaService implements AiProvider {
         }
     }
 
+    @Override
+    public boolean isStructuredOutput() {
+        return structuredOutput;
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
     @Override
     public UsageInfo getLastUsageInfo() {
         return currentUsage.get();
@@ -4,15 +4,11 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tarif.search.model.UsageInfo;
 
 import lombok.extern.slf4j.Slf4j;
@@ -30,6 +26,7 @@ public class OpenAiService implements AiProvider {
     private final double priceInputPerMillion;
     private final double priceOutputPerMillion;
     private final float temperature = 0.0F;
+    private final boolean structuredOutput;
 
     private static final ThreadLocal<UsageInfo> currentUsage = new ThreadLocal<>();
 
@@ -41,7 +38,8 @@ public class OpenAiService implements AiProvider {
             @Value("${ai.openai.model:gpt-4.1-mini}") String model,
             @Value("${ai.base-request-price:0.01}") double baseRequestPrice,
             @Value("${ai.openai.price-input-per-million:0.40}") double priceInputPerMillion,
-            @Value("${ai.openai.price-output-per-million:1.60}") double priceOutputPerMillion) {
+            @Value("${ai.openai.price-output-per-million:1.60}") double priceOutputPerMillion,
+            @Value("${ai.structured-output.enabled:false}") boolean structuredOutput) {
         this.aiPrompts = aiPrompts;
         this.restTemplate = restTemplate;
         this.apiKey = apiKey;
@@ -50,8 +48,9 @@ public class OpenAiService implements AiProvider {
         this.baseRequestPrice = baseRequestPrice;
         this.priceInputPerMillion = priceInputPerMillion;
         this.priceOutputPerMillion = priceOutputPerMillion;
-        log.info("OpenAiService initialisé avec le modèle: {} (tarifs: input=${}/M, output=${}/M)",
-                model, priceInputPerMillion, priceOutputPerMillion);
+        this.structuredOutput = structuredOutput;
+        log.info("OpenAiService initialisé avec le modèle: {} (tarifs: input=${}/M, output=${}/M, sortie structurée: {})",
+                model, priceInputPerMillion, priceOutputPerMillion, structuredOutput);
     }
 
     @Override
@@ -75,47 +74,37 @@ public class OpenAiService implements AiProvider {
         int maxTokens = AiPrompts.getMaxTokensForLevel(withJustification);
         requestBody.put("max_tokens", maxTokens);
         requestBody.put("temperature", temperature);
-        requestBody.put("response_format", Map.of("type", "json_object"));
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        String body;
-        try {
-            body = objectMapper.writeValueAsString(requestBody);
-        } catch (Exception e) {
-            log.error("Erreur lors de la sérialisation JSON", e);
-            return "";
+        if (structuredOutput) {
+            // Structured Outputs : le modèle est contraint au schéma, plus de JSON à réparer
+            requestBody.put("response_format", Map.of(
+                    "type", "json_schema",
+                    "json_schema", Map.of(
+                            "name", AiOutputSchema.NAME,
+                            "strict", true,
+                            "schema", AiOutputSchema.schema(withJustification))));
+        } else {
+            requestBody.put("response_format", Map.of("type", "json_object"));
         }
 
-        HttpEntity<String> entity = new HttpEntity<>(body, httpHeaders);
         try {
-            ResponseEntity<String> response = restTemplate.exchange(
+            AiResponses.OpenAiChatResponse reponse = restTemplate.execute(
                     apiUrl,
                     HttpMethod.POST,
-                    entity,
-                    String.class
+                    AiResponses.jsonRequest(httpHeaders, requestBody),
+                    AiResponses.jsonResponse(AiResponses.OPENAI_READER)
             );
-
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                log.error("Erreur API OpenAI - Status: {}, Body: {}", response.getStatusCode(), response.getBody());
-                return "";
-            }
-
-            String responseBody = response.getBody();
-            if (responseBody == null) {
+            if (reponse == null) {
                 return "";
             }
 
-            JsonNode rootNode = objectMapper.readTree(responseBody);
-            String assistantMessage = rootNode
-                    .path("choices")
-                    .get(0)
-                    .path("message")
-                    .path("content")
-                    .asText();
+            String assistantMessage = reponse.content();
+            AiResponses.OpenAiUsage usage = reponse.usage() != null
+                    ? reponse.usage()
+                    : new AiResponses.OpenAiUsage(0, 0, 0);
 
-            int promptTokens = rootNode.path("usage").path("prompt_tokens").asInt();
-            int completionTokens = rootNode.path("usage").path("completion_tokens").asInt();
-            int totalTokens = rootNode.path("usage").path("total_tokens").asInt();
+            int promptTokens = usage.promptTokens();
+            int completionTokens = usage.completionTokens();
+            int totalTokens = usage.totalTokens();
 
             double tokenCostUsd = (promptTokens * priceInputPerMillion + completionTokens * priceOutputPerMillion) / 1_000_000;
 
@@ -130,7 +119,7 @@ public class OpenAiService implements AiProvider {
 
             log.debug("Niveau: {}, Tokens: {}, Coût: {}", titre, totalTokens, tokenCostUsd);
 
-            return assistantMessage;
+            return assistantMessage != null ? assistantMessage : "";
 
         } catch (Exception e) {
             log.error("Erreur lors de la requête à l'API OpenAI: {}", e.getMessage());
@@ -139,6 +128,16 @@ public class OpenAiService implements AiProvider {
         }
     }
 
+    @Override
+    public boolean isStructuredOutput() {
+        return structuredOutput;
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
     @Override
     public UsageInfo getLastUsageInfo() {
         return currentUsage.get();
@@ -0,0 +1,156 @@
+package com.tarif.search.service.ai;
+
+import com.tarif.search.model.UsageInfo;
+import com.tarif.search.service.ai.replay.ReplayLatency;
+import com.tarif.search.service.ai.replay.ReplayRecording;
+import com.tarif.search.service.ai.replay.ReplayStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Provider IA d'enregistrement / rejeu (ai.provider=replay), pour benchmarker et tester la cascade
+ * hors ligne, de manière déterministe et sans coût.
+ *
+ * - ai.replay.mode=record : chaque appel est délégué au provider réel (ai.replay.delegate)
+ *   et la paire requête / réponse est enregistrée dans le ReplayStore.
+ * - ai.replay.mode=replay : la réponse est lue dans le ReplayStore, aucun appel réseau ;
+ *   la latence est simulée selon ai.replay.latency.*.
+ *
+ * Les enregistrements sont indexés par empreinte de (modèle, system prompt, user prompt) :
+ * tout changement de prompt ou de RAG invalide naturellement l'enregistrement.
+ */
+@Service
+@Slf4j
+public class ReplayAiProvider implements AiProvider {
+
+    public enum Mode {
+        RECORD, REPLAY
+    }
+
+    private final OpenAiService openAiService;
+    private final AnthropicService anthropicService;
+    private final OllamaService ollamaService;
+    private final ReplayStore store;
+    private final ReplayLatency latency;
+    private final Mode mode;
+    private final String delegateName;
+    private final String modelOverride;
+    private final boolean failOnMiss;
+
+    private static final ThreadLocal<UsageInfo> currentUsage = new ThreadLocal<>();
+
+    public ReplayAiProvider(
+            OpenAiService openAiService,
+            AnthropicService anthropicService,
+            OllamaService ollamaService,
+            ReplayStore store,
+            ReplayLatency latency,
+            @Value("${ai.replay.mode:replay}") String mode,
+            @Value("${ai.replay.delegate:openai}") String delegateName,
+            @Value("${ai.replay.model:}") String modelOverride,
+            @Value("${ai.replay.on-miss:error}") String onMiss) {
+        this.openAiService = openAiService;
+        this.anthropicService = anthropicService;
+        this.ollamaService = ollamaService;
+        this.store = store;
+        this.latency = latency;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase());
+        this.delegateName = delegateName;
+        this.modelOverride = modelOverride;
+        this.failOnMiss = !"empty".equalsIgnoreCase(onMiss.trim());
+    }
+
+    @Override
+    public String demanderAiAide(String titre, String question, boolean withJustification, String niveau) {
+        String key = ReplayStore.key(getModel(), AiPrompts.getSystemMessage(withJustification, niveau), question);
+        return mode == Mode.RECORD
+                ? record(key, titre, question, withJustification, niveau)
+                : replay(key, niveau);
+    }
+
+    private String record(String key, String titre, String question, boolean withJustification, String niveau) {
+        AiProvider delegate = getDelegate();
+        long debut = System.nanoTime();
+        String reponse = delegate.demanderAiAide(titre, question, withJustification, niveau);
+        long latencyMs = (System.nanoTime() - debut) / 1_000_000;
+        UsageInfo usage = delegate.getLastUsageInfo();
+        currentUsage.set(usage);
+
+        if (reponse == null || reponse.isBlank()) {
+            // Échec du provider réel : rien à rejouer
+            return reponse;
+        }
+        store.record(new ReplayRecording(
+                key,
+                getModel(),
+                niveau,
+                reponse,
+                usage != null && usage.getPromptTokens() != null ? usage.getPromptTokens() : 0,
+                usage != null && usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0,
+                usage != null && usage.getCostUsd() != null ? usage.getCostUsd() : 0.0,
+                usage != null && usage.getTokenCostUsd() != null ? usage.getTokenCostUsd() : 0.0,
+                latencyMs,
+                Instant.now().toString()));
+        return reponse;
+    }
+
+    private String replay(String key, String niveau) {
+        Optional<ReplayRecording> recording = store.find(key);
+        if (recording.isEmpty()) {
+            currentUsage.remove();
+            log.warn("Replay : aucun enregistrement pour {} (clé {})", niveau, key);
+            if (failOnMiss) {
+                throw new AiProviderException("Replay : aucun enregistrement pour la requête " + niveau + " (clé " + key + ")", null);
+            }
+            return "";
+        }
+        ReplayRecording r = recording.get();
+        latency.apply(r);
+        currentUsage.set(new UsageInfo(
+                r.promptTokens() + r.completionTokens(),
+                r.costUsd(),
+                r.promptTokens(),
+                r.completionTokens(),
+                r.tokenCostUsd()));
+        return r.response();
+    }
+
+    /**
+     * Modèle de la clé d'enregistrement : ai.replay.model s'il est renseigné, sinon celui du délégué.
+     */
+    @Override
+    public String getModel() {
+        return modelOverride != null && !modelOverride.isBlank() ? modelOverride : getDelegate().getModel();
+    }
+
+    @Override
+    public boolean isStructuredOutput() {
+        return getDelegate().isStructuredOutput();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    private AiProvider getDelegate() {
+        return switch (delegateName.toLowerCase()) {
+            case "anthropic" -> anthropicService;
+            case "ollama" -> ollamaService;
+            default -> openAiService;
+        };
+    }
+
+    @Override
+    public UsageInfo getLastUsageInfo() {
+        return currentUsage.get();
+    }
+
+    @Override
+    public void clearUsageInfo() {
+        currentUsage.remove();
+    }
+}
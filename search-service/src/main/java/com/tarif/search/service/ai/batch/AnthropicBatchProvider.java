@@ -8,11 +8,16 @@ import com.tarif.search.service.ai.batch.models.BatchStatus;
 import com.tarif.search.service.ai.batch.models.SearchRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Implémentation du provider de batch pour Anthropic.
@@ -66,48 +71,28 @@ public class AnthropicBatchProvider implements BatchProvider {
             return null;
         }
 
+        Path bodyFile = null;
         try {
-            // Construire les requêtes individuelles au format Anthropic Batch
-            List<Map<String, Object>> requests = new ArrayList<>();
-
-            for (int i = 0; i < searchRequests.size(); i++) {
-                SearchRequest searchRequest = searchRequests.get(i);
-                String customId = searchRequest.getCustomId() != null
-                    ? searchRequest.getCustomId()
-                    : "search-" + i;
-
-                // Construction du prompt avec le RAG
-                String prompt = AiPrompts.buildUserPrompt(
-                    searchRequest.getRagContext() != null ? searchRequest.getRagContext() : "",
-                    searchRequest.getSearchTerm()
-                );
-
-                Map<String, Object> request = new HashMap<>();
-                request.put("custom_id", customId);
-
-                Map<String, Object> params = new HashMap<>();
-                params.put("model", model);
-                params.put("max_tokens", maxTokens);
-                params.put("temperature", temperature);
-                params.put("system", AiPrompts.getSystemMessage(true, null));
-                params.put("messages", List.of(
-                    Map.of("role", "user", "content", prompt)
-                ));
-
-                request.put("params", params);
-                requests.add(request);
+            // Construire le corps {"requests": [...]} en flux dans un fichier temporaire :
+            // les requêtes sont sérialisées une à une, jamais toutes en mémoire.
+            bodyFile = Files.createTempFile("anthropic-batch-", ".json");
+            try (var out = Files.newOutputStream(bodyFile);
+                 var generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("requests");
+                for (int i = 0; i < searchRequests.size(); i++) {
+                    generator.writeObject(toBatchRequest(searchRequests.get(i), i));
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
             }
 
-            // Créer le batch
-            Map<String, Object> batchRequest = Map.of("requests", requests);
-
             HttpHeaders headers = new HttpHeaders();
             headers.add("x-api-key", apiKey);
             headers.add("Content-Type", "application/json");
             headers.add("anthropic-version", "2023-06-01");
 
-            String body = objectMapper.writeValueAsString(batchRequest);
-            HttpEntity<String> entity = new HttpEntity<>(body, headers);
+            HttpEntity<FileSystemResource> entity = new HttpEntity<>(new FileSystemResource(bodyFile), headers);
 
 
             ResponseEntity<String> response = restTemplate.exchange(
@@ -120,7 +105,7 @@ public class AnthropicBatchProvider implements BatchProvider {
             if (response.getStatusCode().is2xxSuccessful()) {
                 JsonNode responseNode = objectMapper.readTree(response.getBody());
                 String batchId = responseNode.path("id").asText();
-                log.info("Batch créé avec succès: {} ({} requêtes)", batchId, requests.size());
+                log.info("Batch créé avec succès: {} ({} requêtes)", batchId, searchRequests.size());
                 return batchId;
             } else {
                 log.error("Erreur lors de la création du batch - Status: {}", response.getStatusCode());
@@ -130,9 +115,42 @@ public class AnthropicBatchProvider implements BatchProvider {
         } catch (Exception e) {
             log.error("Erreur lors de la création du batch: {}", e.getMessage(), e);
             return null;
+        } finally {
+            deleteQuietly(bodyFile);
         }
     }
 
+    /**
+     * Construit une requête individuelle au format Anthropic Batch.
+     */
+    private Map<String, Object> toBatchRequest(SearchRequest searchRequest, int index) {
+        String customId = searchRequest.getCustomId() != null
+            ? searchRequest.getCustomId()
+            : "search-" + index;
+
+        // Construction du prompt avec le RAG
+        String prompt = AiPrompts.buildUserPrompt(
+            searchRequest.getRagContext() != null ? searchRequest.getRagContext() : "",
+            searchRequest.getSearchTerm()
+        );
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("custom_id", customId);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("model", model);
+        params.put("max_tokens", maxTokens);
+        params.put("temperature", temperature);
+        params.put("system", AiPrompts.getSystemMessage(
+            searchRequest.isWithJustification(), searchRequest.getNiveau()));
+        params.put("messages", List.of(
+            Map.of("role", "user", "content", prompt)
+        ));
+
+        request.put("params", params);
+        return request;
+    }
+
     /**
      * Récupère le statut d'un batch.
      *
@@ -155,10 +173,11 @@ public class AnthropicBatchProvider implements BatchProvider {
 
 
             ResponseEntity<String> response = restTemplate.exchange(
-                batchApiUrl + "/" + batchId,
+                batchApiUrl + "/{batchId}",
                 HttpMethod.GET,
                 entity,
-                String.class
+                String.class,
+                batchId
             );
 
             if (response.getStatusCode().is2xxSuccessful()) {
@@ -200,117 +219,125 @@ public class AnthropicBatchProvider implements BatchProvider {
      * Récupère les résultats d'un batch terminé.
      *
      * @param batchId L'ID du batch
-     * @return La liste des résultats ou une liste vide en cas d'erreur
+     * @return La liste des résultats
+     * @throws BatchResultsUnavailableException si le batch n'est pas terminé ou si le téléchargement échoue
      */
     @Override
     public List<BatchResult> getBatchResults(String batchId) {
+        List<BatchResult> results = new ArrayList<>();
+        streamBatchResults(batchId, results::add);
+        return results;
+    }
+
+    /**
+     * Parcourt les résultats d'un batch terminé, ligne par ligne depuis le flux HTTP.
+     *
+     * @param batchId L'ID du batch
+     * @param consumer Reçoit chaque résultat
+     * @return Le nombre de résultats transmis
+     */
+    @Override
+    public int streamBatchResults(String batchId, Consumer<BatchResult> consumer) {
         // D'abord récupérer le statut pour obtenir resultsUrl
         BatchStatus status = getBatchStatus(batchId);
-        if (status == null || !status.isEnded() || status.getResultsUrl() == null) {
-            if (status != null && !status.isEnded()) {
-                log.info("Batch {} pas encore terminé, statut: {}", batchId, status.getProcessingStatus());
-            }
-            return Collections.emptyList();
+        if (status == null) {
+            throw new BatchResultsUnavailableException("Statut du batch " + batchId + " indisponible");
+        }
+        if (!status.isEnded()) {
+            log.info("Batch {} pas encore terminé, statut: {}", batchId, status.getProcessingStatus());
+            throw new BatchResultsUnavailableException("Batch " + batchId + " pas encore terminé");
+        }
+        if (status.getResultsUrl() == null) {
+            return 0;
         }
 
-        return downloadAndParseResults(status.getResultsUrl());
+        return downloadAndParseResults(status.getResultsUrl(), consumer);
     }
 
     /**
      * Télécharge et parse les résultats depuis l'URL fournie.
-     * Méthode interne extraite pour réutilisabilité.
+     * Le JSONL est lu en flux (gzip accepté) : une seule ligne est en mémoire à la fois.
      */
-    private List<BatchResult> downloadAndParseResults(String resultsUrl) {
+    private int downloadAndParseResults(String resultsUrl, Consumer<BatchResult> consumer) {
         if (apiKey == null || apiKey.isBlank()) {
-            log.error("Clé API Anthropic non configurée");
-            return Collections.emptyList();
-        }
-
-        if (resultsUrl == null || resultsUrl.isBlank()) {
-            log.error("URL de résultats non fournie");
-            return Collections.emptyList();
+            throw new BatchResultsUnavailableException("Clé API Anthropic non configurée");
         }
 
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.add("x-api-key", apiKey);
-            headers.add("anthropic-version", "2023-06-01");
-
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                resultsUrl,
-                HttpMethod.GET,
-                entity,
-                String.class
-            );
-
-            if (response.getStatusCode().is2xxSuccessful()) {
-                List<BatchResult> results = new ArrayList<>();
-                String responseBody = response.getBody();
-
-                if (responseBody == null || responseBody.trim().isEmpty()) {
-                    log.warn("Corps de réponse vide pour les résultats du batch");
-                    return Collections.emptyList();
-                }
-
-                // Les résultats sont en format JSONL (une ligne JSON par résultat)
-                String[] lines = responseBody.split("\n");
-
-                for (String line : lines) {
-                    if (line != null && !line.trim().isEmpty()) {
-                        try {
-                            JsonNode resultNode = objectMapper.readTree(line);
-
-                            String customId = resultNode.path("custom_id").asText();
-                            JsonNode resultContent = resultNode.path("result");
-                            String resultType = resultContent.path("type").asText();
-
-                            BatchResult result = BatchResult.builder()
-                                .customId(customId)
-                                .resultType(resultType)
-                                .provider("anthropic") // Ajout du provider
-                                .build();
-
-                            // Extraire le contenu selon le type de résultat
-                            if ("succeeded".equals(resultType)) {
-                                JsonNode messageContent = resultContent.path("message")
-                                    .path("content");
-                                if (messageContent.isArray() && messageContent.size() > 0) {
-                                    String rawContent = messageContent.get(0).path("text").asText();
-                                    // Nettoyer la réponse : enlever les marqueurs markdown ```json si présents
-                                    String cleanedContent = cleanJsonResponse(rawContent);
-                                    result.setContent(cleanedContent);
-                                }
-
-                                // Extraire les informations d'utilisation
-                                JsonNode usage = resultContent.path("message").path("usage");
-                                result.setInputTokens(usage.path("input_tokens").asInt(0));
-                                result.setOutputTokens(usage.path("output_tokens").asInt(0));
-                            } else if ("errored".equals(resultType)) {
-                                JsonNode error = resultContent.path("error");
-                                result.setErrorType(error.path("type").asText());
-                                result.setErrorMessage(error.path("message").asText());
-                            }
-
-                            results.add(result);
-                        } catch (Exception e) {
-                            log.warn("Erreur lors du parsing d'une ligne de résultat: {}", e.getMessage());
-                        }
+            Integer count = restTemplate.execute(resultsUrl, HttpMethod.GET,
+                request -> {
+                    request.getHeaders().add("x-api-key", apiKey);
+                    request.getHeaders().add("anthropic-version", "2023-06-01");
+                    request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+                },
+                response -> {
+                    if (!response.getStatusCode().is2xxSuccessful()) {
+                        throw new BatchResultsUnavailableException(
+                            "Récupération des résultats en échec - Status: " + response.getStatusCode());
                     }
-                }
+                    // Les résultats sont en format JSONL (une ligne JSON par résultat)
+                    return BatchJsonl.forEachLine(BatchJsonl.body(response),
+                        node -> consumer.accept(parseResult(node)),
+                        e -> log.warn("Erreur lors du parsing d'une ligne de résultat: {}", e.getMessage()));
+                });
+
+            int total = count != null ? count : 0;
+            log.info("Récupéré {} résultats du batch", total);
+            return total;
+
+        } catch (BatchResultsUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Erreur lors de la récupération des résultats: {}", e.getMessage(), e);
+            throw new BatchResultsUnavailableException("Récupération des résultats en échec: " + e.getMessage(), e);
+        }
+    }
 
-                log.info("Récupéré {} résultats du batch", results.size());
-                return results;
-            } else {
-                log.error("Erreur lors de la récupération des résultats - Status: {}", response.getStatusCode());
-                return Collections.emptyList();
+    /**
+     * Parse une ligne de résultat Anthropic en BatchResult.
+     */
+    private BatchResult parseResult(JsonNode resultNode) {
+        String customId = resultNode.path("custom_id").asText();
+        JsonNode resultContent = resultNode.path("result");
+        String resultType = resultContent.path("type").asText();
+
+        BatchResult result = BatchResult.builder()
+            .customId(customId)
+            .resultType(resultType)
+            .provider("anthropic") // Ajout du provider
+            .build();
+
+        // Extraire le contenu selon le type de résultat
+        if ("succeeded".equals(resultType)) {
+            JsonNode messageContent = resultContent.path("message")
+                .path("content");
+            if (messageContent.isArray() && messageContent.size() > 0) {
+                String rawContent = messageContent.get(0).path("text").asText();
+                // Nettoyer la réponse : enlever les marqueurs markdown ```json si présents
+                String cleanedContent = cleanJsonResponse(rawContent);
+                result.setContent(cleanedContent);
             }
 
-        } catch (Exception e) {
-            log.error("Erreur lors de la récupération des résultats: {}", e.getMessage(), e);
-            return Collections.emptyList();
+            // Extraire les informations d'utilisation
+            JsonNode usage = resultContent.path("message").path("usage");
+            result.setInputTokens(usage.path("input_tokens").asInt(0));
+            result.setOutputTokens(usage.path("output_tokens").asInt(0));
+        } else if ("errored".equals(resultType)) {
+            JsonNode error = resultContent.path("error");
+            result.setErrorType(error.path("type").asText());
+            result.setErrorMessage(error.path("message").asText());
+        }
+        return result;
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Impossible de supprimer le fichier temporaire {}: {}", file, e.getMessage());
         }
     }
 
@@ -336,10 +363,11 @@ public class AnthropicBatchProvider implements BatchProvider {
 
 
             ResponseEntity<String> response = restTemplate.exchange(
-                batchApiUrl + "/" + batchId + "/cancel",
+                batchApiUrl + "/{batchId}/cancel",
                 HttpMethod.POST,
                 entity,
-                String.class
+                String.class,
+                batchId
             );
 
             if (response.getStatusCode().is2xxSuccessful()) {
@@ -357,6 +385,22 @@ public class AnthropicBatchProvider implements BatchProvider {
     }
 
 
+    /**
+     * Limite Anthropic Message Batches : 100 000 requêtes par batch.
+     */
+    @Override
+    public int maxRequestsPerBatch() {
+        return 100_000;
+    }
+
+    /**
+     * Limite Anthropic Message Batches : 256 Mo par batch.
+     */
+    @Override
+    public long maxBytesPerBatch() {
+        return 256L * 1024 * 1024;
+    }
+
     /**
      * Nettoie la réponse JSON en enlevant les marqueurs markdown si présents.
      * Claude retourne parfois le JSON enveloppé dans des blocs markdown ```json
@@ -0,0 +1,416 @@
+package com.tarif.search.service.ai.batch;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tarif.search.model.BatchCascadeItem;
+import com.tarif.search.model.BatchCascadeItem.ItemStatus;
+import com.tarif.search.model.BatchCascadeJob;
+import com.tarif.search.model.BatchCascadeJob.JobStatus;
+import com.tarif.search.model.Position;
+import com.tarif.search.repository.BatchCascadeItemRepository;
+import com.tarif.search.repository.BatchCascadeJobRepository;
+import com.tarif.search.service.SearchService;
+import com.tarif.search.service.SearchService.SearchLevel;
+import com.tarif.search.service.ai.AiPrompts;
+import com.tarif.search.service.ai.AiService;
+import com.tarif.search.service.ai.JsonUtils;
+import com.tarif.search.service.ai.batch.models.BatchResult;
+import com.tarif.search.service.ai.batch.models.BatchStatus;
+import com.tarif.search.service.ai.batch.models.SearchRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Cascade de classification complète exécutée côté serveur via l'API batch.
+ *
+ * Chaque article d'un job avance niveau par niveau comme dans {@link SearchService#search} :
+ * Level 0 (sections) pour tous, puis le RAG du niveau suivant est construit à partir des
+ * réponses propres à l'article, et ainsi de suite jusqu'au niveau demandé (POSITIONS10 max).
+ * Un "round" regroupe dans un même batch toutes les requêtes en attente, quel que soit leur niveau.
+ *
+ * L'état (niveau courant, tentatives, réponses par niveau, batch en cours) est persisté :
+ * après un redémarrage, le poller reprend les jobs RUNNING là où ils s'étaient arrêtés.
+ */
+@Service
+@Slf4j
+public class BatchCascadeService {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, List<Position>>> LEVELS_TYPE = new TypeReference<>() {};
+    private static final TypeReference<List<Position>> POSITIONS_TYPE = new TypeReference<>() {};
+
+    private final BatchService batchService;
+    private final SearchService searchService;
+    private final AiService aiService;
+    private final AiPrompts aiPrompts;
+    private final BatchCascadeJobRepository jobRepository;
+    private final BatchCascadeItemRepository itemRepository;
+
+    public BatchCascadeService(
+            BatchService batchService,
+            SearchService searchService,
+            AiService aiService,
+            AiPrompts aiPrompts,
+            BatchCascadeJobRepository jobRepository,
+            BatchCascadeItemRepository itemRepository) {
+        this.batchService = batchService;
+        this.searchService = searchService;
+        this.aiService = aiService;
+        this.aiPrompts = aiPrompts;
+        this.jobRepository = jobRepository;
+        this.itemRepository = itemRepository;
+    }
+
+    /**
+     * Crée un job de cascade et soumet immédiatement le Level 0 de tous les articles.
+     *
+     * @param searchTerms articles à classer, indexés par customId (ordre conservé)
+     * @param maxLevel    niveau le plus fin à atteindre
+     * @param createdBy   identifiant Keycloak de l'appelant (peut être null)
+     * @return le job créé
+     */
+    public BatchCascadeJob startCascade(LinkedHashMap<String, String> searchTerms, SearchLevel maxLevel, String createdBy) {
+        BatchCascadeJob job = new BatchCascadeJob();
+        job.setId("cascade-" + UUID.randomUUID());
+        job.setStatus(JobStatus.RUNNING);
+        job.setMaxLevel(maxLevel.name());
+        job.setProvider(batchService.getActiveProviderName());
+        job.setTotalItems(searchTerms.size());
+        job.setCreatedBy(createdBy);
+        job = jobRepository.save(job);
+
+        List<BatchCascadeItem> items = new ArrayList<>();
+        for (Map.Entry<String, String> entry : searchTerms.entrySet()) {
+            BatchCascadeItem item = new BatchCascadeItem();
+            item.setJobId(job.getId());
+            item.setCustomId(entry.getKey());
+            item.setSearchTerm(entry.getValue());
+            item.setCurrentLevel(SearchLevel.SECTIONS.name());
+            item.setStatus(ItemStatus.PENDING);
+            items.add(item);
+        }
+        itemRepository.saveAll(items);
+
+        log.info("Job cascade {} créé : {} articles, niveau max {}", job.getId(), items.size(), maxLevel);
+        submitPendingItems(job);
+        return job;
+    }
+
+    public Optional<BatchCascadeJob> getJob(String jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    public List<BatchCascadeItem> getItems(String jobId) {
+        return itemRepository.findByJobIdOrderByIdAsc(jobId);
+    }
+
+    /**
+     * Annule un job : les batches en cours chez le provider sont annulés et les articles
+     * non terminés sont clôturés avec les niveaux déjà obtenus.
+     */
+    public boolean cancelCascade(String jobId) {
+        Optional<BatchCascadeJob> jobOpt = jobRepository.findById(jobId);
+        if (jobOpt.isEmpty() || jobOpt.get().getStatus() != JobStatus.RUNNING) {
+            return false;
+        }
+        BatchCascadeJob job = jobOpt.get();
+
+        List<BatchCascadeItem> submitted = itemRepository.findByJobIdAndStatus(jobId, ItemStatus.SUBMITTED);
+        submitted.stream()
+                .map(BatchCascadeItem::getBatchId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(batchService::cancelBatch);
+
+        List<BatchCascadeItem> open = new ArrayList<>(submitted);
+        open.addAll(itemRepository.findByJobIdAndStatus(jobId, ItemStatus.PENDING));
+        for (BatchCascadeItem item : open) {
+            terminer(item, SearchLevel.valueOf(job.getMaxLevel()), false);
+        }
+        itemRepository.saveAll(open);
+
+        job.setStatus(JobStatus.CANCELED);
+        job.setCompletedAt(LocalDateTime.now());
+        jobRepository.save(job);
+        log.info("Job cascade {} annulé ({} articles clôturés)", jobId, open.size());
+        return true;
+    }
+
+    /**
+     * Fait avancer tous les jobs RUNNING : collecte les batches terminés puis soumet le round suivant.
+     * Appelé périodiquement ; reprend naturellement les jobs après un redémarrage.
+     */
+    @Scheduled(fixedDelayString = "${ai.batch.cascade.poll-interval-ms:60000}",
+               initialDelayString = "${ai.batch.cascade.initial-delay-ms:30000}")
+    public void pollRunningJobs() {
+        List<BatchCascadeJob> jobs = jobRepository.findByStatus(JobStatus.RUNNING);
+        if (jobs.isEmpty()) {
+            return;
+        }
+        log.debug("Cascade batch : {} job(s) en cours", jobs.size());
+        for (BatchCascadeJob job : jobs) {
+            try {
+                advanceJob(job);
+            } catch (Exception e) {
+                log.error("Cascade batch {} - erreur lors de l'avancement: {}", job.getId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Un pas d'avancement d'un job : intègre les résultats des batches terminés,
+     * soumet les articles en attente, clôt le job si tous les articles sont terminés.
+     */
+    public void advanceJob(BatchCascadeJob job) {
+        List<BatchCascadeItem> submitted = itemRepository.findByJobIdAndStatus(job.getId(), ItemStatus.SUBMITTED);
+        Map<String, List<BatchCascadeItem>> parBatch = submitted.stream()
+                .filter(item -> item.getBatchId() != null)
+                .collect(Collectors.groupingBy(BatchCascadeItem::getBatchId));
+
+        SearchLevel maxLevel = SearchLevel.valueOf(job.getMaxLevel());
+        for (Map.Entry<String, List<BatchCascadeItem>> entry : parBatch.entrySet()) {
+            collectBatch(entry.getKey(), entry.getValue(), maxLevel);
+        }
+
+        submitPendingItems(job);
+    }
+
+    private void collectBatch(String batchId, List<BatchCascadeItem> items, SearchLevel maxLevel) {
+        BatchStatus status = batchService.getBatchStatus(batchId);
+        if (status == null || !status.isEnded()) {
+            return;
+        }
+
+        Map<String, BatchResult> resultats = new HashMap<>();
+        for (BatchResult result : batchService.getBatchResults(batchId)) {
+            resultats.put(result.getCustomId(), result);
+        }
+        log.info("Cascade batch - batch {} terminé : {} résultats pour {} articles", batchId, resultats.size(), items.size());
+
+        for (BatchCascadeItem item : items) {
+            applyAnswer(item, parseReponse(resultats.get(item.getCustomId())), maxLevel);
+        }
+        itemRepository.saveAll(items);
+    }
+
+    /**
+     * Intègre la réponse d'un niveau pour un article et calcule son état suivant.
+     * Mêmes règles que {@link SearchService#search} : retries sur réponse vide,
+     * expansion des codes chapitre au Level 2, repli Level 3 → Level 2 et Level 4 → Level 3.
+     */
+    void applyAnswer(BatchCascadeItem item, List<Position> positions, SearchLevel maxLevel) {
+        SearchLevel level = SearchLevel.valueOf(item.getCurrentLevel());
+        item.setBatchId(null);
+
+        if (positions.isEmpty()) {
+            if (item.getAttempts() < maxTentatives(level)) {
+                item.setStatus(ItemStatus.PENDING);
+                return;
+            }
+            switch (level) {
+                case SECTIONS, CHAPITRES, POSITIONS4 -> {
+                    log.info("Cascade batch - {} : aucun résultat au niveau {}, arrêt", item.getCustomId(), level);
+                    terminer(item, maxLevel, true);
+                }
+                case POSITIONS6 -> {
+                    // Repli : les positions4 tiennent lieu de résultat Level 3
+                    Map<String, List<Position>> levels = readLevels(item);
+                    levels.put(SearchLevel.POSITIONS6.name(), new ArrayList<>(levels.getOrDefault(SearchLevel.POSITIONS4.name(), List.of())));
+                    writeLevels(item, levels);
+                    nextLevelOrFinish(item, level, maxLevel);
+                }
+                case POSITIONS10 -> terminer(item, maxLevel, false);
+            }
+            return;
+        }
+
+        List<Position> retenues = new ArrayList<>(positions);
+        if (level == SearchLevel.POSITIONS4) {
+            retenues = searchService.expandChapterCodesToPosition4(retenues);
+        }
+        searchService.enrichWithDescriptions(retenues, level);
+
+        Map<String, List<Position>> levels = readLevels(item);
+        levels.put(level.name(), retenues);
+        writeLevels(item, levels);
+        nextLevelOrFinish(item, level, maxLevel);
+    }
+
+    private void nextLevelOrFinish(BatchCascadeItem item, SearchLevel level, SearchLevel maxLevel) {
+        if (level.ordinal() >= maxLevel.ordinal()) {
+            terminer(item, maxLevel, false);
+            return;
+        }
+        item.setCurrentLevel(SearchLevel.values()[level.ordinal() + 1].name());
+        item.setAttempts(0);
+        item.setStatus(ItemStatus.PENDING);
+    }
+
+    /**
+     * Soumet dans un seul batch toutes les requêtes en attente du job.
+     * Les RAG identiques (Level 0 notamment) ne sont construits qu'une fois par round.
+     */
+    private void submitPendingItems(BatchCascadeJob job) {
+        List<BatchCascadeItem> pending = itemRepository.findByJobIdAndStatus(job.getId(), ItemStatus.PENDING);
+        SearchLevel maxLevel = SearchLevel.valueOf(job.getMaxLevel());
+
+        Map<String, String> ragCache = new HashMap<>();
+        List<SearchRequest> requests = new ArrayList<>();
+        List<BatchCascadeItem> aSoumettre = new ArrayList<>();
+        List<BatchCascadeItem> termines = new ArrayList<>();
+
+        for (BatchCascadeItem item : pending) {
+            SearchLevel level = SearchLevel.valueOf(item.getCurrentLevel());
+            List<Position> selection = level == SearchLevel.SECTIONS
+                    ? null
+                    : readLevels(item).getOrDefault(SearchLevel.values()[level.ordinal() - 1].name(), List.of());
+
+            String cle = level.name() + "|" + (selection == null ? "" : selection.stream().map(Position::getCode).collect(Collectors.joining(",")));
+            String ragContext = ragCache.get(cle);
+            if (ragContext == null) {
+                List<Position> rag = searchService.buildRag(level, selection);
+                // Garde-fous identiques à la cascade synchrone
+                if ((level == SearchLevel.POSITIONS6 && rag.size() > SearchService.MAX_RAG_POSITIONS6)
+                        || (level == SearchLevel.POSITIONS10 && rag.isEmpty())) {
+                    log.info("Cascade batch - {} : RAG {} ({} items) non exploitable, arrêt au niveau précédent",
+                            item.getCustomId(), level, rag.size());
+                    terminer(item, maxLevel, false);
+                    termines.add(item);
+                    continue;
+                }
+                ragContext = aiService.creerContexteRAG(level.toString(), rag).toString();
+                ragCache.put(cle, ragContext);
+            }
+
+            requests.add(SearchRequest.builder()
+                    .customId(item.getCustomId())
+                    .searchTerm(item.getSearchTerm())
+                    .ragContext(ragContext)
+                    .niveau(level.toString())
+                    .withJustification(level == maxLevel || level == SearchLevel.POSITIONS10)
+                    .build());
+            aSoumettre.add(item);
+        }
+
+        if (!termines.isEmpty()) {
+            itemRepository.saveAll(termines);
+        }
+
+        if (!requests.isEmpty()) {
+            String batchId = batchService.createBatch(requests);
+            if (batchId == null) {
+                // Les articles restent PENDING : nouvel essai au prochain passage du poller
+                log.error("Cascade batch {} - échec de soumission du round {} ({} requêtes)",
+                        job.getId(), job.getRound() + 1, requests.size());
+                job.setErrorMessage("Échec de soumission du batch au provider " + job.getProvider());
+                jobRepository.save(job);
+                return;
+            }
+            for (BatchCascadeItem item : aSoumettre) {
+                item.setStatus(ItemStatus.SUBMITTED);
+                item.setBatchId(batchId);
+                item.setAttempts(item.getAttempts() + 1);
+            }
+            itemRepository.saveAll(aSoumettre);
+            job.setRound(job.getRound() + 1);
+            job.setErrorMessage(null);
+            log.info("Cascade batch {} - round {} soumis : batch {} ({} requêtes)",
+                    job.getId(), job.getRound(), batchId, requests.size());
+        }
+
+        if (itemRepository.countByJobIdAndStatus(job.getId(), ItemStatus.PENDING) == 0
+                && itemRepository.countByJobIdAndStatus(job.getId(), ItemStatus.SUBMITTED) == 0) {
+            job.setStatus(JobStatus.COMPLETED);
+            job.setCompletedAt(LocalDateTime.now());
+            log.info("Cascade batch {} terminé après {} round(s)", job.getId(), job.getRound());
+        }
+        jobRepository.save(job);
+    }
+
+    /**
+     * Clôt un article et calcule son résultat final agrégé.
+     * Cascade interrompue aux niveaux 0-2 → résultat vide, comme la recherche synchrone.
+     * Sinon : tous les niveaux concaténés (mode cascade) ou le niveau le plus fin obtenu.
+     */
+    private void terminer(BatchCascadeItem item, SearchLevel maxLevel, boolean echec) {
+        List<Position> resultat = new ArrayList<>();
+        if (!echec) {
+            Map<String, List<Position>> levels = readLevels(item);
+            if (aiPrompts.getDefTheme().isWithCascade()) {
+                for (SearchLevel level : SearchLevel.values()) {
+                    if (level.ordinal() <= maxLevel.ordinal()) {
+                        resultat.addAll(levels.getOrDefault(level.name(), List.of()));
+                    }
+                }
+            } else {
+                for (int i = maxLevel.ordinal(); i >= 0 && resultat.isEmpty(); i--) {
+                    resultat.addAll(levels.getOrDefault(SearchLevel.values()[i].name(), List.of()));
+                }
+            }
+        }
+        item.setStatus(ItemStatus.DONE);
+        item.setBatchId(null);
+        try {
+            item.setResultJson(objectMapper.writeValueAsString(resultat));
+        } catch (Exception e) {
+            log.error("Cascade batch - sérialisation du résultat de {} impossible: {}", item.getCustomId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Résultat final d'un article terminé (liste vide si en cours ou sans réponse).
+     */
+    public List<Position> getResult(BatchCascadeItem item) {
+        if (item.getResultJson() == null || item.getResultJson().isBlank()) {
+            return new ArrayList<>();
+        }
+        try {
+            return objectMapper.readValue(item.getResultJson(), POSITIONS_TYPE);
+        } catch (Exception e) {
+            log.warn("Cascade batch - résultat illisible pour {}: {}", item.getCustomId(), e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private List<Position> parseReponse(BatchResult result) {
+        if (result == null || !result.isSuccess() || result.getContent() == null || result.getContent().isBlank()) {
+            return new ArrayList<>();
+        }
+        try {
+            return JsonUtils.parsePositions(result.getContent());
+        } catch (Exception e) {
+            log.warn("Cascade batch - réponse non exploitable pour {}: {}", result.getCustomId(), e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private static int maxTentatives(SearchLevel level) {
+        // Level 0 : 3 tentatives car c'est le point d'entrée critique (cf. SearchService)
+        return level == SearchLevel.SECTIONS ? 3 : 2;
+    }
+
+    private Map<String, List<Position>> readLevels(BatchCascadeItem item) {
+        if (item.getLevelsJson() == null || item.getLevelsJson().isBlank()) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            return new LinkedHashMap<>(objectMapper.readValue(item.getLevelsJson(), LEVELS_TYPE));
+        } catch (Exception e) {
+            log.warn("Cascade batch - état illisible pour {}: {}", item.getCustomId(), e.getMessage());
+            return new LinkedHashMap<>();
+        }
+    }
+
+    private void writeLevels(BatchCascadeItem item, Map<String, List<Position>> levels) {
+        try {
+            item.setLevelsJson(objectMapper.writeValueAsString(levels));
+        } catch (Exception e) {
+            log.error("Cascade batch - sérialisation de l'état de {} impossible: {}", item.getCustomId(), e.getMessage());
+        }
+    }
+}
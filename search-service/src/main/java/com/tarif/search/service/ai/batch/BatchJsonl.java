@@ -0,0 +1,104 @@
+package com.tarif.search.service.ai.batch;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Lecture / écriture JSONL en flux pour les fichiers batch.
+ *
+ * Les fichiers d'entrée et de résultats peuvent contenir des dizaines de milliers de lignes :
+ * on ne matérialise jamais le fichier entier en mémoire, une seule ligne est vivante à la fois.
+ */
+final class BatchJsonl {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    private BatchJsonl() {
+    }
+
+    /**
+     * Écrit les lignes dans un fichier temporaire JSONL (gzip optionnel).
+     * L'appelant est responsable de la suppression du fichier.
+     */
+    static Path writeToTempFile(Iterator<?> lines, boolean gzip) throws IOException {
+        Path file = Files.createTempFile("batch-", gzip ? ".jsonl.gz" : ".jsonl");
+        try (OutputStream out = openOutput(file, gzip)) {
+            write(out, lines);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Sérialise chaque élément sur sa propre ligne, sans tampon intermédiaire.
+     * Le flux de l'appelant n'est pas fermé.
+     */
+    static void write(OutputStream out, Iterator<?> lines) throws IOException {
+        try (SequenceWriter writer = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .writeValues(out)) {
+            while (lines.hasNext()) {
+                writer.write(lines.next());
+            }
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Parcourt un flux JSONL ligne par ligne. Une ligne invalide est signalée au handler
+     * d'erreur sans interrompre la lecture des suivantes.
+     *
+     * @return le nombre de lignes lues avec succès
+     */
+    static int forEachLine(InputStream in, Consumer<JsonNode> consumer, Consumer<Exception> onError) throws IOException {
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode node;
+                try {
+                    node = objectMapper.readTree(line);
+                } catch (Exception e) {
+                    onError.accept(e);
+                    continue;
+                }
+                consumer.accept(node);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Corps de réponse HTTP décompressé si le serveur a répondu en gzip.
+     */
+    static InputStream body(ClientHttpResponse response) throws IOException {
+        InputStream body = response.getBody();
+        String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        return encoding != null && encoding.toLowerCase().contains("gzip") ? new GZIPInputStream(body) : body;
+    }
+
+    private static OutputStream openOutput(Path file, boolean gzip) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file));
+        return gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+    }
+}
@@ -5,6 +5,7 @@ import com.tarif.search.service.ai.batch.models.BatchStatus;
 import com.tarif.search.service.ai.batch.models.SearchRequest;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface pour les providers de traitement par lots (Batch API).
@@ -29,10 +30,26 @@ public interface BatchProvider {
     /**
      * Récupère les résultats d'un batch terminé.
      * @param batchId ID du batch
-     * @return Liste des résultats, vide si batch pas terminé
+     * @return Liste des résultats
+     * @throws BatchResultsUnavailableException si le statut ou les résultats ne peuvent pas être obtenus
      */
     List<BatchResult> getBatchResults(String batchId);
 
+    /**
+     * Parcourt les résultats d'un batch terminé un par un, sans matérialiser la liste complète.
+     * Les implémentations lisent le fichier de résultats en flux, ligne par ligne.
+     * @param batchId ID du batch
+     * @param consumer Reçoit chaque résultat dans l'ordre du fichier
+     * @return Nombre de résultats transmis (0 si le batch est terminé sans fichier de résultats)
+     * @throws BatchResultsUnavailableException si le statut ou les résultats ne peuvent pas être obtenus
+     *         (batch pas encore terminé, erreur de téléchargement) : rien ne permet alors de conclure à 0 résultat
+     */
+    default int streamBatchResults(String batchId, Consumer<BatchResult> consumer) {
+        List<BatchResult> results = getBatchResults(batchId);
+        results.forEach(consumer);
+        return results.size();
+    }
+
     /**
      * Annule un batch en cours.
      * @param batchId ID du batch
@@ -47,4 +64,19 @@ public interface BatchProvider {
     default boolean supportsBatching() {
         return true;
     }
+
+    /**
+     * Nombre maximal de requêtes acceptées par le provider dans un seul batch.
+     * Au-delà, BatchService découpe le lot en plusieurs batches.
+     */
+    default int maxRequestsPerBatch() {
+        return 10_000;
+    }
+
+    /**
+     * Taille maximale (en octets) du contenu d'un batch accepté par le provider.
+     */
+    default long maxBytesPerBatch() {
+        return 100L * 1024 * 1024;
+    }
 }
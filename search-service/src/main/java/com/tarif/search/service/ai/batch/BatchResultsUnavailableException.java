@@ -0,0 +1,16 @@
+package com.tarif.search.service.ai.batch;
+
+/**
+ * Résultats d'un batch momentanément indisponibles : statut illisible, batch pas encore terminé
+ * ou téléchargement du fichier de résultats en échec. À distinguer d'un batch terminé sans résultat :
+ * l'appelant doit réessayer plus tard plutôt que conclure à un ensemble vide.
+ */
+public class BatchResultsUnavailableException extends RuntimeException {
+    public BatchResultsUnavailableException(String message) {
+        super(message);
+    }
+
+    public BatchResultsUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,66 +1,363 @@
 package com.tarif.search.service.ai.batch;
 
+import com.tarif.search.model.BatchShard;
+import com.tarif.search.repository.BatchShardRepository;
+import com.tarif.search.service.ai.AiPrompts;
 import com.tarif.search.service.ai.batch.models.BatchResult;
 import com.tarif.search.service.ai.batch.models.BatchStatus;
 import com.tarif.search.service.ai.batch.models.SearchRequest;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 /**
  * Service orchestrateur pour les opérations batch.
  * Route les requêtes vers le provider approprié selon la configuration ai.provider.
  * Réplique le pattern de AiService pour la couche batch.
+ *
+ * Les lots dépassant les limites du provider (nombre de requêtes ou taille JSONL) sont découpés
+ * en plusieurs batches soumis en parallèle et suivis sous un ID logique unique ("multi-...").
+ * Statuts et résultats sont fusionnés de manière transparente pour l'appelant.
  */
 @Service
 @Slf4j
 public class BatchService {
 
+    static final String MULTI_BATCH_PREFIX = "multi-";
+
+    /** Enveloppe JSON d'une ligne (custom_id, method, url, model, paramètres...). */
+    private static final long REQUEST_OVERHEAD_BYTES = 512;
+
+    /** Marge sur la limite de taille : l'échappement JSON grossit légèrement le contenu. */
+    private static final double BYTES_SAFETY_RATIO = 0.9;
+
     private final AnthropicBatchProvider anthropicBatchProvider;
     private final OpenAiBatchProvider openAiBatchProvider;
+    private final OllamaBatchProvider ollamaBatchProvider;
+    private final ReplayBatchProvider replayBatchProvider;
+    private final BatchShardRepository shardRepository;
     private final String activeProvider;
+    private final int maxRequestsPerBatch;
+    private final ExecutorService shardExecutor;
+
+    /** Taille du system message par (justification, niveau) : identique pour toutes les requêtes. */
+    private final Map<String, Long> systemMessageBytes = new ConcurrentHashMap<>();
 
     public BatchService(
             AnthropicBatchProvider anthropicBatchProvider,
             OpenAiBatchProvider openAiBatchProvider,
-            @Value("${ai.provider:openai}") String activeProvider) {
+            OllamaBatchProvider ollamaBatchProvider,
+            ReplayBatchProvider replayBatchProvider,
+            BatchShardRepository shardRepository,
+            @Value("${ai.provider:openai}") String activeProvider,
+            @Value("${ai.batch.max-requests-per-batch:10000}") int maxRequestsPerBatch,
+            @Value("${ai.batch.shard-parallelism:4}") int shardParallelism) {
         this.anthropicBatchProvider = anthropicBatchProvider;
         this.openAiBatchProvider = openAiBatchProvider;
+        this.ollamaBatchProvider = ollamaBatchProvider;
+        this.replayBatchProvider = replayBatchProvider;
+        this.shardRepository = shardRepository;
         this.activeProvider = activeProvider;
+        this.maxRequestsPerBatch = maxRequestsPerBatch;
+        this.shardExecutor = Executors.newFixedThreadPool(Math.max(1, shardParallelism));
 
-        log.info("BatchService initialisé avec provider: {}", activeProvider);
+        log.info("BatchService initialisé avec provider: {} (max {} requêtes par batch, {} soumissions parallèles)",
+                activeProvider, maxRequestsPerBatch, shardParallelism);
 
-        if (!getActiveProvider().supportsBatching()) {
+        if (!isBatchingSupported()) {
             log.warn("Provider {} ne supporte pas les opérations batch", activeProvider);
         }
     }
 
+    @PreDestroy
+    void shutdown() {
+        shardExecutor.shutdown();
+    }
+
+    /**
+     * Crée un batch. Si le lot dépasse les limites du provider, il est découpé en shards
+     * soumis en parallèle ; l'ID retourné est alors un ID logique regroupant tous les shards.
+     *
+     * @return l'ID du batch (provider ou logique), ou null en cas d'erreur
+     * @throws IllegalArgumentException si deux requêtes portent le même customId
+     */
     public String createBatch(List<SearchRequest> requests) {
         validateBatchingSupport();
-        return getActiveProvider().createBatch(requests);
+        BatchProvider provider = getActiveProvider();
+
+        if (requests == null || requests.isEmpty()) {
+            return provider.createBatch(requests);
+        }
+
+        // Les résultats sont rendus par customId : un doublon rendrait deux réponses indiscernables
+        Set<String> fournis = new HashSet<>();
+        for (SearchRequest request : requests) {
+            if (hasCustomId(request) && !fournis.add(request.getCustomId())) {
+                throw new IllegalArgumentException("customId en double " + request.getCustomId());
+            }
+        }
+
+        // customId global : les providers numérotent sinon "search-i" par shard, ce qui créerait des doublons.
+        // Un ID attribué ne reprend jamais un customId fourni par l'appelant.
+        List<SearchRequest> numerotees = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            SearchRequest request = requests.get(i);
+            if (!hasCustomId(request)) {
+                String customId = "search-" + i;
+                for (int n = 2; fournis.contains(customId); n++) {
+                    customId = "search-" + i + "-" + n;
+                }
+                request = request.toBuilder().customId(customId).build();
+            }
+            numerotees.add(request);
+        }
+
+        int maxCount = Math.min(maxRequestsPerBatch, provider.maxRequestsPerBatch());
+        long maxBytes = (long) (provider.maxBytesPerBatch() * BYTES_SAFETY_RATIO);
+        List<List<SearchRequest>> shards = planShards(numerotees, maxCount, maxBytes, this::estimateRequestBytes);
+
+        if (shards.size() == 1) {
+            return provider.createBatch(shards.get(0));
+        }
+
+        return createShardedBatch(provider, shards);
+    }
+
+    private static boolean hasCustomId(SearchRequest request) {
+        return request.getCustomId() != null && !request.getCustomId().isBlank();
+    }
+
+    private String createShardedBatch(BatchProvider provider, List<List<SearchRequest>> shards) {
+        String logicalId = MULTI_BATCH_PREFIX + UUID.randomUUID();
+        log.info("Batch logique {} : {} requêtes découpées en {} shards",
+                logicalId, shards.stream().mapToInt(List::size).sum(), shards.size());
+
+        List<CompletableFuture<String>> futures = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> provider.createBatch(shard), shardExecutor))
+                .toList();
+
+        List<String> batchIds = futures.stream()
+                .map(f -> {
+                    try {
+                        return f.join();
+                    } catch (Exception e) {
+                        log.error("Échec de soumission d'un shard de {}: {}", logicalId, e.getMessage());
+                        return null;
+                    }
+                })
+                .toList();
+
+        if (batchIds.contains(null)) {
+            // Tout ou rien : un batch logique partiel serait incohérent pour l'appelant
+            log.error("Batch logique {} : {} shard(s) en échec, annulation des shards créés",
+                    logicalId, batchIds.stream().filter(Objects::isNull).count());
+            batchIds.stream().filter(Objects::nonNull).forEach(provider::cancelBatch);
+            return null;
+        }
+
+        List<BatchShard> records = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            BatchShard record = new BatchShard();
+            record.setLogicalId(logicalId);
+            record.setShardIndex(i);
+            record.setBatchId(batchIds.get(i));
+            record.setProvider(activeProvider);
+            record.setRequestCount(shards.get(i).size());
+            records.add(record);
+        }
+        shardRepository.saveAll(records);
+
+        log.info("Batch logique {} créé : shards {}", logicalId, batchIds);
+        return logicalId;
     }
 
     public BatchStatus getBatchStatus(String batchId) {
         validateBatchingSupport();
-        return getActiveProvider().getBatchStatus(batchId);
+        if (!isMultiBatch(batchId)) {
+            return getActiveProvider().getBatchStatus(batchId);
+        }
+
+        List<BatchShard> shards = shardRepository.findByLogicalIdOrderByShardIndexAsc(batchId);
+        if (shards.isEmpty()) {
+            return null;
+        }
+
+        List<BatchStatus> statuses = new ArrayList<>();
+        for (BatchShard shard : shards) {
+            BatchStatus status = getActiveProvider().getBatchStatus(shard.getBatchId());
+            if (status == null) {
+                log.warn("Statut indisponible pour le shard {} de {}", shard.getBatchId(), batchId);
+            }
+            statuses.add(status);
+        }
+        return mergeStatuses(batchId, statuses);
     }
 
     public List<BatchResult> getBatchResults(String batchId) {
         validateBatchingSupport();
-        return getActiveProvider().getBatchResults(batchId);
+        if (!isMultiBatch(batchId)) {
+            return getActiveProvider().getBatchResults(batchId);
+        }
+
+        List<BatchResult> results = new ArrayList<>();
+        for (BatchShard shard : shardRepository.findByLogicalIdOrderByShardIndexAsc(batchId)) {
+            results.addAll(getActiveProvider().getBatchResults(shard.getBatchId()));
+        }
+        return results;
+    }
+
+    /**
+     * Parcourt les résultats en flux (shard par shard pour un ID logique) sans construire la liste complète.
+     *
+     * @return Le nombre de résultats transmis au consumer
+     */
+    public int streamBatchResults(String batchId, Consumer<BatchResult> consumer) {
+        validateBatchingSupport();
+        if (!isMultiBatch(batchId)) {
+            return getActiveProvider().streamBatchResults(batchId, consumer);
+        }
+
+        int count = 0;
+        for (BatchShard shard : shardRepository.findByLogicalIdOrderByShardIndexAsc(batchId)) {
+            count += getActiveProvider().streamBatchResults(shard.getBatchId(), consumer);
+        }
+        return count;
     }
 
     public boolean cancelBatch(String batchId) {
         validateBatchingSupport();
-        return getActiveProvider().cancelBatch(batchId);
+        if (!isMultiBatch(batchId)) {
+            return getActiveProvider().cancelBatch(batchId);
+        }
+
+        List<BatchShard> shards = shardRepository.findByLogicalIdOrderByShardIndexAsc(batchId);
+        boolean success = !shards.isEmpty();
+        for (BatchShard shard : shards) {
+            success &= getActiveProvider().cancelBatch(shard.getBatchId());
+        }
+        return success;
+    }
+
+    /**
+     * Découpe une liste de requêtes en shards respectant à la fois un nombre maximal de requêtes
+     * et une taille maximale estimée. L'ordre des requêtes est conservé.
+     */
+    static List<List<SearchRequest>> planShards(List<SearchRequest> requests, int maxCount, long maxBytes,
+                                                ToLongFunction<SearchRequest> sizer) {
+        List<List<SearchRequest>> shards = new ArrayList<>();
+        List<SearchRequest> courant = new ArrayList<>();
+        long octets = 0;
+
+        for (SearchRequest request : requests) {
+            long taille = sizer.applyAsLong(request);
+            if (!courant.isEmpty() && (courant.size() >= maxCount || octets + taille > maxBytes)) {
+                shards.add(courant);
+                courant = new ArrayList<>();
+                octets = 0;
+            }
+            courant.add(request);
+            octets += taille;
+        }
+
+        if (!courant.isEmpty()) {
+            shards.add(courant);
+        }
+        return shards;
+    }
+
+    /**
+     * Fusionne les statuts des shards : compteurs additionnés, "ended" seulement quand
+     * tous les shards sont terminés. resultsUrl porte l'ID logique une fois les résultats disponibles.
+     */
+    static BatchStatus mergeStatuses(String logicalId, List<BatchStatus> statuses) {
+        if (statuses.stream().allMatch(Objects::isNull)) {
+            return null;
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        boolean allEnded = true;
+        boolean anyResults = false;
+        String createdAt = null;
+        String endedAt = null;
+        String provider = null;
+
+        for (BatchStatus status : statuses) {
+            if (status == null) {
+                allEnded = false;
+                continue;
+            }
+            if (status.getRequestCounts() != null) {
+                status.getRequestCounts().forEach((key, value) -> counts.merge(key, value, Integer::sum));
+            }
+            allEnded &= status.isEnded();
+            anyResults |= status.getResultsUrl() != null;
+            if (createdAt == null) {
+                createdAt = status.getCreatedAt();
+            }
+            if (status.getEndedAt() != null && (endedAt == null || status.getEndedAt().compareTo(endedAt) > 0)) {
+                endedAt = status.getEndedAt();
+            }
+            provider = status.getProvider();
+        }
+
+        return BatchStatus.builder()
+                .id(logicalId)
+                .processingStatus(allEnded ? "ended" : "in_progress")
+                .requestCounts(counts)
+                .createdAt(createdAt)
+                .endedAt(allEnded ? endedAt : null)
+                .resultsUrl(allEnded && anyResults ? logicalId : null)
+                .provider(provider)
+                .build();
+    }
+
+    /**
+     * Estime la taille d'une ligne JSONL : system message + prompt utilisateur + enveloppe.
+     */
+    long estimateRequestBytes(SearchRequest request) {
+        String cle = request.isWithJustification() + "|" + request.getNiveau();
+        long system = systemMessageBytes.computeIfAbsent(cle, k ->
+                (long) AiPrompts.getSystemMessage(request.isWithJustification(), request.getNiveau())
+                        .getBytes(StandardCharsets.UTF_8).length);
+        String prompt = AiPrompts.buildUserPrompt(
+                request.getRagContext() != null ? request.getRagContext() : "",
+                request.getSearchTerm());
+        return system + prompt.getBytes(StandardCharsets.UTF_8).length + REQUEST_OVERHEAD_BYTES;
+    }
+
+    private static boolean isMultiBatch(String batchId) {
+        return batchId != null && batchId.startsWith(MULTI_BATCH_PREFIX);
+    }
+
+    /**
+     * Indique si le provider actif supporte les opérations batch (sans lever d'exception).
+     */
+    public boolean isBatchingSupported() {
+        try {
+            return getActiveProvider().supportsBatching();
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
     }
 
     private BatchProvider getActiveProvider() {
         return switch (activeProvider.toLowerCase()) {
             case "anthropic" -> anthropicBatchProvider;
             case "openai" -> openAiBatchProvider;
+            // Pas d'API batch chez Ollama : exécution locale via une file persistante
+            case "ollama" -> ollamaBatchProvider;
+            // Enregistrement / rejeu hors ligne (benchmarks, tests de non-régression)
+            case "replay" -> replayBatchProvider;
             default -> throw new UnsupportedOperationException(
                 "Provider " + activeProvider + " ne supporte pas les opérations batch"
             );
@@ -0,0 +1,482 @@
+package com.tarif.search.service.ai.batch;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tarif.search.event.BatchCompletedEvent;
+import com.tarif.search.event.SearchEventPublisher;
+import com.tarif.search.model.BatchTracking;
+import com.tarif.search.model.BatchTracking.TrackingState;
+import com.tarif.search.model.BatchTrackingResult;
+import com.tarif.search.repository.BatchTrackingRepository;
+import com.tarif.search.repository.BatchTrackingResultRepository;
+import com.tarif.search.service.ai.batch.models.BatchResult;
+import com.tarif.search.service.ai.batch.models.BatchStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Suivi en arrière-plan des batches soumis par les clients.
+ *
+ * Un seul poller interroge le provider pour chaque batch (intervalle adaptatif), met en cache
+ * le dernier statut, stocke les résultats une fois le batch terminé puis notifie la fin
+ * via RabbitMQ et, si demandé, un webhook. Les appels clients de statut / résultats deviennent
+ * des lectures locales : la charge sur le provider est proportionnelle au nombre de batches,
+ * plus au nombre de clients × polls.
+ *
+ * Webhooks : refusés tant que ai.batch.tracking.webhook-allowed-hosts est vide. L'hôte est résolu
+ * à l'enregistrement puis avant chaque appel ; une adresse interne (boucle locale, réseau privé,
+ * lien local dont 169.254.169.254, multicast) est refusée même si le nom est autorisé.
+ */
+@Service
+@Slf4j
+public class BatchTrackingService {
+
+    private static final int RESULT_FLUSH_SIZE = 500;
+    private static final TypeReference<Map<String, Integer>> COUNTS_TYPE = new TypeReference<>() {};
+
+    private final BatchService batchService;
+    private final BatchTrackingRepository trackingRepository;
+    private final BatchTrackingResultRepository resultRepository;
+    private final SearchEventPublisher eventPublisher;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final boolean enabled;
+    private final int minIntervalSeconds;
+    private final int maxIntervalSeconds;
+    private final int maxAgeHours;
+    private final int webhookMaxAttempts;
+    private final Set<String> webhookAllowedHosts;
+
+    public BatchTrackingService(
+            BatchService batchService,
+            BatchTrackingRepository trackingRepository,
+            BatchTrackingResultRepository resultRepository,
+            SearchEventPublisher eventPublisher,
+            RestTemplate restTemplate,
+            @Value("${ai.batch.tracking.enabled:true}") boolean enabled,
+            @Value("${ai.batch.tracking.min-interval-seconds:30}") int minIntervalSeconds,
+            @Value("${ai.batch.tracking.max-interval-seconds:600}") int maxIntervalSeconds,
+            @Value("${ai.batch.tracking.max-age-hours:48}") int maxAgeHours,
+            @Value("${ai.batch.tracking.webhook-max-attempts:5}") int webhookMaxAttempts,
+            @Value("${ai.batch.tracking.webhook-allowed-hosts:}") List<String> webhookAllowedHosts) {
+        this.batchService = batchService;
+        this.trackingRepository = trackingRepository;
+        this.resultRepository = resultRepository;
+        this.eventPublisher = eventPublisher;
+        this.restTemplate = restTemplate;
+        this.enabled = enabled;
+        this.minIntervalSeconds = Math.max(1, minIntervalSeconds);
+        this.maxIntervalSeconds = Math.max(this.minIntervalSeconds, maxIntervalSeconds);
+        this.maxAgeHours = maxAgeHours;
+        this.webhookMaxAttempts = webhookMaxAttempts;
+        this.webhookAllowedHosts = new HashSet<>();
+        for (String host : webhookAllowedHosts) {
+            if (host != null && !host.isBlank()) {
+                this.webhookAllowedHosts.add(host.trim().toLowerCase());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enregistre un batch fraîchement soumis pour le suivi en arrière-plan.
+     *
+     * @param webhookUrl URL appelée (POST JSON) à la fin du batch, ou null
+     */
+    public void register(String batchId, int requestCount, String createdBy, String webhookUrl) {
+        if (!enabled) {
+            return;
+        }
+        BatchTracking tracking = new BatchTracking();
+        tracking.setBatchId(batchId);
+        tracking.setProvider(batchService.getActiveProviderName());
+        tracking.setRequestCount(requestCount);
+        tracking.setCreatedBy(createdBy);
+        tracking.setWebhookUrl(webhookUrl);
+        tracking.setPollIntervalSeconds(minIntervalSeconds);
+        tracking.setNextPollAt(LocalDateTime.now().plusSeconds(minIntervalSeconds));
+        trackingRepository.save(tracking);
+        log.info("Suivi du batch {} activé ({} requêtes{})", batchId, requestCount,
+                webhookUrl != null ? ", webhook" : "");
+    }
+
+    /**
+     * Vérifie qu'une URL de webhook est acceptable : http/https, hôte autorisé, adresse publique.
+     *
+     * @throws IllegalArgumentException si l'URL est refusée
+     */
+    public void validateWebhookUrl(String webhookUrl) {
+        URI uri;
+        try {
+            uri = URI.create(webhookUrl);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("URL de webhook invalide");
+        }
+        String scheme = uri.getScheme();
+        if (!"https".equalsIgnoreCase(scheme) && !"http".equalsIgnoreCase(scheme) || uri.getHost() == null) {
+            throw new IllegalArgumentException("URL de webhook invalide : http(s) uniquement");
+        }
+        if (webhookAllowedHosts.isEmpty()) {
+            throw new IllegalArgumentException("Webhooks désactivés : aucun hôte autorisé");
+        }
+        String host = uri.getHost().toLowerCase();
+        if (!webhookAllowedHosts.contains(host)) {
+            throw new IllegalArgumentException("Hôte de webhook non autorisé : " + uri.getHost());
+        }
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Hôte de webhook introuvable : " + uri.getHost());
+        }
+        for (InetAddress address : addresses) {
+            if (isInternal(address)) {
+                throw new IllegalArgumentException("Adresse de webhook interne refusée : " + uri.getHost());
+            }
+        }
+    }
+
+    static boolean isInternal(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isSiteLocalAddress()
+                || address.isLinkLocalAddress() || address.isMulticastAddress()) {
+            return true;
+        }
+        // IPv6 unique local (fc00::/7), non couvert par isSiteLocalAddress
+        return address instanceof Inet6Address && (address.getAddress()[0] & 0xFE) == 0xFC;
+    }
+
+    public Optional<BatchTracking> find(String batchId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return trackingRepository.findById(batchId);
+    }
+
+    /**
+     * Dernier statut connu d'un batch suivi, sans appel au provider.
+     * Vide si le batch n'est pas suivi ou n'a pas encore été interrogé.
+     */
+    public Optional<BatchStatus> getCachedStatus(String batchId) {
+        return find(batchId)
+                .filter(t -> t.getState() != TrackingState.FAILED && t.getProcessingStatus() != null)
+                .map(this::toStatus);
+    }
+
+    /**
+     * Demande une interrogation du provider au prochain cycle (ex : après une annulation).
+     */
+    public void pollSoon(String batchId) {
+        find(batchId).filter(t -> t.getState() == TrackingState.TRACKING).ifPresent(t -> {
+            t.setPollIntervalSeconds(minIntervalSeconds);
+            t.setNextPollAt(LocalDateTime.now());
+            trackingRepository.save(t);
+        });
+    }
+
+    /**
+     * Vrai si les résultats du batch sont disponibles localement.
+     */
+    public boolean hasStoredResults(String batchId) {
+        return find(batchId).map(t -> t.getState() == TrackingState.COMPLETED).orElse(false);
+    }
+
+    /**
+     * Parcourt les résultats stockés localement, par tranches.
+     *
+     * @return Le nombre de résultats transmis
+     */
+    public int streamStoredResults(String batchId, Consumer<BatchResult> consumer) {
+        int count = 0;
+        long afterId = 0L;
+        List<BatchTrackingResult> page;
+        do {
+            page = resultRepository.findTop1000ByBatchIdAndIdGreaterThanOrderByIdAsc(batchId, afterId);
+            for (BatchTrackingResult stored : page) {
+                consumer.accept(toResult(stored));
+                afterId = stored.getId();
+                count++;
+            }
+        } while (!page.isEmpty());
+        return count;
+    }
+
+    /**
+     * Cycle du poller : interroge les batches dont l'échéance est passée,
+     * puis retente les notifications restées en échec.
+     */
+    @Scheduled(fixedDelayString = "${ai.batch.tracking.tick-ms:10000}",
+               initialDelayString = "${ai.batch.tracking.tick-ms:10000}")
+    public void pollDueBatches() {
+        if (!enabled) {
+            return;
+        }
+        List<BatchTracking> due = trackingRepository
+                .findTop100ByStateAndNextPollAtLessThanEqualOrderByNextPollAtAsc(TrackingState.TRACKING, LocalDateTime.now());
+        for (BatchTracking tracking : due) {
+            try {
+                poll(tracking);
+            } catch (Exception e) {
+                log.error("Suivi batch {} - erreur lors du polling: {}", tracking.getBatchId(), e.getMessage(), e);
+            }
+        }
+
+        List<BatchTracking> pending = new ArrayList<>(trackingRepository.findByStateAndNotifiedAtIsNull(TrackingState.COMPLETED));
+        pending.addAll(trackingRepository.findByStateAndNotifiedAtIsNull(TrackingState.FAILED));
+        for (BatchTracking tracking : pending) {
+            if (tracking.getNotifyAttempts() < webhookMaxAttempts) {
+                notifyCompletion(tracking);
+            }
+        }
+    }
+
+    /**
+     * Une interrogation du provider pour un batch suivi.
+     */
+    void poll(BatchTracking tracking) {
+        LocalDateTime now = LocalDateTime.now();
+        tracking.setPollCount(tracking.getPollCount() + 1);
+        tracking.setLastPolledAt(now);
+
+        BatchStatus status = batchService.getBatchStatus(tracking.getBatchId());
+        if (status == null) {
+            if (tracking.getCreatedAt() != null && tracking.getCreatedAt().plusHours(maxAgeHours).isBefore(now)) {
+                fail(tracking, "Statut indisponible au-delà de " + maxAgeHours + "h");
+                return;
+            }
+            tracking.setErrorMessage("Statut indisponible");
+            reschedule(tracking, false, now);
+            return;
+        }
+
+        String previousCounts = tracking.getRequestCountsJson();
+        applyStatus(tracking, status);
+        tracking.setErrorMessage(null);
+
+        if (!status.isEnded()) {
+            if (tracking.getCreatedAt() != null && tracking.getCreatedAt().plusHours(maxAgeHours).isBefore(now)) {
+                fail(tracking, "Batch non terminé après " + maxAgeHours + "h");
+                return;
+            }
+            reschedule(tracking, !Objects.equals(previousCounts, tracking.getRequestCountsJson()), now);
+            return;
+        }
+
+        try {
+            storeResults(tracking);
+        } catch (BatchResultsUnavailableException e) {
+            // Téléchargement en échec : le suivi reste actif et retente avec backoff, rien n'est servi ni notifié
+            resultRepository.deleteByBatchId(tracking.getBatchId());
+            if (tracking.getCreatedAt() != null && tracking.getCreatedAt().plusHours(maxAgeHours).isBefore(now)) {
+                fail(tracking, "Résultats indisponibles au-delà de " + maxAgeHours + "h : " + e.getMessage());
+                return;
+            }
+            log.warn("Suivi batch {} - résultats indisponibles, nouvelle tentative: {}", tracking.getBatchId(), e.getMessage());
+            tracking.setErrorMessage("Résultats indisponibles");
+            reschedule(tracking, false, now);
+            return;
+        }
+        notifyCompletion(tracking);
+    }
+
+    /**
+     * Backoff adaptatif : retour à l'intervalle minimal dès que le batch avance,
+     * doublement (plafonné) tant qu'il stagne.
+     */
+    static int nextInterval(int current, boolean progressed, int min, int max) {
+        if (progressed) {
+            return min;
+        }
+        return (int) Math.min((long) Math.max(current, min) * 2, max);
+    }
+
+    private void reschedule(BatchTracking tracking, boolean progressed, LocalDateTime now) {
+        int interval = nextInterval(tracking.getPollIntervalSeconds(), progressed, minIntervalSeconds, maxIntervalSeconds);
+        tracking.setPollIntervalSeconds(interval);
+        tracking.setNextPollAt(now.plusSeconds(interval));
+        trackingRepository.save(tracking);
+    }
+
+    /**
+     * Récupère une seule fois les résultats du provider et les stocke localement.
+     * Idempotent : un stockage interrompu (redémarrage, téléchargement en échec) est repris depuis zéro.
+     *
+     * @throws BatchResultsUnavailableException si le provider n'a pas pu fournir les résultats ;
+     *         le suivi n'est alors pas marqué COMPLETED
+     */
+    private void storeResults(BatchTracking tracking) {
+        String batchId = tracking.getBatchId();
+        resultRepository.deleteByBatchId(batchId);
+
+        List<BatchTrackingResult> buffer = new ArrayList<>(RESULT_FLUSH_SIZE);
+        int[] counts = new int[2]; // [succès, erreurs]
+        int total = batchService.streamBatchResults(batchId, result -> {
+            buffer.add(toStored(batchId, result));
+            counts[result.isSuccess() ? 0 : 1]++;
+            if (buffer.size() >= RESULT_FLUSH_SIZE) {
+                resultRepository.saveAll(buffer);
+                buffer.clear();
+            }
+        });
+        if (!buffer.isEmpty()) {
+            resultRepository.saveAll(buffer);
+        }
+
+        tracking.setResultCount(total);
+        tracking.setSuccessCount(counts[0]);
+        tracking.setErrorCount(counts[1]);
+        tracking.setState(TrackingState.COMPLETED);
+        tracking.setCompletedAt(LocalDateTime.now());
+        trackingRepository.save(tracking);
+        log.info("Suivi batch {} terminé : {} résultats stockés ({} succès, {} erreurs) après {} interrogations",
+                batchId, total, counts[0], counts[1], tracking.getPollCount());
+    }
+
+    private void fail(BatchTracking tracking, String message) {
+        tracking.setState(TrackingState.FAILED);
+        tracking.setErrorMessage(message);
+        tracking.setCompletedAt(LocalDateTime.now());
+        trackingRepository.save(tracking);
+        log.warn("Suivi batch {} abandonné : {}", tracking.getBatchId(), message);
+        notifyCompletion(tracking);
+    }
+
+    /**
+     * Publie l'événement de fin sur RabbitMQ et appelle le webhook éventuel.
+     * En cas d'échec, la notification est retentée aux cycles suivants (eventId stable pour dédoublonner).
+     */
+    private void notifyCompletion(BatchTracking tracking) {
+        BatchCompletedEvent event = BatchCompletedEvent.builder()
+                .eventId("batch-" + tracking.getBatchId())
+                .batchId(tracking.getBatchId())
+                .provider(tracking.getProvider())
+                .userId(tracking.getCreatedBy())
+                .state(tracking.getState().name())
+                .requestCounts(readCounts(tracking.getRequestCountsJson()))
+                .resultCount(tracking.getResultCount())
+                .successCount(tracking.getSuccessCount())
+                .errorCount(tracking.getErrorCount())
+                .errorMessage(tracking.getErrorMessage())
+                .build();
+
+        tracking.setNotifyAttempts(tracking.getNotifyAttempts() + 1);
+        boolean delivered = eventPublisher.publishBatchCompleted(event);
+        if (tracking.getWebhookUrl() != null) {
+            delivered &= callWebhook(tracking.getWebhookUrl(), event);
+        }
+        if (delivered) {
+            tracking.setNotifiedAt(LocalDateTime.now());
+        } else if (tracking.getNotifyAttempts() >= webhookMaxAttempts) {
+            log.warn("Suivi batch {} - notification abandonnée après {} tentatives",
+                    tracking.getBatchId(), tracking.getNotifyAttempts());
+        }
+        trackingRepository.save(tracking);
+    }
+
+    private boolean callWebhook(String webhookUrl, BatchCompletedEvent event) {
+        // Nouvelle résolution avant chaque appel : le DNS a pu changer depuis l'enregistrement
+        try {
+            validateWebhookUrl(webhookUrl);
+        } catch (IllegalArgumentException e) {
+            log.warn("Webhook batch {} refusé: {}", event.getBatchId(), e.getMessage());
+            return false;
+        }
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            ResponseEntity<String> response = restTemplate.postForEntity(
+                    webhookUrl, new HttpEntity<>(objectMapper.writeValueAsString(event), headers), String.class);
+            if (response.getStatusCode().is2xxSuccessful()) {
+                log.debug("Webhook notifié pour le batch {}", event.getBatchId());
+                return true;
+            }
+            log.warn("Webhook batch {} - Status: {}", event.getBatchId(), response.getStatusCode());
+            return false;
+        } catch (Exception e) {
+            log.warn("Webhook batch {} en échec: {}", event.getBatchId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void applyStatus(BatchTracking tracking, BatchStatus status) {
+        tracking.setProcessingStatus(status.getProcessingStatus());
+        tracking.setProviderCreatedAt(status.getCreatedAt());
+        tracking.setProviderEndedAt(status.getEndedAt());
+        tracking.setResultsUrl(status.getResultsUrl());
+        try {
+            tracking.setRequestCountsJson(status.getRequestCounts() != null
+                    ? objectMapper.writeValueAsString(new TreeMap<>(status.getRequestCounts()))
+                    : null);
+        } catch (Exception e) {
+            tracking.setRequestCountsJson(null);
+        }
+    }
+
+    BatchStatus toStatus(BatchTracking tracking) {
+        return BatchStatus.builder()
+                .id(tracking.getBatchId())
+                .processingStatus(tracking.getProcessingStatus())
+                .requestCounts(readCounts(tracking.getRequestCountsJson()))
+                .createdAt(tracking.getProviderCreatedAt())
+                .endedAt(tracking.getProviderEndedAt())
+                .resultsUrl(tracking.getResultsUrl())
+                .provider(tracking.getProvider())
+                .build();
+    }
+
+    private Map<String, Integer> readCounts(String json) {
+        if (json == null || json.isBlank()) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, COUNTS_TYPE);
+        } catch (Exception e) {
+            return new HashMap<>();
+        }
+    }
+
+    private static BatchTrackingResult toStored(String batchId, BatchResult result) {
+        BatchTrackingResult stored = new BatchTrackingResult();
+        stored.setBatchId(batchId);
+        stored.setCustomId(result.getCustomId());
+        stored.setResultType(result.getResultType());
+        stored.setContent(result.getContent());
+        stored.setInputTokens(result.getInputTokens());
+        stored.setOutputTokens(result.getOutputTokens());
+        stored.setErrorType(result.getErrorType());
+        stored.setErrorMessage(result.getErrorMessage());
+        stored.setProvider(result.getProvider());
+        return stored;
+    }
+
+    private static BatchResult toResult(BatchTrackingResult stored) {
+        return BatchResult.builder()
+                .customId(stored.getCustomId())
+                .resultType(stored.getResultType())
+                .content(stored.getContent())
+                .inputTokens(stored.getInputTokens())
+                .outputTokens(stored.getOutputTokens())
+                .errorType(stored.getErrorType())
+                .errorMessage(stored.getErrorMessage())
+                .provider(stored.getProvider())
+                .build();
+    }
+}
@@ -0,0 +1,73 @@
+package com.tarif.search.service.ai.batch;
+
+import com.tarif.search.model.LocalBatch;
+import com.tarif.search.model.LocalBatchRequest;
+import com.tarif.search.model.LocalBatchRequest.Status;
+import com.tarif.search.repository.LocalBatchRepository;
+import com.tarif.search.repository.LocalBatchRequestRepository;
+import com.tarif.search.service.ai.batch.models.SearchRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File de travail persistante des batches locaux : opérations transactionnelles
+ * d'enfilage et de prise de requêtes par les workers.
+ */
+@Component
+@RequiredArgsConstructor
+class LocalBatchQueue {
+
+    private final LocalBatchRepository batchRepository;
+    private final LocalBatchRequestRepository requestRepository;
+
+    /**
+     * Enregistre le batch et toutes ses requêtes en attente, en une seule transaction.
+     */
+    @Transactional
+    public void enqueue(String batchId, String provider, List<SearchRequest> requests) {
+        LocalBatch batch = new LocalBatch();
+        batch.setId(batchId);
+        batch.setProvider(provider);
+        batch.setTotalRequests(requests.size());
+        batchRepository.save(batch);
+
+        List<LocalBatchRequest> rows = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            SearchRequest request = requests.get(i);
+            LocalBatchRequest row = new LocalBatchRequest();
+            row.setBatchId(batchId);
+            row.setCustomId(request.getCustomId() != null ? request.getCustomId() : "search-" + i);
+            row.setSearchTerm(request.getSearchTerm());
+            row.setRagContext(request.getRagContext());
+            row.setNiveau(request.getNiveau());
+            row.setWithJustification(request.isWithJustification());
+            rows.add(row);
+        }
+        requestRepository.saveAll(rows);
+    }
+
+    /**
+     * Prend au plus {@code max} requêtes en attente et les passe à RUNNING, sous bail de owner jusqu'à leaseUntil.
+     */
+    @Transactional
+    public List<LocalBatchRequest> claim(int max, String owner, LocalDateTime leaseUntil) {
+        if (max <= 0) {
+            return List.of();
+        }
+        List<LocalBatchRequest> claimed = requestRepository.findForClaim(Status.PENDING, PageRequest.of(0, max));
+        LocalDateTime now = LocalDateTime.now();
+        for (LocalBatchRequest request : claimed) {
+            request.setStatus(Status.RUNNING);
+            request.setStartedAt(now);
+            request.setLeaseOwner(owner);
+            request.setLeaseExpiresAt(leaseUntil);
+        }
+        return requestRepository.saveAll(claimed);
+    }
+}
@@ -0,0 +1,359 @@
+package com.tarif.search.service.ai.batch;
+
+import com.tarif.search.model.LocalBatch;
+import com.tarif.search.model.LocalBatchRequest;
+import com.tarif.search.model.LocalBatchRequest.Status;
+import com.tarif.search.model.UsageInfo;
+import com.tarif.search.repository.LocalBatchRepository;
+import com.tarif.search.repository.LocalBatchRequestRepository;
+import com.tarif.search.service.ai.AiPrompts;
+import com.tarif.search.service.ai.OllamaService;
+import com.tarif.search.service.ai.batch.models.BatchResult;
+import com.tarif.search.service.ai.batch.models.BatchStatus;
+import com.tarif.search.service.ai.batch.models.SearchRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Provider de batch exécuté localement pour Ollama, qui n'a pas d'API batch.
+ *
+ * Les requêtes sont enregistrées dans une file persistante (tables local_batch / local_batch_request),
+ * puis traitées par un pool de threads virtuels borné par un sémaphore : sur un hôte sans GPU,
+ * Ollama ne sert efficacement que quelques générations simultanées (cf. OLLAMA_NUM_PARALLEL).
+ * L'avancement est persisté requête par requête. Même contrat BatchStatus / BatchResult que les providers distants.
+ *
+ * Plusieurs instances peuvent partager la file : une requête prise est sous bail de l'instance
+ * (ai.batch.local.instance-id, le nom d'hôte par défaut) pendant ai.batch.local.lease, bail prolongé
+ * à chaque cycle de distribution tant qu'elle est traitée. Sont remises en file les requêtes de l'instance
+ * qui redémarre et celles dont le bail a expiré (instance arrêtée sans redémarrer).
+ */
+@Service
+@Slf4j
+public class OllamaBatchProvider implements BatchProvider {
+
+    static final String BATCH_ID_PREFIX = "local-";
+
+    private static final String PROVIDER = "ollama";
+
+    private final OllamaService ollamaService;
+    private final LocalBatchQueue queue;
+    private final LocalBatchRepository batchRepository;
+    private final LocalBatchRequestRepository requestRepository;
+    private final boolean active;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final String instanceId;
+
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    /** ReentrantLock plutôt que synchronized : ne bloque pas le thread porteur des threads virtuels. */
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+
+    public OllamaBatchProvider(
+            OllamaService ollamaService,
+            LocalBatchQueue queue,
+            LocalBatchRepository batchRepository,
+            LocalBatchRequestRepository requestRepository,
+            // En mode replay, le provider effectif est le délégué (enregistrement de batches locaux)
+            @Value("#{'${ai.provider:openai}' == 'replay' ? '${ai.replay.delegate:openai}' : '${ai.provider:openai}'}")
+            String activeProvider,
+            @Value("${ai.batch.local.concurrency:2}") int concurrency,
+            @Value("${ai.batch.local.max-attempts:2}") int maxAttempts,
+            @Value("${ai.batch.local.lease:PT10M}") Duration lease,
+            @Value("${ai.batch.local.instance-id:}") String instanceId) {
+        this.ollamaService = ollamaService;
+        this.queue = queue;
+        this.batchRepository = batchRepository;
+        this.requestRepository = requestRepository;
+        this.active = PROVIDER.equalsIgnoreCase(activeProvider);
+        this.concurrency = Math.max(1, concurrency);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.permits = new Semaphore(this.concurrency);
+        this.lease = lease;
+        this.instanceId = instanceId != null && !instanceId.isBlank() ? instanceId : defaultInstanceId();
+        if (active) {
+            log.info("OllamaBatchProvider initialisé : {} requête(s) simultanée(s), {} tentative(s) max, instance {}",
+                    this.concurrency, this.maxAttempts, this.instanceId);
+        }
+    }
+
+    /**
+     * Nom d'hôte (identifiant du conteneur sous Docker) : stable d'un redémarrage à l'autre de la même instance.
+     */
+    private static String defaultInstanceId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "search-service-" + UUID.randomUUID();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Au démarrage, remet en file les requêtes que cette instance traitait avant son arrêt,
+     * ainsi que celles dont le bail a expiré.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedRequests() {
+        if (!active) {
+            return;
+        }
+        int reset = requestRepository.requeueAbandoned(Status.RUNNING, Status.PENDING, instanceId, LocalDateTime.now());
+        if (reset > 0) {
+            log.info("Batch local : {} requête(s) interrompue(s) remise(s) en file", reset);
+        }
+        dispatch();
+    }
+
+    @Override
+    public String createBatch(List<SearchRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            log.error("Liste de requêtes vide");
+            return null;
+        }
+        try {
+            String batchId = BATCH_ID_PREFIX + UUID.randomUUID();
+            queue.enqueue(batchId, PROVIDER, requests);
+            log.info("Batch local créé: {} ({} requêtes)", batchId, requests.size());
+            dispatch();
+            return batchId;
+        } catch (Exception e) {
+            log.error("Erreur lors de la création du batch local: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public BatchStatus getBatchStatus(String batchId) {
+        Optional<LocalBatch> batch = batchRepository.findById(batchId);
+        if (batch.isEmpty()) {
+            return null;
+        }
+        Map<Status, Integer> parStatut = new EnumMap<>(Status.class);
+        for (Object[] row : requestRepository.countByStatus(batchId)) {
+            parStatut.put((Status) row[0], ((Number) row[1]).intValue());
+        }
+
+        Map<String, Integer> requestCounts = new HashMap<>();
+        requestCounts.put("processing", parStatut.getOrDefault(Status.PENDING, 0) + parStatut.getOrDefault(Status.RUNNING, 0));
+        requestCounts.put("succeeded", parStatut.getOrDefault(Status.SUCCEEDED, 0));
+        requestCounts.put("errored", parStatut.getOrDefault(Status.ERRORED, 0));
+        requestCounts.put("canceled", parStatut.getOrDefault(Status.CANCELED, 0));
+        requestCounts.put("expired", 0);
+
+        LocalBatch local = batch.get();
+        boolean ended = local.getStatus() == LocalBatch.Status.ENDED;
+        return BatchStatus.builder()
+                .id(batchId)
+                .processingStatus(ended ? "ended" : "in_progress")
+                .requestCounts(requestCounts)
+                .createdAt(local.getCreatedAt() != null ? local.getCreatedAt().toString() : null)
+                .endedAt(local.getEndedAt() != null ? local.getEndedAt().toString() : null)
+                // Résultats lus en base : l'ID du batch tient lieu d'URL
+                .resultsUrl(ended ? batchId : null)
+                .provider(PROVIDER)
+                .build();
+    }
+
+    @Override
+    public List<BatchResult> getBatchResults(String batchId) {
+        List<BatchResult> results = new ArrayList<>();
+        streamBatchResults(batchId, results::add);
+        return results;
+    }
+
+    @Override
+    public int streamBatchResults(String batchId, Consumer<BatchResult> consumer) {
+        Optional<LocalBatch> batch = batchRepository.findById(batchId);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        if (batch.get().getStatus() != LocalBatch.Status.ENDED) {
+            log.info("Batch local {} pas encore terminé", batchId);
+            throw new BatchResultsUnavailableException("Batch local " + batchId + " pas encore terminé");
+        }
+        int count = 0;
+        long afterId = 0L;
+        List<LocalBatchRequest> page;
+        do {
+            page = requestRepository.findTop1000ByBatchIdAndIdGreaterThanOrderByIdAsc(batchId, afterId);
+            for (LocalBatchRequest request : page) {
+                consumer.accept(toResult(request));
+                afterId = request.getId();
+                count++;
+            }
+        } while (!page.isEmpty());
+        return count;
+    }
+
+    /**
+     * Annule les requêtes encore en file ; celles en cours de génération vont à leur terme.
+     */
+    @Override
+    public boolean cancelBatch(String batchId) {
+        if (batchRepository.findById(batchId).isEmpty()) {
+            return false;
+        }
+        int canceled = requestRepository.updateStatus(batchId, Status.PENDING, Status.CANCELED);
+        log.info("Batch local {} annulé ({} requêtes retirées de la file)", batchId, canceled);
+        finishIfDone(batchId);
+        return true;
+    }
+
+    /**
+     * Pas de limite côté provider : le découpage n'a d'intérêt que pour répartir la charge.
+     */
+    @Override
+    public int maxRequestsPerBatch() {
+        return 100_000;
+    }
+
+    @Override
+    public long maxBytesPerBatch() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Filet de sécurité : relance la distribution périodiquement (requêtes enfilées par une autre instance,
+     * worker terminé sans relancer la file). Prolonge aussi le bail des requêtes en cours et reprend
+     * celles des instances disparues.
+     */
+    @Scheduled(fixedDelayString = "${ai.batch.local.dispatch-interval-ms:5000}")
+    public void scheduledDispatch() {
+        if (!active) {
+            return;
+        }
+        try {
+            if (permits.availablePermits() < concurrency) {
+                requestRepository.renewLeases(Status.RUNNING, instanceId, LocalDateTime.now().plus(lease));
+            }
+            int reset = requestRepository.requeueExpired(Status.RUNNING, Status.PENDING, LocalDateTime.now());
+            if (reset > 0) {
+                log.info("Batch local : {} requête(s) au bail expiré remise(s) en file", reset);
+            }
+        } catch (Exception e) {
+            log.warn("Batch local : impossible de mettre à jour les baux: {}", e.getMessage());
+        }
+        dispatch();
+    }
+
+    /**
+     * Distribue autant de requêtes en attente que de places libres dans le pool.
+     */
+    void dispatch() {
+        dispatchLock.lock();
+        try {
+            int libres = permits.availablePermits();
+            if (libres == 0) {
+                return;
+            }
+            List<LocalBatchRequest> claimed = queue.claim(libres, instanceId, LocalDateTime.now().plus(lease));
+            for (LocalBatchRequest request : claimed) {
+                permits.acquireUninterruptibly();
+                workers.submit(() -> {
+                    try {
+                        execute(request);
+                    } catch (Exception e) {
+                        log.error("Batch local {} - erreur sur {}: {}", request.getBatchId(), request.getCustomId(), e.getMessage(), e);
+                    } finally {
+                        permits.release();
+                    }
+                    dispatch();
+                });
+            }
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * Traite une requête : appel Ollama (avec nouvelles tentatives sur réponse vide), puis persistance du résultat.
+     */
+    void execute(LocalBatchRequest request) {
+        String prompt = AiPrompts.buildUserPrompt(
+                request.getRagContext() != null ? request.getRagContext() : "",
+                request.getSearchTerm());
+
+        String reponse = "";
+        UsageInfo usage = null;
+        while (request.getAttempts() < maxAttempts) {
+            request.setAttempts(request.getAttempts() + 1);
+            ollamaService.clearUsageInfo();
+            reponse = ollamaService.demanderAiAide("Batch " + request.getBatchId(), prompt,
+                    request.isWithJustification(), request.getNiveau());
+            usage = ollamaService.getLastUsageInfo();
+            if (reponse != null && !reponse.isBlank()) {
+                break;
+            }
+        }
+        ollamaService.clearUsageInfo();
+
+        if (reponse != null && !reponse.isBlank()) {
+            request.setStatus(Status.SUCCEEDED);
+            request.setContent(reponse);
+            if (usage != null) {
+                request.setInputTokens(usage.getPromptTokens());
+                request.setOutputTokens(usage.getCompletionTokens());
+            }
+        } else {
+            request.setStatus(Status.ERRORED);
+            request.setErrorMessage("Réponse vide d'Ollama après " + request.getAttempts() + " tentative(s)");
+        }
+        request.setFinishedAt(LocalDateTime.now());
+        requestRepository.save(request);
+
+        finishIfDone(request.getBatchId());
+    }
+
+    private void finishIfDone(String batchId) {
+        if (requestRepository.countByBatchIdAndStatusIn(batchId, List.of(Status.PENDING, Status.RUNNING)) > 0) {
+            return;
+        }
+        batchRepository.findById(batchId)
+                .filter(b -> b.getStatus() != LocalBatch.Status.ENDED)
+                .ifPresent(b -> {
+                    b.setStatus(LocalBatch.Status.ENDED);
+                    b.setEndedAt(LocalDateTime.now());
+                    batchRepository.save(b);
+                    log.info("Batch local {} terminé ({} requêtes)", batchId, b.getTotalRequests());
+                });
+    }
+
+    private static BatchResult toResult(LocalBatchRequest request) {
+        BatchResult.BatchResultBuilder result = BatchResult.builder()
+                .customId(request.getCustomId())
+                .provider(PROVIDER);
+        return switch (request.getStatus()) {
+            case SUCCEEDED -> result.resultType("succeeded")
+                    .content(request.getContent())
+                    .inputTokens(request.getInputTokens())
+                    .outputTokens(request.getOutputTokens())
+                    .build();
+            case CANCELED -> result.resultType("canceled").build();
+            default -> result.resultType("errored")
+                    .errorType("local_error")
+                    .errorMessage(request.getErrorMessage())
+                    .build();
+        };
+    }
+}
@@ -8,15 +8,18 @@ import com.tarif.search.service.ai.batch.models.BatchStatus;
 import com.tarif.search.service.ai.batch.models.SearchRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Implémentation du provider de batch pour OpenAI.
@@ -39,6 +42,7 @@ public class OpenAiBatchProvider implements BatchProvider {
     private final String model;
     private final String baseUrl;
     private final ObjectMapper objectMapper;
+    private final boolean gzipUpload;
     private final int maxTokens = 4096;
     private final float temperature = 0.0F;
 
@@ -46,11 +50,13 @@ public class OpenAiBatchProvider implements BatchProvider {
             RestTemplate restTemplate,
             @Value("${ai.openai.api-key:}") String apiKey,
             @Value("${ai.openai.model:gpt-4o-mini}") String model,
-            @Value("${ai.openai.base-url:https://api.openai.com/v1}") String baseUrl) {
+            @Value("${ai.openai.base-url:https://api.openai.com/v1}") String baseUrl,
+            @Value("${ai.batch.openai.gzip-upload:false}") boolean gzipUpload) {
         this.restTemplate = restTemplate;
         this.apiKey = apiKey;
         this.model = model;
         this.baseUrl = baseUrl;
+        this.gzipUpload = gzipUpload;
         this.objectMapper = new ObjectMapper();
         log.info("OpenAiBatchProvider initialisé avec le modèle: {}", model);
     }
@@ -74,13 +80,14 @@ public class OpenAiBatchProvider implements BatchProvider {
             return null;
         }
 
+        Path jsonlFile = null;
         try {
-            // 1. Convertir en JSONL
-            String jsonl = convertToJsonl(searchRequests);
-            log.debug("JSONL généré ({} lignes)", searchRequests.size());
+            // 1. Convertir en JSONL (écrit en flux dans un fichier temporaire)
+            jsonlFile = convertToJsonl(searchRequests);
+            log.debug("JSONL généré ({} lignes, {} octets)", searchRequests.size(), Files.size(jsonlFile));
 
             // 2. Upload du fichier JSONL
-            String fileId = uploadFile(jsonl);
+            String fileId = uploadFile(jsonlFile);
             if (fileId == null) {
                 log.error("Échec de l'upload du fichier JSONL");
                 return null;
@@ -97,6 +104,8 @@ public class OpenAiBatchProvider implements BatchProvider {
         } catch (Exception e) {
             log.error("Erreur lors de la création du batch OpenAI: {}", e.getMessage(), e);
             return null;
+        } finally {
+            deleteQuietly(jsonlFile);
         }
     }
 
@@ -114,16 +123,15 @@ public class OpenAiBatchProvider implements BatchProvider {
         }
 
         try {
-            String url = baseUrl + "/batches/" + batchId;
-
             HttpHeaders headers = new HttpHeaders();
             headers.setBearerAuth(apiKey);
 
             HttpEntity<Void> entity = new HttpEntity<>(headers);
 
 
+            // Gabarit d'URI : l'ID reste hors du tag uri des métriques http.client.requests
             ResponseEntity<String> response = restTemplate.exchange(
-                url, HttpMethod.GET, entity, String.class);
+                baseUrl + "/batches/{batchId}", HttpMethod.GET, entity, String.class, batchId);
 
             if (response.getStatusCode().is2xxSuccessful()) {
                 JsonNode root = objectMapper.readTree(response.getBody());
@@ -198,21 +206,41 @@ public class OpenAiBatchProvider implements BatchProvider {
      * Récupère les résultats d'un batch OpenAI terminé.
      *
      * @param batchId L'ID du batch
-     * @return La liste des résultats ou une liste vide en cas d'erreur
+     * @return La liste des résultats
+     * @throws BatchResultsUnavailableException si le batch n'est pas terminé ou si le téléchargement échoue
      */
     @Override
     public List<BatchResult> getBatchResults(String batchId) {
+        List<BatchResult> results = new ArrayList<>();
+        streamBatchResults(batchId, results::add);
+        return results;
+    }
+
+    /**
+     * Parcourt les résultats d'un batch OpenAI terminé, ligne par ligne depuis le flux HTTP.
+     *
+     * @param batchId L'ID du batch
+     * @param consumer Reçoit chaque résultat
+     * @return Le nombre de résultats transmis
+     */
+    @Override
+    public int streamBatchResults(String batchId, Consumer<BatchResult> consumer) {
         // D'abord récupérer le statut pour obtenir output_file_id
         BatchStatus status = getBatchStatus(batchId);
-        if (status == null || !status.isEnded() || status.getResultsUrl() == null) {
-            if (status != null && !status.isEnded()) {
-                log.info("Batch OpenAI {} pas encore terminé, statut: {}", batchId, status.getProcessingStatus());
-            }
-            return Collections.emptyList();
+        if (status == null) {
+            throw new BatchResultsUnavailableException("Statut du batch OpenAI " + batchId + " indisponible");
+        }
+        if (!status.isEnded()) {
+            log.info("Batch OpenAI {} pas encore terminé, statut: {}", batchId, status.getProcessingStatus());
+            throw new BatchResultsUnavailableException("Batch OpenAI " + batchId + " pas encore terminé");
+        }
+        if (status.getResultsUrl() == null) {
+            // Terminé sans fichier de sortie (toutes les requêtes en erreur, annulé ou expiré)
+            return 0;
         }
 
         String outputFileId = status.getResultsUrl();
-        return downloadAndParseResults(outputFileId);
+        return downloadAndParseResults(outputFileId, consumer);
     }
 
     /**
@@ -229,8 +257,6 @@ public class OpenAiBatchProvider implements BatchProvider {
         }
 
         try {
-            String url = baseUrl + "/batches/" + batchId + "/cancel";
-
             HttpHeaders headers = new HttpHeaders();
             headers.setBearerAuth(apiKey);
 
@@ -238,7 +264,7 @@ public class OpenAiBatchProvider implements BatchProvider {
 
 
             ResponseEntity<String> response = restTemplate.exchange(
-                url, HttpMethod.POST, entity, String.class);
+                baseUrl + "/batches/{batchId}/cancel", HttpMethod.POST, entity, String.class, batchId);
 
             if (response.getStatusCode().is2xxSuccessful()) {
                 log.info("Batch OpenAI {} annulé avec succès", batchId);
@@ -254,72 +280,103 @@ public class OpenAiBatchProvider implements BatchProvider {
         }
     }
 
+    /**
+     * Limite OpenAI Batch API : 50 000 requêtes par fichier d'entrée.
+     */
+    @Override
+    public int maxRequestsPerBatch() {
+        return 50_000;
+    }
+
+    /**
+     * Limite OpenAI Batch API : 200 Mo par fichier d'entrée.
+     */
+    @Override
+    public long maxBytesPerBatch() {
+        return 200L * 1024 * 1024;
+    }
+
     // ========================================================================================
     // Méthodes internes
     // ========================================================================================
 
     /**
-     * Convertit une liste de requêtes de recherche en format JSONL pour l'API Batch OpenAI.
+     * Convertit une liste de requêtes de recherche en fichier JSONL pour l'API Batch OpenAI.
      * Chaque ligne représente une requête individuelle au format :
      * {"custom_id": "...", "method": "POST", "url": "/v1/chat/completions", "body": {...}}
+     *
+     * Les lignes sont construites à la volée et écrites en flux : seule la ligne courante
+     * est en mémoire, quelle que soit la taille du batch. Gzip si ai.batch.openai.gzip-upload
+     * (passerelles compatibles uniquement, l'API OpenAI attend un .jsonl brut).
+     *
+     * @return Le fichier temporaire (à supprimer par l'appelant)
      */
-    private String convertToJsonl(List<SearchRequest> requests) {
-        StringBuilder jsonl = new StringBuilder();
-
-        for (int i = 0; i < requests.size(); i++) {
-            SearchRequest request = requests.get(i);
-            String customId = request.getCustomId() != null
-                ? request.getCustomId()
-                : "search-" + i;
-
-            String prompt = AiPrompts.buildUserPrompt(
-                request.getRagContext() != null ? request.getRagContext() : "",
-                request.getSearchTerm()
-            );
-
-            Map<String, Object> batchRequest = new LinkedHashMap<>();
-            batchRequest.put("custom_id", customId);
-            batchRequest.put("method", "POST");
-            batchRequest.put("url", "/v1/chat/completions");
-
-            Map<String, Object> body = new LinkedHashMap<>();
-            body.put("model", model);
-            body.put("messages", List.of(
-                Map.of("role", "system", "content", AiPrompts.getSystemMessage(true, null)),
-                Map.of("role", "user", "content", prompt)
-            ));
-            body.put("max_tokens", maxTokens);
-            body.put("temperature", temperature);
-
-            batchRequest.put("body", body);
-
-            try {
-                jsonl.append(objectMapper.writeValueAsString(batchRequest)).append("\n");
-            } catch (Exception e) {
-                log.error("Erreur lors de la sérialisation de la requête {}: {}",
-                    customId, e.getMessage());
+    private Path convertToJsonl(List<SearchRequest> requests) throws IOException {
+        Iterator<Map<String, Object>> lignes = new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < requests.size();
             }
-        }
 
-        return jsonl.toString();
+            @Override
+            public Map<String, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int i = index++;
+                return toBatchLine(requests.get(i), i);
+            }
+        };
+        return BatchJsonl.writeToTempFile(lignes, gzipUpload);
+    }
+
+    private Map<String, Object> toBatchLine(SearchRequest request, int index) {
+        String customId = request.getCustomId() != null
+            ? request.getCustomId()
+            : "search-" + index;
+
+        String prompt = AiPrompts.buildUserPrompt(
+            request.getRagContext() != null ? request.getRagContext() : "",
+            request.getSearchTerm()
+        );
+
+        Map<String, Object> batchRequest = new LinkedHashMap<>();
+        batchRequest.put("custom_id", customId);
+        batchRequest.put("method", "POST");
+        batchRequest.put("url", "/v1/chat/completions");
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", model);
+        body.put("messages", List.of(
+            Map.of("role", "system", "content",
+                AiPrompts.getSystemMessage(request.isWithJustification(), request.getNiveau())),
+            Map.of("role", "user", "content", prompt)
+        ));
+        body.put("max_tokens", maxTokens);
+        body.put("temperature", temperature);
+
+        batchRequest.put("body", body);
+        return batchRequest;
     }
 
     /**
      * Upload un fichier JSONL vers l'API OpenAI Files.
+     * Le fichier est transmis en flux depuis le disque (pas de copie en mémoire).
      *
-     * @param jsonlContent Le contenu JSONL à uploader
+     * @param jsonlFile Le fichier JSONL à uploader
      * @return L'ID du fichier uploadé ou null en cas d'erreur
      */
-    private String uploadFile(String jsonlContent) {
+    private String uploadFile(Path jsonlFile) {
         String url = baseUrl + "/files";
 
         try {
-            // Créer un ByteArrayResource depuis le contenu JSONL
-            byte[] fileBytes = jsonlContent.getBytes(StandardCharsets.UTF_8);
-            ByteArrayResource fileResource = new ByteArrayResource(fileBytes) {
+            String filename = "batch-" + System.currentTimeMillis() + (gzipUpload ? ".jsonl.gz" : ".jsonl");
+            FileSystemResource fileResource = new FileSystemResource(jsonlFile) {
                 @Override
                 public String getFilename() {
-                    return "batch-" + System.currentTimeMillis() + ".jsonl";
+                    return filename;
                 }
             };
 
@@ -393,127 +450,131 @@ public class OpenAiBatchProvider implements BatchProvider {
     }
 
     /**
-     * Télécharge et parse les résultats depuis un fichier de sortie OpenAI.
+     * Télécharge et parse en flux les résultats depuis un fichier de sortie OpenAI.
+     * Le corps HTTP est lu ligne par ligne (gzip accepté) : la mémoire reste constante
+     * même pour des fichiers de plusieurs dizaines de milliers de lignes.
      *
      * @param outputFileId L'ID du fichier de résultats (output_file_id)
-     * @return La liste des résultats parsés
+     * @param consumer Reçoit chaque résultat parsé
+     * @return Le nombre de résultats transmis
      */
-    private List<BatchResult> downloadAndParseResults(String outputFileId) {
+    private int downloadAndParseResults(String outputFileId, Consumer<BatchResult> consumer) {
         if (apiKey == null || apiKey.isBlank()) {
-            log.error("Clé API OpenAI non configurée");
-            return Collections.emptyList();
+            throw new BatchResultsUnavailableException("Clé API OpenAI non configurée");
         }
 
         try {
-            String url = baseUrl + "/files/" + outputFileId + "/content";
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setBearerAuth(apiKey);
-
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                url, HttpMethod.GET, entity, String.class);
-
-            if (response.getStatusCode().is2xxSuccessful()) {
-                String jsonlContent = response.getBody();
-
-                if (jsonlContent == null || jsonlContent.trim().isEmpty()) {
-                    log.warn("Corps de réponse vide pour les résultats du batch OpenAI");
-                    return Collections.emptyList();
-                }
-
-                List<BatchResult> results = parseOpenAiResults(jsonlContent);
-                log.info("Récupéré {} résultats du batch OpenAI", results.size());
-                return results;
-            } else {
-                log.error("Erreur lors du téléchargement des résultats OpenAI - Status: {}", response.getStatusCode());
-                return Collections.emptyList();
-            }
-
+            Integer count = restTemplate.execute(baseUrl + "/files/{fileId}/content", HttpMethod.GET,
+                request -> {
+                    request.getHeaders().setBearerAuth(apiKey);
+                    request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+                },
+                response -> {
+                    if (!response.getStatusCode().is2xxSuccessful()) {
+                        throw new BatchResultsUnavailableException(
+                            "Téléchargement des résultats OpenAI en échec - Status: " + response.getStatusCode());
+                    }
+                    return BatchJsonl.forEachLine(BatchJsonl.body(response),
+                        node -> {
+                            BatchResult result = parseOpenAiResult(node);
+                            if (result != null) {
+                                consumer.accept(result);
+                            }
+                        },
+                        e -> log.warn("Erreur lors du parsing d'une ligne de résultat OpenAI: {}", e.getMessage()));
+                },
+                outputFileId);
+
+            int total = count != null ? count : 0;
+            log.info("Récupéré {} résultats du batch OpenAI", total);
+            return total;
+
+        } catch (BatchResultsUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Erreur lors du téléchargement des résultats OpenAI: {}", e.getMessage(), e);
-            return Collections.emptyList();
+            throw new BatchResultsUnavailableException("Téléchargement des résultats OpenAI en échec: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Parse le contenu JSONL des résultats OpenAI en liste de BatchResult.
+     * Parse une ligne de résultat OpenAI en BatchResult.
      *
      * Format attendu par ligne :
      * {"id": "batch_req_...", "custom_id": "...", "response": {"status_code": 200, "body": {
      *   "choices": [{"message": {"content": "..."}}], "usage": {...}}}, "error": {...}}
+     *
+     * @return le résultat, ou null si la ligne ne contient ni réponse ni erreur
      */
-    private List<BatchResult> parseOpenAiResults(String jsonlContent) {
-        List<BatchResult> results = new ArrayList<>();
-        String[] lines = jsonlContent.split("\n");
-
-        for (String line : lines) {
-            if (line == null || line.trim().isEmpty()) continue;
-
-            try {
-                JsonNode resultNode = objectMapper.readTree(line);
-                String customId = resultNode.path("custom_id").asText();
-
-                // Vérifier si la réponse est un succès ou une erreur
-                JsonNode responseNode = resultNode.path("response");
-                JsonNode errorNode = resultNode.path("error");
-
-                if (!responseNode.isMissingNode() && !responseNode.isNull()) {
-                    int statusCode = responseNode.path("status_code").asInt(0);
-                    JsonNode body = responseNode.path("body");
-
-                    if (statusCode == 200 && !body.isMissingNode()) {
-                        // Succès : extraire le contenu de la réponse
-                        String content = body.path("choices").path(0)
-                            .path("message").path("content").asText("");
-
-                        // Nettoyer la réponse JSON (enlever marqueurs markdown)
-                        content = cleanJsonResponse(content);
-
-                        JsonNode usage = body.path("usage");
-                        int inputTokens = usage.path("prompt_tokens").asInt(0);
-                        int outputTokens = usage.path("completion_tokens").asInt(0);
-
-                        results.add(BatchResult.builder()
-                            .customId(customId)
-                            .resultType("succeeded")
-                            .content(content)
-                            .inputTokens(inputTokens)
-                            .outputTokens(outputTokens)
-                            .provider("openai")
-                            .build());
-                    } else {
-                        // Erreur HTTP dans la réponse
-                        String errorMessage = body.path("error").path("message").asText("Erreur HTTP " + statusCode);
-                        String errorType = body.path("error").path("type").asText("http_error");
-
-                        results.add(BatchResult.builder()
-                            .customId(customId)
-                            .resultType("errored")
-                            .errorType(errorType)
-                            .errorMessage(errorMessage)
-                            .provider("openai")
-                            .build());
-                    }
-                } else if (!errorNode.isMissingNode() && !errorNode.isNull()) {
-                    // Erreur au niveau batch
-                    results.add(BatchResult.builder()
-                        .customId(customId)
-                        .resultType("errored")
-                        .errorType(errorNode.path("code").asText("batch_error"))
-                        .errorMessage(errorNode.path("message").asText("Erreur inconnue"))
-                        .provider("openai")
-                        .build());
-                }
-
-            } catch (Exception e) {
-                log.warn("Erreur lors du parsing d'une ligne de résultat OpenAI: {}", e.getMessage());
+    private BatchResult parseOpenAiResult(JsonNode resultNode) {
+        String customId = resultNode.path("custom_id").asText();
+
+        // Vérifier si la réponse est un succès ou une erreur
+        JsonNode responseNode = resultNode.path("response");
+        JsonNode errorNode = resultNode.path("error");
+
+        if (!responseNode.isMissingNode() && !responseNode.isNull()) {
+            int statusCode = responseNode.path("status_code").asInt(0);
+            JsonNode body = responseNode.path("body");
+
+            if (statusCode == 200 && !body.isMissingNode()) {
+                // Succès : extraire le contenu de la réponse
+                String content = body.path("choices").path(0)
+                    .path("message").path("content").asText("");
+
+                // Nettoyer la réponse JSON (enlever marqueurs markdown)
+                content = cleanJsonResponse(content);
+
+                JsonNode usage = body.path("usage");
+                int inputTokens = usage.path("prompt_tokens").asInt(0);
+                int outputTokens = usage.path("completion_tokens").asInt(0);
+
+                return BatchResult.builder()
+                    .customId(customId)
+                    .resultType("succeeded")
+                    .content(content)
+                    .inputTokens(inputTokens)
+                    .outputTokens(outputTokens)
+                    .provider("openai")
+                    .build();
             }
+
+            // Erreur HTTP dans la réponse
+            String errorMessage = body.path("error").path("message").asText("Erreur HTTP " + statusCode);
+            String errorType = body.path("error").path("type").asText("http_error");
+
+            return BatchResult.builder()
+                .customId(customId)
+                .resultType("errored")
+                .errorType(errorType)
+                .errorMessage(errorMessage)
+                .provider("openai")
+                .build();
         }
 
-        return results;
+        if (!errorNode.isMissingNode() && !errorNode.isNull()) {
+            // Erreur au niveau batch
+            return BatchResult.builder()
+                .customId(customId)
+                .resultType("errored")
+                .errorType(errorNode.path("code").asText("batch_error"))
+                .errorMessage(errorNode.path("message").asText("Erreur inconnue"))
+                .provider("openai")
+                .build();
+        }
+
+        return null;
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Impossible de supprimer le fichier temporaire {}: {}", file, e.getMessage());
+        }
     }
 
     /**
@@ -0,0 +1,214 @@
+package com.tarif.search.service.ai.batch;
+
+import com.tarif.search.service.ai.AiPrompts;
+import com.tarif.search.service.ai.ReplayAiProvider;
+import com.tarif.search.service.ai.batch.models.BatchResult;
+import com.tarif.search.service.ai.batch.models.BatchStatus;
+import com.tarif.search.service.ai.batch.models.SearchRequest;
+import com.tarif.search.service.ai.replay.ReplayRecording;
+import com.tarif.search.service.ai.replay.ReplayStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Provider batch d'enregistrement / rejeu (ai.provider=replay), pendant de ReplayAiProvider.
+ *
+ * - mode replay : le batch est "terminé" dès sa création, chaque requête est servie depuis le
+ *   ReplayStore (errored / replay_miss si absente). Aucun appel réseau.
+ * - mode record : le batch est soumis au provider batch réel (ai.replay.delegate) ; les résultats
+ *   réussis sont enregistrés au fil de leur lecture. La correspondance custom_id → empreinte est
+ *   gardée en mémoire : un batch soumis avant un redémarrage n'est pas enregistré.
+ *
+ * Les empreintes sont celles de ReplayAiProvider : une réponse enregistrée en temps réel
+ * est rejouable en batch, et inversement.
+ */
+@Component
+@Slf4j
+public class ReplayBatchProvider implements BatchProvider {
+
+    static final String BATCH_ID_PREFIX = "replay-";
+    private static final String PROVIDER = "replay";
+
+    private final AnthropicBatchProvider anthropicBatchProvider;
+    private final OpenAiBatchProvider openAiBatchProvider;
+    private final OllamaBatchProvider ollamaBatchProvider;
+    private final ReplayAiProvider replayAiProvider;
+    private final ReplayStore store;
+    private final String delegateName;
+
+    /** Mode replay : requêtes des batches créés ; mode record : empreinte par custom_id et par batch. */
+    private final Map<String, List<SearchRequest>> replayBatches = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, PendingKey>> recordBatches = new ConcurrentHashMap<>();
+
+    private record PendingKey(String key, String niveau) {
+    }
+
+    public ReplayBatchProvider(
+            AnthropicBatchProvider anthropicBatchProvider,
+            OpenAiBatchProvider openAiBatchProvider,
+            OllamaBatchProvider ollamaBatchProvider,
+            ReplayAiProvider replayAiProvider,
+            ReplayStore store,
+            @Value("${ai.replay.delegate:openai}") String delegateName) {
+        this.anthropicBatchProvider = anthropicBatchProvider;
+        this.openAiBatchProvider = openAiBatchProvider;
+        this.ollamaBatchProvider = ollamaBatchProvider;
+        this.replayAiProvider = replayAiProvider;
+        this.store = store;
+        this.delegateName = delegateName;
+    }
+
+    @Override
+    public String createBatch(List<SearchRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            log.error("Liste de requêtes vide");
+            return null;
+        }
+        List<SearchRequest> numerotees = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            SearchRequest request = requests.get(i);
+            numerotees.add(request.getCustomId() != null ? request : request.toBuilder().customId("search-" + i).build());
+        }
+
+        if (!isRecording()) {
+            String batchId = BATCH_ID_PREFIX + UUID.randomUUID();
+            replayBatches.put(batchId, List.copyOf(numerotees));
+            log.info("Batch replay créé: {} ({} requêtes)", batchId, numerotees.size());
+            return batchId;
+        }
+
+        String batchId = getDelegate().createBatch(numerotees);
+        if (batchId != null) {
+            Map<String, PendingKey> keys = new HashMap<>();
+            for (SearchRequest request : numerotees) {
+                keys.put(request.getCustomId(), new PendingKey(key(request), request.getNiveau()));
+            }
+            recordBatches.put(batchId, keys);
+        }
+        return batchId;
+    }
+
+    @Override
+    public BatchStatus getBatchStatus(String batchId) {
+        if (isRecording()) {
+            return getDelegate().getBatchStatus(batchId);
+        }
+        List<SearchRequest> requests = replayBatches.get(batchId);
+        if (requests == null) {
+            return null;
+        }
+        int trouvees = (int) requests.stream().filter(r -> store.find(key(r)).isPresent()).count();
+        Map<String, Integer> requestCounts = new HashMap<>();
+        requestCounts.put("processing", 0);
+        requestCounts.put("succeeded", trouvees);
+        requestCounts.put("errored", requests.size() - trouvees);
+        requestCounts.put("canceled", 0);
+        requestCounts.put("expired", 0);
+        return BatchStatus.builder()
+                .id(batchId)
+                .processingStatus("ended")
+                .requestCounts(requestCounts)
+                .resultsUrl(batchId)
+                .provider(PROVIDER)
+                .build();
+    }
+
+    @Override
+    public List<BatchResult> getBatchResults(String batchId) {
+        List<BatchResult> results = new ArrayList<>();
+        streamBatchResults(batchId, results::add);
+        return results;
+    }
+
+    @Override
+    public int streamBatchResults(String batchId, Consumer<BatchResult> consumer) {
+        if (isRecording()) {
+            Map<String, PendingKey> keys = recordBatches.getOrDefault(batchId, Map.of());
+            return getDelegate().streamBatchResults(batchId, result -> {
+                recordResult(keys.get(result.getCustomId()), result);
+                consumer.accept(result);
+            });
+        }
+        List<SearchRequest> requests = replayBatches.get(batchId);
+        if (requests == null) {
+            return 0;
+        }
+        for (SearchRequest request : requests) {
+            consumer.accept(toResult(request));
+        }
+        return requests.size();
+    }
+
+    @Override
+    public boolean cancelBatch(String batchId) {
+        if (isRecording()) {
+            return getDelegate().cancelBatch(batchId);
+        }
+        return replayBatches.containsKey(batchId);
+    }
+
+    @Override
+    public int maxRequestsPerBatch() {
+        return isRecording() ? getDelegate().maxRequestsPerBatch() : 100_000;
+    }
+
+    @Override
+    public long maxBytesPerBatch() {
+        return isRecording() ? getDelegate().maxBytesPerBatch() : Long.MAX_VALUE;
+    }
+
+    private BatchResult toResult(SearchRequest request) {
+        BatchResult.BatchResultBuilder result = BatchResult.builder()
+                .customId(request.getCustomId())
+                .provider(PROVIDER);
+        return store.find(key(request))
+                .map(r -> result.resultType("succeeded")
+                        .content(r.response())
+                        .inputTokens(r.promptTokens())
+                        .outputTokens(r.completionTokens())
+                        .build())
+                .orElseGet(() -> result.resultType("errored")
+                        .errorType("replay_miss")
+                        .errorMessage("Aucun enregistrement pour cette requête")
+                        .build());
+    }
+
+    private void recordResult(PendingKey pending, BatchResult result) {
+        if (pending == null || !result.isSuccess() || result.getContent() == null || result.getContent().isBlank()) {
+            return;
+        }
+        int input = result.getInputTokens() != null ? result.getInputTokens() : 0;
+        int output = result.getOutputTokens() != null ? result.getOutputTokens() : 0;
+        store.record(new ReplayRecording(pending.key(), replayAiProvider.getModel(), pending.niveau(),
+                result.getContent(), input, output, 0.0, 0.0, 0L, Instant.now().toString()));
+    }
+
+    /**
+     * Même empreinte que ReplayAiProvider : (modèle, system prompt, user prompt construit comme les providers batch).
+     */
+    private String key(SearchRequest request) {
+        String prompt = AiPrompts.buildUserPrompt(
+                request.getRagContext() != null ? request.getRagContext() : "",
+                request.getSearchTerm());
+        return ReplayStore.key(replayAiProvider.getModel(),
+                AiPrompts.getSystemMessage(request.isWithJustification(), request.getNiveau()), prompt);
+    }
+
+    private boolean isRecording() {
+        return replayAiProvider.getMode() == ReplayAiProvider.Mode.RECORD;
+    }
+
+    private BatchProvider getDelegate() {
+        return switch (delegateName.toLowerCase()) {
+            case "anthropic" -> anthropicBatchProvider;
+            case "ollama" -> ollamaBatchProvider;
+            default -> openAiBatchProvider;
+        };
+    }
+}
@@ -7,10 +7,14 @@ import lombok.Data;
  * Représente une requête de recherche pour le batch.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class SearchRequest {
     private String customId;
     private String searchTerm;
     private String ragContext;
     private String provider; // Pour tracking du provider utilisé
+    private String niveau; // Niveau de cascade (SECTIONS, CHAPITRES, ...) — null = prompt générique
+
+    @Builder.Default
+    private boolean withJustification = true;
 }
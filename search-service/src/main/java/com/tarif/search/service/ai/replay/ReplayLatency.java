@@ -0,0 +1,80 @@
+package com.tarif.search.service.ai.replay;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latence injectée par le provider "replay" avant de rendre une réponse enregistrée.
+ *
+ * Modes (ai.replay.latency.mode) :
+ * - none : réponse immédiate
+ * - recorded : latence observée lors de l'enregistrement
+ * - fixed : valeur constante (fixed-ms)
+ * - distribution : tirage log-normal calé sur p50-ms / p95-ms, borné à max-ms
+ */
+@Component
+@Slf4j
+public class ReplayLatency {
+
+    /** Quantile 95 % de la loi normale centrée réduite. */
+    private static final double Z_95 = 1.6448536;
+
+    public enum Mode {
+        NONE, RECORDED, FIXED, DISTRIBUTION
+    }
+
+    private final Mode mode;
+    private final long fixedMs;
+    private final double mu;
+    private final double sigma;
+    private final long maxMs;
+
+    public ReplayLatency(
+            @Value("${ai.replay.latency.mode:none}") String mode,
+            @Value("${ai.replay.latency.fixed-ms:0}") long fixedMs,
+            @Value("${ai.replay.latency.p50-ms:800}") long p50Ms,
+            @Value("${ai.replay.latency.p95-ms:2500}") long p95Ms,
+            @Value("${ai.replay.latency.max-ms:30000}") long maxMs) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase());
+        this.fixedMs = Math.max(0, fixedMs);
+        long p50 = Math.max(1, p50Ms);
+        this.mu = Math.log(p50);
+        this.sigma = Math.max(0.0, Math.log((double) Math.max(p95Ms, p50) / p50) / Z_95);
+        this.maxMs = Math.max(0, maxMs);
+    }
+
+    /**
+     * Délai à appliquer pour cet enregistrement, en millisecondes.
+     */
+    public long delayMs(ReplayRecording recording) {
+        long delay = switch (mode) {
+            case NONE -> 0;
+            case RECORDED -> recording != null ? recording.latencyMs() : 0;
+            case FIXED -> fixedMs;
+            case DISTRIBUTION -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+        };
+        return Math.min(delay, maxMs);
+    }
+
+    /**
+     * Attend le délai correspondant à l'enregistrement (interruptible).
+     */
+    public void apply(ReplayRecording recording) {
+        long delay = delayMs(recording);
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+}
@@ -0,0 +1,32 @@
+package com.tarif.search.service.ai.replay;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Paire requête / réponse enregistrée. Le prompt n'est pas stocké, seule son empreinte (key) :
+ * un enregistrement tient sur une ligne de quelques centaines d'octets.
+ *
+ * @param key              empreinte SHA-256 de (modèle, system prompt, user prompt)
+ * @param model            modèle ayant produit la réponse
+ * @param niveau           niveau de cascade (informatif)
+ * @param response         réponse brute du provider
+ * @param promptTokens     tokens d'entrée
+ * @param completionTokens tokens de sortie
+ * @param costUsd          prix de base de la requête
+ * @param tokenCostUsd     coût tokens
+ * @param latencyMs        latence observée lors de l'enregistrement (0 pour un batch)
+ * @param recordedAt       date d'enregistrement (ISO-8601)
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ReplayRecording(
+        String key,
+        String model,
+        String niveau,
+        String response,
+        int promptTokens,
+        int completionTokens,
+        double costUsd,
+        double tokenCostUsd,
+        long latencyMs,
+        String recordedAt) {
+}
@@ -0,0 +1,146 @@
+package com.tarif.search.service.ai.replay;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stockage sur disque des paires requête / réponse IA pour le provider "replay".
+ *
+ * Fichier JSONL en ajout seul (une ReplayRecording par ligne), indexé en mémoire par empreinte
+ * au premier accès ; en cas de doublon, le dernier enregistrement l'emporte.
+ */
+@Component
+@Slf4j
+public class ReplayStore {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final ObjectReader READER = objectMapper.readerFor(ReplayRecording.class);
+    private static final ObjectWriter WRITER = objectMapper.writerFor(ReplayRecording.class);
+
+    private final Path path;
+    private final Map<String, ReplayRecording> recordings = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private BufferedWriter writer;
+
+    public ReplayStore(@Value("${ai.replay.store-path:replay/ai-recordings.jsonl}") String path) {
+        this.path = Path.of(path);
+    }
+
+    /**
+     * Empreinte d'une requête : SHA-256 de (modèle, system prompt, user prompt).
+     */
+    public static String key(String model, String systemPrompt, String userPrompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(model).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(systemPrompt).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(userPrompt).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Optional<ReplayRecording> find(String key) {
+        ensureLoaded();
+        return Optional.ofNullable(recordings.get(key));
+    }
+
+    /**
+     * Ajoute un enregistrement au fichier et à l'index.
+     */
+    public synchronized void record(ReplayRecording recording) {
+        ensureLoaded();
+        try {
+            if (writer == null) {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(WRITER.writeValueAsString(recording));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Écriture impossible dans " + path, e);
+        }
+        recordings.put(recording.key(), recording);
+    }
+
+    public int size() {
+        ensureLoaded();
+        return recordings.size();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            if (Files.exists(path)) {
+                int invalides = 0;
+                try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        try {
+                            ReplayRecording recording = READER.readValue(line);
+                            recordings.put(recording.key(), recording);
+                        } catch (IOException e) {
+                            invalides++; // ligne tronquée (arrêt pendant l'écriture) : ignorée
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Lecture impossible de " + path, e);
+                }
+                log.info("Replay : {} enregistrements chargés depuis {} ({} lignes ignorées)",
+                        recordings.size(), path, invalides);
+            } else {
+                log.info("Replay : aucun enregistrement existant ({})", path);
+            }
+            loaded = true;
+        }
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Replay : fermeture de {} impossible: {}", path, e.getMessage());
+            }
+            writer = null;
+        }
+    }
+}
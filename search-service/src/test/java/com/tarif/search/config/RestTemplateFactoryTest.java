@@ -0,0 +1,23 @@
+package com.tarif.search.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("RestTemplateFactory — tag uri des appels HTTP sortants")
+class RestTemplateFactoryTest {
+
+    @Test
+    @DisplayName("Identifiants de batch et de fichier remplacés, segments fixes conservés")
+    void normalizedPath_doitRemplacerLesIdentifiants() {
+        assertThat(RestTemplateFactory.normalizedPath(
+                "https://api.anthropic.com/v1/messages/batches/msgbatch_01HkcTjaV5uDC8jWR4ZsDV8d/results"))
+                .isEqualTo("/v1/messages/batches/{id}/results");
+        assertThat(RestTemplateFactory.normalizedPath("https://api.openai.com/v1/files/file-abc123/content?x=1"))
+                .isEqualTo("/v1/files/{id}/content");
+        assertThat(RestTemplateFactory.normalizedPath("http://localhost:11434/api/generate"))
+                .isEqualTo("/api/generate");
+        assertThat(RestTemplateFactory.normalizedPath("https://198.51.100.7")).isEqualTo("/");
+    }
+}
@@ -0,0 +1,152 @@
+package com.tarif.search.controller;
+
+import com.tarif.search.model.BatchCascadeJob;
+import com.tarif.search.model.BatchTracking;
+import com.tarif.search.service.ai.batch.BatchCascadeService;
+import com.tarif.search.service.ai.batch.BatchService;
+import com.tarif.search.service.ai.batch.BatchTrackingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour BatchSearchController — accès aux cascades et batches suivis d'un autre utilisateur.
+ *
+ * Stratégie : services mockés, contrôleur appelé directement avec un JWT dans le SecurityContext.
+ * Une ressource d'un autre utilisateur doit être répondue 404, sauf pour un administrateur.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BatchSearchController — propriété des cascades et batches suivis")
+class BatchSearchControllerTest {
+
+    @Mock private BatchService batchService;
+    @Mock private BatchCascadeService batchCascadeService;
+    @Mock private BatchTrackingService batchTrackingService;
+
+    private BatchSearchController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new BatchSearchController(batchService, batchCascadeService, batchTrackingService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void authenticate(String subject, String... roles) {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .subject(subject)
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+        List<SimpleGrantedAuthority> authorities = Arrays.stream(roles)
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                .toList();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt, authorities));
+    }
+
+    private static BatchCascadeJob job(String createdBy) {
+        BatchCascadeJob job = new BatchCascadeJob();
+        job.setId("job-1");
+        job.setStatus(BatchCascadeJob.JobStatus.RUNNING);
+        job.setMaxLevel("POSITIONS10");
+        job.setCreatedBy(createdBy);
+        return job;
+    }
+
+    private static BatchTracking tracking(String createdBy) {
+        BatchTracking tracking = new BatchTracking();
+        tracking.setBatchId("batch-1");
+        tracking.setCreatedBy(createdBy);
+        return tracking;
+    }
+
+    // ==================== Cascades ====================
+
+    @Test
+    @DisplayName("Cascade d'un autre utilisateur : 404 sans lire les articles")
+    void getCascade_autreUtilisateur_doitRepondre404() {
+        authenticate("user-b");
+        when(batchCascadeService.getJob("job-1")).thenReturn(Optional.of(job("user-a")));
+
+        assertThat(controller.getCascade("job-1").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        verify(batchCascadeService, never()).getItems(any());
+    }
+
+    @Test
+    @DisplayName("Cascade de l'appelant : 200")
+    void getCascade_proprietaire_doitRepondre200() {
+        authenticate("user-a");
+        when(batchCascadeService.getJob("job-1")).thenReturn(Optional.of(job("user-a")));
+
+        assertThat(controller.getCascade("job-1").getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    @DisplayName("Cascade d'un autre utilisateur vue par un administrateur : 200")
+    void getCascade_administrateur_doitRepondre200() {
+        authenticate("admin", "ADMIN");
+        when(batchCascadeService.getJob("job-1")).thenReturn(Optional.of(job("user-a")));
+
+        assertThat(controller.getCascade("job-1").getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    @DisplayName("Annulation de la cascade d'un autre utilisateur : 404 sans annuler")
+    void cancelCascade_autreUtilisateur_doitRepondre404SansAnnuler() {
+        authenticate("user-b");
+        when(batchCascadeService.getJob("job-1")).thenReturn(Optional.of(job("user-a")));
+
+        assertThat(controller.cancelCascade("job-1").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        verify(batchCascadeService, never()).cancelCascade(any());
+    }
+
+    // ==================== Batches suivis ====================
+
+    @Test
+    @DisplayName("Statut, résultats et annulation d'un batch suivi d'un autre utilisateur : 404")
+    void batchSuivi_autreUtilisateur_doitRepondre404() {
+        authenticate("user-b");
+        when(batchTrackingService.find("batch-1")).thenReturn(Optional.of(tracking("user-a")));
+
+        assertThat(controller.getBatchStatus("batch-1").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(controller.getBatchResults("batch-1", null, null, null, null).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(controller.cancelBatch("batch-1").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        verify(batchService, never()).cancelBatch(any());
+        verify(batchService, never()).getBatchStatus(any());
+        verify(batchTrackingService, never()).getCachedStatus(any());
+    }
+
+    @Test
+    @DisplayName("Annulation d'un batch suivi par son créateur : transmise au provider")
+    void cancelBatch_proprietaire_doitAnnuler() {
+        authenticate("user-a");
+        when(batchTrackingService.find("batch-1")).thenReturn(Optional.of(tracking("user-a")));
+        when(batchService.cancelBatch("batch-1")).thenReturn(true);
+
+        assertThat(controller.cancelBatch("batch-1").getStatusCode()).isEqualTo(HttpStatus.OK);
+        verify(batchTrackingService).pollSoon("batch-1");
+    }
+}
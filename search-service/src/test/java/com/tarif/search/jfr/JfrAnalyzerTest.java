@@ -0,0 +1,79 @@
+package com.tarif.search.jfr;
+
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests unitaires pour JfrAnalyzer — événements de la cascade enregistrés puis relus depuis un fichier .jfr.
+ */
+@DisplayName("JfrAnalyzer — synthèse d'un enregistrement JFR")
+class JfrAnalyzerTest {
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    @DisplayName("Événements niveau / provider / quota → regroupés par niveau et par provider / modèle / niveau")
+    void analyser_doitRegrouperLesEvenementsDeLaCascade() throws Exception {
+        // given — un enregistrement limité aux événements de la cascade
+        Path fichier = dossier.resolve("cascade.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(CascadeLevelEvent.class);
+            recording.enable(ProviderCallEvent.class);
+            recording.enable(QuotaCheckEvent.class);
+            recording.start();
+
+            niveau("SECTIONS", 2, "ok");
+            niveau("SECTIONS", 1, "ok");
+            niveau("CHAPITRES", 2, "vide");
+            appel("openai", "gpt-4.1-mini", "SECTIONS", 1000, 50, "ok");
+            appel("openai", "gpt-4.1-mini", "SECTIONS", 0, 0, "erreur");
+            QuotaCheckEvent quota = new QuotaCheckEvent();
+            quota.status = "ok";
+            quota.commit();
+
+            recording.stop();
+            recording.dump(fichier);
+        }
+
+        // when
+        JfrAnalyzer.Rapport rapport = JfrAnalyzer.analyser(fichier);
+
+        // then
+        assertThat(rapport.niveaux()).containsOnlyKeys("SECTIONS", "CHAPITRES");
+        assertThat(rapport.niveaux().get("SECTIONS").durees).hasSize(2);
+        assertThat(rapport.niveaux().get("SECTIONS").tentatives).isEqualTo(3);
+        assertThat(rapport.niveaux().get("CHAPITRES").resultats).containsEntry("vide", 1);
+
+        JfrAnalyzer.Groupe provider = rapport.providers().get("openai / gpt-4.1-mini / SECTIONS");
+        assertThat(provider.durees).hasSize(2);
+        assertThat(provider.tokens).isEqualTo(1050);
+        assertThat(provider.resultats).containsEntry("ok", 1).containsEntry("erreur", 1);
+        assertThat(rapport.quota().durees).hasSize(1);
+    }
+
+    private static void niveau(String niveau, int tentatives, String resultat) {
+        CascadeLevelEvent event = new CascadeLevelEvent();
+        event.niveau = niveau;
+        event.tentatives = tentatives;
+        event.resultat = resultat;
+        event.commit();
+    }
+
+    private static void appel(String provider, String model, String niveau, int prompt, int completion, String status) {
+        ProviderCallEvent event = new ProviderCallEvent();
+        event.provider = provider;
+        event.model = model;
+        event.niveau = niveau;
+        event.promptTokens = prompt;
+        event.completionTokens = completion;
+        event.status = status;
+        event.commit();
+    }
+}
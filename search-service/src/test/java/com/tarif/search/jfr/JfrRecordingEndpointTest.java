@@ -0,0 +1,44 @@
+package com.tarif.search.jfr;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests unitaires pour JfrRecordingEndpoint — rotation des dumps.
+ */
+@DisplayName("JfrRecordingEndpoint — rotation des dumps")
+class JfrRecordingEndpointTest {
+
+    @TempDir
+    Path dossier;
+
+    private Path dump(String nom, long ageSecondes) throws Exception {
+        Path fichier = Files.writeString(dossier.resolve(nom), "jfr");
+        Files.setLastModifiedTime(fichier, FileTime.from(Instant.now().minusSeconds(ageSecondes)));
+        return fichier;
+    }
+
+    @Test
+    @DisplayName("Au-delà de la limite → seuls les dumps les plus récents sont conservés")
+    void rotate_doitSupprimerLesPlusAnciens() throws Exception {
+        Path recent = dump("recent.jfr", 10);
+        Path moyen = dump("moyen.jfr", 100);
+        Path ancien = dump("ancien.jfr", 1000);
+        Path autre = dump("notes.txt", 5000);
+
+        JfrRecordingEndpoint.rotate(dossier, 2);
+
+        assertThat(recent).exists();
+        assertThat(moyen).exists();
+        assertThat(ancien).doesNotExist();
+        assertThat(autre).exists();
+    }
+}
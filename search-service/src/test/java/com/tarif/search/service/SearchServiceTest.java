@@ -1,5 +1,7 @@
 package com.tarif.search.service;
 
+import com.tarif.search.explain.SearchExplain;
+import com.tarif.search.explain.SearchTimeline;
 import com.tarif.search.model.Chapitre;
 import com.tarif.search.model.Position;
 import com.tarif.search.model.Position4;
@@ -9,6 +11,8 @@ import com.tarif.search.model.Section;
 import com.tarif.search.service.ai.AiPrompts;
 import com.tarif.search.service.ai.AiService;
 import com.tarif.search.service.ai.DefTheme;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -17,6 +21,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -52,6 +57,7 @@ class SearchServiceTest {
     @Mock private Position10DzService position10DzService;
 
     private SearchService searchService;
+    private SimpleMeterRegistry meterRegistry;
 
     // ── Données de test ────────────────────────────────────────────────────────
 
@@ -73,10 +79,12 @@ class SearchServiceTest {
 
     @BeforeEach
     void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
         searchService = new SearchService(
                 aiService, aiPrompts,
                 sectionService, chapitreService,
-                position4Service, position6DzService, position10DzService
+                position4Service, position6DzService, position10DzService,
+                meterRegistry, Tracer.NOOP
         );
 
         // Par défaut : theme sans cascade, sans description (mode simple)
@@ -292,6 +300,54 @@ class SearchServiceTest {
             verify(aiService, times(3))
                     .promptEtReponse(eq("SECTIONS"), any(), any(), anyBoolean());
         }
+
+        @Test
+        @DisplayName("Tentatives et appels comptés par niveau et par mode → taux de retry mesurable")
+        void executeWithRetry_doitCompterTentativesEtAppels() {
+            // given — mode structuré, succès à la 2ème tentative
+            when(aiService.isStructuredOutput()).thenReturn(true);
+            when(sectionService.getAllSections()).thenReturn(List.of(sectionII));
+            when(aiService.promptEtReponse(eq("SECTIONS"), any(), any(), anyBoolean()))
+                    .thenReturn(Collections.emptyList())
+                    .thenReturn(ia_sections);
+
+            // when
+            searchService.search(TERME, SearchService.SearchLevel.SECTIONS);
+
+            // then — 2 tentatives pour 1 appel réussi : taux de retry = 1
+            assertThat(meterRegistry.counter("ai.search.attempts", "niveau", "SECTIONS", "mode", "structured").count())
+                    .isEqualTo(2.0);
+            assertThat(meterRegistry.counter("ai.search.calls",
+                    "niveau", "SECTIONS", "mode", "structured", "resultat", "ok").count())
+                    .isEqualTo(1.0);
+            assertThat(meterRegistry.counter("ai.search.retries", "niveau", "SECTIONS", "mode", "structured").count())
+                    .isEqualTo(1.0);
+            assertThat(meterRegistry.counter("ai.search.empty", "niveau", "SECTIONS", "mode", "structured").count())
+                    .isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("RAG positions6 > 80 → arrêt anticipé compté avec sa raison, taille du RAG mesurée")
+        void search_ragPositions6TropVolumineux_doitCompterLArretAnticipe() {
+            // given — 81 positions6 candidates sous la position4 retenue
+            configurerJusquauNiveau2();
+            List<Position6Dz> rag = new ArrayList<>();
+            for (int i = 0; i <= SearchService.MAX_RAG_POSITIONS6; i++) {
+                rag.add(new Position6Dz((long) i, String.format("0808 %02d", i), "Pommes " + i));
+            }
+            when(position6DzService.getPosition6DzsByPrefix("0808%")).thenReturn(rag);
+
+            // when
+            searchService.search(TERME, SearchService.SearchLevel.POSITIONS10);
+
+            // then
+            assertThat(meterRegistry.counter("cascade.early_exit",
+                    "niveau", "POSITIONS6", "raison", "rag_trop_volumineux").count())
+                    .isEqualTo(1.0);
+            assertThat(meterRegistry.summary("cascade.rag.size", "niveau", "POSITIONS6").max())
+                    .isEqualTo(81.0);
+            verify(aiService, never()).promptEtReponse(eq("POSITIONS6"), any(), any(), anyBoolean());
+        }
     }
 
     // ══════════════════════════════════════════════════════════════════════════
@@ -418,6 +474,93 @@ class SearchServiceTest {
         }
     }
 
+    // ══════════════════════════════════════════════════════════════════════════
+    // Groupe 7 : Mode explain (timeline par recherche)
+    // ══════════════════════════════════════════════════════════════════════════
+
+    @Nested
+    @DisplayName("Mode explain")
+    class ExplainTest {
+
+        private SearchTimeline rechercheExpliquee() {
+            SearchTimeline timeline = new SearchTimeline();
+            timeline.setId("t1");
+            SearchExplain.start(timeline);
+            try {
+                return SearchExplain.finish(searchService.search(TERME, SearchService.SearchLevel.POSITIONS10));
+            } finally {
+                SearchExplain.finish(null);
+            }
+        }
+
+        @Test
+        @DisplayName("Level 3 vide → timeline : un bloc par niveau, 2 tentatives vides, repli sur Level 2 tracé")
+        void search_positions6Vide_doitTracerTentativesEtRepli() {
+            // given
+            configurerJusquauNiveau2();
+            when(position6DzService.getPosition6DzsByPrefix("0808%")).thenReturn(List.of(pos6_080810));
+            when(aiService.promptEtReponse(eq("POSITIONS6"), any(), any(), anyBoolean()))
+                    .thenReturn(Collections.emptyList());
+            when(position10DzService.getPosition10DzsWithContextByPrefix(anyString()))
+                    .thenReturn(Collections.emptyList());
+
+            // when
+            SearchTimeline timeline = rechercheExpliquee();
+
+            // then
+            assertThat(timeline.getNiveaux()).extracting(SearchTimeline.Niveau::getNiveau)
+                    .containsExactly("SECTIONS", "CHAPITRES", "POSITIONS4", "POSITIONS6");
+            SearchTimeline.Niveau positions6 = timeline.getNiveaux().get(3);
+            assertThat(positions6.getRagSize()).isEqualTo(1);
+            assertThat(positions6.getResultat()).isEqualTo("vide");
+            assertThat(positions6.getTentatives()).extracting(SearchTimeline.Tentative::getResultat)
+                    .containsExactly("vide", "vide");
+            assertThat(timeline.getNiveaux().get(2).getCodesRetenus()).containsExactly("0808");
+            assertThat(timeline.getDecisions()).extracting(SearchTimeline.Decision::niveau, SearchTimeline.Decision::raison)
+                    .containsExactly(tuple("POSITIONS6", "niveau_vide"), tuple("POSITIONS10", "rag_vide"));
+            assertThat(timeline.getCodesRetournes()).containsExactly("0808");
+        }
+
+        @Test
+        @DisplayName("RAG positions6 > 80 → décision rag_trop_volumineux avec la taille du RAG, aucun bloc POSITIONS6")
+        void search_ragPositions6TropVolumineux_doitTracerLaDecision() {
+            // given
+            configurerJusquauNiveau2();
+            List<Position6Dz> rag = new ArrayList<>();
+            for (int i = 0; i <= SearchService.MAX_RAG_POSITIONS6; i++) {
+                rag.add(new Position6Dz((long) i, String.format("0808 %02d", i), "Pommes " + i));
+            }
+            when(position6DzService.getPosition6DzsByPrefix("0808%")).thenReturn(rag);
+
+            // when
+            SearchTimeline timeline = rechercheExpliquee();
+
+            // then
+            assertThat(timeline.getNiveaux()).extracting(SearchTimeline.Niveau::getNiveau)
+                    .containsExactly("SECTIONS", "CHAPITRES", "POSITIONS4");
+            assertThat(timeline.getDecisions()).singleElement()
+                    .satisfies(d -> {
+                        assertThat(d.raison()).isEqualTo("rag_trop_volumineux");
+                        assertThat(d.detail()).contains("81 lignes");
+                    });
+        }
+
+        @Test
+        @DisplayName("Sans explain → aucune timeline, la cascade n'est pas affectée")
+        void search_sansExplain_neDoitRienEnregistrer() {
+            // given
+            configurerJusquauNiveau4();
+
+            // when
+            List<Position> result = searchService.search(TERME, SearchService.SearchLevel.POSITIONS10);
+
+            // then
+            assertThat(SearchExplain.isActive()).isFalse();
+            assertThat(SearchExplain.finish(result)).isNull();
+            assertThat(result).extracting(Position::getCode).containsExactly("0808 10 10");
+        }
+    }
+
     // ══════════════════════════════════════════════════════════════════════════
     // Helpers : configuration progressive de la cascade
     // ══════════════════════════════════════════════════════════════════════════
@@ -1,6 +1,10 @@
 package com.tarif.search.service.ai;
 
 import com.tarif.search.model.Position;
+import com.tarif.search.model.UsageInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -33,10 +37,16 @@ class AiServiceTest {
 
     private AiService aiService;
 
+    /** Constructeur Spring avec les valeurs par défaut : sans rejeu ni micro-batching, traces no-op. */
+    private AiService aiService(String provider, MeterRegistry registry) {
+        return new AiService(openAiService, anthropicService, ollamaService, null, provider,
+                false, 15, 8, List.of("SECTIONS"), 120_000, registry, Tracer.NOOP);
+    }
+
     /** Crée un AiService configuré sur openai (défaut). */
     @BeforeEach
     void setUp() {
-        aiService = new AiService(openAiService, anthropicService, ollamaService, "openai");
+        aiService = aiService("openai", new SimpleMeterRegistry());
     }
 
     // ─── Sélection du provider ────────────────────────────────────────────────
@@ -65,7 +75,7 @@ class AiServiceTest {
     @DisplayName("Provider 'anthropic' → AnthropicService est appelé")
     void promptEtReponse_avecProviderAnthropic_doitAppelerAnthropicService() {
         // given
-        aiService = new AiService(openAiService, anthropicService, ollamaService, "anthropic");
+        aiService = aiService("anthropic", new SimpleMeterRegistry());
         when(anthropicService.demanderAiAide(anyString(), anyString(), anyBoolean(), anyString()))
                 .thenReturn("[{\"code\":\"08\"}]");
 
@@ -81,7 +91,7 @@ class AiServiceTest {
     @DisplayName("Provider 'ollama' → OllamaService est appelé")
     void promptEtReponse_avecProviderOllama_doitAppelerOllamaService() {
         // given
-        aiService = new AiService(openAiService, anthropicService, ollamaService, "ollama");
+        aiService = aiService("ollama", new SimpleMeterRegistry());
         when(ollamaService.demanderAiAide(anyString(), anyString(), anyBoolean(), anyString()))
                 .thenReturn("[{\"code\":\"08\"}]");
 
@@ -97,7 +107,7 @@ class AiServiceTest {
     @DisplayName("Provider inconnu → OpenAiService est utilisé par défaut")
     void promptEtReponse_avecProviderInconnu_doitFallbackSurOpenAi() {
         // given
-        aiService = new AiService(openAiService, anthropicService, ollamaService, "unknown-provider");
+        aiService = aiService("unknown-provider", new SimpleMeterRegistry());
         when(openAiService.demanderAiAide(anyString(), anyString(), anyBoolean(), anyString()))
                 .thenReturn("[{\"code\":\"08\"}]");
 
@@ -137,6 +147,84 @@ class AiServiceTest {
         assertThat(result).isEmpty();
     }
 
+    // ─── Métriques ───────────────────────────────────────────────────────────
+
+    @Test
+    @DisplayName("Appel provider → latence et tokens par provider/modèle/niveau, erreurs par type d'exception")
+    void promptEtReponse_doitMesurerLatenceTokensEtErreursDuProvider() {
+        // given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        aiService = aiService("openai", registry);
+        when(openAiService.getModel()).thenReturn("gpt-4.1-mini");
+        when(openAiService.getLastUsageInfo()).thenReturn(new UsageInfo(1100, 0.01, 1000, 100, 0.0006));
+        when(openAiService.demanderAiAide(anyString(), anyString(), anyBoolean(), anyString()))
+                .thenReturn("[{\"code\":\"II\"}]")
+                .thenThrow(new AiProviderException("Timeout", null));
+
+        // when
+        aiService.promptEtReponse("SECTIONS", "pommes", listeDeTest(), false);
+        assertThatThrownBy(() -> aiService.promptEtReponse("SECTIONS", "pommes", listeDeTest(), false))
+                .isInstanceOf(AiProviderException.class);
+
+        // then
+        assertThat(registry.timer("ai.provider.latency", "provider", "openai", "model", "gpt-4.1-mini",
+                "niveau", "SECTIONS", "resultat", "ok").count()).isEqualTo(1);
+        assertThat(registry.counter("ai.provider.tokens", "provider", "openai", "model", "gpt-4.1-mini",
+                "niveau", "SECTIONS", "type", "prompt").count()).isEqualTo(1000.0);
+        assertThat(registry.counter("ai.provider.errors", "provider", "openai", "model", "gpt-4.1-mini",
+                "niveau", "SECTIONS", "exception", "AiProviderException").count()).isEqualTo(1.0);
+        assertThat(registry.timer("cascade.stage.duration", "niveau", "SECTIONS", "etape", "provider").count())
+                .isEqualTo(2);
+        assertThat(registry.summary("cascade.prompt.size", "niveau", "SECTIONS").count()).isEqualTo(2);
+        assertThat(registry.get("ai.provider.inflight").gauge().value()).isZero();
+    }
+
+    // ─── Sortie structurée ───────────────────────────────────────────────────
+
+    @Test
+    @DisplayName("Sortie structurée → objet {positions: [...]} désérialisé directement en Position")
+    void promptEtReponse_sortieStructuree_doitParserLeSchemaDirectement() {
+        // given
+        when(openAiService.isStructuredOutput()).thenReturn(true);
+        when(openAiService.demanderAiAide(anyString(), anyString(), anyBoolean(), anyString()))
+                .thenReturn("{\"positions\":[{\"code\":\"0808 10\",\"justification\":\"Pommes fraîches\"}]}");
+
+        // when
+        List<Position> result = aiService.promptEtReponse("POSITIONS6", "pommes", listeDeTest(), true);
+
+        // then
+        assertThat(result).singleElement().satisfies(p -> {
+            assertThat(p.getCode()).isEqualTo("0808 10");
+            assertThat(p.getJustification()).isEqualTo("Pommes fraîches");
+        });
+    }
+
+    @Test
+    @DisplayName("Sortie structurée non conforme → repli sur le parsing libre")
+    void promptEtReponse_sortieStructureeNonConforme_doitReplierSurParsingLibre() {
+        // given — réponse hors schéma (ex. passerelle ignorant response_format)
+        when(openAiService.isStructuredOutput()).thenReturn(true);
+        when(openAiService.demanderAiAide(anyString(), anyString(), anyBoolean(), anyString()))
+                .thenReturn("```json\n[{\"code\":\"08\"}]\n```");
+
+        // when
+        List<Position> result = aiService.promptEtReponse("SECTIONS", "fruit", listeDeTest(), false);
+
+        // then
+        assertThat(result).extracting(Position::getCode).containsExactly("08");
+    }
+
+    @Test
+    @DisplayName("Schéma : justification requise uniquement si demandée, racine objet stricte")
+    void aiOutputSchema_doitAdapterLesProprietesRequises() {
+        assertThat(AiOutputSchema.schema(true).toString()).contains("justification");
+        assertThat(AiOutputSchema.schema(false).toString()).doesNotContain("justification");
+        assertThat(AiOutputSchema.schema(false))
+                .containsEntry("type", "object")
+                .containsEntry("required", List.of(AiOutputSchema.ROOT_PROPERTY))
+                .containsEntry("additionalProperties", false);
+    }
+
     // ─── Contenu du prompt envoyé ────────────────────────────────────────────
 
     @Test
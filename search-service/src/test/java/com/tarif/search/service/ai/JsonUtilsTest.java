@@ -1,6 +1,8 @@
 package com.tarif.search.service.ai;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.DatabindException;
 import com.tarif.search.model.Position;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -11,8 +13,8 @@ import static org.assertj.core.api.Assertions.*;
 
 /**
  * Tests unitaires pour JsonUtils.
- * Couvre les trois méthodes publiques : cleanJsonString, isValidJson,
- * conversionReponseIaToList.
+ * Couvre les méthodes publiques : cleanJsonString, isValidJson,
+ * conversionReponseIaToList et parsePositions.
  */
 @DisplayName("JsonUtils — nettoyage et parsing JSON")
 class JsonUtilsTest {
@@ -141,4 +143,43 @@ class JsonUtilsTest {
         assertThat(positions.get(0).getCode()).isEqualTo("0808");
         assertThat(positions.get(0).getJustification()).isNull();
     }
+
+    // ── parsePositions (une seule passe) ─────────────────────────────────────
+
+    @Test
+    @DisplayName("Réponse markdown ```json [...] ``` est parsée sans nettoyage préalable")
+    void parsePositions_avecBlocMarkdown_doitParserDirectement() throws JsonProcessingException {
+        String reponse = "```json\n[{\"code\": \"0808 10\", \"justification\": \"Pommes\"}]\n```";
+
+        List<Position> positions = JsonUtils.parsePositions(reponse);
+
+        assertThat(positions).extracting(Position::getCode).containsExactly("0808 10");
+        assertThat(positions.get(0).getJustification()).isEqualTo("Pommes");
+    }
+
+    @Test
+    @DisplayName("Objet enveloppant : le premier tableau est retenu, les autres champs sont sautés")
+    void parsePositions_avecObjetEnveloppant_doitLirePremierTableau() throws JsonProcessingException {
+        String reponse = "{\"meta\": {\"n\": 2}, \"codes\": [{\"code\": \"08\"}, {\"code\": \"20\"}]}";
+
+        List<Position> positions = JsonUtils.parsePositions(reponse);
+
+        assertThat(positions).extracting(Position::getCode).containsExactly("08", "20");
+    }
+
+    @Test
+    @DisplayName("Texte libre → erreur de lecture JSON (StreamReadException)")
+    void parsePositions_avecTexteLibre_doitLeverStreamReadException() {
+        assertThatThrownBy(() -> JsonUtils.parsePositions("Désolé, je ne peux pas identifier de code."))
+                .isInstanceOf(StreamReadException.class);
+    }
+
+    @Test
+    @DisplayName("JSON valide mais hors format (scalaire, champ inconnu) → DatabindException")
+    void parsePositions_avecFormatInattendu_doitLeverDatabindException() {
+        assertThatThrownBy(() -> JsonUtils.parsePositions("42"))
+                .isInstanceOf(DatabindException.class);
+        assertThatThrownBy(() -> JsonUtils.parsePositions("{\"code\": \"08\", \"score\": 0.9}"))
+                .isInstanceOf(DatabindException.class);
+    }
 }
@@ -0,0 +1,106 @@
+package com.tarif.search.service.ai;
+
+import com.tarif.search.model.UsageInfo;
+import com.tarif.search.service.ai.replay.ReplayLatency;
+import com.tarif.search.service.ai.replay.ReplayRecording;
+import com.tarif.search.service.ai.replay.ReplayStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour ReplayAiProvider — enregistrement via le provider réel mocké,
+ * rejeu hors ligne depuis le ReplayStore, latence simulée.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ReplayAiProvider — enregistrement et rejeu des réponses IA")
+class ReplayAiProviderTest {
+
+    private static final String PROMPT = "RAG pour la recherche des : SECTIONS\n\nProduit : \"pommes\"";
+
+    @Mock private OpenAiService openAiService;
+    @Mock private AnthropicService anthropicService;
+    @Mock private OllamaService ollamaService;
+
+    @TempDir
+    Path dossier;
+
+    private ReplayAiProvider provider(String mode, ReplayStore store, ReplayLatency latency, String onMiss) {
+        return new ReplayAiProvider(openAiService, anthropicService, ollamaService, store, latency,
+                mode, "openai", "", onMiss);
+    }
+
+    private static ReplayLatency sansLatence() {
+        return new ReplayLatency("none", 0, 800, 2500, 30000);
+    }
+
+    @Test
+    @DisplayName("record puis replay (nouveau store, même fichier) → même réponse et même usage, sans appel réseau")
+    void recordPuisReplay_doitRejouerLaReponseEnregistree() {
+        // given — enregistrement via le provider réel
+        Path fichier = dossier.resolve("recordings.jsonl");
+        when(openAiService.getModel()).thenReturn("gpt-4.1-mini");
+        when(openAiService.demanderAiAide(anyString(), eq(PROMPT), eq(false), eq("SECTIONS")))
+                .thenReturn("[{\"code\":\"II\"}]");
+        when(openAiService.getLastUsageInfo()).thenReturn(new UsageInfo(1100, 0.01, 1000, 100, 0.0006));
+        provider("record", new ReplayStore(fichier.toString()), sansLatence(), "error")
+                .demanderAiAide("SECTIONS", PROMPT, false, "SECTIONS");
+
+        // when — rejeu depuis le fichier relu
+        ReplayAiProvider replay = provider("replay", new ReplayStore(fichier.toString()), sansLatence(), "error");
+        String reponse = replay.demanderAiAide("SECTIONS", PROMPT, false, "SECTIONS");
+
+        // then
+        assertThat(reponse).isEqualTo("[{\"code\":\"II\"}]");
+        assertThat(replay.getLastUsageInfo().getPromptTokens()).isEqualTo(1000);
+        assertThat(replay.getLastUsageInfo().getTokenCostUsd()).isEqualTo(0.0006);
+        verify(openAiService, times(1)).demanderAiAide(anyString(), anyString(), anyBoolean(), anyString());
+    }
+
+    @Test
+    @DisplayName("Prompt différent → miss : AiProviderException (on-miss=error) ou réponse vide (on-miss=empty)")
+    void replay_promptAbsent_doitAppliquerLaPolitiqueDeMiss() {
+        when(openAiService.getModel()).thenReturn("gpt-4.1-mini");
+        ReplayStore store = new ReplayStore(dossier.resolve("vide.jsonl").toString());
+
+        assertThatThrownBy(() -> provider("replay", store, sansLatence(), "error")
+                .demanderAiAide("SECTIONS", PROMPT, false, "SECTIONS"))
+                .isInstanceOf(AiProviderException.class);
+        assertThat(provider("replay", store, sansLatence(), "empty")
+                .demanderAiAide("SECTIONS", PROMPT, false, "SECTIONS")).isEmpty();
+        verify(openAiService, never()).demanderAiAide(anyString(), anyString(), anyBoolean(), anyString());
+    }
+
+    @Test
+    @DisplayName("La clé dépend du modèle, du system prompt et du user prompt")
+    void key_doitDiscriminerModeleEtPrompts() {
+        String reference = ReplayStore.key("gpt-4.1-mini", "system", "user");
+
+        assertThat(ReplayStore.key("gpt-4.1-mini", "system", "user")).isEqualTo(reference);
+        assertThat(ReplayStore.key("gpt-4.1-nano", "system", "user")).isNotEqualTo(reference);
+        assertThat(ReplayStore.key("gpt-4.1-mini", "system2", "user")).isNotEqualTo(reference);
+        assertThat(ReplayStore.key("gpt-4.1-mini", "system", "user2")).isNotEqualTo(reference);
+    }
+
+    @Test
+    @DisplayName("Latence : recorded rejoue la latence enregistrée, fixed la valeur fixe, distribution reste bornée")
+    void latence_doitSuivreLeModeConfigure() {
+        ReplayRecording recording = new ReplayRecording("k", "m", "SECTIONS", "[]", 0, 0, 0, 0, 420, null);
+
+        assertThat(new ReplayLatency("recorded", 0, 800, 2500, 30000).delayMs(recording)).isEqualTo(420);
+        assertThat(new ReplayLatency("fixed", 150, 800, 2500, 30000).delayMs(recording)).isEqualTo(150);
+        ReplayLatency distribution = new ReplayLatency("distribution", 0, 800, 2500, 3000);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(distribution.delayMs(recording)).isBetween(0L, 3000L);
+        }
+    }
+}
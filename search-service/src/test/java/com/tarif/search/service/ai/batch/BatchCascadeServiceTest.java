@@ -0,0 +1,174 @@
+package com.tarif.search.service.ai.batch;
+
+import com.tarif.search.model.BatchCascadeItem;
+import com.tarif.search.model.BatchCascadeItem.ItemStatus;
+import com.tarif.search.model.BatchCascadeJob;
+import com.tarif.search.model.Position;
+import com.tarif.search.repository.BatchCascadeItemRepository;
+import com.tarif.search.repository.BatchCascadeJobRepository;
+import com.tarif.search.service.SearchService;
+import com.tarif.search.service.SearchService.SearchLevel;
+import com.tarif.search.service.ai.AiPrompts;
+import com.tarif.search.service.ai.AiService;
+import com.tarif.search.service.ai.DefTheme;
+import com.tarif.search.service.ai.batch.models.SearchRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour BatchCascadeService — la cascade batch côté serveur.
+ *
+ * Stratégie : BatchService, SearchService et les repositories sont mockés.
+ * On vérifie la machine à états des articles (retries, replis, arrêt au niveau max)
+ * et la construction des rounds soumis au provider.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BatchCascadeService — cascade multi-niveaux par batch")
+class BatchCascadeServiceTest {
+
+    @Mock private BatchService batchService;
+    @Mock private SearchService searchService;
+    @Mock private AiService aiService;
+    @Mock private AiPrompts aiPrompts;
+    @Mock private BatchCascadeJobRepository jobRepository;
+    @Mock private BatchCascadeItemRepository itemRepository;
+
+    private BatchCascadeService cascadeService;
+
+    @BeforeEach
+    void setUp() {
+        cascadeService = new BatchCascadeService(batchService, searchService, aiService, aiPrompts, jobRepository, itemRepository);
+        lenient().when(aiPrompts.getDefTheme()).thenReturn(DefTheme.builder().build());
+    }
+
+    private BatchCascadeItem item(SearchLevel level, int attempts) {
+        BatchCascadeItem item = new BatchCascadeItem();
+        item.setJobId("job-1");
+        item.setCustomId("p1");
+        item.setSearchTerm("pommes fraîches");
+        item.setCurrentLevel(level.name());
+        item.setAttempts(attempts);
+        item.setStatus(ItemStatus.SUBMITTED);
+        item.setBatchId("batch-1");
+        return item;
+    }
+
+    @Test
+    @DisplayName("Réponse au Level 0 → l'article passe au Level 1, tentatives remises à zéro")
+    void applyAnswer_avecSections_doitPasserAuxChapitres() {
+        BatchCascadeItem item = item(SearchLevel.SECTIONS, 1);
+
+        cascadeService.applyAnswer(item, List.of(new Position("II", null)), SearchLevel.POSITIONS10);
+
+        assertThat(item.getStatus()).isEqualTo(ItemStatus.PENDING);
+        assertThat(item.getCurrentLevel()).isEqualTo("CHAPITRES");
+        assertThat(item.getAttempts()).isZero();
+        assertThat(item.getBatchId()).isNull();
+        assertThat(item.getLevelsJson()).contains("\"SECTIONS\"").contains("\"II\"");
+    }
+
+    @Test
+    @DisplayName("Réponse vide avec tentatives restantes → même niveau resoumis")
+    void applyAnswer_reponseVide_doitResoumettreLeMemeNiveau() {
+        BatchCascadeItem item = item(SearchLevel.SECTIONS, 2);
+
+        cascadeService.applyAnswer(item, List.of(), SearchLevel.POSITIONS10);
+
+        assertThat(item.getStatus()).isEqualTo(ItemStatus.PENDING);
+        assertThat(item.getCurrentLevel()).isEqualTo("SECTIONS");
+    }
+
+    @Test
+    @DisplayName("Level 1 vide après 2 tentatives → article terminé avec résultat vide")
+    void applyAnswer_chapitresEpuises_doitTerminerAvecResultatVide() {
+        BatchCascadeItem item = item(SearchLevel.CHAPITRES, 2);
+
+        cascadeService.applyAnswer(item, List.of(), SearchLevel.POSITIONS10);
+
+        assertThat(item.getStatus()).isEqualTo(ItemStatus.DONE);
+        assertThat(cascadeService.getResult(item)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Level 3 vide après 2 tentatives → repli sur les positions4, passage au Level 4")
+    void applyAnswer_positions6Epuisees_doitReplierSurLevel2() {
+        BatchCascadeItem item = item(SearchLevel.POSITIONS4, 1);
+        when(searchService.expandChapterCodesToPosition4(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        cascadeService.applyAnswer(item, List.of(new Position("0808", null)), SearchLevel.POSITIONS10);
+        item.setAttempts(2);
+
+        cascadeService.applyAnswer(item, List.of(), SearchLevel.POSITIONS10);
+
+        assertThat(item.getStatus()).isEqualTo(ItemStatus.PENDING);
+        assertThat(item.getCurrentLevel()).isEqualTo("POSITIONS10");
+        assertThat(item.getLevelsJson()).contains("\"POSITIONS6\":[{\"code\":\"0808\"");
+    }
+
+    @Test
+    @DisplayName("Réponse au niveau max → article terminé avec le niveau le plus fin")
+    void applyAnswer_niveauMax_doitTerminer() {
+        BatchCascadeItem item = item(SearchLevel.POSITIONS6, 1);
+
+        cascadeService.applyAnswer(item, List.of(new Position("0808 10", null)), SearchLevel.POSITIONS6);
+
+        assertThat(item.getStatus()).isEqualTo(ItemStatus.DONE);
+        assertThat(cascadeService.getResult(item))
+                .extracting(Position::getCode)
+                .containsExactly("0808 10");
+    }
+
+    @Test
+    @DisplayName("Démarrage → un seul batch Level 0, RAG des sections construit une seule fois")
+    void startCascade_doitSoumettreLevel0DansUnSeulBatch() {
+        when(batchService.getActiveProviderName()).thenReturn("openai");
+        when(jobRepository.save(any(BatchCascadeJob.class))).thenAnswer(inv -> inv.getArgument(0));
+        List<BatchCascadeItem> enregistres = new ArrayList<>();
+        when(itemRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<BatchCascadeItem> items = inv.getArgument(0);
+            if (enregistres.isEmpty()) {
+                enregistres.addAll(items);
+            }
+            return items;
+        });
+        when(itemRepository.findByJobIdAndStatus(anyString(), eq(ItemStatus.PENDING))).thenAnswer(inv -> enregistres);
+        when(searchService.buildRag(eq(SearchLevel.SECTIONS), isNull())).thenReturn(List.of(new Position("II", "Végétal")));
+        when(aiService.creerContexteRAG(anyString(), anyList())).thenReturn(new StringBuilder("RAG"));
+        when(batchService.createBatch(anyList())).thenReturn("batch-42");
+        when(itemRepository.countByJobIdAndStatus(anyString(), eq(ItemStatus.SUBMITTED))).thenReturn(2L);
+
+        LinkedHashMap<String, String> termes = new LinkedHashMap<>();
+        termes.put("p1", "pommes");
+        termes.put("p2", "t-shirt coton");
+
+        BatchCascadeJob job = cascadeService.startCascade(termes, SearchLevel.POSITIONS10, "user-1");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SearchRequest>> captor = ArgumentCaptor.forClass(List.class);
+        verify(batchService, times(1)).createBatch(captor.capture());
+        assertThat(captor.getValue()).hasSize(2)
+                .allSatisfy(r -> {
+                    assertThat(r.getNiveau()).isEqualTo("SECTIONS");
+                    assertThat(r.isWithJustification()).isFalse();
+                });
+        verify(searchService, times(1)).buildRag(eq(SearchLevel.SECTIONS), isNull());
+        assertThat(enregistres).allSatisfy(i -> {
+            assertThat(i.getStatus()).isEqualTo(ItemStatus.SUBMITTED);
+            assertThat(i.getBatchId()).isEqualTo("batch-42");
+        });
+        assertThat(job.getRound()).isEqualTo(1);
+        assertThat(job.getStatus()).isEqualTo(BatchCascadeJob.JobStatus.RUNNING);
+    }
+}
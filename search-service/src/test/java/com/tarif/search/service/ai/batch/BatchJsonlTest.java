@@ -0,0 +1,67 @@
+package com.tarif.search.service.ai.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests unitaires pour BatchJsonl — écriture et lecture JSONL en flux.
+ */
+@DisplayName("BatchJsonl — JSONL en flux")
+class BatchJsonlTest {
+
+    @Test
+    @DisplayName("Écriture : une ligne JSON par élément")
+    void write_doitProduireUneLigneParElement() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BatchJsonl.write(out, List.of(Map.of("custom_id", "search-0"), Map.of("custom_id", "search-1")).iterator());
+
+        assertThat(out.toString(StandardCharsets.UTF_8))
+                .isEqualTo("{\"custom_id\":\"search-0\"}\n{\"custom_id\":\"search-1\"}\n");
+    }
+
+    @Test
+    @DisplayName("Fichier temporaire gzip relu à l'identique")
+    void writeToTempFile_gzip_doitEtreRelisible() throws Exception {
+        Path file = BatchJsonl.writeToTempFile(List.of(Map.of("n", 1), Map.of("n", 2)).iterator(), true);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            List<JsonNode> lignes = new ArrayList<>();
+
+            int count = BatchJsonl.forEachLine(in, lignes::add, e -> { });
+
+            assertThat(count).isEqualTo(2);
+            assertThat(lignes).extracting(n -> n.path("n").asInt()).containsExactly(1, 2);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Lecture : lignes vides ignorées, ligne invalide signalée sans interrompre la lecture")
+    void forEachLine_ligneInvalide_doitContinuer() throws Exception {
+        String jsonl = "{\"a\":1}\n\n{invalide\n{\"a\":3}\n";
+        List<JsonNode> lignes = new ArrayList<>();
+        List<Exception> erreurs = new ArrayList<>();
+
+        int count = BatchJsonl.forEachLine(
+                new ByteArrayInputStream(jsonl.getBytes(StandardCharsets.UTF_8)), lignes::add, erreurs::add);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(lignes).extracting(n -> n.path("a").asInt()).containsExactly(1, 3);
+        assertThat(erreurs).hasSize(1);
+    }
+}
@@ -0,0 +1,191 @@
+package com.tarif.search.service.ai.batch;
+
+import com.tarif.search.model.BatchShard;
+import com.tarif.search.repository.BatchShardRepository;
+import com.tarif.search.service.ai.batch.models.BatchResult;
+import com.tarif.search.service.ai.batch.models.BatchStatus;
+import com.tarif.search.service.ai.batch.models.SearchRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour BatchService — découpage des gros lots en shards
+ * et fusion des statuts / résultats sous un ID logique.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BatchService — découpage automatique des batches")
+class BatchServiceTest {
+
+    @Mock private AnthropicBatchProvider anthropicBatchProvider;
+    @Mock private OpenAiBatchProvider openAiBatchProvider;
+    @Mock private OllamaBatchProvider ollamaBatchProvider;
+    @Mock private ReplayBatchProvider replayBatchProvider;
+    @Mock private BatchShardRepository shardRepository;
+
+    private BatchService batchService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(openAiBatchProvider.supportsBatching()).thenReturn(true);
+        lenient().when(openAiBatchProvider.maxRequestsPerBatch()).thenReturn(50_000);
+        lenient().when(openAiBatchProvider.maxBytesPerBatch()).thenReturn(200L * 1024 * 1024);
+        batchService = new BatchService(anthropicBatchProvider, openAiBatchProvider, ollamaBatchProvider, replayBatchProvider, shardRepository, "openai", 3, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchService.shutdown();
+    }
+
+    private List<SearchRequest> requetes(int n) {
+        return IntStream.range(0, n)
+                .mapToObj(i -> SearchRequest.builder().searchTerm("produit " + i).ragContext("RAG").build())
+                .toList();
+    }
+
+    @Test
+    @DisplayName("planShards respecte le nombre max de requêtes par shard")
+    void planShards_parNombre() {
+        List<List<SearchRequest>> shards = BatchService.planShards(requetes(7), 3, Long.MAX_VALUE, r -> 1);
+
+        assertThat(shards).extracting(List::size).containsExactly(3, 3, 1);
+    }
+
+    @Test
+    @DisplayName("planShards respecte la taille max estimée par shard")
+    void planShards_parTaille() {
+        List<List<SearchRequest>> shards = BatchService.planShards(requetes(5), 100, 250, r -> 100);
+
+        assertThat(shards).extracting(List::size).containsExactly(2, 2, 1);
+    }
+
+    @Test
+    @DisplayName("Une requête plus grosse que la limite forme son propre shard")
+    void planShards_requeteSurdimensionnee() {
+        List<List<SearchRequest>> shards = BatchService.planShards(requetes(2), 100, 50, r -> 80);
+
+        assertThat(shards).extracting(List::size).containsExactly(1, 1);
+    }
+
+    @Test
+    @DisplayName("Lot sous la limite → un seul batch provider, ID provider retourné tel quel")
+    void createBatch_sousLaLimite_doitRetournerIdProvider() {
+        when(openAiBatchProvider.createBatch(anyList())).thenReturn("batch_abc");
+
+        String id = batchService.createBatch(requetes(3));
+
+        assertThat(id).isEqualTo("batch_abc");
+        verifyNoInteractions(shardRepository);
+    }
+
+    @Test
+    @DisplayName("Lot au-delà de la limite → shards soumis, ID logique et customId globaux")
+    void createBatch_auDelaDeLaLimite_doitDecouperEtEnregistrerLesShards() {
+        when(openAiBatchProvider.createBatch(anyList())).thenReturn("batch_1", "batch_2", "batch_3");
+
+        String id = batchService.createBatch(requetes(7));
+
+        assertThat(id).startsWith(BatchService.MULTI_BATCH_PREFIX);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SearchRequest>> captor = ArgumentCaptor.forClass(List.class);
+        verify(openAiBatchProvider, times(3)).createBatch(captor.capture());
+        assertThat(captor.getAllValues().stream().flatMap(List::stream).map(SearchRequest::getCustomId))
+                .doesNotHaveDuplicates()
+                .hasSize(7);
+        verify(shardRepository).saveAll(argThat(shards -> ((List<?>) shards).size() == 3));
+    }
+
+    @Test
+    @DisplayName("customId attribué → ne reprend pas un customId fourni par l'appelant")
+    void createBatch_customIdFourniDeLaFormeAttribuee_doitEviterLaCollision() {
+        when(openAiBatchProvider.createBatch(anyList())).thenReturn("batch_abc");
+        List<SearchRequest> requetes = new ArrayList<>(requetes(3));
+        requetes.set(0, requetes.get(0).toBuilder().customId("search-2").build());
+
+        batchService.createBatch(requetes);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SearchRequest>> captor = ArgumentCaptor.forClass(List.class);
+        verify(openAiBatchProvider).createBatch(captor.capture());
+        assertThat(captor.getValue()).extracting(SearchRequest::getCustomId)
+                .containsExactly("search-2", "search-1", "search-2-2");
+    }
+
+    @Test
+    @DisplayName("customId fourni en double → refusé avant toute soumission")
+    void createBatch_customIdEnDouble_doitEtreRefuse() {
+        List<SearchRequest> requetes = new ArrayList<>(requetes(3));
+        requetes.set(0, requetes.get(0).toBuilder().customId("produit-1").build());
+        requetes.set(2, requetes.get(2).toBuilder().customId("produit-1").build());
+
+        assertThatThrownBy(() -> batchService.createBatch(requetes))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("produit-1");
+        verify(openAiBatchProvider, never()).createBatch(anyList());
+    }
+
+    @Test
+    @DisplayName("Un shard en échec → shards créés annulés, null retourné")
+    void createBatch_shardEnEchec_doitAnnulerLesAutres() {
+        when(openAiBatchProvider.createBatch(anyList())).thenAnswer(inv ->
+                ((List<?>) inv.getArgument(0)).size() == 1 ? null : "batch_ok");
+
+        String id = batchService.createBatch(requetes(7));
+
+        assertThat(id).isNull();
+        verify(openAiBatchProvider, times(2)).cancelBatch("batch_ok");
+        verifyNoInteractions(shardRepository);
+    }
+
+    @Test
+    @DisplayName("Statut fusionné : compteurs additionnés, 'ended' seulement si tous les shards le sont")
+    void mergeStatuses_doitAdditionnerLesCompteurs() {
+        BatchStatus fini = BatchStatus.builder().processingStatus("ended").resultsUrl("file-1")
+                .requestCounts(Map.of("succeeded", 3, "errored", 1)).build();
+        BatchStatus enCours = BatchStatus.builder().processingStatus("in_progress")
+                .requestCounts(Map.of("processing", 2, "succeeded", 1)).build();
+
+        BatchStatus merged = BatchService.mergeStatuses("multi-x", List.of(fini, enCours));
+
+        assertThat(merged.isInProgress()).isTrue();
+        assertThat(merged.getResultsUrl()).isNull();
+        assertThat(merged.getRequestCounts()).containsEntry("succeeded", 4).containsEntry("processing", 2);
+
+        BatchStatus termine = BatchService.mergeStatuses("multi-x", List.of(fini, fini));
+        assertThat(termine.isEnded()).isTrue();
+        assertThat(termine.getResultsUrl()).isEqualTo("multi-x");
+    }
+
+    @Test
+    @DisplayName("Résultats d'un ID logique → concaténation des résultats de chaque shard")
+    void getBatchResults_idLogique_doitConcatenerLesShards() {
+        BatchShard s1 = new BatchShard(1L, "multi-x", 0, "batch_1", "openai", 2, null);
+        BatchShard s2 = new BatchShard(2L, "multi-x", 1, "batch_2", "openai", 1, null);
+        when(shardRepository.findByLogicalIdOrderByShardIndexAsc("multi-x")).thenReturn(List.of(s1, s2));
+        when(openAiBatchProvider.getBatchResults("batch_1")).thenReturn(new ArrayList<>(Arrays.asList(
+                BatchResult.builder().customId("search-0").build(),
+                BatchResult.builder().customId("search-1").build())));
+        when(openAiBatchProvider.getBatchResults("batch_2")).thenReturn(List.of(
+                BatchResult.builder().customId("search-2").build()));
+
+        List<BatchResult> results = batchService.getBatchResults("multi-x");
+
+        assertThat(results).extracting(BatchResult::getCustomId).containsExactly("search-0", "search-1", "search-2");
+    }
+}
@@ -0,0 +1,213 @@
+package com.tarif.search.service.ai.batch;
+
+import com.tarif.search.event.BatchCompletedEvent;
+import com.tarif.search.event.SearchEventPublisher;
+import com.tarif.search.model.BatchTracking;
+import com.tarif.search.model.BatchTracking.TrackingState;
+import com.tarif.search.repository.BatchTrackingRepository;
+import com.tarif.search.repository.BatchTrackingResultRepository;
+import com.tarif.search.service.ai.batch.models.BatchResult;
+import com.tarif.search.service.ai.batch.models.BatchStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour BatchTrackingService — polling adaptatif, stockage des résultats et notification.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BatchTrackingService — suivi des batches en arrière-plan")
+class BatchTrackingServiceTest {
+
+    @Mock private BatchService batchService;
+    @Mock private BatchTrackingRepository trackingRepository;
+    @Mock private BatchTrackingResultRepository resultRepository;
+    @Mock private SearchEventPublisher eventPublisher;
+    @Mock private RestTemplate restTemplate;
+
+    private BatchTrackingService trackingService;
+
+    @BeforeEach
+    void setUp() {
+        trackingService = new BatchTrackingService(batchService, trackingRepository, resultRepository,
+                eventPublisher, restTemplate, true, 30, 600, 48, 5, List.of("198.51.100.7", "127.0.0.1", "10.0.0.5"));
+    }
+
+    private BatchTracking suivi(String batchId) {
+        BatchTracking tracking = new BatchTracking();
+        tracking.setBatchId(batchId);
+        tracking.setState(TrackingState.TRACKING);
+        tracking.setPollIntervalSeconds(30);
+        tracking.setCreatedAt(LocalDateTime.now());
+        return tracking;
+    }
+
+    @Test
+    @DisplayName("Backoff : doublé tant que le batch stagne, plafonné, réinitialisé s'il avance")
+    void nextInterval_doitDoublerPuisReinitialiser() {
+        assertThat(BatchTrackingService.nextInterval(30, false, 30, 600)).isEqualTo(60);
+        assertThat(BatchTrackingService.nextInterval(400, false, 30, 600)).isEqualTo(600);
+        assertThat(BatchTrackingService.nextInterval(400, true, 30, 600)).isEqualTo(30);
+    }
+
+    @Test
+    @DisplayName("Batch en cours → statut mis en cache et prochaine échéance repoussée")
+    void poll_batchEnCours_doitMettreEnCacheEtReplanifier() {
+        BatchTracking tracking = suivi("batch_1");
+        tracking.setRequestCountsJson("{\"processing\":3}");
+        when(batchService.getBatchStatus("batch_1")).thenReturn(BatchStatus.builder()
+                .id("batch_1").processingStatus("in_progress").requestCounts(Map.of("processing", 3)).build());
+
+        trackingService.poll(tracking);
+
+        assertThat(tracking.getProcessingStatus()).isEqualTo("in_progress");
+        assertThat(tracking.getPollIntervalSeconds()).isEqualTo(60);
+        assertThat(tracking.getNextPollAt()).isAfter(LocalDateTime.now().plusSeconds(50));
+        verify(batchService, never()).streamBatchResults(anyString(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Batch terminé → résultats stockés une fois, état COMPLETED et événement publié")
+    @SuppressWarnings("unchecked")
+    void poll_batchTermine_doitStockerEtNotifier() {
+        BatchTracking tracking = suivi("batch_1");
+        when(batchService.getBatchStatus("batch_1")).thenReturn(BatchStatus.builder()
+                .id("batch_1").processingStatus("ended").resultsUrl("file-1")
+                .requestCounts(Map.of("succeeded", 1, "errored", 1)).build());
+        when(batchService.streamBatchResults(eq("batch_1"), any())).thenAnswer(inv -> {
+            Consumer<BatchResult> consumer = inv.getArgument(1);
+            consumer.accept(BatchResult.builder().customId("search-0").resultType("succeeded").build());
+            consumer.accept(BatchResult.builder().customId("search-1").resultType("errored").build());
+            return 2;
+        });
+        when(eventPublisher.publishBatchCompleted(any())).thenReturn(true);
+
+        trackingService.poll(tracking);
+
+        assertThat(tracking.getState()).isEqualTo(TrackingState.COMPLETED);
+        assertThat(tracking.getResultCount()).isEqualTo(2);
+        assertThat(tracking.getSuccessCount()).isEqualTo(1);
+        assertThat(tracking.getNotifiedAt()).isNotNull();
+        verify(resultRepository).deleteByBatchId("batch_1");
+        verify(resultRepository).saveAll(argThat(list -> ((List<?>) list).size() == 2));
+
+        ArgumentCaptor<BatchCompletedEvent> captor = ArgumentCaptor.forClass(BatchCompletedEvent.class);
+        verify(eventPublisher).publishBatchCompleted(captor.capture());
+        assertThat(captor.getValue().getEventId()).isEqualTo("batch-batch_1");
+        assertThat(captor.getValue().getErrorCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Téléchargement des résultats en échec → suivi maintenu avec backoff, puis COMPLETED au succès")
+    @SuppressWarnings("unchecked")
+    void poll_telechargementEnEchec_doitRetenterSansTerminer() {
+        BatchTracking tracking = suivi("batch_1");
+        when(batchService.getBatchStatus("batch_1")).thenReturn(BatchStatus.builder()
+                .id("batch_1").processingStatus("ended").resultsUrl("file-1")
+                .requestCounts(Map.of("succeeded", 1)).build());
+        when(batchService.streamBatchResults(eq("batch_1"), any()))
+                .thenThrow(new BatchResultsUnavailableException("Status: 502 BAD_GATEWAY"))
+                .thenAnswer(inv -> {
+                    Consumer<BatchResult> consumer = inv.getArgument(1);
+                    consumer.accept(BatchResult.builder().customId("search-0").resultType("succeeded").build());
+                    return 1;
+                });
+
+        trackingService.poll(tracking);
+
+        assertThat(tracking.getState()).isEqualTo(TrackingState.TRACKING);
+        assertThat(tracking.getErrorMessage()).isEqualTo("Résultats indisponibles");
+        assertThat(tracking.getPollIntervalSeconds()).isEqualTo(60);
+        when(trackingRepository.findById("batch_1")).thenReturn(Optional.of(tracking));
+        assertThat(trackingService.hasStoredResults("batch_1")).isFalse();
+        verifyNoInteractions(eventPublisher);
+
+        when(eventPublisher.publishBatchCompleted(any())).thenReturn(true);
+        trackingService.poll(tracking);
+
+        assertThat(tracking.getState()).isEqualTo(TrackingState.COMPLETED);
+        assertThat(tracking.getResultCount()).isEqualTo(1);
+        verify(eventPublisher).publishBatchCompleted(any());
+    }
+
+    @Test
+    @DisplayName("Webhook en échec → notification non acquittée, retentée plus tard")
+    void poll_webhookEnEchec_doitLaisserLaNotificationEnAttente() {
+        BatchTracking tracking = suivi("batch_1");
+        tracking.setWebhookUrl("https://198.51.100.7/batch");
+        when(batchService.getBatchStatus("batch_1")).thenReturn(BatchStatus.builder()
+                .id("batch_1").processingStatus("ended").requestCounts(Map.of()).build());
+        when(eventPublisher.publishBatchCompleted(any())).thenReturn(true);
+        when(restTemplate.postForEntity(anyString(), any(), eq(String.class)))
+                .thenThrow(new RuntimeException("connexion refusée"));
+
+        trackingService.poll(tracking);
+
+        assertThat(tracking.getState()).isEqualTo(TrackingState.COMPLETED);
+        assertThat(tracking.getNotifiedAt()).isNull();
+        assertThat(tracking.getNotifyAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Webhook : seuls http(s) et les hôtes autorisés sont acceptés")
+    void validateWebhookUrl_doitFiltrer() {
+        assertThatCode(() -> trackingService.validateWebhookUrl("https://198.51.100.7/x")).doesNotThrowAnyException();
+        assertThatThrownBy(() -> trackingService.validateWebhookUrl("file:///etc/passwd"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> trackingService.validateWebhookUrl("http://169.254.169.254/latest"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Webhook : aucun hôte autorisé → tous les webhooks sont refusés")
+    void validateWebhookUrl_listeVide_doitToutRefuser() {
+        BatchTrackingService sansListe = new BatchTrackingService(batchService, trackingRepository, resultRepository,
+                eventPublisher, restTemplate, true, 30, 600, 48, 5, List.of());
+
+        assertThatThrownBy(() -> sansListe.validateWebhookUrl("https://198.51.100.7/x"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("désactivés");
+    }
+
+    @Test
+    @DisplayName("Webhook : hôte autorisé mais adresse interne → refusé")
+    void validateWebhookUrl_adresseInterne_doitRefuser() {
+        assertThatThrownBy(() -> trackingService.validateWebhookUrl("http://127.0.0.1:8080/actuator"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("interne");
+        assertThatThrownBy(() -> trackingService.validateWebhookUrl("http://10.0.0.5/hook"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("interne");
+    }
+
+    @Test
+    @DisplayName("Webhook vers une adresse interne → aucun appel, notification non acquittée")
+    void poll_webhookInterne_neDoitPasAppeler() {
+        BatchTracking tracking = suivi("batch_1");
+        tracking.setWebhookUrl("http://10.0.0.5/hook");
+        when(batchService.getBatchStatus("batch_1")).thenReturn(BatchStatus.builder()
+                .id("batch_1").processingStatus("ended").requestCounts(Map.of()).build());
+        when(eventPublisher.publishBatchCompleted(any())).thenReturn(true);
+
+        trackingService.poll(tracking);
+
+        verify(restTemplate, never()).postForEntity(anyString(), any(), eq(String.class));
+        assertThat(tracking.getNotifiedAt()).isNull();
+    }
+}
@@ -0,0 +1,211 @@
+package com.tarif.search.service.ai.batch;
+
+import com.sun.net.httpserver.HttpServer;
+import com.tarif.search.model.LocalBatch;
+import com.tarif.search.model.LocalBatchRequest;
+import com.tarif.search.model.LocalBatchRequest.Status;
+import com.tarif.search.repository.LocalBatchRepository;
+import com.tarif.search.repository.LocalBatchRequestRepository;
+import com.tarif.search.service.ai.AiPrompts;
+import com.tarif.search.service.ai.OllamaService;
+import com.tarif.search.service.ai.batch.models.BatchStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour OllamaBatchProvider — exécution locale contre un serveur Ollama bouchon
+ * (HttpServer du JDK), file persistante mockée.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OllamaBatchProvider — batch exécuté localement")
+class OllamaBatchProviderTest {
+
+    @Mock private LocalBatchQueue queue;
+    @Mock private LocalBatchRepository batchRepository;
+    @Mock private LocalBatchRequestRepository requestRepository;
+
+    private HttpServer stubOllama;
+    private final AtomicInteger appels = new AtomicInteger();
+    private final List<String> corpsRecus = new CopyOnWriteArrayList<>();
+    private volatile int statutHttp = 200;
+    /** Retient la réponse du stub tant qu'il n'est pas ouvert (requête « en cours »). */
+    private volatile CountDownLatch reponseRetenue = new CountDownLatch(0);
+    private volatile String reponseOllama =
+            "{\"response\":\"[{\\\"code\\\":\\\"0808 10\\\"}]\",\"prompt_eval_count\":120,\"eval_count\":15}";
+
+    private OllamaBatchProvider provider;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stubOllama = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stubOllama.createContext("/api/generate", exchange -> {
+            appels.incrementAndGet();
+            corpsRecus.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            try {
+                reponseRetenue.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = reponseOllama.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(statutHttp, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        stubOllama.start();
+
+        OllamaService ollamaService = new OllamaService(new AiPrompts(), new RestTemplate(),
+                "http://localhost:" + stubOllama.getAddress().getPort(), "llama3", false);
+        provider = new OllamaBatchProvider(ollamaService, queue, batchRepository, requestRepository, "ollama", 2, 2,
+                Duration.ofMinutes(10), "instance-a");
+    }
+
+    @AfterEach
+    void tearDown() {
+        provider.shutdown();
+        stubOllama.stop(0);
+    }
+
+    private LocalBatchRequest requete(long id) {
+        LocalBatchRequest request = new LocalBatchRequest();
+        request.setId(id);
+        request.setBatchId("local-1");
+        request.setCustomId("search-" + id);
+        request.setSearchTerm("pommes fraîches");
+        request.setRagContext("RAG");
+        request.setNiveau("POSITIONS6");
+        request.setStatus(Status.RUNNING);
+        return request;
+    }
+
+    @Test
+    @DisplayName("Réponse Ollama → requête SUCCEEDED avec contenu et tokens")
+    void execute_stubRepondant_doitEnregistrerLeSucces() {
+        LocalBatchRequest request = requete(1);
+
+        provider.execute(request);
+
+        assertThat(request.getStatus()).isEqualTo(Status.SUCCEEDED);
+        assertThat(request.getContent()).contains("0808 10");
+        assertThat(request.getInputTokens()).isEqualTo(120);
+        assertThat(request.getOutputTokens()).isEqualTo(15);
+        assertThat(corpsRecus).singleElement().asString().contains("pommes fraîches");
+        verify(requestRepository).save(request);
+    }
+
+    @Test
+    @DisplayName("Ollama en erreur → nouvelle tentative puis requête ERRORED")
+    void execute_stubEnErreur_doitRetenterPuisEchouer() {
+        statutHttp = 500;
+        reponseOllama = "{\"error\":\"model not loaded\"}";
+        LocalBatchRequest request = requete(1);
+
+        provider.execute(request);
+
+        assertThat(appels.get()).isEqualTo(2);
+        assertThat(request.getStatus()).isEqualTo(Status.ERRORED);
+        assertThat(request.getErrorMessage()).contains("2 tentative");
+    }
+
+    @Test
+    @DisplayName("Dernière requête traitée → batch passé à ENDED")
+    void execute_derniereRequete_doitTerminerLeBatch() {
+        LocalBatch batch = new LocalBatch();
+        batch.setId("local-1");
+        when(requestRepository.countByBatchIdAndStatusIn(eq("local-1"), anyCollection())).thenReturn(0L);
+        when(batchRepository.findById("local-1")).thenReturn(Optional.of(batch));
+
+        provider.execute(requete(1));
+
+        assertThat(batch.getStatus()).isEqualTo(LocalBatch.Status.ENDED);
+        assertThat(batch.getEndedAt()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("dispatch → requêtes prises en file exécutées par le pool de workers")
+    void dispatch_doitExecuterLesRequetesPrises() {
+        when(queue.claim(anyInt(), eq("instance-a"), any())).thenReturn(List.of(requete(1), requete(2))).thenReturn(List.of());
+
+        provider.dispatch();
+
+        verify(requestRepository, timeout(5000).times(2))
+                .save(argThat(r -> r.getStatus() == Status.SUCCEEDED));
+        assertThat(appels.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Démarrage → seules les requêtes de cette instance ou au bail expiré sont remises en file")
+    void recoverInterruptedRequests_doitFiltrerParBail() {
+        when(queue.claim(anyInt(), anyString(), any())).thenReturn(List.of());
+
+        provider.recoverInterruptedRequests();
+
+        verify(requestRepository).requeueAbandoned(eq(Status.RUNNING), eq(Status.PENDING), eq("instance-a"), any());
+    }
+
+    @Test
+    @DisplayName("Tick périodique → une requête en cours sous notre bail n'est ni remise en file ni relancée")
+    void scheduledDispatch_requeteEnCoursSousNotreBail_doitEtreLaissee() throws Exception {
+        reponseRetenue = new CountDownLatch(1);
+        LocalBatchRequest enCours = requete(1);
+        enCours.setLeaseOwner("instance-a");
+        enCours.setLeaseExpiresAt(LocalDateTime.now().plusMinutes(10));
+        when(queue.claim(anyInt(), eq("instance-a"), any())).thenReturn(List.of(enCours)).thenReturn(List.of());
+
+        provider.dispatch();
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (appels.get() == 0 && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+        provider.scheduledDispatch();
+        reponseRetenue.countDown();
+
+        verify(requestRepository, timeout(5000)).save(argThat(r -> r.getStatus() == Status.SUCCEEDED));
+        verify(requestRepository).renewLeases(eq(Status.RUNNING), eq("instance-a"), any());
+        verify(requestRepository).requeueExpired(eq(Status.RUNNING), eq(Status.PENDING), any());
+        verify(requestRepository, never()).requeueAbandoned(any(), any(), any(), any());
+        assertThat(appels.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Statut : compteurs par état au format commun, resultsUrl renseigné une fois terminé")
+    void getBatchStatus_doitMapperLesCompteurs() {
+        LocalBatch batch = new LocalBatch();
+        batch.setId("local-1");
+        batch.setStatus(LocalBatch.Status.ENDED);
+        when(batchRepository.findById("local-1")).thenReturn(Optional.of(batch));
+        when(requestRepository.countByStatus("local-1")).thenReturn(List.of(
+                new Object[]{Status.SUCCEEDED, 3L}, new Object[]{Status.ERRORED, 1L}));
+
+        BatchStatus status = provider.getBatchStatus("local-1");
+
+        assertThat(status.isEnded()).isTrue();
+        assertThat(status.getResultsUrl()).isEqualTo("local-1");
+        assertThat(status.getRequestCounts())
+                .containsEntry("succeeded", 3).containsEntry("errored", 1).containsEntry("processing", 0);
+    }
+}